@@ -1,15 +1,19 @@
 package ru.zotov;
 
 import net.datafaker.Faker;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 import ru.zotov.customer.Customer;
 import ru.zotov.customer.CustomerRepository;
 import java.util.Random;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class Main {
 
     public static void main(String[] args) {
@@ -18,8 +22,13 @@ public class Main {
     }
 
     @Bean
-    CommandLineRunner commandLineRunner(CustomerRepository customerRepository){
+    CommandLineRunner commandLineRunner(ObjectProvider<CustomerRepository> customerRepository,
+                                        @Value("${customer.seed.enabled:false}") boolean seedEnabled){
         return args -> {
+            if (!seedEnabled) {
+                return;
+            }
+
             Random random = new Random();
             Faker faker = new Faker();
             Customer customer = new Customer(
@@ -27,7 +36,7 @@ public class Main {
                     faker.internet().safeEmailAddress(),
                     random.nextInt(19,81)
             );
-            customerRepository.save(customer);
+            customerRepository.getObject().save(customer);
         };
     }
 }
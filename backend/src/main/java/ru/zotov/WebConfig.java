@@ -0,0 +1,30 @@
+package ru.zotov;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary encodings negotiated through {@code Accept} / {@code Content-Type}
+ * ({@code application/cbor}, {@code application/x-jackson-smile}). Both mappers are
+ * built from Boot's Jackson builder so they serialize exactly like the JSON one.
+ * These beans replace Spring's default CBOR/Smile converters in place, so JSON
+ * stays the default when a client accepts any media type.
+ */
+@Configuration
+public class WebConfig {
+
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,16 @@
+package ru.zotov.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated method on the bulk executor, with connections from the bulk
+ * pool and the bulk timeout instead of the request deadline. Calls beyond the
+ * executor's queue fail fast with 503.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BulkOperation {
+}
@@ -0,0 +1,126 @@
+package ru.zotov.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.exception.ServiceOverloadedException;
+import ru.zotov.sqlstats.DatabaseUsage;
+import ru.zotov.sqlstats.DatabaseUsageTracker;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands {@link BulkOperation} methods to a fixed executor of their own and waits for
+ * them up to the bulk timeout. On the executor they run as {@link Workload#BULK}
+ * under a deadline of that timeout, with the request attributes and database usage
+ * tracking of the calling request.
+ */
+@Aspect
+public class BulkOperationAspect {
+
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    public BulkOperationAspect(int threads, int queueCapacity, Duration timeout, MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "customer-bulk-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.timeout = timeout;
+
+        new ExecutorServiceMetrics(executor, "customer-bulk", Tags.empty()).bindTo(meterRegistry);
+        this.rejected = Counter.builder("customer.bulkhead.rejected")
+                .description("Bulk operations rejected because the bulk executor was saturated")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("customer.bulkhead.timed-out")
+                .description("Bulk operations abandoned after the bulk timeout")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Around("@annotation(ru.zotov.bulkhead.BulkOperation)")
+    public Object runOnBulkExecutor(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        boolean tracking = DatabaseUsageTracker.isActive();
+        DatabaseUsage[] usage = new DatabaseUsage[1];
+
+        Future<Object> result;
+        try {
+            result = executor.submit(() -> {
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                Workload.attach(Workload.BULK);
+                Deadline.start(timeout);
+                if (tracking) {
+                    DatabaseUsageTracker.start();
+                }
+                try {
+                    return proceed(joinPoint);
+                } finally {
+                    usage[0] = tracking ? DatabaseUsageTracker.stop() : DatabaseUsage.NONE;
+                    Deadline.clear();
+                    Workload.attach(null);
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceOverloadedException("too many concurrent bulk requests, retry later");
+        }
+
+        try {
+            return result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timedOut.increment();
+            throw new QueryTimeoutException(
+                    "bulk operation timeout of %d ms exceeded".formatted(timeout.toMillis()));
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            if (usage[0] != null) {
+                DatabaseUsageTracker.add(usage[0]);
+            }
+        }
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) throws Exception {
+        try {
+            return joinPoint.proceed();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
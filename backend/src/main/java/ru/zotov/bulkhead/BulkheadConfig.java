@@ -0,0 +1,109 @@
+package ru.zotov.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.bulkhead.enabled", matchIfMissing = true)
+public class BulkheadConfig {
+
+    static final String BULK_POOL_NAME = "customer-bulk";
+
+    /**
+     * Ahead of the deadline and statement statistics wrappers, so they apply to
+     * connections from either pool.
+     */
+    @Bean
+    public static BeanPostProcessor workloadRoutingPostProcessor(ObjectProvider<BulkheadProperties> properties) {
+        return new WorkloadRoutingPostProcessor(properties);
+    }
+
+    @Bean
+    public BulkOperationAspect bulkOperationAspect(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        return new BulkOperationAspect(
+                properties.threads(), properties.queueCapacity(), properties.timeout(), meterRegistry);
+    }
+
+    /**
+     * Pool metrics, {@code hikaricp.connections.*} tagged with the pool name, for the
+     * bulk pool and, unless Spring Boot has bound them already, the OLTP pool.
+     */
+    @Bean
+    public MeterBinder bulkheadPoolMetrics(DataSource dataSource) {
+        return meterRegistry -> {
+            WorkloadRoutingDataSource routing;
+            try {
+                routing = dataSource.unwrap(WorkloadRoutingDataSource.class);
+            } catch (SQLException e) {
+                return;
+            }
+            for (Workload workload : Workload.values()) {
+                if (routing.pool(workload) instanceof HikariDataSource pool
+                        && pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null) {
+                    pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                }
+            }
+        };
+    }
+
+    private static HikariDataSource bulkPool(HikariDataSource oltp, BulkheadProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(BULK_POOL_NAME);
+        if (oltp.getDriverClassName() != null) {
+            pool.setDriverClassName(oltp.getDriverClassName());
+        }
+        pool.setJdbcUrl(oltp.getJdbcUrl());
+        pool.setUsername(oltp.getUsername());
+        pool.setPassword(oltp.getPassword());
+        pool.setDataSourceProperties(oltp.getDataSourceProperties());
+        pool.setMaximumPoolSize(properties.maximumPoolSize());
+        pool.setConnectionTimeout(properties.connectionTimeout().toMillis());
+        return pool;
+    }
+
+    private static final class WorkloadRoutingPostProcessor
+            implements BeanPostProcessor, PriorityOrdered, DisposableBean {
+
+        private final ObjectProvider<BulkheadProperties> properties;
+        private final List<HikariDataSource> bulkPools = new ArrayList<>();
+
+        private WorkloadRoutingPostProcessor(ObjectProvider<BulkheadProperties> properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof HikariDataSource oltp)) {
+                return bean;
+            }
+            HikariDataSource bulk = bulkPool(oltp, properties.getObject());
+            bulkPools.add(bulk);
+            return new WorkloadRoutingDataSource(oltp, bulk);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void destroy() {
+            bulkPools.forEach(HikariDataSource::close);
+        }
+    }
+}
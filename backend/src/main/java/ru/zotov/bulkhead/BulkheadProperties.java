@@ -0,0 +1,21 @@
+package ru.zotov.bulkhead;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Sizing of the bulk workload. The OLTP pool is the one configured under
+ * {@code spring.datasource.hikari}.
+ */
+@ConfigurationProperties(prefix = "customer.bulkhead")
+public record BulkheadProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("4") int maximumPoolSize,
+        @DefaultValue("30s") Duration connectionTimeout,
+        @DefaultValue("4") int threads,
+        @DefaultValue("16") int queueCapacity,
+        @DefaultValue("5m") Duration timeout
+) {
+}
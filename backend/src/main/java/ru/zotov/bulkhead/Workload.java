@@ -0,0 +1,46 @@
+package ru.zotov.bulkhead;
+
+import java.util.function.Supplier;
+
+/**
+ * The kind of database work running on the current thread. {@link WorkloadRoutingDataSource}
+ * hands out connections from the pool of that kind, so long bulk reads and loads
+ * cannot take the connections point lookups wait for. Threads run {@link #OLTP}
+ * work unless told otherwise.
+ */
+public enum Workload {
+
+    OLTP,
+    BULK;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload == null ? OLTP : workload;
+    }
+
+    /**
+     * Runs {@code work} as bulk work and restores the workload afterwards.
+     */
+    public static <T> T bulk(Supplier<T> work) {
+        Workload outer = CURRENT.get();
+        CURRENT.set(BULK);
+        try {
+            return work.get();
+        } finally {
+            attach(outer);
+        }
+    }
+
+    /**
+     * Binds a workload for work handed off to another thread; {@code null} clears it.
+     */
+    public static void attach(Workload workload) {
+        if (workload == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(workload);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.zotov.bulkhead;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Hands out connections from the pool of the {@link Workload} running on the
+ * current thread.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final Map<Workload, DataSource> pools;
+
+    public WorkloadRoutingDataSource(DataSource oltp, DataSource bulk) {
+        this.pools = Map.of(Workload.OLTP, oltp, Workload.BULK, bulk);
+        setTargetDataSources(Map.copyOf(pools));
+        setDefaultTargetDataSource(oltp);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public DataSource pool(Workload workload) {
+        return pools.get(workload);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Workload.current();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.zotov.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import ru.zotov.exception.ServiceOverloadedException;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Aspect
+public class ConcurrencyLimitAspect {
+
+    private final Map<Operation, ConcurrencyLimiter> limiters;
+    private final Map<Operation, Counter> rejected = new EnumMap<>(Operation.class);
+
+    public ConcurrencyLimitAspect(Map<Operation, ConcurrencyLimiter> limiters, MeterRegistry meterRegistry) {
+        this.limiters = limiters;
+        limiters.forEach((operation, limiter) -> {
+            String tag = operation.name().toLowerCase();
+            meterRegistry.gauge("customer.concurrency.limit",
+                    Tags.of("operation", tag), limiter, ConcurrencyLimiter::getLimit);
+            meterRegistry.gauge("customer.concurrency.in-flight",
+                    Tags.of("operation", tag), limiter, ConcurrencyLimiter::getInFlight);
+            rejected.put(operation, Counter.builder("customer.concurrency.rejected")
+                    .description("Calls rejected by the adaptive concurrency limit")
+                    .tag("operation", tag)
+                    .register(meterRegistry));
+        });
+    }
+
+    @Around("@annotation(limited)")
+    public Object limit(ProceedingJoinPoint joinPoint, ConcurrencyLimited limited) throws Throwable {
+        ConcurrencyLimiter limiter = limiters.get(limited.value());
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            rejected.get(limited.value()).increment();
+            throw new ServiceOverloadedException(
+                    "too many concurrent %s requests, retry later".formatted(limited.value().name().toLowerCase()));
+        }
+
+        boolean dropped = false;
+        try {
+            return joinPoint.proceed();
+        } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            if (dropped) {
+                permit.onDropped();
+            } else {
+                permit.onSuccess();
+            }
+        }
+    }
+}
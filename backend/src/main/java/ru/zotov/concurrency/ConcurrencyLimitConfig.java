@@ -0,0 +1,26 @@
+package ru.zotov.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.concurrency-limit.enabled", matchIfMissing = true)
+    public ConcurrencyLimitAspect concurrencyLimitAspect(ConcurrencyLimitProperties properties,
+                                                         MeterRegistry meterRegistry) {
+        Map<Operation, ConcurrencyLimiter> limiters = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            ConcurrencyLimitProperties.Limits limits = properties.limits(operation);
+            limiters.put(operation, new ConcurrencyLimiter(
+                    limits.initialLimit(), limits.minLimit(), limits.maxLimit(), properties.window()));
+        }
+        return new ConcurrencyLimitAspect(limiters, meterRegistry);
+    }
+}
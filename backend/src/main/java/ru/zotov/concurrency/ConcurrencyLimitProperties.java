@@ -0,0 +1,26 @@
+package ru.zotov.concurrency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.concurrency-limit")
+public record ConcurrencyLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100ms") Duration window,
+        Limits read,
+        Limits write
+) {
+    public ConcurrencyLimitProperties {
+        read = read != null ? read : new Limits(20, 4, 200);
+        write = write != null ? write : new Limits(10, 2, 100);
+    }
+
+    public record Limits(int initialLimit, int minLimit, int maxLimit) {
+    }
+
+    public Limits limits(Operation operation) {
+        return operation == Operation.READ ? read : write;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.zotov.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated method under the adaptive concurrency limit of its operation
+ * type; calls over the limit fail fast with 503.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimited {
+    Operation value();
+}
@@ -0,0 +1,84 @@
+package ru.zotov.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits calls while fewer than the current adaptive limit are in flight. Admission
+ * is a compare-and-set on the in-flight counter; each released permit feeds its
+ * latency back into the limit.
+ */
+public class ConcurrencyLimiter {
+
+    private final GradientLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongSupplier nanoClock;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration window) {
+        this(initialLimit, minLimit, maxLimit, window, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration window, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.limit = new GradientLimit(initialLimit, minLimit, maxLimit, window.toNanos(), nanoClock.getAsLong());
+    }
+
+    /**
+     * Returns a permit that must be released exactly once, or {@code null} when the
+     * limit is reached.
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.getLimit()) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(nanoClock.getAsLong(), current + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void onSuccess() {
+            release(false);
+        }
+
+        /**
+         * The call failed in a way that signals overload, such as a timeout or an
+         * exhausted connection pool.
+         */
+        public void onDropped() {
+            release(true);
+        }
+
+        private void release(boolean dropped) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long now = nanoClock.getAsLong();
+            inFlight.decrementAndGet();
+            limit.onSample(now, now - startNanos, inFlightAtStart, dropped);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.zotov.concurrency;
+
+/**
+ * Concurrency limit derived from latency, after the gradient algorithm of Netflix
+ * concurrency-limits. Samples are averaged per window into a short-term RTT and
+ * compared with the no-load RTT, the lowest window RTT seen so far:
+ * <pre>
+ * gradient = clamp(tolerance * noLoadRtt / shortRtt, 0.5, 1)
+ * newLimit = limit * gradient + sqrt(limit)
+ * </pre>
+ * Latency at the baseline lets the limit grow by the {@code sqrt(limit)} queue
+ * allowance. Latency above {@code tolerance} times the baseline shrinks it. A
+ * window that saw a dropped call (timeout, connection failure) backs off
+ * multiplicatively. Windows in which less than half the limit was used carry no
+ * signal about capacity and only update the RTT.
+ * <p>
+ * Traffic that arrives already overloaded never shows the true no-load RTT, so the
+ * limit is halved after the first {@value #FIRST_PROBE_WINDOWS} windows and then
+ * every {@value #PROBE_INTERVAL_WINDOWS} windows to sample a lighter load. The
+ * baseline drifts up by {@value #NO_LOAD_RTT_DRIFT} per window so it can follow
+ * a database that has become permanently slower.
+ */
+class GradientLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int FIRST_PROBE_WINDOWS = 10;
+    private static final int PROBE_INTERVAL_WINDOWS = 50;
+    private static final double NO_LOAD_RTT_DRIFT = 0.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private volatile double estimatedLimit;
+    private double noLoadRtt;
+    private int windowsUntilProbe = FIRST_PROBE_WINDOWS;
+
+    private long windowStart;
+    private double windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, long windowNanos, long nowNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                    "concurrency limits must satisfy 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowNanos;
+        this.estimatedLimit = initialLimit;
+        this.windowStart = nowNanos;
+    }
+
+    int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    synchronized void onSample(long nowNanos, long rttNanos, int inFlight, boolean dropped) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        windowDropped |= dropped;
+
+        if (nowNanos - windowStart < windowNanos || (windowSamples < MIN_WINDOW_SAMPLES && !windowDropped)) {
+            return;
+        }
+
+        update(windowRttSum / windowSamples, windowMaxInFlight, windowDropped);
+        windowStart = nowNanos;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    private void update(double shortRtt, int inFlight, boolean dropped) {
+        noLoadRtt = noLoadRtt == 0 ? shortRtt : Math.min(noLoadRtt * (1 + NO_LOAD_RTT_DRIFT), shortRtt);
+        if (--windowsUntilProbe == 0) {
+            windowsUntilProbe = PROBE_INTERVAL_WINDOWS;
+            estimatedLimit = Math.max(minLimit, estimatedLimit / 2);
+            return;
+        }
+
+        double newLimit;
+        if (dropped) {
+            newLimit = estimatedLimit * BACKOFF;
+        } else if (inFlight < estimatedLimit / 2) {
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRtt / shortRtt));
+            newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        }
+
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
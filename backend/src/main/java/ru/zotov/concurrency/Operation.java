@@ -0,0 +1,5 @@
+package ru.zotov.concurrency;
+
+public enum Operation {
+    READ, WRITE
+}
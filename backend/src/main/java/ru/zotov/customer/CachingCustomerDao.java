@@ -0,0 +1,99 @@
+package ru.zotov.customer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public class CachingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final CustomerCache customerCache;
+
+    public CachingCustomerDao(CustomerDao delegate, CustomerCache customerCache) {
+        this.delegate = delegate;
+        this.customerCache = customerCache;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        Optional<Customer> cached = customerCache.get(customerId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        long generation = customerCache.generation();
+        Optional<Customer> customer = delegate.selectCustomerById(customerId);
+        customer.ifPresent(c -> customerCache.put(c, generation));
+        return customer;
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        List<Customer> customers = new ArrayList<>(customerIds.size());
+        List<Integer> misses = new ArrayList<>();
+        for (Integer customerId : customerIds) {
+            customerCache.get(customerId).ifPresentOrElse(customers::add, () -> misses.add(customerId));
+        }
+
+        if (!misses.isEmpty()) {
+            long generation = customerCache.generation();
+            for (Customer customer : delegate.selectCustomersByIds(misses)) {
+                customerCache.put(customer, generation);
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        long generation = customerCache.generation();
+        Optional<Customer> customer = delegate.selectCustomerByEmail(email);
+        customer.ifPresent(c -> customerCache.put(c, generation));
+        return customer;
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        return customerCache.get(customerId).isPresent() || delegate.existsCustomerWithId(customerId);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        try {
+            delegate.deleteCustomerById(customerId);
+        } finally {
+            customerCache.evict(customerId);
+        }
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        try {
+            delegate.updateCustomer(update);
+        } finally {
+            customerCache.evict(update.getId());
+        }
+    }
+}
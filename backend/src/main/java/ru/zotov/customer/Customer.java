@@ -4,16 +4,13 @@ import jakarta.persistence.*;
 import java.util.Objects;
 
 @Entity
-@Table(name = "customer", uniqueConstraints = {
-        @UniqueConstraint(name = "customer_email_key",
-                columnNames = "email")
-})
+@Table(name = "customer")
 public class Customer {
     @Id
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
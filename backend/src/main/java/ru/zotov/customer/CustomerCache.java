@@ -0,0 +1,89 @@
+package ru.zotov.customer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of customers by id. Entries are evicted on local writes and on
+ * change notifications from other nodes; values are copied in and out so callers
+ * can never mutate cached state.
+ */
+@Component
+public class CustomerCache implements CustomerChangeSubscriber {
+
+    private final ConcurrentHashMap<Integer, Customer> customers = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxSize;
+
+    public CustomerCache(@Value("${customer.cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Optional<Customer> get(Integer customerId) {
+        return Optional.ofNullable(customers.get(customerId)).map(CustomerCache::copy);
+    }
+
+    /**
+     * Marker to take before loading a value that is going to be cached, see
+     * {@link #put(Customer, long)}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a value loaded after {@code expectedGeneration} was taken. If any
+     * eviction happened in between, the value may already be stale and is dropped.
+     */
+    public void put(Customer customer, long expectedGeneration) {
+        if (customers.size() >= maxSize) {
+            evictAny();
+        }
+
+        customers.put(customer.getId(), copy(customer));
+        if (generation.get() != expectedGeneration) {
+            customers.remove(customer.getId());
+        }
+    }
+
+    public void evict(Integer customerId) {
+        generation.incrementAndGet();
+        customers.remove(customerId);
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        customers.clear();
+    }
+
+    public int size() {
+        return customers.size();
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        evict(change.customerId());
+    }
+
+    @Override
+    public void onChangesMissed() {
+        clear();
+    }
+
+    private void evictAny() {
+        Iterator<Integer> iterator = customers.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+}
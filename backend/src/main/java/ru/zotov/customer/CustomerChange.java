@@ -0,0 +1,22 @@
+package ru.zotov.customer;
+
+public record CustomerChange(
+        Type type,
+        Integer customerId
+) {
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    public static CustomerChange parse(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("malformed customer change: " + payload);
+        }
+
+        return new CustomerChange(
+                Type.valueOf(payload.substring(0, separator)),
+                Integer.valueOf(payload.substring(separator + 1))
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package ru.zotov.customer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Keeps a dedicated (non-pooled) connection subscribed to the {@code customer_changes}
+ * channel, which is fed by the {@code customer_change_notify} trigger, and forwards
+ * every notification to the registered {@link CustomerChangeSubscriber}s.
+ */
+@Component
+public class CustomerChangeListener {
+
+    public static final String CHANNEL = "customer_changes";
+    public static final String RESET_PAYLOAD = "RESET";
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerChangeListener.class);
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long VALIDATION_INTERVAL_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private final DataSourceProperties dataSourceProperties;
+    private final List<CustomerChangeSubscriber> subscribers;
+    private final boolean enabled;
+    private final Duration reconnectDelay;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public CustomerChangeListener(DataSourceProperties dataSourceProperties,
+                                  List<CustomerChangeSubscriber> subscribers,
+                                  @Value("${customer.change-listener.enabled:true}") boolean enabled,
+                                  @Value("${customer.change-listener.reconnect-delay:2s}") Duration reconnectDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.subscribers = subscribers;
+        this.enabled = enabled;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::run, "customer-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword())) {
+
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                log.info("listening for customer changes on channel '{}'", CHANNEL);
+
+                // anything may have changed while we were not listening
+                flush();
+                listen(connection);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("customer change listener lost its connection, reconnecting in {}",
+                            reconnectDelay, e);
+                    flush();
+                    sleep(reconnectDelay);
+                }
+            }
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastValidation = System.nanoTime();
+
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    dispatch(notification.getParameter());
+                }
+            }
+
+            if (System.nanoTime() - lastValidation > VALIDATION_INTERVAL_NANOS) {
+                if (!connection.isValid(5)) {
+                    throw new SQLException("listener connection is no longer valid");
+                }
+                lastValidation = System.nanoTime();
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        if (RESET_PAYLOAD.equals(payload)) {
+            flush();
+            return;
+        }
+
+        CustomerChange change;
+        try {
+            change = CustomerChange.parse(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("ignoring malformed customer change '{}'", payload);
+            return;
+        }
+
+        for (CustomerChangeSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onCustomerChange(change);
+            } catch (RuntimeException e) {
+                log.error("customer change subscriber {} failed", subscriber, e);
+            }
+        }
+    }
+
+    private void flush() {
+        for (CustomerChangeSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onChangesMissed();
+            } catch (RuntimeException e) {
+                log.error("customer change subscriber {} failed to flush", subscriber, e);
+            }
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.zotov.customer;
+
+public record CustomerChangeLogEntry(
+        long changeXid,
+        long changeSeq,
+        Integer customerId,
+        Customer customer
+) {
+    public boolean deleted() {
+        return customer == null;
+    }
+
+    public CustomerChangePosition position() {
+        return new CustomerChangePosition(changeXid, changeSeq);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.zotov.customer;
+
+import java.util.Comparator;
+
+/**
+ * Where a change sits in the change log: the id of the transaction that wrote it,
+ * then its {@code change_seq}. Transaction ids below the oldest running
+ * transaction are final, so no change can later appear before a position read up
+ * to that point.
+ */
+public record CustomerChangePosition(
+        long xid,
+        long seq
+) implements Comparable<CustomerChangePosition> {
+
+    public static final CustomerChangePosition START = new CustomerChangePosition(0, 0);
+
+    private static final Comparator<CustomerChangePosition> ORDER = Comparator
+            .comparingLong(CustomerChangePosition::xid)
+            .thenComparingLong(CustomerChangePosition::seq);
+
+    @Override
+    public int compareTo(CustomerChangePosition other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.zotov.customer;
+
+public interface CustomerChangeSubscriber {
+    void onCustomerChange(CustomerChange change);
+
+    /**
+     * Called whenever changes may have been missed, e.g. after the listener
+     * connection was re-established. Subscribers must drop derived state.
+     */
+    void onChangesMissed();
+}
@@ -0,0 +1,11 @@
+package ru.zotov.customer;
+
+import java.util.List;
+
+public record CustomerChangesPage(
+        List<Customer> upserted,
+        List<Integer> deleted,
+        String nextToken,
+        boolean hasMore
+) {
+}
@@ -1,22 +1,98 @@
 package ru.zotov.customer;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.zotov.customer.event.CustomerEventStream;
 
+import java.util.Comparator;
 import java.util.List;
 
 @RestController
 @RequestMapping("api/v1/customers")
 public class CustomerController {
 
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
     private final CustomerService customerService;
+    private final CustomerEventStream customerEventStream;
+    private final CustomerSyncService customerSyncService;
+    private final CustomerListCache customerListCache;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerEventStream customerEventStream,
+                              CustomerSyncService customerSyncService,
+                              CustomerListCache customerListCache) {
         this.customerService = customerService;
+        this.customerEventStream = customerEventStream;
+        this.customerSyncService = customerSyncService;
+        this.customerListCache = customerListCache;
     }
 
+    /**
+     * JSON clients get the pre-encoded list from {@link CustomerListCache}; CBOR and
+     * Smile clients go through the message converters.
+     */
     @GetMapping
-    public List<Customer> getCustomerService(){
-        return customerService.getAllCustomers();
+    public ResponseEntity<?> getCustomers(
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest){
+        if (!prefersJson(accept)){
+            return ResponseEntity.ok(customerService.getAllCustomers());
+        }
+
+        CustomerListCache.Body body = customerListCache.get();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? body.gzipEtag() : body.etag();
+        if (webRequest.checkNotModified(etag)){
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        return gzip
+                ? response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip())
+                : response.body(body.json());
+    }
+
+    @GetMapping(params = "ids")
+    public List<CustomerLookupResult> getCustomersByIds(@RequestParam("ids") List<Integer> customerIds){
+        return customerService.getCustomersByIds(customerIds);
+    }
+
+    @GetMapping(path = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCustomerEvents(
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(name = "lastEventId", required = false) String lastEventId){
+        return customerEventStream.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @GetMapping("changes")
+    public CustomerChangesPage getCustomerChanges(
+            @RequestParam(name = "since", required = false) String since,
+            @RequestParam(name = "limit", defaultValue = "500") int limit){
+        return customerSyncService.getChangesSince(since, limit);
+    }
+
+    @GetMapping("search")
+    public List<Customer> searchCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(name = "limit", defaultValue = "20") int limit){
+        return customerService.searchCustomers(query, limit);
+    }
+
+    @GetMapping("by-email/{email}")
+    public Customer getCustomerByEmail(@PathVariable("email") String email){
+        return customerService.getCustomerByEmail(email);
     }
 
     @GetMapping("{customerId}")
@@ -39,4 +115,37 @@ public class CustomerController {
                                @RequestBody CustomerUpdateRequest customerUpdateRequest){
         customerService.updateCustomer(customerId, customerUpdateRequest);
     }
+
+    private static boolean prefersJson(String accept){
+        if (accept == null || accept.isBlank()){
+            return true;
+        }
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                    .filter(type -> type.getQualityValue() > 0)
+                    .filter(type -> type.isCompatibleWith(MediaType.APPLICATION_JSON)
+                            || type.isCompatibleWith(MediaType.APPLICATION_CBOR)
+                            || type.isCompatibleWith(SMILE))
+                    .findFirst()
+                    .map(type -> type.includes(MediaType.APPLICATION_JSON))
+                    .orElse(false);
+        } catch (InvalidMediaTypeException e){
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding){
+        if (acceptEncoding == null){
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")){
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")){
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
 }
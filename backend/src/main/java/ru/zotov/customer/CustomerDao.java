@@ -1,12 +1,21 @@
 package ru.zotov.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
     Optional<Customer> selectCustomerById(Integer customerId);
+    List<Customer> selectCustomersByIds(Collection<Integer> customerIds);
+
+    /**
+     * Matches emails as {@link CustomerEmail#normalize(String)} does, like
+     * {@link #existsCustomerWithEmail(String)}.
+     */
+    Optional<Customer> selectCustomerByEmail(String email);
     void insertCustomer(Customer customer);
+    void insertCustomers(List<Customer> customers);
     boolean existsCustomerWithEmail(String email);
     boolean existsCustomerWithId(Integer customerId);
     void deleteCustomerById(Integer customerId);
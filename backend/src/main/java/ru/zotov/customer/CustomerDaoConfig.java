@@ -0,0 +1,75 @@
+package ru.zotov.customer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.zotov.customer.logstore.CustomerLogDataAccessService;
+import ru.zotov.customer.replica.CustomerReplica;
+import ru.zotov.customer.replica.ReplicaCustomerDao;
+import ru.zotov.customer.resilience.CircuitBreaker;
+import ru.zotov.customer.resilience.CircuitBreakingCustomerDao;
+import ru.zotov.customer.resilience.LastKnownCustomers;
+import ru.zotov.customer.resilience.ResilienceProperties;
+import ru.zotov.customer.resilience.StaleFallbackCustomerDao;
+import ru.zotov.customer.shadow.ShadowCustomerDao;
+import ru.zotov.customer.shadow.ShadowTraffic;
+import ru.zotov.customer.shard.ShardedCustomerDao;
+
+@Configuration
+public class CustomerDaoConfig {
+
+    /**
+     * Where customers are stored: the primary database, every shard when
+     * {@code customer.sharding.enabled} is set, or local files when
+     * {@code customer.log-store.enabled} is. Database reads go through the circuit
+     * breaker unless {@code customer.resilience.enabled} is off.
+     */
+    @Bean("customer_store")
+    public CustomerDao customerStore(@Qualifier("jdbc_repository") CustomerDao jdbcRepository,
+                                     ObjectProvider<ShardedCustomerDao> shardedCustomerDao,
+                                     ObjectProvider<CustomerLogDataAccessService> customerLogDataAccessService,
+                                     ObjectProvider<CircuitBreaker> circuitBreaker) {
+        CustomerDao logStore = customerLogDataAccessService.getIfAvailable();
+        if (logStore != null) {
+            return logStore;
+        }
+        CustomerDao sharded = shardedCustomerDao.getIfAvailable();
+        CustomerDao database = sharded != null ? sharded : jdbcRepository;
+        CircuitBreaker breaker = circuitBreaker.getIfAvailable();
+        return breaker != null ? new CircuitBreakingCustomerDao(database, breaker) : database;
+    }
+
+    /**
+     * The in-memory replica and the log store already hold every row, so the entity
+     * cache is left out in front of them, and so is the stale fallback, as they do
+     * not depend on the database for reads. {@code customer.shadow} compares the
+     * reads that reach {@code customer_store}, below the cache, so cached answers
+     * neither hide the store's latency nor show up as mismatches.
+     */
+    @Bean("customer_dao")
+    public CustomerDao customerDao(@Qualifier("customer_store") CustomerDao customerStore,
+                                   CustomerCache customerCache,
+                                   ObjectProvider<CustomerReplica> customerReplica,
+                                   ObjectProvider<LastKnownCustomers> lastKnownCustomers,
+                                   ObjectProvider<ShadowTraffic> shadowTraffic,
+                                   ResilienceProperties resilienceProperties,
+                                   @Value("${customer.cache.enabled:true}") boolean cacheEnabled) {
+        ShadowTraffic shadow = shadowTraffic.getIfAvailable();
+        CustomerDao storeReads = shadow != null ? new ShadowCustomerDao(customerStore, shadow) : customerStore;
+
+        CustomerReplica replica = customerReplica.getIfAvailable();
+        if (replica != null) {
+            return new ReplicaCustomerDao(storeReads, replica);
+        }
+        if (customerStore instanceof CustomerLogDataAccessService) {
+            return storeReads;
+        }
+        CustomerDao customerDao = cacheEnabled ? new CachingCustomerDao(storeReads, customerCache) : storeReads;
+        LastKnownCustomers lastKnown = lastKnownCustomers.getIfAvailable();
+        return lastKnown != null
+                ? new StaleFallbackCustomerDao(customerDao, lastKnown, resilienceProperties.stale().fallbackAfter())
+                : customerDao;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.zotov.customer;
+
+import java.util.Locale;
+
+/**
+ * Emails are matched ignoring case and surrounding spaces. In SQL that is
+ * {@code lower(btrim(email))}, the expression the unique index on {@code customer}
+ * is built on; {@link #normalize(String)} is the same for stores kept in memory.
+ */
+public final class CustomerEmail {
+
+    private CustomerEmail() {
+    }
+
+    public static String normalize(String email) {
+        int start = 0;
+        int end = email.length();
+        while (start < end && email.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && email.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return email.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+}
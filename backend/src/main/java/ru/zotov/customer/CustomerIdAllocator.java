@@ -0,0 +1,85 @@
+package ru.zotov.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out customer ids in blocks from {@code customer_id_seq}, which advances by a
+ * whole block per {@code nextval} (see V6) so JPA can allocate pooled-lo. Every
+ * insert path the application has takes its ids from here or from JPA, as an insert
+ * left to the column default uses up a whole block for one row; ids are
+ * {@code Integer}, so that would run out of them long before the table fills up.
+ */
+public class CustomerIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private int blockSize;
+    private long next;
+    private long limit;
+
+    public CustomerIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public synchronized int nextId() {
+        if (next == limit) {
+            nextBlock();
+        }
+        return Math.toIntExact(next++);
+    }
+
+    /**
+     * Reserves {@code count} ids, fetching all the blocks that takes in one query.
+     */
+    public synchronized List<Integer> nextIds(int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        while (ids.size() < count && next < limit) {
+            ids.add(Math.toIntExact(next++));
+        }
+
+        if (ids.size() < count && blockSize == 0) {
+            nextBlock();
+            while (ids.size() < count && next < limit) {
+                ids.add(Math.toIntExact(next++));
+            }
+        }
+
+        int missing = count - ids.size();
+        if (missing > 0) {
+            int blocks = (missing + blockSize - 1) / blockSize;
+            List<Long> starts = jdbcTemplate.queryForList(
+                    "SELECT nextval('customer_id_seq') FROM generate_series(1, ?)", Long.class, blocks);
+            for (long start : starts) {
+                next = start;
+                limit = start + blockSize;
+                while (ids.size() < count && next < limit) {
+                    ids.add(Math.toIntExact(next++));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Fetches one block, reading the block size along with the first one.
+     */
+    private void nextBlock() {
+        if (blockSize == 0) {
+            var sql = """
+                    SELECT nextval('customer_id_seq'), increment_by::int
+                    FROM pg_sequences
+                    WHERE sequencename = 'customer_id_seq'
+                    """;
+            jdbcTemplate.query(sql, rs -> {
+                next = rs.getLong(1);
+                blockSize = rs.getInt(2);
+            });
+        } else {
+            next = jdbcTemplate.queryForObject("SELECT nextval('customer_id_seq')", Long.class);
+        }
+        limit = next + blockSize;
+    }
+}
@@ -3,18 +3,23 @@ package ru.zotov.customer;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository("jdbc_repository")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    private static final int INSERT_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerIdAllocator idAllocator;
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.idAllocator = new CustomerIdAllocator(jdbcTemplate);
     }
 
     @Override
@@ -36,15 +41,58 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        if (customerIds.isEmpty()) {
+            return List.of();
+        }
+
         var sql = """
-                INSERT INTO customer (name, email, age) VALUES (?, ?, ?)
+                SELECT id, name, email, age FROM customer WHERE id = ANY(?)
                 """;
-        jdbcTemplate.update(
+        return jdbcTemplate.query(
                 sql,
-                customer.getName(),
-                customer.getEmail(),
-                customer.getAge());
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int4", customerIds.toArray())),
+                customerRowMapper);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        var sql = """
+                SELECT id, name, email, age FROM customer WHERE lower(btrim(email)) = lower(btrim(?))
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, email)
+                .stream().findFirst();
+    }
+
+    /**
+     * Customers that already carry an id (assigned by {@code ShardedCustomerDao}) are
+     * stored under it; the others get one from the {@link CustomerIdAllocator}, which
+     * is set on the customer.
+     */
+    @Override
+    public void insertCustomer(Customer customer) {
+        insertCustomers(List.of(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        List<Customer> withoutId = customers.stream().filter(customer -> customer.getId() == null).toList();
+        if (!withoutId.isEmpty()) {
+            List<Integer> ids = idAllocator.nextIds(withoutId.size());
+            for (int i = 0; i < withoutId.size(); i++) {
+                withoutId.get(i).setId(ids.get(i));
+            }
+        }
+
+        var sql = """
+                INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?)
+                """;
+        jdbcTemplate.batchUpdate(sql, customers, INSERT_BATCH_SIZE, (ps, customer) -> {
+            ps.setInt(1, customer.getId());
+            ps.setString(2, customer.getName());
+            ps.setString(3, customer.getEmail());
+            ps.setInt(4, customer.getAge());
+        });
     }
 
     @Override
@@ -52,7 +100,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
         var sql = """
                 SELECT count(id)
                 FROM customer
-                WHERE email = ?
+                WHERE lower(btrim(email)) = lower(btrim(?))
                 """;
 
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
@@ -81,33 +129,22 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
         System.out.println("delete Customer by ID result = " + result);
     }
 
+    /**
+     * Writes every non-null field of {@code update} in one UPDATE.
+     */
     @Override
     public void updateCustomer(Customer update) {
-        if (update.getName() != null){
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId());
-            System.out.println(result);
+        if (update.getName() == null && update.getEmail() == null && update.getAge() == null) {
+            return;
         }
 
-        if (update.getAge() != null){
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId());
-            System.out.println(result);
-        }
-
-        if (update.getEmail() != null){
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getEmail(),
-                    update.getId());
-            System.out.println(result);
-        }
+        var sql = """
+                UPDATE customer
+                SET name = coalesce(?, name),
+                    email = coalesce(?, email),
+                    age = coalesce(?, age)
+                WHERE id = ?
+                """;
+        jdbcTemplate.update(sql, update.getName(), update.getEmail(), update.getAge(), update.getId());
     }
 }
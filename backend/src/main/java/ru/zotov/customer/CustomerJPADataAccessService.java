@@ -1,22 +1,57 @@
 package ru.zotov.customer;
 
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+@Lazy
 @Repository("jpa_repository")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final EntityManagerFactory entityManagerFactory;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository,
+                                        EntityManagerFactory entityManagerFactory) {
         this.customerRepository = customerRepository;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customerRepository.findAll();
+        return customerRepository.findAllDetached();
+    }
+
+    /**
+     * Full scan through a stateless session and a forward-only cursor: no
+     * persistence context, and only one fetch of rows is held at a time.
+     */
+    public void forEachCustomer(Consumer<Customer> action) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.getTransaction().begin();
+            try (ScrollableResults<Customer> results = session
+                    .createQuery("SELECT new ru.zotov.customer.Customer(c.id, c.name, c.email, c.age) "
+                            + "FROM Customer c", Customer.class)
+                    .setFetchSize(CustomerRepository.READ_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    action.accept(results.get());
+                }
+            } finally {
+                session.getTransaction().commit();
+            }
+        }
     }
 
     @Override
@@ -24,11 +59,26 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return customerRepository.findById(customerId);
     }
 
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        return customerRepository.findAllById(customerIds);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return customerRepository.findCustomerByEmail(email);
+    }
+
     @Override
     public void insertCustomer(Customer customer) {
         customerRepository.save(customer);
     }
 
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customerRepository.saveAll(customers);
+    }
+
     @Override
     public boolean existsCustomerWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
@@ -0,0 +1,295 @@
+package ru.zotov.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.zotov.bulkhead.Workload;
+import ru.zotov.customer.resilience.StaleResponses;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The JSON body of {@code GET /api/v1/customers}, kept already encoded. Every row is
+ * encoded once and kept by id; changed rows are marked dirty by local writes and by
+ * change notifications and re-read and re-encoded on the next request, so only a
+ * full reload (after missed notifications, or an insert into a store that did not
+ * set the id) runs the full query, on the bulk pool. Rows are listed in id order. While the store is failing the last body
+ * built is served, marked stale.
+ */
+@Component
+public class CustomerListCache implements CustomerChangeSubscriber {
+
+    private final CustomerDao customerDao;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long maxBytes;
+    private final int maxPatchRows;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final Set<Integer> dirtyIds = ConcurrentHashMap.newKeySet();
+    private final NavigableMap<Integer, byte[]> rows = new TreeMap<>();
+    private volatile boolean reloadRequired = true;
+    private volatile boolean oversized;
+    private volatile Body body;
+
+    public CustomerListCache(@Qualifier("customer_store") CustomerDao customerDao,
+                             ObjectMapper objectMapper,
+                             @Value("${customer.list-cache.enabled:true}") boolean enabled,
+                             @Value("${customer.list-cache.max-size:64MB}") DataSize maxSize,
+                             @Value("${customer.list-cache.max-patch-rows:1000}") int maxPatchRows) {
+        this.customerDao = customerDao;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxPatchRows = maxPatchRows;
+    }
+
+    /**
+     * @return the current body; encoded on the spot, and not kept, when caching is
+     * disabled or the list has outgrown {@code customer.list-cache.max-size}
+     */
+    public Body get() {
+        Body current = body;
+        if (current != null && !reloadRequired && dirtyIds.isEmpty()) {
+            return current;
+        }
+        if (!enabled || oversized) {
+            return encodeAll(Workload.bulk(customerDao::selectAllCustomers));
+        }
+
+        refreshLock.lock();
+        try {
+            return refresh();
+        } catch (TransientDataAccessException | DataAccessResourceFailureException
+                 | ResourceUnavailableException e) {
+            if (current == null) {
+                throw e;
+            }
+            StaleResponses.mark();
+            return current;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * For writes whose row id is known: only that row is re-read.
+     */
+    public void invalidate(Integer customerId) {
+        dirtyIds.add(customerId);
+    }
+
+    /**
+     * For writes whose row id is not known.
+     */
+    public void invalidateAll() {
+        reloadRequired = true;
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        if (change.type() == CustomerChange.Type.DELETE) {
+            oversized = false;
+        }
+        invalidate(change.customerId());
+    }
+
+    @Override
+    public void onChangesMissed() {
+        oversized = false;
+        invalidateAll();
+    }
+
+    private Body refresh() {
+        Body current = body;
+        if (current != null && !reloadRequired && dirtyIds.isEmpty()) {
+            return current;
+        }
+
+        if (current == null || reloadRequired || dirtyIds.size() > maxPatchRows) {
+            reload();
+        } else {
+            patch();
+        }
+
+        Body refreshed = body;
+        if (oversized) {
+            rows.clear();
+            body = null;
+        }
+        return refreshed;
+    }
+
+    private void reload() {
+        reloadRequired = false;
+        dirtyIds.clear();
+        try {
+            List<Customer> customers = Workload.bulk(customerDao::selectAllCustomers);
+            rows.clear();
+            for (Customer customer : customers) {
+                rows.put(customer.getId(), encode(customer));
+            }
+        } catch (RuntimeException e) {
+            reloadRequired = true;
+            throw e;
+        }
+        publish();
+    }
+
+    private void patch() {
+        List<Integer> ids = new ArrayList<>(dirtyIds);
+        dirtyIds.removeAll(ids);
+        try {
+            Map<Integer, Customer> customers = customerDao.selectCustomersByIds(ids).stream()
+                    .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            for (Integer id : ids) {
+                Customer customer = customers.get(id);
+                if (customer == null) {
+                    rows.remove(id);
+                } else {
+                    rows.put(id, encode(customer));
+                }
+            }
+        } catch (RuntimeException e) {
+            dirtyIds.addAll(ids);
+            throw e;
+        }
+        publish();
+    }
+
+    private void publish() {
+        Body assembled = assemble();
+        if (assembled.json().length > maxBytes) {
+            oversized = true;
+        }
+        body = assembled;
+    }
+
+    private Body assemble() {
+        return new Body(join(rows.values()));
+    }
+
+    private Body encodeAll(List<Customer> customers) {
+        List<byte[]> encoded = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            encoded.add(encode(customer));
+        }
+        return new Body(join(encoded));
+    }
+
+    private byte[] encode(Customer customer) {
+        try {
+            return objectMapper.writeValueAsBytes(customer);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("failed to encode customer " + customer.getId(), e);
+        }
+    }
+
+    private static byte[] join(Collection<byte[]> elements) {
+        int length = 2 + Math.max(0, elements.size() - 1);
+        for (byte[] element : elements) {
+            length += element.length;
+        }
+
+        byte[] json = new byte[length];
+        json[0] = '[';
+        int position = 1;
+        for (byte[] element : elements) {
+            if (position > 1) {
+                json[position++] = ',';
+            }
+            System.arraycopy(element, 0, json, position, element.length);
+            position += element.length;
+        }
+        json[position] = ']';
+        return json;
+    }
+
+    /**
+     * One encoded version of the list. Arrays are shared between requests and must
+     * not be modified; the gzip variant is produced on first use.
+     */
+    public static final class Body {
+
+        private final byte[] json;
+        private final String etag;
+        private volatile byte[] gzip;
+
+        Body(byte[] json) {
+            this.json = json;
+            this.etag = "\"" + sha256(json) + "\"";
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public byte[] gzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                synchronized (this) {
+                    compressed = gzip;
+                    if (compressed == null) {
+                        compressed = compress(json);
+                        gzip = compressed;
+                    }
+                }
+            }
+            return compressed;
+        }
+
+        /**
+         * Strong validators identify the exact bytes, so the compressed variant gets
+         * its own.
+         */
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        private static String sha256(byte[] content) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+                return HexFormat.of().formatHex(digest, 0, 16);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static byte[] compress(byte[] content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+                gzip.write(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
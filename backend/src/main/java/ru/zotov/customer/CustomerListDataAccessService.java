@@ -1,55 +1,84 @@
 package ru.zotov.customer;
 
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
+@Lazy
 @Repository("list_repository")
 public class CustomerListDataAccessService implements CustomerDao{
-    private static final List<Customer> customers;
+    private static final Map<Integer, Customer> customers;
     static {
-        customers = new ArrayList<>();
-        customers.add(new Customer(1, "Alex", "alex@gmail.com", 20));
-        customers.add(new Customer(2, "Olga", "olga@gmail.com", 22));
+        customers = new LinkedHashMap<>();
+        customers.put(1, new Customer(1, "Alex", "alex@gmail.com", 20));
+        customers.put(2, new Customer(2, "Olga", "olga@gmail.com", 22));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return new ArrayList<>(customers.values());
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer customerId) {
-        return customers.stream().filter(c -> c.getId().equals(customerId)).findFirst();
+        return Optional.ofNullable(customers.get(customerId));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        return customerIds.stream()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        String normalized = CustomerEmail.normalize(email);
+        return customers.values().stream()
+                .filter(customer -> CustomerEmail.normalize(customer.getEmail()).equals(normalized))
+                .findFirst();
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        if (customer.getId() == null) {
+            customer.setId(customers.keySet().stream()
+                    .max(Integer::compare)
+                    .orElse(0) + 1);
+        }
+        customers.put(customer.getId(), customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> newCustomers) {
+        newCustomers.forEach(this::insertCustomer);
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream().anyMatch(customer -> customer.getEmail().equals(email));
+        return selectCustomerByEmail(email).isPresent();
     }
 
     @Override
     public boolean existsCustomerWithId(Integer customerId) {
-        return customers.stream()
-                .anyMatch(customer -> customer.getId().equals(customerId));
+        return customers.containsKey(customerId);
     }
 
     @Override
     public void deleteCustomerById(Integer customerId) {
-        customers.stream()
-                .filter(customer -> customer.getId().equals(customerId))
-                .findFirst().ifPresent(customers::remove);
+        customers.remove(customerId);
     }
 
     @Override
     public void updateCustomer(Customer update) {
-        customers.add(update);
+        customers.put(update.getId(), update);
     }
 }
@@ -0,0 +1,15 @@
+package ru.zotov.customer;
+
+public record CustomerLookupResult(
+        Integer id,
+        boolean found,
+        Customer customer
+) {
+    public static CustomerLookupResult found(Customer customer) {
+        return new CustomerLookupResult(customer.getId(), true, customer);
+    }
+
+    public static CustomerLookupResult notFound(Integer customerId) {
+        return new CustomerLookupResult(customerId, false, null);
+    }
+}
@@ -1,9 +1,57 @@
 package ru.zotov.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
 
-    boolean existsCustomerByEmail(String email);
+    int READ_FETCH_SIZE = 1000;
+
+    /**
+     * Native, so the condition is the exact expression the unique email index is
+     * built on and the lookup is a single index probe.
+     */
+    @Query(value = """
+            SELECT EXISTS (SELECT 1 FROM customer WHERE lower(btrim(email)) = lower(btrim(:email)))
+            """, nativeQuery = true)
+    boolean existsCustomerByEmail(@Param("email") String email);
+
+    @Query(value = """
+            SELECT id, name, email, age FROM customer WHERE lower(btrim(email)) = lower(btrim(:email))
+            """, nativeQuery = true)
+    Optional<Customer> findCustomerByEmail(@Param("email") String email);
+
     boolean existsCustomerById(Integer customerId);
+
+    /**
+     * Constructor-expression projection: rows are returned as plain {@link Customer}
+     * objects that never enter the persistence context.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + READ_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new ru.zotov.customer.Customer(c.id, c.name, c.email, c.age) FROM Customer c")
+    List<Customer> findAllDetached();
+
+    /**
+     * Streaming variant of {@link #findAllDetached()}; the caller must hold a
+     * transaction open while consuming the stream and close it afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + READ_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new ru.zotov.customer.Customer(c.id, c.name, c.email, c.age) FROM Customer c")
+    Stream<Customer> streamAllDetached();
 }
@@ -1,28 +1,54 @@
 package ru.zotov.customer;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import ru.zotov.bulkhead.BulkOperation;
+import ru.zotov.concurrency.ConcurrencyLimited;
+import ru.zotov.concurrency.Operation;
+import ru.zotov.customer.search.CustomerSearchIndex;
 import ru.zotov.exception.RequestValidationException;
 import ru.zotov.exception.ResourceAlreadyExistsException;
 import ru.zotov.exception.ResourceNotFoundException;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CustomerService {
 
+    static final int MAX_IDS_PER_LOOKUP = 500;
+    static final int MAX_SEARCH_RESULTS = 100;
+    static final int MAX_SEARCH_QUERY_LENGTH = 200;
+
     private final CustomerDao customerDao;
+    private final CustomerListCache customerListCache;
+    private final CustomerSearchIndex customerSearchIndex;
 
     public CustomerService(
-            @Qualifier("jdbc_repository") CustomerDao customerDao
+            @Qualifier("customer_dao") CustomerDao customerDao,
+            CustomerListCache customerListCache,
+            CustomerSearchIndex customerSearchIndex
     ) {
         this.customerDao = customerDao;
+        this.customerListCache = customerListCache;
+        this.customerSearchIndex = customerSearchIndex;
     }
 
+    /**
+     * A full read, so it runs in the bulk bulkhead rather than under the read
+     * concurrency limit, whose latency samples it would skew.
+     */
+    @BulkOperation
     public List<Customer> getAllCustomers(){
         return customerDao.selectAllCustomers();
     }
 
+    @ConcurrencyLimited(Operation.READ)
     public Customer getCustomerById(Integer customerId){
         return customerDao.selectCustomerById(customerId)
                 .orElseThrow(() -> new ResourceNotFoundException(
@@ -30,6 +56,76 @@ public class CustomerService {
                 ));
     }
 
+    @ConcurrencyLimited(Operation.READ)
+    public Customer getCustomerByEmail(String email){
+        return customerDao.selectCustomerByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with email: %s not found".formatted(email)
+                ));
+    }
+
+    @ConcurrencyLimited(Operation.READ)
+    public List<CustomerLookupResult> getCustomersByIds(List<Integer> customerIds){
+        if (customerIds == null || customerIds.isEmpty()){
+            throw new RequestValidationException("at least one customer ID is required");
+        }
+
+        if (customerIds.size() > MAX_IDS_PER_LOOKUP){
+            throw new RequestValidationException(
+                    "no more than %d customer IDs per request".formatted(MAX_IDS_PER_LOOKUP)
+            );
+        }
+
+        if (customerIds.stream().anyMatch(Objects::isNull)){
+            throw new RequestValidationException("customer ID must not be empty");
+        }
+
+        Map<Integer, Customer> found = customerDao.selectCustomersByIds(new LinkedHashSet<>(customerIds))
+                .stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        return customerIds.stream()
+                .map(id -> found.containsKey(id)
+                        ? CustomerLookupResult.found(found.get(id))
+                        : CustomerLookupResult.notFound(id))
+                .toList();
+    }
+
+    @ConcurrencyLimited(Operation.READ)
+    public List<Customer> searchCustomers(String query, int limit){
+        if (query == null || query.isBlank()){
+            throw new RequestValidationException("search query must not be empty");
+        }
+
+        if (query.length() > MAX_SEARCH_QUERY_LENGTH){
+            throw new RequestValidationException(
+                    "search query must not be longer than %d characters".formatted(MAX_SEARCH_QUERY_LENGTH)
+            );
+        }
+
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %d".formatted(MAX_SEARCH_RESULTS)
+            );
+        }
+
+        List<Integer> customerIds = customerSearchIndex.search(query, limit);
+        if (customerIds.isEmpty()){
+            return List.of();
+        }
+
+        // a customer deleted since the index saw it is left out
+        Map<Integer, Customer> found = customerDao.selectCustomersByIds(customerIds)
+                .stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        return customerIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @ConcurrencyLimited(Operation.WRITE)
     public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
         if (customerDao.existsCustomerWithEmail(customerRegistrationRequest.email())){
             throw new ResourceAlreadyExistsException(
@@ -37,15 +133,29 @@ public class CustomerService {
             );
         }
 
-        customerDao.insertCustomer(
-                new Customer(
-                        customerRegistrationRequest.name(),
-                        customerRegistrationRequest.email(),
-                        customerRegistrationRequest.age()
-                )
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
         );
+        try {
+            customerDao.insertCustomer(customer);
+        } catch (DuplicateKeyException e) {
+            // the check above can miss a concurrent insert, or one the replica has not seen yet
+            throw new ResourceAlreadyExistsException(
+                    "customer with inserted email already exists"
+            );
+        } finally {
+            if (customer.getId() != null) {
+                customerListCache.invalidate(customer.getId());
+            } else {
+                customerListCache.invalidateAll();
+            }
+            customerSearchIndex.invalidate(customer.getId());
+        }
     }
 
+    @ConcurrencyLimited(Operation.WRITE)
     public void deleteCustomerById(Integer customerId) {
         if (!customerDao.existsCustomerWithId(customerId)){
             throw new ResourceNotFoundException(
@@ -54,9 +164,15 @@ public class CustomerService {
 
         }
 
-        customerDao.deleteCustomerById(customerId);
+        try {
+            customerDao.deleteCustomerById(customerId);
+        } finally {
+            customerListCache.invalidate(customerId);
+            customerSearchIndex.invalidate(customerId);
+        }
     }
 
+    @ConcurrencyLimited(Operation.WRITE)
     public void updateCustomer(Integer customerId,
                                CustomerUpdateRequest customerUpdateRequest) {
         Customer customer = getCustomerById(customerId);
@@ -88,6 +204,13 @@ public class CustomerService {
 
         if (!changes){throw new RequestValidationException("nothing to update");}
 
-        customerDao.updateCustomer(customer);
+        try {
+            customerDao.updateCustomer(customer);
+        } catch (DuplicateKeyException e) {
+            throw new ResourceAlreadyExistsException("email already taken");
+        } finally {
+            customerListCache.invalidate(customerId);
+            customerSearchIndex.invalidate(customerId);
+        }
     }
 }
@@ -0,0 +1,102 @@
+package ru.zotov.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+
+@Repository
+public class CustomerSyncDataAccessService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRowMapper customerRowMapper;
+
+    public CustomerSyncDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRowMapper = customerRowMapper;
+    }
+
+    /**
+     * Changes after {@code position} in position order, up to the oldest transaction
+     * still running: a transaction that commits late has a position past that point,
+     * so it is returned on a later page rather than skipped. A long-running
+     * transaction holds the page back until it ends.
+     */
+    public List<CustomerChangeLogEntry> selectChangesAfter(CustomerChangePosition position, int limit) {
+        var sql = """
+                (SELECT id, name, email, age, change_xid, change_seq, false AS deleted
+                 FROM customer
+                 WHERE (change_xid, change_seq) > (?::xid8, ?)
+                   AND change_xid < pg_snapshot_xmin(pg_current_snapshot())
+                 ORDER BY change_xid, change_seq
+                 LIMIT ?)
+                UNION ALL
+                (SELECT id, NULL, NULL, NULL, change_xid, change_seq, true AS deleted
+                 FROM customer_tombstone
+                 WHERE (change_xid, change_seq) > (?::xid8, ?)
+                   AND change_xid < pg_snapshot_xmin(pg_current_snapshot())
+                 ORDER BY change_xid, change_seq
+                 LIMIT ?)
+                ORDER BY change_xid, change_seq
+                LIMIT ?
+                """;
+        String xid = Long.toString(position.xid());
+        return jdbcTemplate.query(sql, changeLogEntryMapper(),
+                xid, position.seq(), limit, xid, position.seq(), limit, limit);
+    }
+
+    public long selectLatestChangeSeq() {
+        var sql = """
+                SELECT GREATEST(
+                    (SELECT max(change_seq) FROM customer),
+                    (SELECT max(change_seq) FROM customer_tombstone))
+                """;
+        Long latest = jdbcTemplate.queryForObject(sql, Long.class);
+        return latest == null ? 0 : latest;
+    }
+
+    /**
+     * The newest position whose tombstones have been purged.
+     */
+    public CustomerChangePosition selectPurgedPosition() {
+        var sql = """
+                SELECT purged_xid::text, purged_seq FROM customer_tombstone_purge
+                """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
+                new CustomerChangePosition(Long.parseLong(rs.getString(1)), rs.getLong(2)));
+    }
+
+    /**
+     * Deletes tombstones older than {@code retention} and moves the purged position
+     * past them.
+     */
+    public void purgeTombstones(Duration retention) {
+        var sql = """
+                WITH purged AS (
+                    DELETE FROM customer_tombstone
+                    WHERE deleted_at < now() - ? * interval '1 millisecond'
+                    RETURNING change_xid, change_seq
+                ), newest AS (
+                    SELECT change_xid, change_seq FROM purged
+                    ORDER BY change_xid DESC, change_seq DESC
+                    LIMIT 1
+                )
+                UPDATE customer_tombstone_purge
+                SET purged_xid = newest.change_xid, purged_seq = newest.change_seq
+                FROM newest
+                WHERE (newest.change_xid, newest.change_seq) > (purged_xid, purged_seq)
+                """;
+        jdbcTemplate.update(sql, retention.toMillis());
+    }
+
+    private RowMapper<CustomerChangeLogEntry> changeLogEntryMapper() {
+        return (rs, rowNum) -> new CustomerChangeLogEntry(
+                Long.parseLong(rs.getString("change_xid")),
+                rs.getLong("change_seq"),
+                rs.getInt("id"),
+                rs.getBoolean("deleted") ? null : customerRowMapper.mapRow(rs, rowNum)
+        );
+    }
+}
@@ -0,0 +1,87 @@
+package ru.zotov.customer;
+
+import org.springframework.stereotype.Service;
+import ru.zotov.exception.ChangeTokenExpiredException;
+import ru.zotov.exception.RequestValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class CustomerSyncService {
+
+    static final int MAX_PAGE_SIZE = 5000;
+
+    private final CustomerSyncDataAccessService customerSyncDao;
+
+    public CustomerSyncService(CustomerSyncDataAccessService customerSyncDao) {
+        this.customerSyncDao = customerSyncDao;
+    }
+
+    /**
+     * Returns the customers changed after {@code sinceToken} (everything when the
+     * token is absent) in change order, together with the token to resume from.
+     * Tokens are {@code <xid>.<seq>} positions; a bare number is a {@code change_seq}
+     * from before positions existed and resumes at that sequence.
+     */
+    public CustomerChangesPage getChangesSince(String sinceToken, int limit){
+        if (limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %d".formatted(MAX_PAGE_SIZE)
+            );
+        }
+
+        CustomerChangePosition since = parseToken(sinceToken);
+        if (since != null && since.compareTo(customerSyncDao.selectPurgedPosition()) < 0){
+            throw new ChangeTokenExpiredException(
+                    "change token %s is older than the tombstone retention, sync again without a token"
+                            .formatted(sinceToken)
+            );
+        }
+        if (since == null){
+            since = CustomerChangePosition.START;
+        }
+        List<CustomerChangeLogEntry> entries = customerSyncDao.selectChangesAfter(since, limit + 1);
+
+        boolean hasMore = entries.size() > limit;
+        if (hasMore){
+            entries = entries.subList(0, limit);
+        }
+
+        List<Customer> upserted = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        CustomerChangePosition next = since;
+        for (CustomerChangeLogEntry entry : entries) {
+            if (entry.deleted()){
+                deleted.add(entry.customerId());
+            } else {
+                upserted.add(entry.customer());
+            }
+            next = entry.position();
+        }
+
+        return new CustomerChangesPage(upserted, deleted, toToken(next), hasMore);
+    }
+
+    private static String toToken(CustomerChangePosition position){
+        return position.xid() + "." + position.seq();
+    }
+
+    private CustomerChangePosition parseToken(String token){
+        if (token == null || token.isBlank()){
+            return null;
+        }
+
+        try {
+            int separator = token.indexOf('.');
+            long xid = separator < 0 ? 0 : Long.parseLong(token.substring(0, separator));
+            long seq = Long.parseLong(token.substring(separator + 1));
+            if (xid < 0 || seq < 0){
+                throw new NumberFormatException();
+            }
+            return new CustomerChangePosition(xid, seq);
+        } catch (NumberFormatException e){
+            throw new RequestValidationException("invalid change token: %s".formatted(token));
+        }
+    }
+}
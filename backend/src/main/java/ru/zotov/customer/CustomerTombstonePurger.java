@@ -0,0 +1,53 @@
+package ru.zotov.customer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purges tombstones past {@code customer.sync.tombstone-retention} every
+ * {@code purge-interval}. Every node runs it; purging twice is harmless.
+ */
+@Component
+public class CustomerTombstonePurger {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerTombstonePurger.class);
+
+    private final CustomerSyncDataAccessService customerSyncDao;
+    private final SyncProperties properties;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-tombstone-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CustomerTombstonePurger(CustomerSyncDataAccessService customerSyncDao, SyncProperties properties) {
+        this.customerSyncDao = customerSyncDao;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = properties.purgeInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::purge, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    void purge() {
+        try {
+            customerSyncDao.purgeTombstones(properties.tombstoneRetention());
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge customer tombstones", e);
+        }
+    }
+}
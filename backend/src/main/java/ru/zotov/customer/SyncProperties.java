@@ -0,0 +1,17 @@
+package ru.zotov.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Tombstones are kept for {@code tombstone-retention}; a client whose change token
+ * is older than that has to sync again from the start.
+ */
+@ConfigurationProperties(prefix = "customer.sync")
+public record SyncProperties(
+        @DefaultValue("30d") Duration tombstoneRetention,
+        @DefaultValue("1h") Duration purgeInterval
+) {
+}
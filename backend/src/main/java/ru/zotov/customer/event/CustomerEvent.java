@@ -0,0 +1,18 @@
+package ru.zotov.customer.event;
+
+import java.time.Instant;
+
+public record CustomerEvent(
+        Type type,
+        Integer customerId,
+        Instant occurredAt
+) {
+    public enum Type {
+        INSERT, UPDATE, DELETE,
+        /**
+         * Events were lost (listener reconnect or a resume point that is no longer
+         * buffered); consumers should re-sync instead of applying deltas.
+         */
+        RESET
+    }
+}
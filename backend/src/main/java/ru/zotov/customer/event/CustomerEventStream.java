@@ -0,0 +1,212 @@
+package ru.zotov.customer.event;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerChangeSubscriber;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans customer change notifications out to SSE subscribers. Every change is
+ * published once into a {@link RingBuffer}; each subscriber drains it from its own
+ * cursor and is disconnected once it lags more than {@code max-lag} events behind.
+ * <p>
+ * Event ids have the form {@code <epoch>-<sequence>} where the epoch identifies this
+ * node's buffer, so a {@code Last-Event-ID} issued by another node or before a
+ * restart is recognised and answered with a {@link CustomerEvent.Type#RESET} event.
+ */
+@Component
+public class CustomerEventStream implements CustomerChangeSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerEventStream.class);
+
+    private final RingBuffer<CustomerEvent> ringBuffer;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatcher;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final long maxLag;
+    private final Duration timeout;
+
+    public CustomerEventStream(@Value("${customer.events.buffer-size:4096}") int bufferSize,
+                               @Value("${customer.events.max-lag:1024}") int maxLag,
+                               @Value("${customer.events.timeout:30m}") Duration timeout,
+                               @Value("${customer.events.dispatch-threads:4}") int dispatchThreads) {
+        this.ringBuffer = new RingBuffer<>(bufferSize);
+        this.maxLag = Math.min(maxLag, bufferSize);
+        this.timeout = timeout;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "customer-events-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        publish(new CustomerEvent(
+                CustomerEvent.Type.valueOf(change.type().name()),
+                change.customerId(),
+                Instant.now()));
+    }
+
+    @Override
+    public void onChangesMissed() {
+        publish(new CustomerEvent(CustomerEvent.Type.RESET, null, Instant.now()));
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = newEmitter(timeout);
+        long resumeFrom = resumeSequence(lastEventId);
+        long cursor;
+        boolean reset = false;
+
+        if (resumeFrom < 0) {
+            cursor = ringBuffer.lastPublished() + 1;
+            reset = lastEventId != null;
+        } else {
+            cursor = resumeFrom + 1;
+        }
+
+        Subscription subscription = new Subscription(emitter, cursor, reset);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(e -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+        subscription.signal();
+        return emitter;
+    }
+
+    SseEmitter newEmitter(Duration timeout) {
+        return new SseEmitter(timeout.toMillis());
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.forEach(s -> s.emitter.complete());
+        dispatcher.shutdownNow();
+    }
+
+    private void publish(CustomerEvent event) {
+        ringBuffer.publish(event);
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * @return the last sequence the client has seen, or -1 if it cannot resume
+     */
+    private long resumeSequence(String lastEventId) {
+        if (lastEventId == null) {
+            return -1;
+        }
+
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0 || !epoch.equals(lastEventId.substring(0, separator))) {
+            return -1;
+        }
+
+        long sequence;
+        try {
+            sequence = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        long last = ringBuffer.lastPublished();
+        if (sequence > last || last - sequence > maxLag || sequence + 1 < ringBuffer.oldestAvailable()) {
+            return -1;
+        }
+        return sequence;
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private final class Subscription {
+
+        private final SseEmitter emitter;
+        private final AtomicInteger pending = new AtomicInteger();
+        private long cursor;
+        private boolean resetPending;
+        private volatile boolean closed;
+
+        private Subscription(SseEmitter emitter, long cursor, boolean resetPending) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+            this.resetPending = resetPending;
+        }
+
+        void signal() {
+            if (pending.getAndIncrement() == 0) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            if (resetPending) {
+                resetPending = false;
+                send(cursor - 1, new CustomerEvent(CustomerEvent.Type.RESET, null, Instant.now()));
+            }
+
+            int missed = 1;
+            do {
+                long last = ringBuffer.lastPublished();
+                while (!closed && cursor <= last) {
+                    if (last - cursor >= maxLag) {
+                        disconnect("lagging %d events behind".formatted(last - cursor));
+                        return;
+                    }
+
+                    CustomerEvent event = ringBuffer.get(cursor);
+                    if (event == null) {
+                        disconnect("event %d was overwritten".formatted(cursor));
+                        return;
+                    }
+
+                    send(cursor, event);
+                    cursor++;
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void send(long sequence, CustomerEvent event) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(eventId(sequence))
+                        .name(event.type().name())
+                        .data(event));
+            } catch (IOException | IllegalStateException e) {
+                closed = true;
+                subscriptions.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void disconnect(String reason) {
+            log.info("disconnecting slow customer event subscriber: {}", reason);
+            closed = true;
+            subscriptions.remove(this);
+            emitter.complete();
+        }
+    }
+}
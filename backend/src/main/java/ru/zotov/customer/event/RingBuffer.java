@@ -0,0 +1,73 @@
+package ru.zotov.customer.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free ring of published values addressed by a monotonically
+ * increasing sequence (starting at 1). Readers keep their own cursor; a value is
+ * readable until it is overwritten {@code capacity} publications later.
+ */
+public class RingBuffer<T> {
+
+    private record Slot<T>(long sequence, T value) {
+    }
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public long publish(T value) {
+        long sequence = claimed.incrementAndGet();
+        slots.set(index(sequence), new Slot<>(sequence, value));
+
+        // make sequences visible strictly in order when several producers race
+        int spins = 0;
+        while (!published.compareAndSet(sequence - 1, sequence)) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the value published under {@code sequence}, or {@code null} if it
+     * has not been published yet or has already been overwritten
+     */
+    public T get(long sequence) {
+        if (sequence < 1 || sequence > published.get()) {
+            return null;
+        }
+
+        Slot<T> slot = slots.get(index(sequence));
+        return slot != null && slot.sequence() == sequence ? slot.value() : null;
+    }
+
+    public long lastPublished() {
+        return published.get();
+    }
+
+    public long oldestAvailable() {
+        return Math.max(1, published.get() - slots.length() + 1);
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,577 @@
+package ru.zotov.customer.logstore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.customer.CustomerEmail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps customers in memory, indexed by id and email, and persists every change by
+ * appending it to a memory-mapped log in {@code directory}; nothing but this process
+ * is needed to run it.
+ * <p>
+ * Once the logs outgrow {@code compact-after} the current state is written to a
+ * snapshot in the background and the logs before it are deleted. On startup the
+ * newest complete snapshot is read and the logs after it are replayed, dropping a
+ * record torn by a crash at the end of the newest log; damage in an earlier log
+ * fails startup. Changes are visible to readers as soon as they are
+ * appended; a write returns once they are as durable as {@link FsyncPolicy} makes
+ * them.
+ */
+public class CustomerLogDataAccessService implements CustomerDao, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerLogDataAccessService.class);
+    private static final Pattern FILE_NAME = Pattern.compile("customers-(\\d+)\\.(log|snapshot)");
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int logFileSize;
+    private final long compactAfter;
+    private final ScheduledExecutorService background;
+
+    private final Map<Integer, Customer> customers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // guarded by appendLock; the last one is appended to
+    private final List<MappedLog> logs = new ArrayList<>();
+    private int nextId = 1;
+    private long appended;
+    private boolean compacting;
+    private boolean closed;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    // guarded by syncLock
+    private long durable;
+    private boolean syncing;
+
+    public CustomerLogDataAccessService(Path directory,
+                                        FsyncPolicy fsyncPolicy,
+                                        Duration fsyncInterval,
+                                        int logFileSize,
+                                        long compactAfter) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.logFileSize = logFileSize;
+        this.compactAfter = compactAfter;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-log-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long startedAt = System.nanoTime();
+        try {
+            recover();
+        } catch (IOException e) {
+            background.shutdown();
+            for (MappedLog openLog : logs) {
+                try {
+                    openLog.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw new UncheckedIOException("failed to open the customer log store in " + directory, e);
+        }
+        log.info("Customer log store recovered {} customers from {} in {} ms",
+                customers.size(), directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            background.scheduleWithFixedDelay(this::forcePeriodically,
+                    fsyncInterval.toMillis(), fsyncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sorted by id on every call; a sorted index would double the time recovery takes.
+     */
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> all = copies(customers.values());
+        all.sort(Comparator.comparing(Customer::getId));
+        return all;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return Optional.ofNullable(customers.get(customerId)).map(CustomerLogDataAccessService::copy);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        return copies(customerIds.stream().map(customers::get).filter(Objects::nonNull).toList());
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        Integer customerId = email == null ? null : idsByEmail.get(CustomerEmail.normalize(email));
+        return customerId == null ? Optional.empty() : selectCustomerById(customerId);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        insertCustomers(List.of(customer));
+    }
+
+    /**
+     * Inserts all customers or, when an id or email is already taken, none. Customers
+     * without an id are given the next free one.
+     */
+    @Override
+    public void insertCustomers(List<Customer> newCustomers) {
+        long position;
+        appendLock.lock();
+        try {
+            Set<String> emails = new HashSet<>();
+            Set<Integer> ids = new HashSet<>();
+            for (Customer customer : newCustomers) {
+                if (customer.getEmail() != null && (idsByEmail.containsKey(CustomerEmail.normalize(customer.getEmail()))
+                        || !emails.add(CustomerEmail.normalize(customer.getEmail())))) {
+                    throw new DuplicateKeyException(
+                            "customer with email %s already exists".formatted(customer.getEmail()));
+                }
+                if (customer.getId() != null
+                        && (customers.containsKey(customer.getId()) || !ids.add(customer.getId()))) {
+                    throw new DuplicateKeyException(
+                            "customer with ID: %d already exists".formatted(customer.getId()));
+                }
+            }
+
+            List<Customer> stored = new ArrayList<>(newCustomers.size());
+            List<ByteBuffer> records = new ArrayList<>(newCustomers.size());
+            int next = nextId;
+            for (Customer customer : newCustomers) {
+                int id = customer.getId() != null ? customer.getId() : next++;
+                while (customer.getId() == null && ids.contains(id)) {
+                    id = next++;
+                }
+                next = Math.max(next, id + 1);
+                Customer copy = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge());
+                stored.add(copy);
+                records.add(CustomerRecords.upsert(copy));
+            }
+
+            position = append(records);
+            nextId = next;
+            for (int i = 0; i < stored.size(); i++) {
+                index(stored.get(i));
+                newCustomers.get(i).setId(stored.get(i).getId());
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return email != null && idsByEmail.containsKey(CustomerEmail.normalize(email));
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        return customers.containsKey(customerId);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        long position;
+        appendLock.lock();
+        try {
+            if (!customers.containsKey(customerId)) {
+                return;
+            }
+            position = append(List.of(CustomerRecords.delete(customerId)));
+            unindex(customerId);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        long position;
+        appendLock.lock();
+        try {
+            if (!customers.containsKey(update.getId())) {
+                return;
+            }
+            Integer owner = update.getEmail() == null ? null : idsByEmail.get(CustomerEmail.normalize(update.getEmail()));
+            if (owner != null && !owner.equals(update.getId())) {
+                throw new DuplicateKeyException(
+                        "customer with email %s already exists".formatted(update.getEmail()));
+            }
+            Customer stored = copy(update);
+            position = append(List.of(CustomerRecords.upsert(stored)));
+            index(stored);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the logs it covers. Runs in
+     * the background once the logs outgrow {@code compact-after}.
+     */
+    public void compact() {
+        appendLock.lock();
+        try {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            writeSnapshot();
+        } finally {
+            compactionDone();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        background.shutdownNow();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            currentLog().force();
+            for (MappedLog openLog : logs) {
+                openLog.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void writeSnapshot() {
+        long generation;
+        int snapshotNextId;
+        List<Customer> state;
+        List<MappedLog> covered;
+        appendLock.lock();
+        try {
+            checkOpen();
+            rotate();
+            generation = currentLog().generation();
+            snapshotNextId = nextId;
+            state = new ArrayList<>(customers.values());
+            covered = new ArrayList<>(logs.subList(0, logs.size() - 1));
+        } finally {
+            appendLock.unlock();
+        }
+
+        long startedAt = System.nanoTime();
+        try {
+            SnapshotFile.write(directory.resolve(fileName(generation, "snapshot")), generation, snapshotNextId, state);
+            appendLock.lock();
+            try {
+                logs.removeAll(covered);
+            } finally {
+                appendLock.unlock();
+            }
+            for (MappedLog coveredLog : covered) {
+                coveredLog.close();
+                Files.deleteIfExists(coveredLog.path());
+            }
+            deleteSnapshotsBefore(generation);
+            log.info("Customer log store wrote a snapshot of {} customers in {} ms and dropped {} logs",
+                    state.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), covered.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write a customer snapshot", e);
+        }
+    }
+
+    private void compactionDone() {
+        appendLock.lock();
+        try {
+            compacting = false;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> logFiles = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (matcher.matches()) {
+                    (matcher.group(2).equals("log") ? logFiles : snapshots).put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+
+        long generation = 0;
+        for (Map.Entry<Long, Path> snapshot : snapshots.descendingMap().entrySet()) {
+            try {
+                nextId = SnapshotFile.read(snapshot.getValue(), snapshot.getKey(), this::index);
+                generation = snapshot.getKey();
+                break;
+            } catch (IOException e) {
+                log.warn("Skipping customer snapshot {}: {}", snapshot.getValue(), e.getMessage());
+                customers.clear();
+                idsByEmail.clear();
+            }
+        }
+
+        long expected = generation;
+        for (Map.Entry<Long, Path> logFile : logFiles.entrySet()) {
+            if (logFile.getKey() < generation) {
+                Files.deleteIfExists(logFile.getValue());
+                continue;
+            }
+            if (logFile.getKey() != expected) {
+                throw new IOException("customer log %d is missing".formatted(expected));
+            }
+            boolean newest = logFile.getKey().equals(logFiles.lastKey());
+            MappedLog replayed = MappedLog.open(logFile.getValue(), logFileSize, newest, this::replay);
+            logs.add(replayed);
+            appended += replayed.position();
+            expected++;
+        }
+        if (logs.isEmpty()) {
+            logs.add(MappedLog.create(directory.resolve(fileName(generation, "log")), generation, logFileSize));
+        }
+        durable = appended;
+        deleteSnapshotsBefore(generation);
+    }
+
+    private void replay(ByteBuffer body) {
+        int customerId = CustomerRecords.customerId(body);
+        nextId = Math.max(nextId, customerId + 1);
+        if (CustomerRecords.type(body) == CustomerRecords.UPSERT) {
+            index(CustomerRecords.customer(body));
+        } else {
+            unindex(customerId);
+        }
+    }
+
+    private void index(Customer customer) {
+        Customer previous = customers.put(customer.getId(), customer);
+        if (previous != null && previous.getEmail() != null) {
+            idsByEmail.remove(CustomerEmail.normalize(previous.getEmail()), previous.getId());
+        }
+        if (customer.getEmail() != null) {
+            idsByEmail.put(CustomerEmail.normalize(customer.getEmail()), customer.getId());
+        }
+    }
+
+    private void unindex(int customerId) {
+        Customer previous = customers.remove(customerId);
+        if (previous != null && previous.getEmail() != null) {
+            idsByEmail.remove(CustomerEmail.normalize(previous.getEmail()), customerId);
+        }
+    }
+
+    /**
+     * @return the log position, over all log files, after the records
+     */
+    private long append(List<ByteBuffer> records) {
+        checkOpen();
+        MappedLog current = currentLog();
+        int from = current.position();
+        for (ByteBuffer record : records) {
+            if (current.append(record) < 0) {
+                rotate();
+                current = currentLog();
+                from = current.position();
+                if (current.append(record) < 0) {
+                    throw new IllegalArgumentException("customer record does not fit in a log file");
+                }
+            }
+            appended += record.remaining();
+        }
+        if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+            current.force(from, current.position() - from);
+            markDurable(appended);
+        }
+
+        if (!compacting && logBytes() >= compactAfter) {
+            compacting = true;
+            background.execute(this::compactInBackground);
+        }
+        return appended;
+    }
+
+    /**
+     * Continues the log in a new file once the current one is forced.
+     */
+    private void rotate() {
+        MappedLog current = currentLog();
+        current.force();
+        markDurable(appended);
+        try {
+            long generation = current.generation() + 1;
+            logs.add(MappedLog.create(directory.resolve(fileName(generation, "log")), generation, logFileSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to start a new customer log", e);
+        }
+    }
+
+    /**
+     * With {@code GROUP_COMMIT} the first waiting writer forces the log for everyone
+     * appended by then, while the others wait for it.
+     */
+    private void awaitDurable(long position) {
+        if (fsyncPolicy != FsyncPolicy.GROUP_COMMIT) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durable < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long forced = 0;
+                syncLock.unlock();
+                try {
+                    forced = force();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    durable = Math.max(durable, forced);
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private long force() {
+        long position;
+        MappedLog current;
+        appendLock.lock();
+        try {
+            position = appended;
+            current = currentLog();
+        } finally {
+            appendLock.unlock();
+        }
+        current.force();
+        return position;
+    }
+
+    private void forcePeriodically() {
+        try {
+            markDurable(force());
+        } catch (RuntimeException e) {
+            log.warn("Failed to force the customer log", e);
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            writeSnapshot();
+        } catch (RuntimeException e) {
+            log.warn("Customer log compaction failed, keeping the logs", e);
+        } finally {
+            compactionDone();
+        }
+    }
+
+    private void markDurable(long position) {
+        syncLock.lock();
+        try {
+            durable = Math.max(durable, position);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void deleteSnapshotsBefore(long generation) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(2).equals("snapshot")
+                        && Long.parseLong(matcher.group(1)) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private long logBytes() {
+        long bytes = 0;
+        for (MappedLog openLog : logs) {
+            bytes += openLog.position();
+        }
+        return bytes;
+    }
+
+    private MappedLog currentLog() {
+        return logs.get(logs.size() - 1);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("the customer log store is closed");
+        }
+    }
+
+    private static String fileName(long generation, String extension) {
+        return "customers-%016d.%s".formatted(generation, extension);
+    }
+
+    private static List<Customer> copies(Collection<Customer> customers) {
+        List<Customer> copies = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            copies.add(copy(customer));
+        }
+        return copies;
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+}
@@ -0,0 +1,121 @@
+package ru.zotov.customer.logstore;
+
+import ru.zotov.customer.Customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * The record format shared by log and snapshot files:
+ * <pre>
+ * int length | int crc32c(body) | body
+ * body = byte type | int id [| int age | string name | string email]
+ * string = int byteLength (-1 for null) | UTF-8 bytes
+ * </pre>
+ * A zero length marks the end of the written part of a file.
+ */
+final class CustomerRecords {
+
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+    static final int HEADER_BYTES = 8;
+
+    private CustomerRecords() {
+    }
+
+    static ByteBuffer upsert(Customer customer) {
+        byte[] name = bytes(customer.getName());
+        byte[] email = bytes(customer.getEmail());
+        int bodyLength = 1 + 4 + 4 + 4 + length(name) + 4 + length(email);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.putInt(bodyLength).putInt(0)
+                .put(UPSERT)
+                .putInt(customer.getId())
+                .putInt(customer.getAge() == null ? Integer.MIN_VALUE : customer.getAge());
+        putString(record, name);
+        putString(record, email);
+        return seal(record);
+    }
+
+    static ByteBuffer delete(int customerId) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + 5);
+        record.putInt(5).putInt(0).put(DELETE).putInt(customerId);
+        return seal(record);
+    }
+
+    /**
+     * Reads the record at {@code buffer}'s position and moves past it.
+     *
+     * @return the record's body, or {@code null} at the end of the written part or at
+     * a record that is cut short or fails its checksum, leaving the position unchanged
+     */
+    static ByteBuffer next(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(start + HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+        buffer.position(start + HEADER_BYTES + length);
+        return body;
+    }
+
+    static byte type(ByteBuffer body) {
+        return body.get(0);
+    }
+
+    static int customerId(ByteBuffer body) {
+        return body.getInt(1);
+    }
+
+    static Customer customer(ByteBuffer body) {
+        ByteBuffer in = body.duplicate().position(5);
+        int id = body.getInt(1);
+        int age = in.getInt();
+        String name = getString(in);
+        String email = getString(in);
+        return new Customer(id, name, email, age == Integer.MIN_VALUE ? null : age);
+    }
+
+    private static ByteBuffer seal(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_BYTES, record.capacity() - HEADER_BYTES);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.zotov.customer.logstore;
+
+/**
+ * When appended records are forced to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every write forces its own records before it returns.
+     */
+    EVERY_WRITE,
+    /**
+     * A write returns once its records are forced; one force covers every write
+     * appended while the previous one ran.
+     */
+    GROUP_COMMIT,
+    /**
+     * Writes return at once and the log is forced every {@code fsync-interval}, so a
+     * crash loses at most that much.
+     */
+    PERIODIC
+}
@@ -0,0 +1,34 @@
+package ru.zotov.customer.logstore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.log-store.enabled")
+public class LogStoreConfig {
+
+    @Bean
+    public CustomerLogDataAccessService customerLogDataAccessService(
+            LogStoreProperties properties,
+            @Value("${customer.sharding.enabled:false}") boolean shardingEnabled,
+            @Value("${customer.replica.enabled:false}") boolean replicaEnabled) {
+        if (shardingEnabled || replicaEnabled) {
+            throw new IllegalStateException("customer.log-store.enabled cannot be combined with "
+                    + "customer.sharding.enabled or customer.replica.enabled");
+        }
+        if (properties.logFileSize().compareTo(DataSize.ofGigabytes(1)) > 0) {
+            throw new IllegalStateException("customer.log-store.log-file-size must not exceed 1GB");
+        }
+        return new CustomerLogDataAccessService(
+                Path.of(properties.directory()),
+                properties.fsyncPolicy(),
+                properties.fsyncInterval(),
+                (int) properties.logFileSize().toBytes(),
+                properties.compactAfter().toBytes());
+    }
+}
@@ -0,0 +1,23 @@
+package ru.zotov.customer.logstore;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * A snapshot is taken, and the logs it covers deleted, once the logs written since
+ * the last one reach {@code compact-after}. {@code log-file-size} is the capacity of
+ * one log file; a full log is continued in a new file.
+ */
+@ConfigurationProperties(prefix = "customer.log-store")
+public record LogStoreProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/customers") String directory,
+        @DefaultValue("group_commit") FsyncPolicy fsyncPolicy,
+        @DefaultValue("1s") Duration fsyncInterval,
+        @DefaultValue("64MB") DataSize logFileSize,
+        @DefaultValue("256MB") DataSize compactAfter
+) {
+}
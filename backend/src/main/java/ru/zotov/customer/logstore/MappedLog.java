@@ -0,0 +1,160 @@
+package ru.zotov.customer.logstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * One append-only log file, mapped into memory at its full capacity. The file is
+ * sparse, so only the written part takes disk space, and the unwritten part reads
+ * as zeros, which {@link CustomerRecords#next} takes as the end of the log.
+ * <p>
+ * Appends are not thread-safe; the store serializes them. {@link #force()} may run
+ * concurrently with appends.
+ */
+final class MappedLog implements Closeable {
+
+    private static final int MAGIC = 0x43554c47; // "CULG"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 16;
+
+    private final Path path;
+    private final long generation;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int position;
+
+    private MappedLog(Path path, long generation, FileChannel channel, MappedByteBuffer buffer, int position) {
+        this.path = path;
+        this.generation = generation;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    static MappedLog create(Path path, long generation, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, generation);
+        buffer.force(0, FILE_HEADER_BYTES);
+        return new MappedLog(path, generation, channel, buffer, FILE_HEADER_BYTES);
+    }
+
+    /**
+     * Maps an existing log, hands every intact record's body to {@code replay} and
+     * positions the log after the last one. In the {@code newest} log anything after
+     * it (a record torn by a crash, or later records whose pages reached the disk
+     * before it) is zeroed, so it cannot reappear behind records appended from now
+     * on. An older log was complete when the next one was started, so anything there
+     * is corruption and fails the open rather than dropping the rest of the log.
+     */
+    static MappedLog open(Path path, int capacity, boolean newest, Consumer<ByteBuffer> replay)
+            throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int size = (int) Math.max(capacity, channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("%s is not a customer log".formatted(path));
+            }
+            long generation = buffer.getLong(8);
+
+            ByteBuffer reader = buffer.duplicate().position(FILE_HEADER_BYTES);
+            ByteBuffer body;
+            while ((body = CustomerRecords.next(reader)) != null) {
+                replay.accept(body);
+            }
+            int end = reader.position();
+            if (!newest && !isZero(buffer, end, buffer.capacity() - end)) {
+                throw new IOException("%s is corrupt after offset %d".formatted(path, end));
+            }
+            if (zeroFrom(buffer, end)) {
+                buffer.force();
+            }
+            return new MappedLog(path, generation, channel, buffer, end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int remaining() {
+        return buffer.capacity() - position;
+    }
+
+    /**
+     * @return the position the record starts at, or -1 when it does not fit
+     */
+    int append(ByteBuffer record) {
+        int start = position;
+        if (record.remaining() > buffer.capacity() - start) {
+            return -1;
+        }
+        // the length goes in last, so a reader never sees a complete header in front
+        // of a partly copied body
+        buffer.put(start + 4, record, 4, record.remaining() - 4);
+        buffer.putInt(start, record.getInt(0));
+        position = start + record.remaining();
+        return start;
+    }
+
+    void force(int from, int length) {
+        buffer.force(from, length);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean zeroFrom(MappedByteBuffer buffer, int from) {
+        boolean dirty = false;
+        byte[] zeros = new byte[4096];
+        for (int offset = from; offset < buffer.capacity(); offset += zeros.length) {
+            int length = Math.min(zeros.length, buffer.capacity() - offset);
+            if (!isZero(buffer, offset, length)) {
+                buffer.put(offset, zeros, 0, length);
+                dirty = true;
+            }
+        }
+        return dirty;
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package ru.zotov.customer.logstore;
+
+import ru.zotov.customer.Customer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Every customer as of the start of one log generation, as upsert records between a
+ * header (which also carries the next id to hand out) and a footer carrying the
+ * record count. A snapshot is written to a temporary file and renamed into place once
+ * synced, so a file with the final name is either complete or not read at all.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x43555350; // "CUSP"
+    private static final int FOOTER_MAGIC = 0x43554e44; // "CUND"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int FOOTER_BYTES = 12;
+    private static final int WINDOW_BYTES = 256 << 20;
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path path, long generation, int nextId, Collection<Customer> customers) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20);
+            out.write(ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(nextId).array());
+            for (Customer customer : customers) {
+                ByteBuffer record = CustomerRecords.upsert(customer);
+                out.write(record.array(), 0, record.limit());
+            }
+            out.write(ByteBuffer.allocate(FOOTER_BYTES)
+                    .putInt(FOOTER_MAGIC).putLong(customers.size()).array());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.getParent());
+    }
+
+    /**
+     * Hands every customer of the snapshot to {@code consumer}, mapping the file a
+     * window at a time.
+     *
+     * @return the next id to hand out
+     * @throws IOException when the file is not a complete snapshot of {@code generation}
+     */
+    static int read(Path path, long generation, Consumer<Customer> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("%s is cut short".formatted(path));
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != generation
+                    || footer.getInt(0) != FOOTER_MAGIC) {
+                throw new IOException("%s is not a complete customer snapshot".formatted(path));
+            }
+
+            long end = size - FOOTER_BYTES;
+            long offset = HEADER_BYTES;
+            long count = 0;
+            while (offset < end) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset, Math.min(WINDOW_BYTES, end - offset));
+                ByteBuffer body;
+                while ((body = CustomerRecords.next(window)) != null) {
+                    consumer.accept(CustomerRecords.customer(body));
+                    count++;
+                }
+                if (window.position() == 0) {
+                    throw new IOException("%s has a damaged record at offset %d".formatted(path, offset));
+                }
+                offset += window.position();
+            }
+            if (count != footer.getLong(4)) {
+                throw new IOException("%s holds %d customers instead of %d".formatted(path, count, footer.getLong(4)));
+            }
+            return header.getInt(16);
+        }
+    }
+
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.zotov.customer.replica;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerChangeLogEntry;
+import ru.zotov.customer.CustomerChangePosition;
+import ru.zotov.customer.CustomerChangeSubscriber;
+import ru.zotov.customer.CustomerSyncDataAccessService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a {@link ReplicaSnapshot} of the customer table current. A background thread
+ * loads the table once and then polls the change log every {@code poll-interval}, or
+ * as soon as a change notification arrives. It reads by
+ * {@link CustomerChangePosition}, which only moves past a transaction once it has
+ * ended, so a write that commits late is picked up rather than skipped; a
+ * long-running transaction holds the replica back until it ends.
+ * <p>
+ * Writes made through this node are applied right after they commit by
+ * {@link #sync(Collection, Collection)}, so a client sees its own changes without
+ * waiting for the next poll. Readers get an immutable snapshot and never wait for
+ * the thread or the database.
+ */
+public class CustomerReplica implements CustomerChangeSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerReplica.class);
+
+    private final ReplicaDataAccessService replicaDataAccessService;
+    private final CustomerSyncDataAccessService customerSyncDataAccessService;
+    private final ReplicaProperties properties;
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final Thread tailer;
+
+    private volatile ReplicaSnapshot snapshot;
+    private volatile boolean running = true;
+    private volatile long caughtUpAt;
+
+    // owned by the tailer thread
+    private CustomerChangePosition position;
+
+    public CustomerReplica(ReplicaDataAccessService replicaDataAccessService,
+                           CustomerSyncDataAccessService customerSyncDataAccessService,
+                           ReplicaProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.replicaDataAccessService = replicaDataAccessService;
+        this.customerSyncDataAccessService = customerSyncDataAccessService;
+        this.properties = properties;
+        this.tailer = new Thread(this::run, "customer-replica");
+        this.tailer.setDaemon(true);
+
+        TimeGauge.builder("customer.replica.lag", this, TimeUnit.NANOSECONDS, CustomerReplica::lagNanos)
+                .description("Time since the replica last caught up with the database")
+                .register(meterRegistry);
+        Gauge.builder("customer.replica.customers", this, replica -> {
+                    ReplicaSnapshot current = replica.snapshot;
+                    return current == null ? Double.NaN : current.size();
+                })
+                .description("Customers held by the in-memory replica")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        tailer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        tailer.interrupt();
+        tailer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * @return the current snapshot, or {@code null} until the initial load is done
+     */
+    ReplicaSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Re-reads the rows with the given ids or emails and applies them. Failures are
+     * only logged; the next poll brings the rows in anyway.
+     */
+    void sync(Collection<Integer> customerIds, Collection<String> emails) {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            apply(replicaDataAccessService.selectCurrent(customerIds, emails));
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync customers {} / {} into the replica", customerIds, emails, e);
+        }
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        LockSupport.unpark(tailer);
+    }
+
+    @Override
+    public void onChangesMissed() {
+        LockSupport.unpark(tailer);
+    }
+
+    double lagNanos() {
+        return snapshot == null ? Double.NaN : System.nanoTime() - caughtUpAt;
+    }
+
+    private void run() {
+        long retryDelay = properties.pollInterval().toNanos();
+        while (running) {
+            try {
+                if (snapshot == null) {
+                    load();
+                } else {
+                    poll();
+                }
+                retryDelay = properties.pollInterval().toNanos();
+                LockSupport.parkNanos(this, properties.pollInterval().toNanos());
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Customer replica failed to read changes, retrying in {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(retryDelay), e);
+                LockSupport.parkNanos(this, retryDelay);
+                retryDelay = Math.min(retryDelay * 2, properties.overlap().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Takes the position before reading the table: every transaction below it has
+     * ended and is in the snapshot, and whatever commits during the read comes after
+     * it. Changes read twice are skipped by the snapshot.
+     */
+    private void load() {
+        long loadStartedAt = System.nanoTime();
+        CustomerChangePosition loadedAt = replicaDataAccessService.selectCommittedPosition();
+        ReplicaSnapshot loaded = replicaDataAccessService.selectSnapshot();
+        position = loadedAt;
+        caughtUpAt = System.nanoTime();
+        snapshot = loaded;
+        log.info("Customer replica loaded {} customers in {} ms", loaded.size(),
+                TimeUnit.NANOSECONDS.toMillis(caughtUpAt - loadStartedAt));
+    }
+
+    private void poll() {
+        long startedAt = System.nanoTime();
+        while (true) {
+            List<CustomerChangeLogEntry> page =
+                    customerSyncDataAccessService.selectChangesAfter(position, properties.pageSize());
+            if (!page.isEmpty()) {
+                apply(page);
+                position = page.get(page.size() - 1).position();
+            }
+            if (page.size() < properties.pageSize()) {
+                break;
+            }
+        }
+        caughtUpAt = startedAt;
+    }
+
+    private void apply(List<CustomerChangeLogEntry> entries) {
+        applyLock.lock();
+        try {
+            snapshot = snapshot.apply(entries, System.nanoTime(), properties.overlap().toNanos());
+        } finally {
+            applyLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.zotov.customer.replica;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.customer.CustomerSyncDataAccessService;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.replica.enabled")
+public class ReplicaConfig {
+
+    @Bean
+    public CustomerReplica customerReplica(JdbcTemplate jdbcTemplate,
+                                           CustomerRowMapper customerRowMapper,
+                                           CustomerSyncDataAccessService customerSyncDataAccessService,
+                                           ReplicaProperties properties,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${customer.sharding.enabled:false}") boolean shardingEnabled) {
+        // the change log it tails only covers the primary database
+        if (shardingEnabled) {
+            throw new IllegalStateException(
+                    "customer.replica.enabled cannot be combined with customer.sharding.enabled");
+        }
+        return new CustomerReplica(
+                new ReplicaDataAccessService(jdbcTemplate, customerRowMapper, properties.fetchSize()),
+                customerSyncDataAccessService,
+                properties,
+                meterRegistry);
+    }
+}
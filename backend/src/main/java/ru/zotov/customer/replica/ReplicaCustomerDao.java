@@ -0,0 +1,131 @@
+package ru.zotov.customer.replica;
+
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves reads from the {@link CustomerReplica} once it has loaded, and from the
+ * delegate before that; writes go to the delegate and are then synced into the
+ * replica. Customers are mutable, so every read hands out copies.
+ */
+public class ReplicaCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final CustomerReplica replica;
+
+    public ReplicaCustomerDao(CustomerDao delegate, CustomerReplica replica) {
+        this.delegate = delegate;
+        this.replica = replica;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.selectAllCustomers();
+        }
+        return copies(snapshot.getAll());
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.selectCustomerById(customerId);
+        }
+        return Optional.ofNullable(snapshot.get(customerId)).map(ReplicaCustomerDao::copy);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.selectCustomersByIds(customerIds);
+        }
+        return copies(snapshot.getByIds(customerIds));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.selectCustomerByEmail(email);
+        }
+        return Optional.ofNullable(snapshot.getByEmail(email)).map(ReplicaCustomerDao::copy);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        try {
+            delegate.insertCustomer(customer);
+        } finally {
+            replica.sync(List.of(), List.of(customer.getEmail()));
+        }
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        try {
+            delegate.insertCustomers(customers);
+        } finally {
+            replica.sync(List.of(), customers.stream().map(Customer::getEmail).toList());
+        }
+    }
+
+    /**
+     * Answered from memory like the other reads; a row inserted elsewhere and not
+     * polled yet is still caught by the unique index on the normalized email.
+     */
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.existsCustomerWithEmail(email);
+        }
+        return snapshot.existsWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        ReplicaSnapshot snapshot = replica.snapshot();
+        if (snapshot == null) {
+            return delegate.existsCustomerWithId(customerId);
+        }
+        return snapshot.get(customerId) != null;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        try {
+            delegate.deleteCustomerById(customerId);
+        } finally {
+            replica.sync(List.of(customerId), List.of());
+        }
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        try {
+            delegate.updateCustomer(update);
+        } finally {
+            replica.sync(List.of(update.getId()), List.of());
+        }
+    }
+
+    private static List<Customer> copies(List<Customer> customers) {
+        List<Customer> copies = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            copies.add(copy(customer));
+        }
+        return copies;
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+}
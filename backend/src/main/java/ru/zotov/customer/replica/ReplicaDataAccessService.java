@@ -0,0 +1,113 @@
+package ru.zotov.customer.replica;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import ru.zotov.bulkhead.Workload;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChangeLogEntry;
+import ru.zotov.customer.CustomerChangePosition;
+import ru.zotov.customer.CustomerEmail;
+import ru.zotov.customer.CustomerRowMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class ReplicaDataAccessService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerRowMapper customerRowMapper;
+    private final int fetchSize;
+
+    public ReplicaDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRowMapper = customerRowMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * A change log position that every transaction still running comes after.
+     */
+    public CustomerChangePosition selectCommittedPosition() {
+        var sql = """
+                SELECT pg_snapshot_xmin(pg_current_snapshot())::text
+                """;
+        String xmin = jdbcTemplate.queryForObject(sql, String.class);
+        return new CustomerChangePosition(Long.parseLong(xmin), 0);
+    }
+
+    /**
+     * Reads the whole table in id order through a server-side cursor, so only
+     * {@code fetch-size} rows are held by the driver at a time. The read holds its
+     * connection for as long as the table takes, so it is taken from the bulk pool.
+     */
+    public ReplicaSnapshot selectSnapshot() {
+        var sql = """
+                SELECT id, name, email, age, change_seq FROM customer ORDER BY id
+                """;
+        return Workload.bulk(() -> jdbcTemplate.execute((ConnectionCallback<ReplicaSnapshot>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            int isolation = connection.getTransactionIsolation();
+            // the PostgreSQL driver only uses a cursor inside a transaction
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(fetchSize);
+                List<Customer> customers = new ArrayList<>();
+                long[] changeSeqs = new long[1024];
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        if (customers.size() == changeSeqs.length) {
+                            changeSeqs = Arrays.copyOf(changeSeqs, changeSeqs.length * 2);
+                        }
+                        changeSeqs[customers.size()] = rs.getLong("change_seq");
+                        customers.add(customerRowMapper.mapRow(rs, customers.size()));
+                    }
+                }
+                connection.commit();
+                return ReplicaSnapshot.of(customers, changeSeqs);
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setTransactionIsolation(isolation);
+                connection.setAutoCommit(autoCommit);
+            }
+        }));
+    }
+
+    /**
+     * The current version of the given rows, as change log entries: rows with one of
+     * the ids or emails, and tombstones of the ids.
+     */
+    public List<CustomerChangeLogEntry> selectCurrent(Collection<Integer> customerIds, Collection<String> emails) {
+        var sql = """
+                SELECT id, name, email, age, change_xid, change_seq, false AS deleted
+                FROM customer
+                WHERE id = ANY(?) OR lower(btrim(email)) = ANY(?)
+                UNION ALL
+                SELECT id, NULL, NULL, NULL, change_xid, change_seq, true AS deleted
+                FROM customer_tombstone
+                WHERE id = ANY(?)
+                ORDER BY change_seq
+                """;
+        RowMapper<CustomerChangeLogEntry> rowMapper = (rs, rowNum) -> new CustomerChangeLogEntry(
+                Long.parseLong(rs.getString("change_xid")),
+                rs.getLong("change_seq"),
+                rs.getInt("id"),
+                rs.getBoolean("deleted") ? null : customerRowMapper.mapRow(rs, rowNum)
+        );
+        return jdbcTemplate.query(sql, ps -> {
+            Object[] ids = customerIds.toArray();
+            ps.setArray(1, ps.getConnection().createArrayOf("int4", ids));
+            ps.setArray(2, ps.getConnection().createArrayOf("text",
+                    emails.stream().map(CustomerEmail::normalize).toArray()));
+            ps.setArray(3, ps.getConnection().createArrayOf("int4", ids));
+        }, rowMapper);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.zotov.customer.replica;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * {@code overlap} is how long deleted rows are remembered, so that a read of a row
+ * that raced with its deletion cannot bring it back; it also caps the retry delay
+ * after failed polls.
+ */
+@ConfigurationProperties(prefix = "customer.replica")
+public record ReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("100ms") Duration pollInterval,
+        @DefaultValue("10s") Duration overlap,
+        @DefaultValue("10000") int fetchSize,
+        @DefaultValue("5000") int pageSize
+) {
+}
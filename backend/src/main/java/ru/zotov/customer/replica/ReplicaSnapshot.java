@@ -0,0 +1,224 @@
+package ru.zotov.customer.replica;
+
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChangeLogEntry;
+import ru.zotov.customer.CustomerEmail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, point-in-time copy of the {@code customer} table. The bulk of it is
+ * a base of id-sorted arrays with an email index; changes applied since the base was
+ * built sit in a small overlay that is copied on every change and folded into a new
+ * base once it grows past a fraction of it. Every row carries its {@code change_seq},
+ * so a change is only applied when it is newer than what the snapshot holds and
+ * entries read twice or out of order are harmless.
+ */
+final class ReplicaSnapshot {
+
+    static final ReplicaSnapshot EMPTY = new ReplicaSnapshot(
+            new int[0], new Customer[0], new long[0], Map.of(), Map.of(), Map.of(), 0, 0);
+
+    private static final int MIN_COMPACTION_THRESHOLD = 4096;
+
+    /**
+     * A changed row; {@code customer} is {@code null} for deletions, which are kept
+     * until {@code deletedAt} is older than the replica's overlap window so a stale
+     * read of the row cannot bring it back.
+     */
+    record Row(Customer customer, long changeSeq, long deletedAt) {
+    }
+
+    private final int[] ids;
+    private final Customer[] customers;
+    private final long[] changeSeqs;
+    private final Map<String, Integer> idsByEmail;
+    private final Map<Integer, Row> changed;
+    private final Map<String, Integer> changedIdsByEmail;
+    private final int size;
+    private final long changeSeq;
+
+    private ReplicaSnapshot(int[] ids,
+                            Customer[] customers,
+                            long[] changeSeqs,
+                            Map<String, Integer> idsByEmail,
+                            Map<Integer, Row> changed,
+                            Map<String, Integer> changedIdsByEmail,
+                            int size,
+                            long changeSeq) {
+        this.ids = ids;
+        this.customers = customers;
+        this.changeSeqs = changeSeqs;
+        this.idsByEmail = idsByEmail;
+        this.changed = changed;
+        this.changedIdsByEmail = changedIdsByEmail;
+        this.size = size;
+        this.changeSeq = changeSeq;
+    }
+
+    /**
+     * @param rows customers in ascending id order
+     */
+    static ReplicaSnapshot of(List<Customer> rows, long[] changeSeqs) {
+        int[] ids = new int[rows.size()];
+        Customer[] customers = rows.toArray(Customer[]::new);
+        Map<String, Integer> idsByEmail = new HashMap<>(rows.size() * 4 / 3 + 1);
+        long maxChangeSeq = 0;
+        for (int i = 0; i < customers.length; i++) {
+            ids[i] = customers[i].getId();
+            idsByEmail.put(CustomerEmail.normalize(customers[i].getEmail()), ids[i]);
+            maxChangeSeq = Math.max(maxChangeSeq, changeSeqs[i]);
+        }
+        return new ReplicaSnapshot(ids, customers, changeSeqs, idsByEmail, Map.of(), Map.of(),
+                customers.length, maxChangeSeq);
+    }
+
+    Customer get(int customerId) {
+        Row row = changed.get(customerId);
+        if (row != null) {
+            return row.customer();
+        }
+        int index = Arrays.binarySearch(ids, customerId);
+        return index < 0 ? null : customers[index];
+    }
+
+    Customer getByEmail(String email) {
+        String normalized = CustomerEmail.normalize(email);
+        Integer customerId = changedIdsByEmail.get(normalized);
+        if (customerId != null) {
+            return changed.get(customerId).customer();
+        }
+        customerId = idsByEmail.get(normalized);
+        return customerId == null || changed.containsKey(customerId) ? null : get(customerId);
+    }
+
+    boolean existsWithEmail(String email) {
+        return getByEmail(email) != null;
+    }
+
+    List<Customer> getAll() {
+        List<Customer> all = new ArrayList<>(size);
+        List<Row> live = changed.values().stream()
+                .filter(row -> row.customer() != null)
+                .sorted((a, b) -> Integer.compare(a.customer().getId(), b.customer().getId()))
+                .toList();
+        int next = 0;
+        for (int i = 0; i < ids.length; i++) {
+            while (next < live.size() && live.get(next).customer().getId() < ids[i]) {
+                all.add(live.get(next++).customer());
+            }
+            if (!changed.containsKey(ids[i])) {
+                all.add(customers[i]);
+            }
+        }
+        while (next < live.size()) {
+            all.add(live.get(next++).customer());
+        }
+        return all;
+    }
+
+    List<Customer> getByIds(Collection<Integer> customerIds) {
+        List<Customer> found = new ArrayList<>(customerIds.size());
+        for (Integer customerId : customerIds) {
+            Customer customer = get(customerId);
+            if (customer != null) {
+                found.add(customer);
+            }
+        }
+        return found;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The highest {@code change_seq} applied.
+     */
+    long changeSeq() {
+        return changeSeq;
+    }
+
+    /**
+     * @return a snapshot with the entries newer than the rows held applied, or this
+     * one when none is
+     */
+    ReplicaSnapshot apply(List<CustomerChangeLogEntry> entries, long now, long tombstoneRetentionNanos) {
+        Map<Integer, Row> nextChanged = null;
+        Map<String, Integer> nextChangedIdsByEmail = null;
+        int nextSize = size;
+        long nextChangeSeq = changeSeq;
+
+        for (CustomerChangeLogEntry entry : entries) {
+            int customerId = entry.customerId();
+            Row previous = nextChanged != null ? nextChanged.get(customerId) : changed.get(customerId);
+            Customer current;
+            long currentSeq;
+            if (previous != null) {
+                current = previous.customer();
+                currentSeq = previous.changeSeq();
+            } else {
+                int index = Arrays.binarySearch(ids, customerId);
+                current = index < 0 ? null : customers[index];
+                currentSeq = index < 0 ? -1 : changeSeqs[index];
+            }
+            if (entry.changeSeq() <= currentSeq || (entry.deleted() && current == null && previous == null)) {
+                continue;
+            }
+
+            if (nextChanged == null) {
+                nextChanged = new HashMap<>(changed);
+                nextChangedIdsByEmail = new HashMap<>(changedIdsByEmail);
+            }
+            if (current != null) {
+                nextChangedIdsByEmail.remove(CustomerEmail.normalize(current.getEmail()), customerId);
+            }
+            if (entry.deleted()) {
+                nextChanged.put(customerId, new Row(null, entry.changeSeq(), now));
+            } else {
+                nextChanged.put(customerId, new Row(entry.customer(), entry.changeSeq(), 0));
+                nextChangedIdsByEmail.put(CustomerEmail.normalize(entry.customer().getEmail()), customerId);
+            }
+            nextSize += (entry.deleted() ? 0 : 1) - (current == null ? 0 : 1);
+            nextChangeSeq = Math.max(nextChangeSeq, entry.changeSeq());
+        }
+
+        if (nextChanged == null) {
+            return this;
+        }
+        ReplicaSnapshot next = new ReplicaSnapshot(ids, customers, changeSeqs, idsByEmail,
+                nextChanged, nextChangedIdsByEmail, nextSize, nextChangeSeq);
+        return nextChanged.size() > Math.max(MIN_COMPACTION_THRESHOLD, ids.length / 64)
+                ? next.compact(now, tombstoneRetentionNanos)
+                : next;
+    }
+
+    /**
+     * Folds the overlay into a new base, keeping only deletions that are still
+     * within the retention.
+     */
+    ReplicaSnapshot compact(long now, long tombstoneRetentionNanos) {
+        List<Customer> rows = getAll();
+        long[] seqs = new long[rows.size()];
+        for (int i = 0; i < seqs.length; i++) {
+            int customerId = rows.get(i).getId();
+            Row row = changed.get(customerId);
+            seqs[i] = row != null ? row.changeSeq() : changeSeqs[Arrays.binarySearch(ids, customerId)];
+        }
+
+        ReplicaSnapshot base = of(rows, seqs);
+        Map<Integer, Row> tombstones = new HashMap<>();
+        changed.forEach((customerId, row) -> {
+            if (row.customer() == null && now - row.deletedAt() < tombstoneRetentionNanos) {
+                tombstones.put(customerId, row);
+            }
+        });
+        return new ReplicaSnapshot(base.ids, base.customers, base.changeSeqs, base.idsByEmail,
+                tombstones, Map.of(), base.size, changeSeq);
+    }
+}
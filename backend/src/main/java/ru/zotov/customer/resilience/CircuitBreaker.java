@@ -0,0 +1,156 @@
+package ru.zotov.customer.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Trips open once at least {@code minimum-calls} of the last {@code window-size}
+ * calls were made and the share of failed calls, or of calls slower than
+ * {@code slow-call-duration}, reaches its threshold. While open every call is
+ * rejected; after {@code open-duration} up to {@code half-open-calls} trial calls are
+ * let through, and the circuit closes once they all succeed in time or opens again
+ * on the first one that does not.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final ResilienceProperties.Breaker settings;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile State state = State.CLOSED;
+
+    // guarded by this
+    private final byte[] outcomes;
+    private int nextOutcome;
+    private int recorded;
+    private int failed;
+    private int slow;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(ResilienceProperties.Breaker settings) {
+        this(settings, System::nanoTime);
+    }
+
+    CircuitBreaker(ResilienceProperties.Breaker settings, LongSupplier nanoClock) {
+        this.settings = settings;
+        this.slowCallNanos = settings.slowCallDuration().toNanos();
+        this.openNanos = settings.openDuration().toNanos();
+        this.nanoClock = nanoClock;
+        this.outcomes = new byte[settings.windowSize()];
+    }
+
+    /**
+     * @return whether the call may go ahead; if so its outcome must be reported to
+     * {@link #onResult(long, boolean)} exactly once
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= settings.halfOpenCalls()) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                trialsStarted++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param elapsedNanos how long the call took, or 0 when its duration says
+     *                     nothing about the health of the store
+     * @param failedCall   whether the call failed in a way that points at the store
+     */
+    public synchronized void onResult(long elapsedNanos, boolean failedCall) {
+        boolean slowCall = elapsedNanos >= slowCallNanos;
+        switch (state) {
+            case CLOSED -> {
+                record((byte) ((failedCall ? FAILED : 0) | (slowCall ? SLOW : 0)));
+                if (recorded >= settings.minimumCalls()
+                        && (failed * 100 >= settings.failureRateThreshold() * recorded
+                        || slow * 100 >= settings.slowCallRateThreshold() * recorded)) {
+                    open("%d of %d calls failed, %d were slow".formatted(failed, recorded, slow));
+                }
+            }
+            case HALF_OPEN -> {
+                if (failedCall || slowCall) {
+                    open(failedCall ? "a trial call failed" : "a trial call was slow");
+                } else if (++trialsSucceeded >= settings.halfOpenCalls()) {
+                    close();
+                }
+            }
+            case OPEN -> {
+                // a call let through before the circuit opened
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void record(byte outcome) {
+        if (recorded == outcomes.length) {
+            byte evicted = outcomes[nextOutcome];
+            failed -= evicted & FAILED;
+            slow -= (evicted & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        outcomes[nextOutcome] = outcome;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        failed += outcome & FAILED;
+        slow += (outcome & SLOW) >> 1;
+    }
+
+    private void open(String reason) {
+        log.warn("Customer store circuit opened for {} ms: {}", openNanos / 1_000_000, reason);
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        reset();
+    }
+
+    private void close() {
+        log.info("Customer store circuit closed");
+        state = State.CLOSED;
+        reset();
+    }
+
+    private void reset() {
+        nextOutcome = 0;
+        recorded = 0;
+        failed = 0;
+        slow = 0;
+    }
+}
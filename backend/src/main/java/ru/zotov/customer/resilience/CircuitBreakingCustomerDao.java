@@ -0,0 +1,96 @@
+package ru.zotov.customer.resilience;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Reads go through the {@link CircuitBreaker}: while it is open they fail at once
+ * with {@link ResourceUnavailableException} instead of waiting on the database.
+ * Writes are passed through.
+ */
+public class CircuitBreakingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakingCustomerDao(CustomerDao delegate, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        // a full scan is slow by nature, so only its failures count
+        return read(delegate::selectAllCustomers, false);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return read(() -> delegate.selectCustomerById(customerId), true);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        return read(() -> delegate.selectCustomersByIds(customerIds), true);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return read(() -> delegate.selectCustomerByEmail(email), true);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return read(() -> delegate.existsCustomerWithEmail(email), true);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        return read(() -> delegate.existsCustomerWithId(customerId), true);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        delegate.deleteCustomerById(customerId);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        delegate.updateCustomer(update);
+    }
+
+    private <T> T read(Supplier<T> read, boolean timed) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new ResourceUnavailableException("customer store is unavailable, retry later");
+        }
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return read.get();
+        } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+            failed = true;
+            throw e;
+        } finally {
+            circuitBreaker.onResult(timed ? System.nanoTime() - start : 0, failed);
+        }
+    }
+}
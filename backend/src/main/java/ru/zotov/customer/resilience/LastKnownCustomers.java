@@ -0,0 +1,220 @@
+package ru.zotov.customer.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerChangeSubscriber;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.customer.CustomerEmail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The last value read for each customer, kept to answer reads with while the store
+ * is failing. Unlike {@code CustomerCache} entries are not dropped when the customer
+ * changes elsewhere, they are marked outdated instead: an outdated value is still
+ * better than no answer. Every {@code revalidate-interval} a background thread
+ * re-reads up to {@code revalidate-batch-size} outdated entries that were asked for
+ * since they were stored, so the ones in use stay close to current.
+ */
+public class LastKnownCustomers implements CustomerChangeSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(LastKnownCustomers.class);
+
+    private final CustomerDao customerStore;
+    private final ResilienceProperties.Stale settings;
+    private final ScheduledExecutorService revalidator;
+    private final ConcurrentHashMap<Integer, Entry> customers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final Set<Integer> outdated = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+
+    public LastKnownCustomers(CustomerDao customerStore,
+                              ResilienceProperties.Stale settings,
+                              MeterRegistry meterRegistry) {
+        this.customerStore = customerStore;
+        this.settings = settings;
+        this.revalidator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-revalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("customer.stale.customers", customers, Map::size)
+                .description("Customers kept to fall back on while the store is failing")
+                .register(meterRegistry);
+        Gauge.builder("customer.stale.outdated", outdated, Set::size)
+                .description("Kept customers that changed since they were read")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = settings.revalidateInterval().toMillis();
+        revalidator.scheduleWithFixedDelay(this::revalidate, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        revalidator.shutdownNow();
+    }
+
+    /**
+     * @return a copy of the last known value, or {@code null}
+     */
+    public Customer get(Integer customerId) {
+        Entry entry = customers.get(customerId);
+        if (entry == null) {
+            return null;
+        }
+        entry.requested = true;
+        return copy(entry.customer);
+    }
+
+    public Customer getByEmail(String email) {
+        String normalized = CustomerEmail.normalize(email);
+        Integer customerId = idsByEmail.get(normalized);
+        if (customerId == null) {
+            return null;
+        }
+        Customer customer = get(customerId);
+        return customer != null && CustomerEmail.normalize(customer.getEmail()).equals(normalized)
+                ? customer
+                : null;
+    }
+
+    /**
+     * Marker to take before reading a value that is going to be put, see
+     * {@link #put(Customer, long)}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Keeps a value read after {@code expectedGeneration} was taken. If a change was
+     * notified in between, the value is kept but marked outdated.
+     */
+    public void put(Customer customer, long expectedGeneration) {
+        if (customers.size() >= settings.maxSize() && !customers.containsKey(customer.getId())) {
+            evictAny();
+        }
+
+        Entry previous = customers.put(customer.getId(), new Entry(copy(customer)));
+        String email = CustomerEmail.normalize(customer.getEmail());
+        if (previous != null) {
+            String previousEmail = CustomerEmail.normalize(previous.customer.getEmail());
+            if (!previousEmail.equals(email)) {
+                idsByEmail.remove(previousEmail, customer.getId());
+            }
+        }
+        idsByEmail.put(email, customer.getId());
+
+        if (generation.get() == expectedGeneration) {
+            outdated.remove(customer.getId());
+        } else {
+            outdated.add(customer.getId());
+        }
+    }
+
+    public void remove(Integer customerId) {
+        Entry removed = customers.remove(customerId);
+        outdated.remove(customerId);
+        if (removed != null) {
+            idsByEmail.remove(CustomerEmail.normalize(removed.customer.getEmail()), customerId);
+        }
+    }
+
+    public int size() {
+        return customers.size();
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        generation.incrementAndGet();
+        if (customers.containsKey(change.customerId())) {
+            outdated.add(change.customerId());
+        }
+    }
+
+    @Override
+    public void onChangesMissed() {
+        generation.incrementAndGet();
+        outdated.addAll(customers.keySet());
+    }
+
+    void revalidate() {
+        List<Integer> batch = new ArrayList<>();
+        for (Integer customerId : outdated) {
+            Entry entry = customers.get(customerId);
+            if (entry == null) {
+                outdated.remove(customerId);
+            } else if (entry.requested) {
+                batch.add(customerId);
+                if (batch.size() == settings.revalidateBatchSize()) {
+                    break;
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long expectedGeneration = generation.get();
+        try {
+            Map<Integer, Customer> current = customerStore.selectCustomersByIds(batch).stream()
+                    .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            for (Integer customerId : batch) {
+                Customer customer = current.get(customerId);
+                if (customer == null) {
+                    remove(customerId);
+                } else {
+                    put(customer, expectedGeneration);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to revalidate {} customers", batch.size(), e);
+        }
+    }
+
+    boolean isOutdated(Integer customerId) {
+        return outdated.contains(customerId);
+    }
+
+    private void evictAny() {
+        Iterator<Integer> iterator = customers.keySet().iterator();
+        if (iterator.hasNext()) {
+            remove(iterator.next());
+        }
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    private static final class Entry {
+
+        private final Customer customer;
+        private volatile boolean requested;
+
+        private Entry(Customer customer) {
+            this.customer = customer;
+        }
+    }
+}
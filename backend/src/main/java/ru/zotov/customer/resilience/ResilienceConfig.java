@@ -0,0 +1,37 @@
+package ru.zotov.customer.resilience;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.zotov.customer.CustomerDao;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.resilience.enabled", matchIfMissing = true)
+public class ResilienceConfig {
+
+    @Bean
+    public CircuitBreaker customerStoreCircuitBreaker(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(properties.breaker());
+        Gauge.builder("customer.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Customer store circuit: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.circuit.rejected", circuitBreaker, CircuitBreaker::getRejected)
+                .description("Customer store reads rejected while the circuit was open")
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+
+    /**
+     * Revalidates from the store itself, past the entity cache.
+     */
+    @Bean
+    public LastKnownCustomers lastKnownCustomers(@Qualifier("customer_store") CustomerDao customerStore,
+                                                 ResilienceProperties properties,
+                                                 MeterRegistry meterRegistry) {
+        return new LastKnownCustomers(customerStore, properties.stale(), meterRegistry);
+    }
+}
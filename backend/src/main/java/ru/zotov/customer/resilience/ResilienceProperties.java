@@ -0,0 +1,41 @@
+package ru.zotov.customer.resilience;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "customer.resilience")
+public record ResilienceProperties(
+        @DefaultValue("true") boolean enabled,
+        Breaker breaker,
+        Stale stale
+) {
+    public ResilienceProperties {
+        breaker = breaker != null ? breaker : new Breaker(50, 20, 50, Duration.ofSeconds(1), 80,
+                Duration.ofSeconds(5), 5);
+        stale = stale != null ? stale : new Stale(Duration.ofMillis(300), 100_000, Duration.ofSeconds(1), 500);
+    }
+
+    /**
+     * Rates are percentages of the last {@code window-size} store reads.
+     */
+    public record Breaker(int windowSize,
+                          int minimumCalls,
+                          int failureRateThreshold,
+                          Duration slowCallDuration,
+                          int slowCallRateThreshold,
+                          Duration openDuration,
+                          int halfOpenCalls) {
+    }
+
+    /**
+     * {@code fallback-after} is the most a read that has a last known value to fall
+     * back on may wait for the store.
+     */
+    public record Stale(Duration fallbackAfter,
+                        int maxSize,
+                        Duration revalidateInterval,
+                        int revalidateBatchSize) {
+    }
+}
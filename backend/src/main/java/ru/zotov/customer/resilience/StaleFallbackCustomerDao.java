@@ -0,0 +1,134 @@
+package ru.zotov.customer.resilience;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Answers reads of customers seen before from {@link LastKnownCustomers} when the
+ * store fails or its circuit is open, and marks the response stale. Such reads are
+ * given at most {@code fallback-after} of the request deadline, so a slow database
+ * delays them no longer than that. Reads of customers not seen before fail as they
+ * would without this class, as do full listings, which {@code CustomerListCache}
+ * falls back for on its own.
+ */
+public class StaleFallbackCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final LastKnownCustomers lastKnownCustomers;
+    private final Duration fallbackAfter;
+
+    public StaleFallbackCustomerDao(CustomerDao delegate,
+                                    LastKnownCustomers lastKnownCustomers,
+                                    Duration fallbackAfter) {
+        this.delegate = delegate;
+        this.lastKnownCustomers = lastKnownCustomers;
+        this.fallbackAfter = fallbackAfter;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        Customer lastKnown = lastKnownCustomers.get(customerId);
+        long generation = lastKnownCustomers.generation();
+        return read(() -> {
+            Optional<Customer> customer = delegate.selectCustomerById(customerId);
+            customer.ifPresentOrElse(c -> lastKnownCustomers.put(c, generation),
+                    () -> lastKnownCustomers.remove(customerId));
+            return customer;
+        }, lastKnown == null ? null : () -> Optional.of(lastKnown));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        List<Customer> lastKnown = new ArrayList<>(customerIds.size());
+        for (Integer customerId : customerIds) {
+            Customer customer = lastKnownCustomers.get(customerId);
+            if (customer == null) {
+                lastKnown = null;
+                break;
+            }
+            lastKnown.add(customer);
+        }
+
+        // without every customer known a fallback would report the others as missing
+        List<Customer> known = lastKnown;
+        long generation = lastKnownCustomers.generation();
+        return read(() -> {
+            List<Customer> customers = delegate.selectCustomersByIds(customerIds);
+            customers.forEach(c -> lastKnownCustomers.put(c, generation));
+            return customers;
+        }, known == null ? null : () -> known);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        Customer lastKnown = lastKnownCustomers.getByEmail(email);
+        long generation = lastKnownCustomers.generation();
+        return read(() -> {
+            Optional<Customer> customer = delegate.selectCustomerByEmail(email);
+            customer.ifPresent(c -> lastKnownCustomers.put(c, generation));
+            return customer;
+        }, lastKnown == null ? null : () -> Optional.of(lastKnown));
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        return delegate.existsCustomerWithId(customerId);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        delegate.deleteCustomerById(customerId);
+        lastKnownCustomers.remove(customerId);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        long generation = lastKnownCustomers.generation();
+        delegate.updateCustomer(update);
+        lastKnownCustomers.put(update, generation);
+    }
+
+    private <T> T read(Supplier<T> read, Supplier<T> fallback) {
+        if (fallback == null) {
+            return read.get();
+        }
+        try {
+            return Deadline.within(fallbackAfter, read);
+        } catch (TransientDataAccessException | DataAccessResourceFailureException
+                 | ResourceUnavailableException e) {
+            StaleResponses.mark();
+            return fallback.get();
+        }
+    }
+}
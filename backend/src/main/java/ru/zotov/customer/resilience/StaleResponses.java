@@ -0,0 +1,66 @@
+package ru.zotov.customer.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Responses built from data that may be out of date, because the store could not be
+ * asked, are sent with {@code Warning: 110 - "Response is Stale"} and counted in
+ * {@code customer.stale.responses}. Whatever serves such data calls {@link #mark()}
+ * on the request thread.
+ */
+@RestControllerAdvice
+public class StaleResponses implements ResponseBodyAdvice<Object> {
+
+    static final String WARNING = "110 - \"Response is Stale\"";
+    private static final String ATTRIBUTE = StaleResponses.class.getName() + ".stale";
+
+    private final Counter staleResponses;
+
+    public StaleResponses(MeterRegistry meterRegistry) {
+        this.staleResponses = Counter.builder("customer.stale.responses")
+                .description("Responses served from last known data while the store was failing")
+                .register(meterRegistry);
+    }
+
+    public static void mark() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    static boolean isMarked() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body,
+                                  MethodParameter returnType,
+                                  MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request,
+                                  ServerHttpResponse response) {
+        if (isMarked()) {
+            response.getHeaders().set("Warning", WARNING);
+            staleResponses.increment();
+        }
+        return body;
+    }
+}
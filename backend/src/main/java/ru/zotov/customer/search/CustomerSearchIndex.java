@@ -0,0 +1,238 @@
+package ru.zotov.customer.search;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import ru.zotov.bulkhead.Workload;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerChangeSubscriber;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Search-as-you-type over customer names and emails, served from memory. A
+ * {@link SearchIndex} is built from the store, on the bulk pool, in the background at
+ * startup and again whenever changes may have been missed. Rows changed since are marked dirty by local
+ * writes and by change notifications and re-read on the next search, like in
+ * {@code CustomerListCache}, into an overlay that shadows them in the index; once the
+ * overlay holds {@code rebuild-after} customers the index is rebuilt, and searches
+ * keep being served from the old one meanwhile.
+ */
+@Component
+public class CustomerSearchIndex implements CustomerChangeSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSearchIndex.class);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final CustomerDao customerDao;
+    private final SearchProperties properties;
+    private final ScheduledExecutorService builder;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ReentrantLock patchLock = new ReentrantLock();
+    private final Set<Integer> dirtyIds = ConcurrentHashMap.newKeySet();
+    private volatile State state;
+    // guarded by patchLock
+    private long patches;
+
+    public CustomerSearchIndex(@Qualifier("customer_store") CustomerDao customerDao,
+                               SearchProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.properties = properties;
+        this.builder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("customer.search.customers", this, index -> {
+                    State current = index.state;
+                    return current == null ? Double.NaN : current.index().size();
+                })
+                .description("Customers in the search index, not counting the overlay")
+                .register(meterRegistry);
+        Gauge.builder("customer.search.index.size", this, index -> {
+                    State current = index.state;
+                    return current == null ? Double.NaN : current.index().sizeInBytes();
+                })
+                .description("Memory held by the search index arrays")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (properties.enabled()) {
+            scheduleRebuild();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * @return the ids of the best matching customers, best first
+     */
+    public List<Integer> search(String query, int limit) {
+        if (!properties.enabled()) {
+            throw new ResourceUnavailableException("customer search is disabled");
+        }
+        if (!dirtyIds.isEmpty()) {
+            patch();
+        }
+        State current = state;
+        if (current == null) {
+            throw new ResourceUnavailableException("customer search index is still being built");
+        }
+
+        Query parsed = Query.parse(query);
+        TopHits hits = new TopHits(limit);
+        current.index().search(parsed, properties.maxCandidates(), current.overlay()::containsKey, hits);
+        for (Document document : current.overlay().values()) {
+            double score = document.score(parsed);
+            if (score > 0) {
+                hits.offer(document.customerId(), score);
+            }
+        }
+        return hits.hits().stream().map(TopHits.Hit::customerId).toList();
+    }
+
+    public void invalidate(Integer customerId) {
+        if (customerId != null) {
+            dirtyIds.add(customerId);
+        }
+    }
+
+    @Override
+    public void onCustomerChange(CustomerChange change) {
+        invalidate(change.customerId());
+    }
+
+    @Override
+    public void onChangesMissed() {
+        if (properties.enabled()) {
+            scheduleRebuild();
+        }
+    }
+
+    boolean isBuilt() {
+        return state != null;
+    }
+
+    private void patch() {
+        patchLock.lock();
+        try {
+            State current = state;
+            if (current == null || dirtyIds.isEmpty()) {
+                return;
+            }
+            List<Integer> ids = new ArrayList<>(dirtyIds);
+            dirtyIds.removeAll(ids);
+            Map<Integer, Customer> customers;
+            try {
+                customers = customerDao.selectCustomersByIds(ids).stream()
+                        .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            } catch (RuntimeException e) {
+                dirtyIds.addAll(ids);
+                throw e;
+            }
+
+            long patch = ++patches;
+            Map<Integer, Document> overlay = new HashMap<>(current.overlay());
+            for (Integer id : ids) {
+                Customer customer = customers.get(id);
+                overlay.put(id, customer == null ? Document.deleted(id, patch) : Document.of(customer, patch));
+            }
+            state = new State(current.index(), Collections.unmodifiableMap(overlay));
+            if (overlay.size() > properties.rebuildAfter()) {
+                scheduleRebuild();
+            }
+        } finally {
+            patchLock.unlock();
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            builder.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Overlay entries re-read after the full read started may be newer than what it
+     * returned, so they are carried over to the new index; older ones are dropped.
+     */
+    private void rebuild() {
+        rebuildScheduled.set(false);
+        long startedAt = System.nanoTime();
+        long patchesBefore;
+        patchLock.lock();
+        try {
+            patchesBefore = patches;
+        } finally {
+            patchLock.unlock();
+        }
+
+        SearchIndex index;
+        try {
+            List<Customer> customers = new ArrayList<>(Workload.bulk(customerDao::selectAllCustomers));
+            customers.sort(Comparator.comparing(Customer::getId));
+            SearchIndex.Builder indexBuilder = new SearchIndex.Builder();
+            for (Customer customer : customers) {
+                indexBuilder.add(customer.getId(), customer.getName(), customer.getEmail());
+            }
+            index = indexBuilder.build();
+        } catch (RuntimeException e) {
+            log.warn("Failed to build the customer search index, retrying in {} s", RETRY_DELAY.toSeconds(), e);
+            builder.schedule(this::scheduleRebuild, RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        patchLock.lock();
+        try {
+            Map<Integer, Document> overlay = new HashMap<>();
+            State current = state;
+            if (current != null) {
+                for (Document document : current.overlay().values()) {
+                    if (document.patch() > patchesBefore) {
+                        overlay.put(document.customerId(), document);
+                    }
+                }
+            }
+            state = new State(index, Collections.unmodifiableMap(overlay));
+        } finally {
+            patchLock.unlock();
+        }
+        log.info("Built the customer search index over {} customers ({} KB) in {} ms",
+                index.size(), index.sizeInBytes() / 1024, Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+    }
+
+    private record State(SearchIndex index, Map<Integer, Document> overlay) {
+    }
+}
@@ -0,0 +1,60 @@
+package ru.zotov.customer.search;
+
+import ru.zotov.customer.Customer;
+
+/**
+ * A customer changed since the {@link SearchIndex} was built, kept tokenized in the
+ * overlay that shadows the index; a deleted customer has no terms. {@code patch}
+ * orders overlay entries against a rebuild.
+ */
+record Document(int customerId, byte[][][] terms, long patch) {
+
+    static Document of(Customer customer, long patch) {
+        return new Document(customer.getId(), Tokenizer.fields(customer.getName(), customer.getEmail()), patch);
+    }
+
+    static Document deleted(int customerId, long patch) {
+        return new Document(customerId, null, patch);
+    }
+
+    /**
+     * @return the score of the customer for {@code query}, or zero when some token
+     * matches none of its terms
+     */
+    double score(Query query) {
+        if (terms == null || query.size() == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < query.size(); i++) {
+            byte[] token = query.token(i);
+            double tokenScore = 0;
+            for (SearchField field : SearchField.FIELDS) {
+                double best = 0;
+                for (byte[] term : terms[field.ordinal()]) {
+                    if (startsWith(term, token)) {
+                        best = Math.max(best, field.score(token.length, term.length));
+                    }
+                }
+                tokenScore += best;
+            }
+            if (tokenScore == 0) {
+                return 0;
+            }
+            total += tokenScore;
+        }
+        return total;
+    }
+
+    private static boolean startsWith(byte[] term, byte[] prefix) {
+        if (term.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (term[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
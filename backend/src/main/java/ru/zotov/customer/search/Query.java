@@ -0,0 +1,31 @@
+package ru.zotov.customer.search;
+
+import java.util.Arrays;
+
+/**
+ * A search as typed: every token must match the start of some term of the customer,
+ * in any field. Only the first {@link #MAX_TOKENS} tokens are used.
+ */
+final class Query {
+
+    static final int MAX_TOKENS = 8;
+
+    private final byte[][] tokens;
+
+    private Query(byte[][] tokens) {
+        this.tokens = tokens;
+    }
+
+    static Query parse(String text) {
+        byte[][] tokens = Tokenizer.tokens(text);
+        return new Query(tokens.length > MAX_TOKENS ? Arrays.copyOf(tokens, MAX_TOKENS) : tokens);
+    }
+
+    int size() {
+        return tokens.length;
+    }
+
+    byte[] token(int i) {
+        return tokens[i];
+    }
+}
@@ -0,0 +1,27 @@
+package ru.zotov.customer.search;
+
+/**
+ * The indexed parts of a customer. A name match ranks above a match on the local part
+ * of the email, which ranks above a match on its domain.
+ */
+enum SearchField {
+    NAME(3),
+    EMAIL_LOCAL(2),
+    EMAIL_DOMAIN(1);
+
+    static final SearchField[] FIELDS = values();
+
+    private final int weight;
+
+    SearchField(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * A query token scores the weight of the field times one plus the share of the
+     * term it covers, so an exact match scores twice a barely started one.
+     */
+    double score(int tokenLength, int termLength) {
+        return weight * (1.0 + (double) tokenLength / termLength);
+    }
+}
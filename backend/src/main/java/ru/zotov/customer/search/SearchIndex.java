@@ -0,0 +1,270 @@
+package ru.zotov.customer.search;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable inverted index over customer names and emails. Documents are numbered
+ * in customer id order; each field has a {@link TermDictionary} from terms to the
+ * documents holding them, and a forward index lists the terms of every document, so
+ * a candidate found through one token is checked against the others and scored
+ * without touching any other posting list.
+ * <p>
+ * A query is driven by its most selective token. When that token matches more than
+ * {@code maxCandidates} documents, only the best-scoring terms are expanded (exact
+ * and nearly complete ones in the heaviest fields first), which bounds the work of
+ * short, common prefixes at the cost of possibly missing weaker matches.
+ */
+final class SearchIndex {
+
+    private static final int FIELD_SHIFT = 30;
+    private static final int TERM_MASK = (1 << FIELD_SHIFT) - 1;
+    private static final int MAX_LENGTH_BUCKET = 63;
+
+    private final int[] customerIds;
+    private final TermDictionary[] fields;
+    private final int[] forwardOffsets;
+    private final int[] forwardTerms;
+
+    private SearchIndex(int[] customerIds, TermDictionary[] fields, int[] forwardOffsets, int[] forwardTerms) {
+        this.customerIds = customerIds;
+        this.fields = fields;
+        this.forwardOffsets = forwardOffsets;
+        this.forwardTerms = forwardTerms;
+    }
+
+    int size() {
+        return customerIds.length;
+    }
+
+    long sizeInBytes() {
+        long bytes = 16L + 4L * (customerIds.length + forwardOffsets.length + forwardTerms.length);
+        for (TermDictionary field : fields) {
+            bytes += field.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Offers every matching customer not rejected by {@code skipped} to {@code hits}.
+     */
+    void search(Query query, int maxCandidates, IntPredicate skipped, TopHits hits) {
+        int tokens = query.size();
+        if (tokens == 0 || customerIds.length == 0) {
+            return;
+        }
+
+        int[][] from = new int[tokens][fields.length];
+        int[][] to = new int[tokens][fields.length];
+        int driver = -1;
+        long driverMatches = Long.MAX_VALUE;
+        for (int i = 0; i < tokens; i++) {
+            long matches = 0;
+            for (int f = 0; f < fields.length; f++) {
+                TermDictionary field = fields[f];
+                from[i][f] = field.prefixStart(query.token(i));
+                to[i][f] = field.prefixEnd(query.token(i), from[i][f]);
+                matches += field.postingsStart(to[i][f]) - field.postingsStart(from[i][f]);
+            }
+            if (matches == 0) {
+                return;
+            }
+            if (matches < driverMatches) {
+                driver = i;
+                driverMatches = matches;
+            }
+        }
+
+        int[] candidates = driverMatches <= maxCandidates
+                ? allCandidates(from[driver], to[driver], (int) driverMatches)
+                : bestCandidates(query.token(driver).length, from[driver], to[driver], maxCandidates);
+        double[] best = new double[tokens * fields.length];
+        for (int document : candidates) {
+            int customerId = customerIds[document];
+            if (skipped.test(customerId)) {
+                continue;
+            }
+            double score = score(document, query, from, to, best);
+            if (score > 0) {
+                hits.offer(customerId, score);
+            }
+        }
+    }
+
+    private int[] allCandidates(int[] from, int[] to, int matches) {
+        int[] candidates = new int[matches];
+        int count = 0;
+        for (int f = 0; f < fields.length; f++) {
+            TermDictionary field = fields[f];
+            for (int p = field.postingsStart(from[f]); p < field.postingsStart(to[f]); p++) {
+                candidates[count++] = field.posting(p);
+            }
+        }
+        return distinct(candidates, count);
+    }
+
+    /**
+     * Expands the terms of the driving token best score first, grouping them by field
+     * and length, until {@code maxCandidates} postings are collected.
+     */
+    private int[] bestCandidates(int tokenLength, int[] from, int[] to, int maxCandidates) {
+        int buckets = MAX_LENGTH_BUCKET + 1;
+        long[] postings = new long[fields.length * buckets];
+        for (int f = 0; f < fields.length; f++) {
+            TermDictionary field = fields[f];
+            for (int t = from[f]; t < to[f]; t++) {
+                postings[f * buckets + lengthBucket(field, t)] += field.postingsStart(t + 1) - field.postingsStart(t);
+            }
+        }
+
+        Integer[] order = new Integer[postings.length];
+        for (int b = 0; b < order.length; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(bucketScore(b, tokenLength), bucketScore(a, tokenLength)));
+        boolean[] expanded = new boolean[postings.length];
+        long selected = 0;
+        for (int b : order) {
+            if (selected >= maxCandidates) {
+                break;
+            }
+            if (postings[b] > 0) {
+                expanded[b] = true;
+                selected += postings[b];
+            }
+        }
+
+        int[] candidates = new int[maxCandidates];
+        int count = 0;
+        for (int b : order) {
+            if (!expanded[b]) {
+                continue;
+            }
+            int f = b / buckets;
+            TermDictionary field = fields[f];
+            for (int t = from[f]; t < to[f] && count < maxCandidates; t++) {
+                if (f * buckets + lengthBucket(field, t) != b) {
+                    continue;
+                }
+                int end = Math.min(field.postingsStart(t + 1), field.postingsStart(t) + maxCandidates - count);
+                for (int p = field.postingsStart(t); p < end; p++) {
+                    candidates[count++] = field.posting(p);
+                }
+            }
+        }
+        return distinct(candidates, count);
+    }
+
+    private double bucketScore(int bucket, int tokenLength) {
+        int buckets = MAX_LENGTH_BUCKET + 1;
+        int length = Math.max(tokenLength, bucket % buckets);
+        return SearchField.FIELDS[bucket / buckets].score(tokenLength, length);
+    }
+
+    private static int lengthBucket(TermDictionary field, int term) {
+        return Math.min(field.termLength(term), MAX_LENGTH_BUCKET);
+    }
+
+    /**
+     * A token scores the sum over fields of its best matching term in each; the
+     * document scores the sum over tokens, or zero when some token matches nothing.
+     */
+    private double score(int document, Query query, int[][] from, int[][] to, double[] best) {
+        Arrays.fill(best, 0);
+        for (int k = forwardOffsets[document]; k < forwardOffsets[document + 1]; k++) {
+            int f = forwardTerms[k] >>> FIELD_SHIFT;
+            int term = forwardTerms[k] & TERM_MASK;
+            for (int i = 0; i < query.size(); i++) {
+                if (term >= from[i][f] && term < to[i][f]) {
+                    double score = SearchField.FIELDS[f].score(query.token(i).length, fields[f].termLength(term));
+                    int slot = i * fields.length + f;
+                    best[slot] = Math.max(best[slot], score);
+                }
+            }
+        }
+
+        double total = 0;
+        for (int i = 0; i < query.size(); i++) {
+            double tokenScore = 0;
+            for (int f = 0; f < fields.length; f++) {
+                tokenScore += best[i * fields.length + f];
+            }
+            if (tokenScore == 0) {
+                return 0;
+            }
+            total += tokenScore;
+        }
+        return total;
+    }
+
+    private static int[] distinct(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    /**
+     * Takes customers in ascending id order.
+     */
+    static final class Builder {
+
+        private final TermDictionary.Builder[] fields = new TermDictionary.Builder[SearchField.FIELDS.length];
+        private int[] customerIds = new int[1 << 10];
+        private int[] termCounts = new int[1 << 10];
+        private int size;
+
+        Builder() {
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = new TermDictionary.Builder();
+            }
+        }
+
+        Builder add(int customerId, String name, String email) {
+            if (size > 0 && customerId <= customerIds[size - 1]) {
+                throw new IllegalArgumentException(
+                        "customer %d added after customer %d".formatted(customerId, customerIds[size - 1]));
+            }
+            if (size == customerIds.length) {
+                customerIds = Arrays.copyOf(customerIds, size * 2);
+                termCounts = Arrays.copyOf(termCounts, size * 2);
+            }
+
+            byte[][][] terms = Tokenizer.fields(name, email);
+            int count = 0;
+            for (int f = 0; f < fields.length; f++) {
+                for (byte[] term : terms[f]) {
+                    fields[f].add(term, size);
+                }
+                count += terms[f].length;
+            }
+            customerIds[size] = customerId;
+            termCounts[size] = count;
+            size++;
+            return this;
+        }
+
+        SearchIndex build() {
+            int[] forwardOffsets = new int[size + 1];
+            for (int d = 0; d < size; d++) {
+                forwardOffsets[d + 1] = forwardOffsets[d] + termCounts[d];
+            }
+            termCounts = null;
+
+            int[] forwardTerms = new int[forwardOffsets[size]];
+            int[] next = Arrays.copyOf(forwardOffsets, size);
+            TermDictionary[] dictionaries = new TermDictionary[fields.length];
+            for (int f = 0; f < fields.length; f++) {
+                int field = f;
+                dictionaries[f] = fields[f].build((document, term) ->
+                        forwardTerms[next[document]++] = field << FIELD_SHIFT | term);
+                fields[f] = null;
+            }
+            return new SearchIndex(Arrays.copyOf(customerIds, size), dictionaries, forwardOffsets, forwardTerms);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.zotov.customer.search;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * {@code max-candidates} bounds the documents scored per query; {@code rebuild-after}
+ * is how many changed customers the overlay may hold before the index is rebuilt.
+ */
+@ConfigurationProperties(prefix = "customer.search")
+public record SearchProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("5000") int maxCandidates,
+        @DefaultValue("10000") int rebuildAfter
+) {
+}
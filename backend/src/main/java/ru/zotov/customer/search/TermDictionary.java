@@ -0,0 +1,273 @@
+package ru.zotov.customer.search;
+
+import java.util.Arrays;
+
+/**
+ * The terms of one field in byte order (UTF-8, so code point order), each with the
+ * ascending ordinals of the documents holding it. Everything is packed into flat
+ * arrays: term {@code t} is {@code terms[termOffsets[t] .. termOffsets[t + 1])} and
+ * its postings are {@code postings[postingOffsets[t] .. postingOffsets[t + 1])}.
+ * Terms sharing a prefix are adjacent, so a prefix resolves to a range of term
+ * numbers with two binary searches, and the postings of that range are adjacent too.
+ */
+final class TermDictionary {
+
+    private final byte[] terms;
+    private final int[] termOffsets;
+    private final int[] postings;
+    private final int[] postingOffsets;
+
+    private TermDictionary(byte[] terms, int[] termOffsets, int[] postings, int[] postingOffsets) {
+        this.terms = terms;
+        this.termOffsets = termOffsets;
+        this.postings = postings;
+        this.postingOffsets = postingOffsets;
+    }
+
+    int size() {
+        return termOffsets.length - 1;
+    }
+
+    int termLength(int term) {
+        return termOffsets[term + 1] - termOffsets[term];
+    }
+
+    /**
+     * @return where the postings of {@code term} start; {@code postingsStart(term + 1)}
+     * is where they end
+     */
+    int postingsStart(int term) {
+        return postingOffsets[term];
+    }
+
+    int posting(int index) {
+        return postings[index];
+    }
+
+    /**
+     * @return the first term starting with {@code prefix}, or where it would be
+     */
+    int prefixStart(byte[] prefix) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first term from {@code from} on that does not start with {@code prefix}
+     */
+    int prefixEnd(byte[] prefix, int from) {
+        int low = from;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(middle, prefix) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    long sizeInBytes() {
+        return 16L + terms.length + 4L * (termOffsets.length + postings.length + postingOffsets.length);
+    }
+
+    /**
+     * @return zero when the term starts with the prefix, otherwise how the term orders
+     * against it
+     */
+    private int comparePrefix(int term, byte[] prefix) {
+        int offset = termOffsets[term];
+        int length = termOffsets[term + 1] - offset;
+        int common = Math.min(length, prefix.length);
+        int mismatch = Arrays.mismatch(terms, offset, offset + common, prefix, 0, common);
+        if (mismatch >= 0) {
+            return Byte.compareUnsigned(terms[offset + mismatch], prefix[mismatch]);
+        }
+        return length >= prefix.length ? 0 : -1;
+    }
+
+    @FunctionalInterface
+    interface PostingSink {
+        void accept(int document, int term);
+    }
+
+    /**
+     * Collects term occurrences, which must be added in ascending document order,
+     * into one byte arena, and sorts them once with a multi-key quicksort when built;
+     * no per-term objects are created, which keeps building ten million customers
+     * within a few hundred megabytes.
+     */
+    static final class Builder {
+
+        private static final int INSERTION_SORT_THRESHOLD = 12;
+
+        private byte[] arena = new byte[1 << 12];
+        private int arenaSize;
+        private int[] starts = new int[1 << 10];
+        private int[] documents = new int[1 << 10];
+        private int count;
+
+        void add(byte[] term, int document) {
+            if (arenaSize + term.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + term.length));
+            }
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                documents = Arrays.copyOf(documents, documents.length * 2);
+            }
+            System.arraycopy(term, 0, arena, arenaSize, term.length);
+            starts[count] = arenaSize;
+            documents[count] = document;
+            arenaSize += term.length;
+            count++;
+            starts[count] = arenaSize;
+        }
+
+        /**
+         * @param sink gets every (document, term number) pair, grouped by term
+         */
+        TermDictionary build(PostingSink sink) {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            sort(order, 0, count, 0);
+
+            byte[] terms = new byte[arenaSize];
+            int termBytes = 0;
+            int[] termOffsets = new int[count + 1];
+            int[] postings = new int[count];
+            int[] postingOffsets = new int[count + 1];
+            int termCount = 0;
+            int postingCount = 0;
+            for (int i = 0; i < count; ) {
+                int j = i + 1;
+                while (j < count && sameTerm(order[i], order[j])) {
+                    j++;
+                }
+                // occurrences were added in document order
+                Arrays.sort(order, i, j);
+
+                int length = starts[order[i] + 1] - starts[order[i]];
+                System.arraycopy(arena, starts[order[i]], terms, termBytes, length);
+                termBytes += length;
+                int previous = -1;
+                for (int k = i; k < j; k++) {
+                    int document = documents[order[k]];
+                    if (document != previous) {
+                        postings[postingCount++] = document;
+                        sink.accept(document, termCount);
+                        previous = document;
+                    }
+                }
+                termCount++;
+                termOffsets[termCount] = termBytes;
+                postingOffsets[termCount] = postingCount;
+                i = j;
+            }
+
+            arena = null;
+            starts = null;
+            documents = null;
+            return new TermDictionary(
+                    Arrays.copyOf(terms, termBytes),
+                    Arrays.copyOf(termOffsets, termCount + 1),
+                    Arrays.copyOf(postings, postingCount),
+                    Arrays.copyOf(postingOffsets, termCount + 1));
+        }
+
+        private int byteAt(int occurrence, int depth) {
+            int position = starts[occurrence] + depth;
+            return position < starts[occurrence + 1] ? arena[position] & 0xff : -1;
+        }
+
+        private boolean sameTerm(int a, int b) {
+            return Arrays.equals(arena, starts[a], starts[a + 1], arena, starts[b], starts[b + 1]);
+        }
+
+        /**
+         * Three-way radix quicksort on the byte at {@code depth}; recurses into the two
+         * smaller partitions and loops on the largest, so the stack stays shallow.
+         */
+        private void sort(int[] order, int from, int to, int depth) {
+            while (to - from > INSERTION_SORT_THRESHOLD) {
+                int pivot = byteAt(order[from + (to - from) / 2], depth);
+                int less = from;
+                int greater = to - 1;
+                int i = from;
+                while (i <= greater) {
+                    int value = byteAt(order[i], depth);
+                    if (value < pivot) {
+                        swap(order, less++, i++);
+                    } else if (value > pivot) {
+                        swap(order, i, greater--);
+                    } else {
+                        i++;
+                    }
+                }
+
+                int lowSize = less - from;
+                int equalSize = pivot < 0 ? 0 : greater + 1 - less;
+                int highSize = to - greater - 1;
+                if (lowSize >= equalSize && lowSize >= highSize) {
+                    sortEqual(order, less, greater + 1, depth, pivot);
+                    sort(order, greater + 1, to, depth);
+                    to = less;
+                } else if (highSize >= equalSize) {
+                    sort(order, from, less, depth);
+                    sortEqual(order, less, greater + 1, depth, pivot);
+                    from = greater + 1;
+                } else {
+                    sort(order, from, less, depth);
+                    sort(order, greater + 1, to, depth);
+                    from = less;
+                    to = greater + 1;
+                    depth++;
+                }
+            }
+            insertionSort(order, from, to, depth);
+        }
+
+        private void sortEqual(int[] order, int from, int to, int depth, int pivot) {
+            // terms that ended at this depth are all equal
+            if (pivot >= 0) {
+                sort(order, from, to, depth + 1);
+            }
+        }
+
+        private void insertionSort(int[] order, int from, int to, int depth) {
+            for (int i = from + 1; i < to; i++) {
+                int occurrence = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], occurrence, depth) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = occurrence;
+            }
+        }
+
+        private int compare(int a, int b, int depth) {
+            return Arrays.compareUnsigned(
+                    arena, starts[a] + depth, starts[a + 1],
+                    arena, starts[b] + depth, starts[b + 1]);
+        }
+
+        private static void swap(int[] order, int i, int j) {
+            int value = order[i];
+            order[i] = order[j];
+            order[j] = value;
+        }
+    }
+}
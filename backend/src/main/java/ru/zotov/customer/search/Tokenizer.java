@@ -0,0 +1,65 @@
+package ru.zotov.customer.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lower-cased runs of letters and digits, as UTF-8. Names and
+ * queries are tokenized the same way; emails are split at the last {@code @} into
+ * the local part and the domain first.
+ */
+final class Tokenizer {
+
+    private static final byte[][] NONE = new byte[0][];
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @return distinct tokens in order of appearance
+     */
+    static byte[][] tokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return NONE;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            tokens.add(lower.substring(start));
+        }
+
+        byte[][] encoded = new byte[tokens.size()][];
+        int i = 0;
+        for (String token : tokens) {
+            encoded[i++] = token.getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * @return the terms of a customer, indexed by {@link SearchField#ordinal()}
+     */
+    static byte[][][] fields(String name, String email) {
+        byte[][][] fields = new byte[SearchField.FIELDS.length][][];
+        fields[SearchField.NAME.ordinal()] = tokens(name);
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        fields[SearchField.EMAIL_LOCAL.ordinal()] = tokens(at < 0 ? email : email.substring(0, at));
+        fields[SearchField.EMAIL_DOMAIN.ordinal()] = at < 0 ? NONE : tokens(email.substring(at + 1));
+        return fields;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.zotov.customer.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The best {@code limit} customers offered so far, by score and then by id.
+ */
+final class TopHits {
+
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingInt(Hit::customerId);
+
+    private final int limit;
+    private final PriorityQueue<Hit> worstFirst;
+
+    TopHits(int limit) {
+        this.limit = limit;
+        this.worstFirst = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+    }
+
+    void offer(int customerId, double score) {
+        if (worstFirst.size() < limit) {
+            worstFirst.add(new Hit(customerId, score));
+            return;
+        }
+        Hit worst = worstFirst.peek();
+        if (score > worst.score() || score == worst.score() && customerId < worst.customerId()) {
+            worstFirst.poll();
+            worstFirst.add(new Hit(customerId, score));
+        }
+    }
+
+    List<Hit> hits() {
+        List<Hit> hits = new ArrayList<>(worstFirst);
+        hits.sort(BEST_FIRST);
+        return hits;
+    }
+
+    record Hit(int customerId, double score) {
+    }
+}
@@ -0,0 +1,24 @@
+package ru.zotov.customer.shadow;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.shadow.enabled", matchIfMissing = true)
+public class ShadowConfig {
+
+    @Bean
+    public ShadowTraffic shadowTraffic(ListableBeanFactory beanFactory,
+                                       ShadowProperties properties,
+                                       MeterRegistry meterRegistry) {
+        return new ShadowTraffic(beanFactory, properties, meterRegistry);
+    }
+
+    @Bean
+    public ShadowEndpoint shadowEndpoint(ShadowTraffic shadowTraffic, MeterRegistry meterRegistry) {
+        return new ShadowEndpoint(shadowTraffic, meterRegistry);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.zotov.customer.shadow;
+
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Serves every call from the delegate and hands a sample of lookups to
+ * {@link ShadowTraffic} to repeat against the secondary. Full listings and writes
+ * are never shadowed: the former would double the heaviest read, and the latter
+ * would change the data the comparison runs on.
+ */
+public class ShadowCustomerDao implements CustomerDao {
+
+    private static final Comparator<Customer> BY_ID =
+            Comparator.comparing(Customer::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final CustomerDao delegate;
+    private final ShadowTraffic shadowTraffic;
+
+    public ShadowCustomerDao(CustomerDao delegate, ShadowTraffic shadowTraffic) {
+        this.delegate = delegate;
+        this.shadowTraffic = shadowTraffic;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        return shadow("by-id", dao -> dao.selectCustomerById(customerId),
+                customer -> customer.map(ShadowCustomerDao::copy), Objects::equals);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        List<Integer> ids = List.copyOf(customerIds);
+        return shadow("by-ids", dao -> dao.selectCustomersByIds(ids),
+                customers -> customers.stream().map(ShadowCustomerDao::copy).toList(),
+                ShadowCustomerDao::sameIgnoringOrder);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return shadow("by-email", dao -> dao.selectCustomerByEmail(email),
+                customer -> customer.map(ShadowCustomerDao::copy), Objects::equals);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return shadow("exists-by-email", dao -> dao.existsCustomerWithEmail(email),
+                Function.identity(), Objects::equals);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        return shadow("exists-by-id", dao -> dao.existsCustomerWithId(customerId),
+                Function.identity(), Objects::equals);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        delegate.deleteCustomerById(customerId);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        delegate.updateCustomer(update);
+    }
+
+    /**
+     * @param snapshot copies the primary's result, as callers go on to modify the
+     *                 customers they read
+     */
+    private <T> T shadow(String operation,
+                         Function<CustomerDao, T> read,
+                         Function<T, T> snapshot,
+                         BiPredicate<T, T> same) {
+        ShadowTraffic.Target target = shadowTraffic.sample();
+        if (target == null) {
+            return read.apply(delegate);
+        }
+        long start = System.nanoTime();
+        T result = read.apply(delegate);
+        long primaryNanos = System.nanoTime() - start;
+        shadowTraffic.compare(target, operation, delegate, primaryNanos, snapshot.apply(result), read, same);
+        return result;
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    private static boolean sameIgnoringOrder(List<Customer> primary, List<Customer> secondary) {
+        return primary.size() == secondary.size()
+                && primary.stream().sorted(BY_ID).toList().equals(secondary.stream().sorted(BY_ID).toList());
+    }
+}
@@ -0,0 +1,94 @@
+package ru.zotov.customer.shadow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /actuator/shadow} shows where reads are shadowed to and how the
+ * secondary compared, per operation; {@code POST /actuator/shadow} with
+ * {@code {"secondary": "jpa_repository", "percentage": 5}} starts shadowing to
+ * another DAO, and {@code DELETE /actuator/shadow} stops. Served on the management
+ * port, which listens on loopback only.
+ */
+@Endpoint(id = "shadow")
+public class ShadowEndpoint {
+
+    private final ShadowTraffic shadowTraffic;
+    private final MeterRegistry meterRegistry;
+
+    public ShadowEndpoint(ShadowTraffic shadowTraffic, MeterRegistry meterRegistry) {
+        this.shadowTraffic = shadowTraffic;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ReadOperation
+    public ShadowReport shadow() {
+        ShadowTraffic.Target target = shadowTraffic.target();
+        Map<String, Map<String, OperationSummary>> secondaries = new TreeMap<>();
+        for (Counter counter : meterRegistry.find("customer.shadow.reads").counters()) {
+            summary(secondaries, counter.getId().getTag("secondary"), counter.getId().getTag("operation"))
+                    .outcomes().merge(counter.getId().getTag("outcome"), (long) counter.count(), Long::sum);
+        }
+        for (Timer timer : meterRegistry.find("customer.shadow.latency").timers()) {
+            OperationSummary summary = summary(secondaries,
+                    timer.getId().getTag("secondary"), timer.getId().getTag("operation"));
+            summary.latency().put(timer.getId().getTag("side"), latency(timer));
+        }
+        return new ShadowReport(target.secondary(), target.percentage(),
+                shadowTraffic.candidates(), secondaries);
+    }
+
+    @WriteOperation
+    public ShadowReport shadowTo(String secondary, double percentage) {
+        shadowTraffic.shadowTo(secondary, percentage);
+        return shadow();
+    }
+
+    @DeleteOperation
+    public void off() {
+        shadowTraffic.off();
+    }
+
+    private static OperationSummary summary(Map<String, Map<String, OperationSummary>> secondaries,
+                                            String secondary,
+                                            String operation) {
+        return secondaries.computeIfAbsent(secondary, s -> new TreeMap<>())
+                .computeIfAbsent(operation, o -> new OperationSummary(new TreeMap<>(), new TreeMap<>()));
+    }
+
+    private static Latency latency(Timer timer) {
+        double p50 = 0;
+        double p99 = 0;
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == 0.5) {
+                p50 = value.value(TimeUnit.MILLISECONDS);
+            } else if (value.percentile() == 0.99) {
+                p99 = value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return new Latency(timer.count(), timer.mean(TimeUnit.MILLISECONDS), p50, p99);
+    }
+
+    public record ShadowReport(String secondary,
+                               double percentage,
+                               List<String> candidates,
+                               Map<String, Map<String, OperationSummary>> secondaries) {
+    }
+
+    public record OperationSummary(Map<String, Long> outcomes, Map<String, Latency> latency) {
+    }
+
+    public record Latency(long count, double meanMillis, double p50Millis, double p99Millis) {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.zotov.customer.shadow;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * {@code secondary} is the bean name of the {@code CustomerDao} to shadow reads to,
+ * e.g. {@code jpa_repository}; blank shadows nothing. Both can be changed at runtime
+ * through {@code /actuator/shadow}.
+ */
+@ConfigurationProperties(prefix = "customer.shadow")
+public record ShadowProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("") String secondary,
+        @DefaultValue("0") double percentage,
+        @DefaultValue("2") int threads,
+        @DefaultValue("1000") int queueCapacity,
+        @DefaultValue("2s") Duration timeout
+) {
+}
@@ -0,0 +1,208 @@
+package ru.zotov.customer.shadow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.exception.RequestValidationException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Repeats a share of customer reads against a secondary {@link CustomerDao} on a
+ * small executor of its own, after the primary has answered, and compares the
+ * results. Latency of both sides of every shadowed read is recorded in
+ * {@code customer.shadow.latency}, and the comparison in
+ * {@code customer.shadow.reads}. A result that differs because the customer
+ * changed in between is told apart from a real mismatch by reading the primary
+ * again. Reads that find the executor saturated are dropped, not queued.
+ */
+public class ShadowTraffic implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ShadowTraffic.class);
+
+    /**
+     * The store that is shadowed and what serves requests in front of it.
+     */
+    static final Set<String> PRIMARY_DAOS = Set.of("customer_store", "customer_dao");
+
+    enum Outcome {
+        MATCH, CHANGED, MISMATCH, ERROR, DROPPED;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    public record Target(String secondary, CustomerDao dao, double percentage) {
+    }
+
+    private static final Target NONE = new Target("", null, 0);
+
+    private final ListableBeanFactory beanFactory;
+    private final ShadowProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private volatile Target target = NONE;
+
+    public ShadowTraffic(ListableBeanFactory beanFactory, ShadowProperties properties, MeterRegistry meterRegistry) {
+        this.beanFactory = beanFactory;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.threads(), properties.threads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()), runnable -> {
+                    Thread thread = new Thread(runnable, "customer-shadow-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * The DAOs are only all known once every singleton exists.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!properties.secondary().isBlank()) {
+            shadowTo(properties.secondary(), properties.percentage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public Target target() {
+        return target;
+    }
+
+    public synchronized Target shadowTo(String secondary, double percentage) {
+        if (percentage < 0 || percentage > 100) {
+            throw new RequestValidationException("percentage must be between 0 and 100");
+        }
+        List<String> candidates = candidates();
+        if (!candidates.contains(secondary)) {
+            throw new RequestValidationException(
+                    "no customer DAO named %s, expected one of %s".formatted(secondary, candidates));
+        }
+        target = new Target(secondary, beanFactory.getBean(secondary, CustomerDao.class), percentage);
+        log.info("Shadowing {}% of customer reads to {}", percentage, secondary);
+        return target;
+    }
+
+    public synchronized void off() {
+        if (target != NONE) {
+            log.info("Stopped shadowing customer reads to {}", target.secondary());
+        }
+        target = NONE;
+    }
+
+    /**
+     * Names of every {@link CustomerDao} bean but the primary ones. Lazy DAOs are
+     * only created once shadowed to, not by being listed.
+     */
+    public List<String> candidates() {
+        return Arrays.stream(beanFactory.getBeanNamesForType(CustomerDao.class))
+                .filter(name -> !PRIMARY_DAOS.contains(name))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * @return the target to shadow the read about to be made to, or {@code null}
+     */
+    Target sample() {
+        Target current = target;
+        if (current.dao() == null || current.percentage() <= 0) {
+            return null;
+        }
+        return current.percentage() >= 100 || ThreadLocalRandom.current().nextDouble() * 100 < current.percentage()
+                ? current
+                : null;
+    }
+
+    /**
+     * @param primaryResult a copy of what the primary returned, safe from changes by
+     *                      the caller
+     */
+    <T> void compare(Target target,
+                     String operation,
+                     CustomerDao primary,
+                     long primaryNanos,
+                     T primaryResult,
+                     Function<CustomerDao, T> read,
+                     BiPredicate<T, T> same) {
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                T secondaryResult;
+                try {
+                    secondaryResult = Deadline.within(properties.timeout(), () -> read.apply(target.dao()));
+                } catch (RuntimeException e) {
+                    count(target, operation, Outcome.ERROR);
+                    log.debug("Shadow {} on {} failed", operation, target.secondary(), e);
+                    return;
+                }
+                latency(target, operation, "primary").record(primaryNanos, TimeUnit.NANOSECONDS);
+                latency(target, operation, "secondary").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                if (same.test(primaryResult, secondaryResult)) {
+                    count(target, operation, Outcome.MATCH);
+                    return;
+                }
+                T current;
+                try {
+                    current = Deadline.within(properties.timeout(), () -> read.apply(primary));
+                } catch (RuntimeException e) {
+                    current = primaryResult;
+                }
+                if (!same.test(primaryResult, current) && same.test(current, secondaryResult)) {
+                    count(target, operation, Outcome.CHANGED);
+                    return;
+                }
+                count(target, operation, Outcome.MISMATCH);
+                log.warn("Shadow {} on {} differs: primary returned {}, secondary returned {}",
+                        operation, target.secondary(), primaryResult, secondaryResult);
+            });
+        } catch (RejectedExecutionException e) {
+            count(target, operation, Outcome.DROPPED);
+        }
+    }
+
+    private Timer latency(Target target, String operation, String side) {
+        return Timer.builder("customer.shadow.latency")
+                .description("Latency of shadowed customer reads on the primary and the secondary DAO")
+                .tag("secondary", target.secondary())
+                .tag("operation", operation)
+                .tag("side", side)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private void count(Target target, String operation, Outcome outcome) {
+        Counter.builder("customer.shadow.reads")
+                .description("Shadowed customer reads by how the secondary's result compared")
+                .tag("secondary", target.secondary())
+                .tag("operation", operation)
+                .tag("outcome", outcome.tag())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.zotov.customer.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.customer.Customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Email to customer id, for every shard, on the primary database. The id leads to the
+ * shard through {@link ShardDirectory}, so entries stay valid when buckets move and
+ * an email check is one lookup instead of one per shard. Emails are kept normalized
+ * ({@code lower(btrim(email))}), so the primary key rejects the same duplicates the
+ * unique index of a single database does.
+ */
+public class EmailRouteIndex {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmailRouteIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean exists(String email) {
+        var sql = """
+                SELECT count(customer_id)
+                FROM customer_email_route
+                WHERE email = lower(btrim(?))
+                """;
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
+        return count != null && count > 0;
+    }
+
+    public Optional<Integer> customerId(String email) {
+        var sql = """
+                SELECT customer_id
+                FROM customer_email_route
+                WHERE email = lower(btrim(?))
+                """;
+        return jdbcTemplate.queryForList(sql, Integer.class, email).stream().findFirst();
+    }
+
+    /**
+     * Fails with a {@code DuplicateKeyException} when an email is already taken.
+     */
+    public void add(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer_email_route (email, customer_id) VALUES (lower(btrim(?)), ?)
+                """;
+        jdbcTemplate.batchUpdate(sql, customers, INSERT_BATCH_SIZE, (ps, customer) -> {
+            ps.setString(1, customer.getEmail());
+            ps.setInt(2, customer.getId());
+        });
+    }
+
+    public void changeEmail(Integer customerId, String email) {
+        var sql = """
+                UPDATE customer_email_route SET email = lower(btrim(?)) WHERE customer_id = ?
+                """;
+        jdbcTemplate.update(sql, email, customerId);
+    }
+
+    public void remove(Collection<Integer> customerIds) {
+        var sql = """
+                DELETE FROM customer_email_route WHERE customer_id = ANY(?)
+                """;
+        jdbcTemplate.update(sql, ps -> ps.setArray(1,
+                ps.getConnection().createArrayOf("int4", customerIds.toArray())));
+    }
+}
@@ -0,0 +1,204 @@
+package ru.zotov.customer.shard;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps customers to shards. A customer's bucket is {@code id % BUCKETS} and never
+ * changes; the {@code customer_shard_bucket} table on the primary database assigns
+ * every bucket to a shard. Each node keeps a copy of the table and reloads it every
+ * {@code refresh-interval}, so moving a bucket only needs that table updated.
+ */
+public class ShardDirectory {
+
+    public static final int BUCKETS = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(ShardDirectory.class);
+
+    /**
+     * Reads of a bucket keep going to its current shard in every state; writes are
+     * refused while it is {@code FROZEN}.
+     */
+    public enum State {
+        ACTIVE, MIGRATING, FROZEN
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int shardCount;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Assignment assignment;
+
+    public ShardDirectory(JdbcTemplate jdbcTemplate, int shardCount, Duration refreshInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardCount = shardCount;
+        this.refreshInterval = refreshInterval;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-shard-directory");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static int bucketOf(int customerId) {
+        return Math.floorMod(customerId, BUCKETS);
+    }
+
+    /**
+     * On the first start with sharding enabled every bucket is assigned to the primary
+     * database, where all existing customers are, and the email index is built from
+     * them. Buckets are spread over the other shards by {@link ShardRebalancer}.
+     */
+    @PostConstruct
+    void start() {
+        Integer assigned = jdbcTemplate.queryForObject("SELECT count(*) FROM customer_shard_bucket", Integer.class);
+        if (assigned == null || assigned == 0) {
+            var sql = """
+                    INSERT INTO customer_shard_bucket (bucket, shard)
+                    SELECT bucket, 0 FROM generate_series(0, ?) AS bucket
+                    ON CONFLICT (bucket) DO NOTHING
+                    """;
+            jdbcTemplate.update(sql, BUCKETS - 1);
+            jdbcTemplate.update("""
+                    INSERT INTO customer_email_route (email, customer_id)
+                    SELECT lower(btrim(email)), id FROM customer
+                    ON CONFLICT DO NOTHING
+                    """);
+            log.info("Assigned all {} customer buckets to the primary database", BUCKETS);
+        }
+
+        refresh();
+        long interval = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    public Assignment assignment() {
+        return assignment;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public void refresh() {
+        int[] shards = new int[BUCKETS];
+        State[] states = new State[BUCKETS];
+        int[] targets = new int[BUCKETS];
+        var sql = """
+                SELECT bucket, shard, state, target_shard FROM customer_shard_bucket
+                """;
+        jdbcTemplate.query(sql, rs -> {
+            int bucket = rs.getInt("bucket");
+            shards[bucket] = rs.getInt("shard");
+            states[bucket] = State.valueOf(rs.getString("state"));
+            int target = rs.getInt("target_shard");
+            targets[bucket] = rs.wasNull() ? -1 : target;
+        });
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (states[bucket] == null) {
+                throw new IllegalStateException("customer bucket %d has no shard".formatted(bucket));
+            }
+            if (shards[bucket] >= shardCount || targets[bucket] >= shardCount) {
+                throw new IllegalStateException(
+                        "customer bucket %d is assigned to shard %d, but only %d shards are configured"
+                                .formatted(bucket, Math.max(shards[bucket], targets[bucket]), shardCount));
+            }
+        }
+        assignment = new Assignment(shards, states, targets);
+    }
+
+    /**
+     * Records the new state of the given buckets and reloads the assignment; other
+     * nodes see it within {@code refresh-interval}.
+     */
+    void update(int[] buckets, int shard, State state, Integer targetShard) {
+        var sql = """
+                UPDATE customer_shard_bucket SET shard = ?, state = ?, target_shard = ?
+                WHERE bucket = ANY(?)
+                """;
+        jdbcTemplate.update(sql, ps -> {
+            ps.setInt(1, shard);
+            ps.setString(2, state.name());
+            ps.setObject(3, targetShard);
+            ps.setArray(4, ps.getConnection().createArrayOf("int4", Arrays.stream(buckets).boxed().toArray()));
+        });
+        refresh();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload the customer shard directory, keeping the previous one", e);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the bucket table. Operations spanning several shards
+     * take one snapshot, so a bucket moving in between is never read twice or missed.
+     */
+    public static final class Assignment {
+
+        private final int[] shards;
+        private final State[] states;
+        private final int[] targets;
+
+        Assignment(int[] shards, State[] states, int[] targets) {
+            this.shards = shards;
+            this.states = states;
+            this.targets = targets;
+        }
+
+        public int shardOf(int customerId) {
+            return shards[bucketOf(customerId)];
+        }
+
+        public boolean isOwnedBy(int shard, int customerId) {
+            return shardOf(customerId) == shard;
+        }
+
+        public boolean isWritable(int customerId) {
+            return states[bucketOf(customerId)] != State.FROZEN;
+        }
+
+        public int shardForWrite(int customerId) {
+            if (!isWritable(customerId)) {
+                throw new ResourceUnavailableException(
+                        "customer with ID: %d is being moved to another shard, retry shortly".formatted(customerId));
+            }
+            return shardOf(customerId);
+        }
+
+        public int shardOfBucket(int bucket) {
+            return shards[bucket];
+        }
+
+        public State stateOfBucket(int bucket) {
+            return states[bucket];
+        }
+
+        /**
+         * @return the shard a non-active bucket is being moved to, or -1
+         */
+        public int targetOfBucket(int bucket) {
+            return targets[bucket];
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ru.zotov.customer.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.exception.RequestValidationException;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Moves buckets between shards while the application keeps serving them:
+ * <ol>
+ *     <li>{@code MIGRATING}: the bucket is copied to the target shard while it still
+ *     takes writes on the source;</li>
+ *     <li>{@code FROZEN}: after {@code freeze-grace}, once every node has stopped
+ *     writing to it, the target is reconciled with the source, which only touches the
+ *     rows changed since the copy;</li>
+ *     <li>the bucket is assigned to the target, and after another
+ *     {@code freeze-grace} its rows are deleted from the source.</li>
+ * </ol>
+ * Writes to a bucket are refused with 503 only during the freeze. A failed move puts
+ * the bucket back on its source shard. Deleting moved rows records no change, so
+ * change feed clients only see customers being moved when their rows differ.
+ */
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final ShardSet shards;
+    private final ShardDirectory directory;
+    private final CustomerRowMapper customerRowMapper;
+    private final Duration freezeGrace;
+    private final int copyBatchSize;
+    private final int bucketsPerMove;
+    private final ReentrantLock moveLock = new ReentrantLock();
+
+    public ShardRebalancer(ShardSet shards,
+                           ShardDirectory directory,
+                           CustomerRowMapper customerRowMapper,
+                           Duration freezeGrace,
+                           int copyBatchSize,
+                           int bucketsPerMove) {
+        this.shards = shards;
+        this.directory = directory;
+        this.customerRowMapper = customerRowMapper;
+        this.freezeGrace = freezeGrace;
+        this.copyBatchSize = copyBatchSize;
+        this.bucketsPerMove = bucketsPerMove;
+    }
+
+    public record Move(int fromShard, int toShard, int buckets, long rows) {
+    }
+
+    /**
+     * Moves buckets from shards above their fair share to shards below it until every
+     * shard owns {@code BUCKETS / shards} of them (give or take one).
+     */
+    public List<Move> rebalance() {
+        moveLock.lock();
+        try {
+            List<Move> moves = new ArrayList<>();
+            int shardCount = shards.size();
+            while (true) {
+                List<List<Integer>> owned = bucketsByShard(directory.assignment());
+                int donor = -1;
+                int receiver = -1;
+                for (int shard = 0; shard < shardCount; shard++) {
+                    int fairShare = fairShare(shard, shardCount);
+                    if (donor < 0 && owned.get(shard).size() > fairShare) {
+                        donor = shard;
+                    }
+                    if (receiver < 0 && owned.get(shard).size() < fairShare) {
+                        receiver = shard;
+                    }
+                }
+                if (donor < 0 || receiver < 0) {
+                    return moves;
+                }
+
+                int count = Math.min(bucketsPerMove, Math.min(
+                        owned.get(donor).size() - fairShare(donor, shardCount),
+                        fairShare(receiver, shardCount) - owned.get(receiver).size()));
+                // spread over the donor's range: consecutive ids fill consecutive buckets,
+                // so contiguous ranges would send bursts of inserts to a single shard
+                List<Integer> source = owned.get(donor);
+                int[] buckets = IntStream.range(0, count)
+                        .map(i -> source.get(i * source.size() / count))
+                        .toArray();
+                moves.add(move(buckets, donor, receiver));
+            }
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    public Move moveBucket(int bucket, int targetShard) {
+        if (bucket < 0 || bucket >= ShardDirectory.BUCKETS) {
+            throw new RequestValidationException(
+                    "bucket must be between 0 and %d".formatted(ShardDirectory.BUCKETS - 1));
+        }
+        if (targetShard < 0 || targetShard >= shards.size()) {
+            throw new RequestValidationException("there is no shard %d".formatted(targetShard));
+        }
+
+        moveLock.lock();
+        try {
+            int sourceShard = directory.assignment().shardOfBucket(bucket);
+            if (sourceShard == targetShard) {
+                return new Move(sourceShard, targetShard, 0, 0);
+            }
+            return move(new int[]{bucket}, sourceShard, targetShard);
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    private Move move(int[] buckets, int sourceShard, int targetShard) {
+        log.info("Moving {} customer buckets from shard {} to shard {}", buckets.length, sourceShard, targetShard);
+        JdbcTemplate source = shards.jdbcTemplate(sourceShard);
+        JdbcTemplate target = shards.jdbcTemplate(targetShard);
+        long rows = 0;
+        try {
+            directory.update(buckets, sourceShard, ShardDirectory.State.MIGRATING, targetShard);
+            for (int bucket : buckets) {
+                reconcile(bucket, source, target);
+            }
+
+            directory.update(buckets, sourceShard, ShardDirectory.State.FROZEN, targetShard);
+            pause();
+            for (int bucket : buckets) {
+                rows += reconcile(bucket, source, target);
+            }
+            directory.update(buckets, targetShard, ShardDirectory.State.ACTIVE, null);
+        } catch (RuntimeException e) {
+            log.warn("Moving customer buckets {} to shard {} failed, keeping them on shard {}",
+                    Arrays.toString(buckets), targetShard, sourceShard, e);
+            directory.update(buckets, sourceShard, ShardDirectory.State.ACTIVE, null);
+            purge(buckets, target);
+            throw e;
+        }
+
+        pause();
+        purge(buckets, source);
+        log.info("Moved {} customer buckets ({} rows) from shard {} to shard {}",
+                buckets.length, rows, sourceShard, targetShard);
+        return new Move(sourceShard, targetShard, buckets.length, rows);
+    }
+
+    /**
+     * Makes the bucket's rows on {@code target} equal to those on {@code source},
+     * walking both in id order a page at a time.
+     *
+     * @return the number of rows in the bucket
+     */
+    private long reconcile(int bucket, JdbcTemplate source, JdbcTemplate target) {
+        long rows = 0;
+        int afterId = -1;
+        while (true) {
+            List<Customer> sourcePage = page(source, bucket, afterId, Integer.MAX_VALUE, copyBatchSize);
+            boolean last = sourcePage.size() < copyBatchSize;
+            int untilId = last ? Integer.MAX_VALUE : sourcePage.get(sourcePage.size() - 1).getId();
+            List<Customer> targetPage = page(target, bucket, afterId, untilId, Integer.MAX_VALUE);
+
+            List<Customer> upserts = new ArrayList<>();
+            List<Integer> deletes = new ArrayList<>();
+            int t = 0;
+            for (Customer customer : sourcePage) {
+                while (t < targetPage.size() && targetPage.get(t).getId() < customer.getId()) {
+                    deletes.add(targetPage.get(t++).getId());
+                }
+                if (t < targetPage.size() && targetPage.get(t).getId().equals(customer.getId())) {
+                    if (!sameRow(customer, targetPage.get(t))) {
+                        upserts.add(customer);
+                    }
+                    t++;
+                } else {
+                    upserts.add(customer);
+                }
+            }
+            while (t < targetPage.size()) {
+                deletes.add(targetPage.get(t++).getId());
+            }
+
+            // deletes first, so an email freed on the source can be reused by an upsert
+            delete(target, deletes);
+            upsert(target, upserts);
+            rows += sourcePage.size();
+            if (last) {
+                return rows;
+            }
+            afterId = untilId;
+        }
+    }
+
+    private List<Customer> page(JdbcTemplate jdbcTemplate, int bucket, int afterId, int untilId, int limit) {
+        var sql = """
+                SELECT id, name, email, age FROM customer
+                WHERE id % 1024 = ? AND id > ? AND id <= ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, bucket, afterId, untilId, limit);
+    }
+
+    private static boolean sameRow(Customer a, Customer b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getEmail(), b.getEmail())
+                && Objects.equals(a.getAge(), b.getAge());
+    }
+
+    private void upsert(JdbcTemplate jdbcTemplate, List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        var sql = """
+                INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?)
+                ON CONFLICT (id) DO UPDATE
+                    SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age
+                """;
+        jdbcTemplate.batchUpdate(sql, customers, copyBatchSize, (ps, customer) -> {
+            ps.setInt(1, customer.getId());
+            ps.setString(2, customer.getName());
+            ps.setString(3, customer.getEmail());
+            ps.setInt(4, customer.getAge());
+        });
+    }
+
+    private static void delete(JdbcTemplate jdbcTemplate, List<Integer> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        var sql = """
+                DELETE FROM customer WHERE id = ANY(?)
+                """;
+        deleteWithoutChangeTriggers(jdbcTemplate, sql, customerIds.toArray());
+    }
+
+    private static void purge(int[] buckets, JdbcTemplate jdbcTemplate) {
+        var sql = """
+                DELETE FROM customer WHERE id % 1024 = ANY(?)
+                """;
+        deleteWithoutChangeTriggers(jdbcTemplate, sql, Arrays.stream(buckets).boxed().toArray());
+    }
+
+    /**
+     * Rows deleted by a move still exist on another shard, so the delete runs with
+     * triggers off: it must not notify listeners or leave a tombstone, which would
+     * tell change feed clients that the customers are gone.
+     */
+    private static void deleteWithoutChangeTriggers(JdbcTemplate jdbcTemplate, String sql, Object[] values) {
+        jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement replica = connection.createStatement();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                replica.execute("SET LOCAL session_replication_role = replica");
+                statement.setArray(1, connection.createArrayOf("int4", values));
+                int deleted = statement.executeUpdate();
+                connection.commit();
+                return deleted;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(freezeGrace.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while moving customer buckets", e);
+        }
+    }
+
+    private static int fairShare(int shard, int shardCount) {
+        return ShardDirectory.BUCKETS / shardCount + (shard < ShardDirectory.BUCKETS % shardCount ? 1 : 0);
+    }
+
+    private List<List<Integer>> bucketsByShard(ShardDirectory.Assignment assignment) {
+        List<List<Integer>> owned = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < ShardDirectory.BUCKETS; bucket++) {
+            owned.get(assignment.shardOfBucket(bucket)).add(bucket);
+        }
+        return owned;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.zotov.customer.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.customer.CustomerJDBCDataAccessService;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.deadline.DeadlineDataSource;
+import ru.zotov.sqlstats.ObservedDataSource;
+import ru.zotov.sqlstats.SqlStatistics;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The shard databases, indexed by shard number: the primary DataSource as shard 0
+ * followed by the configured {@code customer.sharding.shards}. The additional pools
+ * get the same request deadline and statement statistics wrappers as the primary one,
+ * and are migrated with the same Flyway scripts on startup.
+ */
+public class ShardSet implements AutoCloseable {
+
+    private final List<JdbcTemplate> jdbcTemplates = new ArrayList<>();
+    private final List<CustomerJDBCDataAccessService> customerDaos = new ArrayList<>();
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    public ShardSet(DataSource primary,
+                    List<ShardingProperties.Shard> shards,
+                    CustomerRowMapper customerRowMapper,
+                    SqlStatistics sqlStatistics) {
+        add(primary, customerRowMapper);
+        for (ShardingProperties.Shard shard : shards) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("customer-shard-" + (pools.size() + 1));
+            pool.setJdbcUrl(shard.url());
+            pool.setUsername(shard.username());
+            pool.setPassword(shard.password());
+            pool.setMaximumPoolSize(shard.maximumPoolSize());
+            pools.add(pool);
+
+            Flyway.configure()
+                    .dataSource(pool)
+                    .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                    .load()
+                    .migrate();
+            add(new ObservedDataSource(new DeadlineDataSource(pool), sqlStatistics), customerRowMapper);
+        }
+    }
+
+    private void add(DataSource dataSource, CustomerRowMapper customerRowMapper) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplates.add(jdbcTemplate);
+        customerDaos.add(new CustomerJDBCDataAccessService(jdbcTemplate, customerRowMapper));
+    }
+
+    public int size() {
+        return jdbcTemplates.size();
+    }
+
+    public JdbcTemplate jdbcTemplate(int shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    public CustomerJDBCDataAccessService customerDao(int shard) {
+        return customerDaos.get(shard);
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,259 @@
+package ru.zotov.customer.shard;
+
+import jakarta.annotation.PreDestroy;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.customer.CustomerIdAllocator;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.sqlstats.DatabaseUsage;
+import ru.zotov.sqlstats.DatabaseUsageTracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Spreads customers over the databases of a {@link ShardSet}, each running the plain
+ * JDBC data access. Single-customer operations go to the customer's shard; lists are
+ * gathered from all shards in parallel and merged by id, keeping only rows from the
+ * buckets a shard currently owns, so copies left behind by a bucket move are not
+ * returned twice.
+ */
+public class ShardedCustomerDao implements CustomerDao {
+
+    private final ShardSet shards;
+    private final ShardDirectory directory;
+    private final EmailRouteIndex emailRoutes;
+    private final CustomerIdAllocator idAllocator;
+    private final ExecutorService executor;
+
+    public ShardedCustomerDao(ShardSet shards,
+                              ShardDirectory directory,
+                              EmailRouteIndex emailRoutes,
+                              CustomerIdAllocator idAllocator,
+                              int threadsPerShard) {
+        this.shards = shards;
+        this.directory = directory;
+        this.emailRoutes = emailRoutes;
+        this.idAllocator = idAllocator;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size() * threadsPerShard, runnable -> {
+            Thread thread = new Thread(runnable, "customer-shard-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        ShardDirectory.Assignment assignment = directory.assignment();
+        List<Integer> allShards = IntStream.range(0, shards.size()).boxed().toList();
+        List<List<Customer>> results = onShards(allShards, shard -> shards.customerDao(shard)
+                .selectAllCustomers().stream()
+                .filter(customer -> assignment.isOwnedBy(shard, customer.getId()))
+                .toList());
+        return mergeById(results);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer customerId) {
+        int shard = directory.assignment().shardOf(customerId);
+        return shards.customerDao(shard).selectCustomerById(customerId);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> customerIds) {
+        if (customerIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, List<Integer>> idsByShard = groupByShard(directory.assignment(), customerIds);
+        List<List<Customer>> results = onShards(idsByShard.keySet(),
+                shard -> shards.customerDao(shard).selectCustomersByIds(idsByShard.get(shard)));
+        return mergeById(results);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerByEmail(String email) {
+        return emailRoutes.customerId(email).flatMap(this::selectCustomerById);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        insertCustomers(List.of(customer));
+    }
+
+    /**
+     * Ids falling into a bucket that is being moved are skipped, so inserts never wait
+     * for a move. Email index entries are written first and removed again for the
+     * customers of a shard whose insert fails. Like the other stores, the allocated id
+     * is set on each customer passed in.
+     */
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+
+        ShardDirectory.Assignment assignment = directory.assignment();
+        int[] ids = new int[customers.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = writableId(assignment);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            customers.get(i).setId(ids[i]);
+        }
+        emailRoutes.add(customers);
+
+        Map<Integer, List<Customer>> customersByShard = new TreeMap<>();
+        for (Customer customer : customers) {
+            customersByShard.computeIfAbsent(assignment.shardOf(customer.getId()), shard -> new ArrayList<>())
+                    .add(customer);
+        }
+        onShards(customersByShard.keySet(), shard -> {
+            List<Customer> shardCustomers = customersByShard.get(shard);
+            try {
+                shards.customerDao(shard).insertCustomers(shardCustomers);
+            } catch (RuntimeException e) {
+                emailRoutes.remove(shardCustomers.stream().map(Customer::getId).toList());
+                throw e;
+            }
+            return shardCustomers.size();
+        });
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return emailRoutes.exists(email);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer customerId) {
+        int shard = directory.assignment().shardOf(customerId);
+        return shards.customerDao(shard).existsCustomerWithId(customerId);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        int shard = directory.assignment().shardForWrite(customerId);
+        shards.customerDao(shard).deleteCustomerById(customerId);
+        emailRoutes.remove(List.of(customerId));
+    }
+
+    /**
+     * The email index is updated first, so a taken email fails before the shard is
+     * touched, and is set back to the stored email if the shard update fails.
+     */
+    @Override
+    public void updateCustomer(Customer update) {
+        int shard = directory.assignment().shardForWrite(update.getId());
+        if (update.getEmail() == null) {
+            shards.customerDao(shard).updateCustomer(update);
+            return;
+        }
+
+        emailRoutes.changeEmail(update.getId(), update.getEmail());
+        try {
+            shards.customerDao(shard).updateCustomer(update);
+        } catch (RuntimeException e) {
+            shards.customerDao(shard).selectCustomerById(update.getId())
+                    .ifPresent(stored -> emailRoutes.changeEmail(stored.getId(), stored.getEmail()));
+            throw e;
+        }
+    }
+
+    private int writableId(ShardDirectory.Assignment assignment) {
+        for (int attempt = 0; attempt < ShardDirectory.BUCKETS; attempt++) {
+            int id = idAllocator.nextId();
+            if (assignment.isWritable(id)) {
+                return id;
+            }
+        }
+        int id = idAllocator.nextId();
+        assignment.shardForWrite(id);
+        return id;
+    }
+
+    private static Map<Integer, List<Integer>> groupByShard(ShardDirectory.Assignment assignment,
+                                                            Collection<Integer> customerIds) {
+        Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
+        for (Integer customerId : customerIds) {
+            idsByShard.computeIfAbsent(assignment.shardOf(customerId), shard -> new ArrayList<>()).add(customerId);
+        }
+        return idsByShard;
+    }
+
+    private static List<Customer> mergeById(List<List<Customer>> results) {
+        List<Customer> merged = new ArrayList<>(results.stream().mapToInt(List::size).sum());
+        results.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Customer::getId));
+        return merged;
+    }
+
+    /**
+     * Runs {@code work} for every shard given, in parallel when there is more than one.
+     * Pool threads take over the request deadline, and the statements they run are
+     * charged to the request's database usage.
+     */
+    private <T> List<T> onShards(Collection<Integer> shardNumbers, IntFunction<T> work) {
+        if (shardNumbers.size() == 1) {
+            return List.of(work.apply(shardNumbers.iterator().next()));
+        }
+
+        Deadline deadline = Deadline.current();
+        boolean tracking = DatabaseUsageTracker.isActive();
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardNumbers.size());
+        DatabaseUsage[] usages = new DatabaseUsage[shardNumbers.size()];
+        int index = 0;
+        for (int shard : shardNumbers) {
+            int slot = index++;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Deadline.attach(deadline);
+                if (tracking) {
+                    DatabaseUsageTracker.start();
+                }
+                try {
+                    return work.apply(shard);
+                } finally {
+                    usages[slot] = tracking ? DatabaseUsageTracker.stop() : DatabaseUsage.NONE;
+                    Deadline.clear();
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            for (DatabaseUsage usage : usages) {
+                if (usage != null) {
+                    DatabaseUsageTracker.add(usage);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.zotov.customer.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.zotov.customer.CustomerIdAllocator;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.sqlstats.SqlStatistics;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.sharding.enabled")
+public class ShardingConfig {
+
+    @Bean
+    public ShardSet shardSet(DataSource dataSource,
+                             ShardingProperties properties,
+                             CustomerRowMapper customerRowMapper,
+                             SqlStatistics sqlStatistics,
+                             @Value("${customer.cache.enabled:true}") boolean cacheEnabled,
+                             @Value("${customer.list-cache.enabled:true}") boolean listCacheEnabled) {
+        // the caches have no expiry and are only invalidated by changes on the primary
+        if (cacheEnabled || listCacheEnabled) {
+            throw new IllegalStateException(
+                    "customer.sharding.enabled cannot be combined with customer.cache.enabled"
+                            + " or customer.list-cache.enabled");
+        }
+        if (properties.freezeGrace().compareTo(properties.refreshInterval()) <= 0) {
+            throw new IllegalStateException(
+                    "customer.sharding.freeze-grace must be longer than customer.sharding.refresh-interval");
+        }
+        return new ShardSet(dataSource, properties.shards(), customerRowMapper, sqlStatistics);
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardSet shardSet, ShardingProperties properties) {
+        return new ShardDirectory(shardSet.jdbcTemplate(0), shardSet.size(), properties.refreshInterval());
+    }
+
+    @Bean
+    public ShardedCustomerDao shardedCustomerDao(ShardSet shardSet,
+                                                 ShardDirectory shardDirectory,
+                                                 ShardingProperties properties) {
+        return new ShardedCustomerDao(
+                shardSet,
+                shardDirectory,
+                new EmailRouteIndex(shardSet.jdbcTemplate(0)),
+                new CustomerIdAllocator(shardSet.jdbcTemplate(0)),
+                properties.threadsPerShard());
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardSet shardSet,
+                                           ShardDirectory shardDirectory,
+                                           CustomerRowMapper customerRowMapper,
+                                           ShardingProperties properties) {
+        return new ShardRebalancer(
+                shardSet,
+                shardDirectory,
+                customerRowMapper,
+                properties.freezeGrace(),
+                properties.copyBatchSize(),
+                properties.bucketsPerMove());
+    }
+
+    @Bean
+    public ShardsEndpoint shardsEndpoint(ShardDirectory shardDirectory, ShardRebalancer shardRebalancer) {
+        return new ShardsEndpoint(shardDirectory, shardRebalancer);
+    }
+}
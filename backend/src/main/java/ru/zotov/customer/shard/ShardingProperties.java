@@ -0,0 +1,37 @@
+package ru.zotov.customer.shard;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The primary DataSource is shard 0 and also holds the shard directory; {@code shards}
+ * lists the additional databases, numbered from 1 in the order given. Shards may be
+ * appended but never removed or reordered, since the directory refers to them by
+ * position. Writes to the other shards notify no listener, so the entity and list
+ * caches have to be turned off.
+ * <p>
+ * {@code freeze-grace} is how long a bucket move waits for every node to see a
+ * directory change, so it has to exceed {@code refresh-interval} plus the longest a
+ * write may run (the write deadline).
+ */
+@ConfigurationProperties(prefix = "customer.sharding")
+public record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<Shard> shards,
+        @DefaultValue("1s") Duration refreshInterval,
+        @DefaultValue("7s") Duration freezeGrace,
+        @DefaultValue("1000") int copyBatchSize,
+        @DefaultValue("64") int bucketsPerMove,
+        @DefaultValue("4") int threadsPerShard
+) {
+    public record Shard(
+            String url,
+            String username,
+            String password,
+            @DefaultValue("10") int maximumPoolSize
+    ) {
+    }
+}
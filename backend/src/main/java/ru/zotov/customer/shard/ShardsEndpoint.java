@@ -0,0 +1,68 @@
+package ru.zotov.customer.shard;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code GET /actuator/shards} shows how buckets are spread over the shards;
+ * {@code POST /actuator/shards} rebalances them and
+ * {@code POST /actuator/shards/{bucket}} with {@code {"shard": n}} moves one bucket.
+ * Moves run in the calling request and return once they are complete. Like every
+ * actuator endpoint it is served on the management port, which listens on loopback
+ * only.
+ */
+@Endpoint(id = "shards")
+public class ShardsEndpoint {
+
+    private final ShardDirectory directory;
+    private final ShardRebalancer rebalancer;
+
+    public ShardsEndpoint(ShardDirectory directory, ShardRebalancer rebalancer) {
+        this.directory = directory;
+        this.rebalancer = rebalancer;
+    }
+
+    @ReadOperation
+    public ShardsReport shards() {
+        ShardDirectory.Assignment assignment = directory.assignment();
+        int[] owned = new int[directory.shardCount()];
+        List<MovingBucket> moving = new ArrayList<>();
+        for (int bucket = 0; bucket < ShardDirectory.BUCKETS; bucket++) {
+            owned[assignment.shardOfBucket(bucket)]++;
+            if (assignment.stateOfBucket(bucket) != ShardDirectory.State.ACTIVE) {
+                moving.add(new MovingBucket(bucket, assignment.shardOfBucket(bucket),
+                        assignment.targetOfBucket(bucket), assignment.stateOfBucket(bucket)));
+            }
+        }
+
+        List<ShardSummary> shards = new ArrayList<>(owned.length);
+        for (int shard = 0; shard < owned.length; shard++) {
+            shards.add(new ShardSummary(shard, owned[shard]));
+        }
+        return new ShardsReport(ShardDirectory.BUCKETS, shards, moving);
+    }
+
+    @WriteOperation
+    public List<ShardRebalancer.Move> rebalance() {
+        return rebalancer.rebalance();
+    }
+
+    @WriteOperation
+    public ShardRebalancer.Move moveBucket(@Selector int bucket, int shard) {
+        return rebalancer.moveBucket(bucket, shard);
+    }
+
+    public record ShardsReport(int buckets, List<ShardSummary> shards, List<MovingBucket> moving) {
+    }
+
+    public record ShardSummary(int shard, int buckets) {
+    }
+
+    public record MovingBucket(int bucket, int shard, int targetShard, ShardDirectory.State state) {
+    }
+}
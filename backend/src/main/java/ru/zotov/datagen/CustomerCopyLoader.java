@@ -0,0 +1,108 @@
+package ru.zotov.datagen;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.zotov.bulkhead.Workload;
+import ru.zotov.customer.CustomerIdAllocator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Streams generated customers into Postgres with {@code COPY FROM STDIN}. The index
+ * range is split fork-join style; every leaf renders its chunk and copies it on its
+ * own connection from the bulk pool, so generation and loading overlap across
+ * workers without taking connections from request traffic. Ids are reserved per
+ * chunk from the {@link CustomerIdAllocator} rather than left to the column default.
+ */
+@Component
+public class CustomerCopyLoader {
+
+    static final String COPY_SQL = "COPY customer (id, name, email, age) FROM STDIN";
+
+    private final DataSource dataSource;
+    private final CustomerIdAllocator idAllocator;
+
+    public CustomerCopyLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.idAllocator = new CustomerIdAllocator(new JdbcTemplate(dataSource));
+    }
+
+    public long load(CustomerGenerator generator, long startIndex, long rows, int chunkSize, int parallelism) {
+        if (rows <= 0) {
+            return 0;
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk-size must be positive");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new CopyTask(generator, startIndex, startIndex + rows, chunkSize));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long copyChunk(CustomerGenerator generator, long from, long to) {
+        List<Integer> ids = idAllocator.nextIds(Math.toIntExact(to - from));
+        StringBuilder rows = new StringBuilder((int) (to - from) * 72);
+        for (long index = from; index < to; index++) {
+            rows.append(ids.get((int) (index - from))).append('\t');
+            generator.appendCopyRow(index, rows);
+        }
+
+        try (Connection connection = bulkConnection()) {
+            return connection.unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn(COPY_SQL, new StringReader(rows.toString()));
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException(
+                    "failed to copy customers [%d, %d)".formatted(from, to), e);
+        }
+    }
+
+    private Connection bulkConnection() throws SQLException {
+        Workload.attach(Workload.BULK);
+        try {
+            return dataSource.getConnection();
+        } finally {
+            Workload.attach(null);
+        }
+    }
+
+    private class CopyTask extends RecursiveTask<Long> {
+
+        private final CustomerGenerator generator;
+        private final long from;
+        private final long to;
+        private final int chunkSize;
+
+        CopyTask(CustomerGenerator generator, long from, long to, int chunkSize) {
+            this.generator = generator;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= chunkSize) {
+                return copyChunk(generator, from, to);
+            }
+
+            long middle = from + (to - from) / 2;
+            CopyTask left = new CopyTask(generator, from, middle, chunkSize);
+            CopyTask right = new CopyTask(generator, middle, to, chunkSize);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+}
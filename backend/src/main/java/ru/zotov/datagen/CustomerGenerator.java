@@ -0,0 +1,136 @@
+package ru.zotov.datagen;
+
+import net.datafaker.Faker;
+import ru.zotov.customer.Customer;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Produces synthetic customers as a pure function of {@code (seed, index)}, so any
+ * range can be generated on any thread in any order and still yield the same rows.
+ * Emails embed the index and are therefore unique within a run.
+ */
+public class CustomerGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final String[] emailDomains;
+    private final double[] nameCdf;
+    private final DataGenerationProperties properties;
+
+    public CustomerGenerator(DataGenerationProperties properties) {
+        if (properties.minAge() > properties.maxAge()) {
+            throw new IllegalArgumentException("min-age must not exceed max-age");
+        }
+        if (properties.emailDomains().isEmpty()) {
+            throw new IllegalArgumentException("at least one email domain is required");
+        }
+
+        this.properties = properties;
+        this.seed = properties.seed();
+        Faker faker = new Faker(new Random(seed));
+        this.firstNames = namePool(() -> faker.name().firstName(), properties.namePoolSize());
+        this.lastNames = namePool(() -> faker.name().lastName(), properties.namePoolSize());
+        this.emailDomains = properties.emailDomains().toArray(String[]::new);
+        this.nameCdf = properties.nameDistribution() == DataGenerationProperties.NameDistribution.ZIPF
+                ? zipfCdf(properties.namePoolSize(), properties.nameSkew())
+                : null;
+    }
+
+    public Customer customerAt(long index) {
+        SplittableRandom random = new SplittableRandom(seed ^ (index * GOLDEN_GAMMA));
+        String firstName = firstNames[pickName(random, firstNames.length)];
+        String lastName = lastNames[pickName(random, lastNames.length)];
+        String email = emailLocalPart(firstName) + "." + emailLocalPart(lastName) + "."
+                + Long.toString(index, 36) + "@" + emailDomains[random.nextInt(emailDomains.length)];
+
+        return new Customer(firstName + " " + lastName, email, pickAge(random));
+    }
+
+    /**
+     * Appends the customer at {@code index} as one line of PostgreSQL
+     * {@code COPY ... FROM STDIN} text format: {@code name, email, age}.
+     */
+    public void appendCopyRow(long index, StringBuilder out) {
+        Customer customer = customerAt(index);
+        appendCopyValue(customer.getName(), out);
+        out.append('\t');
+        appendCopyValue(customer.getEmail(), out);
+        out.append('\t').append(customer.getAge()).append('\n');
+    }
+
+    private int pickName(SplittableRandom random, int poolSize) {
+        if (nameCdf == null) {
+            return random.nextInt(poolSize);
+        }
+
+        int position = Arrays.binarySearch(nameCdf, random.nextDouble());
+        int index = position >= 0 ? position : -position - 1;
+        return Math.min(index, poolSize - 1);
+    }
+
+    private int pickAge(SplittableRandom random) {
+        int min = properties.minAge();
+        int max = properties.maxAge();
+        if (properties.ageDistribution() == DataGenerationProperties.AgeDistribution.UNIFORM) {
+            return min + random.nextInt(max - min + 1);
+        }
+
+        long age = Math.round(properties.ageMean() + properties.ageStdDev() * random.nextGaussian());
+        return (int) Math.max(min, Math.min(max, age));
+    }
+
+    private static String[] namePool(Supplier<String> names, int size) {
+        Set<String> pool = new LinkedHashSet<>();
+        int attempts = size * 20;
+        while (pool.size() < size && attempts-- > 0) {
+            pool.add(names.get());
+        }
+        return pool.toArray(String[]::new);
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cdf[rank] /= total;
+        }
+        return cdf;
+    }
+
+    private static String emailLocalPart(String name) {
+        StringBuilder local = new StringBuilder(name.length());
+        for (char c : name.toLowerCase(Locale.ROOT).toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                local.append(c);
+            }
+        }
+        return local.isEmpty() ? "x" : local.toString();
+    }
+
+    private static void appendCopyValue(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.zotov.datagen;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "customer.datagen")
+public record DataGenerationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1000000") long rows,
+        @DefaultValue("42") long seed,
+        @DefaultValue("0") long startIndex,
+        @DefaultValue("50000") int chunkSize,
+        @DefaultValue("0") int parallelism,
+        @DefaultValue("18") int minAge,
+        @DefaultValue("90") int maxAge,
+        @DefaultValue("UNIFORM") AgeDistribution ageDistribution,
+        @DefaultValue("40") double ageMean,
+        @DefaultValue("15") double ageStdDev,
+        @DefaultValue("2000") int namePoolSize,
+        @DefaultValue("UNIFORM") NameDistribution nameDistribution,
+        @DefaultValue("1.0") double nameSkew,
+        @DefaultValue({"example.com", "example.org", "example.net"}) List<String> emailDomains,
+        @DefaultValue("true") boolean pauseChangeNotifications,
+        @DefaultValue("true") boolean exitWhenDone
+) {
+    public enum AgeDistribution {
+        UNIFORM, NORMAL
+    }
+
+    public enum NameDistribution {
+        UNIFORM,
+        /**
+         * Zipf-like popularity with exponent {@code name-skew}: a few names are very
+         * common, most are rare.
+         */
+        ZIPF
+    }
+
+    public int effectiveParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
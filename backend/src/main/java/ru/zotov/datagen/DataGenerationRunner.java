@@ -0,0 +1,77 @@
+package ru.zotov.datagen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.zotov.customer.CustomerChangeListener;
+
+/**
+ * Bulk-loads synthetic customers when {@code customer.datagen.enabled} is set, e.g.
+ * {@code --customer.datagen.enabled=true --customer.datagen.rows=50000000}. Per-row
+ * change notifications are paused for the load and replaced by a single RESET.
+ */
+@Component
+public class DataGenerationRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataGenerationRunner.class);
+
+    private final DataGenerationProperties properties;
+    private final CustomerCopyLoader loader;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConfigurableApplicationContext context;
+
+    public DataGenerationRunner(DataGenerationProperties properties,
+                                CustomerCopyLoader loader,
+                                JdbcTemplate jdbcTemplate,
+                                ConfigurableApplicationContext context) {
+        this.properties = properties;
+        this.loader = loader;
+        this.jdbcTemplate = jdbcTemplate;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.enabled()) {
+            return;
+        }
+
+        CustomerGenerator generator = new CustomerGenerator(properties);
+        int parallelism = properties.effectiveParallelism();
+        log.info("Generating {} customers from index {} with seed {} on {} workers",
+                properties.rows(), properties.startIndex(), properties.seed(), parallelism);
+
+        long start = System.nanoTime();
+        long loaded = properties.pauseChangeNotifications()
+                ? loadWithoutChangeNotifications(generator, parallelism)
+                : load(generator, parallelism);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Loaded {} customers in {} s ({} rows/min)",
+                loaded, "%.1f".formatted(seconds), Math.round(loaded / seconds * 60));
+
+        if (properties.exitWhenDone()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private long loadWithoutChangeNotifications(CustomerGenerator generator, int parallelism) {
+        jdbcTemplate.execute("ALTER TABLE customer DISABLE TRIGGER customer_change_notify");
+        try {
+            return load(generator, parallelism);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE customer ENABLE TRIGGER customer_change_notify");
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)",
+                    CustomerChangeListener.CHANNEL, CustomerChangeListener.RESET_PAYLOAD);
+        }
+    }
+
+    private long load(CustomerGenerator generator, int parallelism) {
+        return loader.load(generator, properties.startIndex(), properties.rows(),
+                properties.chunkSize(), parallelism);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.zotov.deadline;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The point in time by which the current request must be answered. It is bound to
+ * the request thread by {@link DeadlineFilter} and read by {@link DeadlineDataSource}
+ * to bound connection acquisition and statement execution.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final Duration timeout;
+    private final long expiresAt;
+
+    private Deadline(Duration timeout, long expiresAt) {
+        this.timeout = timeout;
+        this.expiresAt = expiresAt;
+    }
+
+    public static Deadline start(Duration timeout) {
+        Deadline deadline = new Deadline(timeout, System.nanoTime() + timeout.toNanos());
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return the deadline of the request running on this thread, or {@code null}
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline taken from another thread, so work handed off to a pool keeps
+     * the request's budget; {@code null} clears it.
+     */
+    public static void attach(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    /**
+     * Runs {@code work} with no more than {@code timeout} of the current deadline, or
+     * with {@code timeout} when there is none, and restores the deadline afterwards.
+     */
+    public static <T> T within(Duration timeout, Supplier<T> work) {
+        Deadline outer = CURRENT.get();
+        if (outer != null && outer.remainingNanos() <= timeout.toNanos()) {
+            return work.get();
+        }
+        start(timeout);
+        try {
+            return work.get();
+        } finally {
+            attach(outer);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public Duration timeout() {
+        return timeout;
+    }
+
+    public long remainingNanos() {
+        return expiresAt - System.nanoTime();
+    }
+
+    /**
+     * Remaining time rounded up, so a deadline that has not passed never yields 0.
+     */
+    public long remainingMillis() {
+        long remaining = remainingNanos();
+        return remaining <= 0 ? 0 : (remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+}
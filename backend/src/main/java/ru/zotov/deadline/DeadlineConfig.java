@@ -0,0 +1,44 @@
+package ru.zotov.deadline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "customer.deadline.enabled", matchIfMissing = true)
+public class DeadlineConfig {
+
+    /**
+     * Inside the idempotency filter, so recording the outcome of a request is not
+     * cut short by the deadline of that same request.
+     */
+    static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 300;
+
+    @Bean
+    public static BeanPostProcessor deadlineDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof DeadlineDataSource)
+                        ? new DeadlineDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<DeadlineFilter> deadlineFilter(DeadlineProperties properties,
+                                                                 MeterRegistry meterRegistry) {
+        FilterRegistrationBean<DeadlineFilter> registration =
+                new FilterRegistrationBean<>(new DeadlineFilter(properties, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(FILTER_ORDER);
+        return registration;
+    }
+}
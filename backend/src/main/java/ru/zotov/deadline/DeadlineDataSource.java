@@ -0,0 +1,97 @@
+package ru.zotov.deadline;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import org.postgresql.jdbc.PgStatement;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the current {@link Deadline} to database work: a Hikari connection is
+ * acquired with the remaining time as its timeout, and every statement created on
+ * the connection gets the remaining time as its query timeout, so Postgres cancels
+ * it once the deadline passes. This covers JdbcTemplate and Hibernate statements
+ * alike. Without a deadline the target is used unchanged.
+ */
+public class DeadlineDataSource extends DelegatingDataSource {
+
+    public DeadlineDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return super.getConnection();
+        }
+
+        Connection connection = acquire(deadline);
+        return (Connection) Proxy.newProxyInstance(
+                DeadlineDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new DeadlineConnection(connection, deadline));
+    }
+
+    private Connection acquire(Deadline deadline) throws SQLException {
+        long remainingMillis = remainingMillis(deadline);
+        // unwrapped, so the pool is found behind a routing DataSource as well
+        DataSource target = obtainTargetDataSource();
+        if (target.isWrapperFor(HikariDataSource.class)
+                && target.unwrap(HikariDataSource.class).getHikariPoolMXBean() instanceof HikariPool pool) {
+            return pool.getConnection(remainingMillis);
+        }
+        return super.getConnection();
+    }
+
+    static void applyQueryTimeout(Statement statement, Deadline deadline) throws SQLException {
+        long remainingMillis = remainingMillis(deadline);
+        if (statement.isWrapperFor(PgStatement.class)) {
+            statement.unwrap(PgStatement.class).setQueryTimeoutMs(remainingMillis);
+        } else {
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999)));
+        }
+    }
+
+    private static long remainingMillis(Deadline deadline) throws SQLTimeoutException {
+        long remainingMillis = deadline.remainingMillis();
+        if (remainingMillis == 0) {
+            throw new SQLTimeoutException(
+                    "request deadline of %d ms exceeded".formatted(deadline.timeout().toMillis()));
+        }
+        return remainingMillis;
+    }
+
+    private record DeadlineConnection(Connection target, Deadline deadline) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof Statement statement) {
+                try {
+                    applyQueryTimeout(statement, deadline);
+                } catch (SQLException e) {
+                    statement.close();
+                    throw e;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ru.zotov.deadline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.PersistenceException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.zotov.ratelimit.Endpoint;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Starts a {@link Deadline} for every API request except the event stream. The
+ * timeout comes from the {@code Request-Timeout} header (milliseconds, or a
+ * duration such as {@code 500ms} or {@code 2s}) or from the endpoint default.
+ * Database failures once the deadline has passed are answered with 504 and counted
+ * per endpoint in {@code customer.deadline.exceeded}.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private final DeadlineProperties properties;
+    private final Map<Endpoint, Counter> exceeded = new EnumMap<>(Endpoint.class);
+
+    public DeadlineFilter(DeadlineProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (Endpoint endpoint : Endpoint.values()) {
+            exceeded.put(endpoint, Counter.builder("customer.deadline.exceeded")
+                    .description("API requests that failed because their deadline passed")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Endpoint endpoint = Endpoint.of(request);
+        if (endpoint == Endpoint.EVENTS) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Duration timeout;
+        try {
+            timeout = timeout(request, endpoint);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+
+        Deadline deadline = Deadline.start(timeout);
+        try {
+            filterChain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            if (!deadline.isExpired() || !isDatabaseFailure(e) || response.isCommitted()) {
+                throw e;
+            }
+            exceeded.get(endpoint).increment();
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(),
+                    "request deadline of %d ms exceeded".formatted(timeout.toMillis()));
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    private Duration timeout(HttpServletRequest request, Endpoint endpoint) {
+        String requested = request.getHeader(properties.header());
+        if (requested == null || requested.isBlank()) {
+            return defaultTimeout(endpoint);
+        }
+
+        Duration timeout;
+        try {
+            timeout = DurationStyle.detectAndParse(requested.trim(), ChronoUnit.MILLIS);
+        } catch (IllegalArgumentException e) {
+            timeout = null;
+        }
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException(
+                    "%s must be a positive duration but was '%s'".formatted(properties.header(), requested));
+        }
+        return timeout.compareTo(properties.maxTimeout()) > 0 ? properties.maxTimeout() : timeout;
+    }
+
+    private Duration defaultTimeout(Endpoint endpoint) {
+        DeadlineProperties.Timeouts timeouts = properties.timeouts();
+        return switch (endpoint) {
+            case LIST -> timeouts.list();
+            case MULTI_GET -> timeouts.multiGet();
+            case GET -> timeouts.get();
+            case CHANGES -> timeouts.changes();
+            case WRITE -> timeouts.write();
+            case EVENTS, OTHER -> timeouts.other();
+        };
+    }
+
+    private static boolean isDatabaseFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException
+                    || cause instanceof DataAccessException
+                    || cause instanceof PersistenceException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.zotov.deadline;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Requests run under the timeout of their endpoint unless the client asks for a
+ * shorter or longer one in the {@code header}; requested timeouts are capped at
+ * {@code max-timeout}.
+ */
+@ConfigurationProperties(prefix = "customer.deadline")
+public record DeadlineProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("Request-Timeout") String header,
+        @DefaultValue("30s") Duration maxTimeout,
+        @DefaultValue Timeouts timeouts
+) {
+    public record Timeouts(
+            @DefaultValue("10s") Duration list,
+            @DefaultValue("3s") Duration multiGet,
+            @DefaultValue("2s") Duration get,
+            @DefaultValue("5s") Duration changes,
+            @DefaultValue("5s") Duration write,
+            @DefaultValue("5s") Duration other
+    ) {
+    }
+}
@@ -0,0 +1,11 @@
+package ru.zotov.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.GONE)
+public class ChangeTokenExpiredException extends RuntimeException{
+    public ChangeTokenExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.zotov.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+public class ResourceUnavailableException extends RuntimeException{
+    public ResourceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.zotov.idempotency;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the request body up front so it can be fingerprinted and still be read by
+ * the controller. At most one byte more than {@code maxBytes} is read, so a body
+ * over the limit is detected without buffering it.
+ */
+class CachedBodyRequest extends HttpServletRequestWrapper {
+
+    private final byte[] body;
+    private final boolean tooLarge;
+
+    CachedBodyRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        byte[] read = request.getInputStream().readNBytes(maxBytes + 1);
+        this.tooLarge = read.length > maxBytes;
+        this.body = tooLarge ? new byte[0] : read;
+    }
+
+    byte[] body() {
+        return body;
+    }
+
+    boolean tooLarge() {
+        return tooLarge;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+}
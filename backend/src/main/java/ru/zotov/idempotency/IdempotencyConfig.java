@@ -0,0 +1,45 @@
+package ru.zotov.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+public class IdempotencyConfig {
+
+    static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 200;
+
+    @Bean
+    public IdempotencyStore idempotencyStore(JdbcTemplate jdbcTemplate,
+                                             @Value("${customer.idempotency.store:memory}") String store,
+                                             @Value("${customer.idempotency.ttl:24h}") Duration ttl,
+                                             @Value("${customer.idempotency.max-entries:10000}") int maxEntries,
+                                             @Value("${customer.idempotency.in-flight-timeout:30s}") Duration inFlightTimeout) {
+        return switch (store) {
+            case "memory" -> new InMemoryIdempotencyStore(ttl, maxEntries);
+            case "jdbc" -> new JdbcIdempotencyStore(jdbcTemplate, ttl, inFlightTimeout);
+            default -> throw new IllegalArgumentException(
+                    "customer.idempotency.store must be 'memory' or 'jdbc' but was '%s'".formatted(store));
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore idempotencyStore,
+            @Value("${customer.idempotency.enabled:true}") boolean enabled,
+            @Value("${customer.idempotency.in-flight-timeout:30s}") Duration inFlightTimeout,
+            @Value("${customer.idempotency.max-body-size:1MB}") DataSize maxBodySize) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(idempotencyStore, inFlightTimeout, Math.toIntExact(maxBodySize.toBytes())));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(FILTER_ORDER);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
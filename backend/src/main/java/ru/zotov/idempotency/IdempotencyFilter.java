@@ -0,0 +1,195 @@
+package ru.zotov.idempotency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes a POST or PUT carrying an {@code Idempotency-Key} header at most once.
+ * Keys are scoped by method and path; later requests with the same key and body
+ * get the stored status and body back without reaching the controller. Concurrent duplicates wait for
+ * the first execution. Server errors (5xx) are not stored, so a retry executes
+ * the request again. The body is buffered to fingerprint it, so bodies over
+ * {@code max-body-size} are rejected with 413.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> METHODS = Set.of("POST", "PUT");
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final IdempotencyStore store;
+    private final Duration inFlightTimeout;
+    private final int maxBodyBytes;
+
+    public IdempotencyFilter(IdempotencyStore store, Duration inFlightTimeout, int maxBodyBytes) {
+        this.store = store;
+        this.inFlightTimeout = inFlightTimeout;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !METHODS.contains(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(),
+                    "%s must be 1 to %d characters".formatted(HEADER, MAX_KEY_LENGTH));
+            return;
+        }
+
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            rejectTooLarge(response);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, maxBodyBytes);
+        if (cachedRequest.tooLarge()) {
+            rejectTooLarge(response);
+            return;
+        }
+        String key = request.getMethod() + " " + request.getRequestURI() + " " + idempotencyKey;
+        String fingerprint = fingerprint(cachedRequest);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Reservation reservation = store.reserve(key, fingerprint);
+            switch (reservation.state()) {
+                case ACQUIRED -> {
+                    execute(key, cachedRequest, response, filterChain);
+                    return;
+                }
+                case COMPLETED -> {
+                    replay(reservation.response(), response);
+                    return;
+                }
+                case MISMATCH -> {
+                    response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                            "%s was already used for a different request".formatted(HEADER));
+                    return;
+                }
+                case IN_FLIGHT -> {
+                    IdempotentResponse completed = await(key);
+                    if (completed != null) {
+                        replay(completed, response);
+                        return;
+                    }
+                }
+            }
+        }
+
+        response.sendError(HttpStatus.CONFLICT.value(),
+                "a request with this %s is still being processed".formatted(HEADER));
+    }
+
+    private void execute(String key,
+                         CachedBodyRequest request,
+                         HttpServletResponse response,
+                         FilterChain filterChain) throws ServletException, IOException {
+        RecordingResponse recording = new RecordingResponse(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, recording);
+            if (recording.getStatus() < 500) {
+                store.complete(key, new IdempotentResponse(
+                        recording.getStatus(),
+                        recording.getContentType(),
+                        recording.getContentAsByteArray(),
+                        recording.error,
+                        recording.errorMessage));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(key);
+            }
+            recording.copyBodyToResponse();
+        }
+    }
+
+    private IdempotentResponse await(String key) throws IOException {
+        try {
+            return store.awaitCompletion(key, inFlightTimeout);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for " + HEADER + " " + key, e);
+        }
+    }
+
+    private static void replay(IdempotentResponse stored, HttpServletResponse response) throws IOException {
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.error()) {
+            response.sendError(stored.status(), stored.errorMessage());
+            return;
+        }
+
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void rejectTooLarge(HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                "request body must not exceed %d bytes".formatted(maxBodyBytes));
+    }
+
+    private static String fingerprint(CachedBodyRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(request.body()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Buffers the body and remembers {@code sendError} calls, whose body is only
+     * rendered later by the error dispatch.
+     */
+    private static class RecordingResponse extends ContentCachingResponseWrapper {
+
+        private boolean error;
+        private String errorMessage;
+
+        RecordingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            error = true;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            error = true;
+            errorMessage = msg;
+            super.sendError(sc, msg);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.zotov.idempotency;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+public interface IdempotencyStore {
+
+    Reservation reserve(String key, String fingerprint);
+
+    /**
+     * Waits for the in-flight execution holding {@code key}. Returns its response,
+     * or {@code null} if it was released without one and the caller may retry.
+     */
+    IdempotentResponse awaitCompletion(String key, Duration timeout)
+            throws TimeoutException, InterruptedException;
+
+    void complete(String key, IdempotentResponse response);
+
+    void release(String key);
+}
@@ -0,0 +1,13 @@
+package ru.zotov.idempotency;
+
+/**
+ * Outcome of the first execution of an idempotent request. Errors raised through
+ * {@code sendError} carry no body here; they are replayed with {@code sendError}
+ * so the regular error page renders them again.
+ */
+public record IdempotentResponse(int status,
+                                 String contentType,
+                                 byte[] body,
+                                 boolean error,
+                                 String errorMessage) {
+}
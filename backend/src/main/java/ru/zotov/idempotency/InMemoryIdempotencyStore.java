@@ -0,0 +1,125 @@
+package ru.zotov.idempotency;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Node-local store. Completed results live for {@code ttl}; once {@code maxEntries}
+ * is reached, expired keys and then the oldest tenth of completed keys are evicted
+ * in one pass. In-flight keys are never evicted, their number is bounded by request
+ * concurrency.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    public InMemoryIdempotencyStore(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, System::currentTimeMillis);
+    }
+
+    InMemoryIdempotencyStore(Duration ttl, int maxEntries, LongSupplier clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public Reservation reserve(String key, String fingerprint) {
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+
+        long now = clock.getAsLong();
+        Entry[] created = new Entry[1];
+        Entry entry = entries.compute(key, (k, existing) -> {
+            if (existing == null || existing.expiredAt(now)) {
+                created[0] = new Entry(fingerprint);
+                return created[0];
+            }
+            return existing;
+        });
+
+        if (entry == created[0]) {
+            return Reservation.acquired();
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return Reservation.mismatch();
+        }
+        IdempotentResponse response = entry.result.getNow(null);
+        return response != null ? Reservation.completed(response) : Reservation.inFlight();
+    }
+
+    @Override
+    public IdempotentResponse awaitCompletion(String key, Duration timeout)
+            throws TimeoutException, InterruptedException {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            return entry.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void complete(String key, IdempotentResponse response) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.expiresAt = clock.getAsLong() + ttlMillis;
+            entry.result.complete(response);
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.result.complete(null);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        long now = clock.getAsLong();
+        entries.values().removeIf(entry -> entry.expiredAt(now));
+        if (entries.size() < maxEntries) {
+            return;
+        }
+
+        entries.entrySet().stream()
+                .filter(e -> e.getValue().result.isDone())
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                .limit(Math.max(1, maxEntries / 10))
+                .toList()
+                .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<IdempotentResponse> result = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean expiredAt(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.zotov.idempotency;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Postgres-backed store shared by all nodes. A reservation is a row without a
+ * status; it expires after {@code inFlightTimeout} so a key held by a crashed node
+ * becomes reusable. Waiters poll the row until a status appears or it is removed.
+ * Expired rows are purged in bulk every {@value #PURGE_EVERY_RESERVATIONS} reservations.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final int PURGE_EVERY_RESERVATIONS = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration inFlightTimeout;
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, Duration ttl, Duration inFlightTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.inFlightTimeout = inFlightTimeout;
+    }
+
+    @Override
+    public Reservation reserve(String key, String fingerprint) {
+        var deleteExpired = """
+                DELETE FROM idempotency_key WHERE request_key = ? AND expires_at < now()
+                """;
+        var insert = """
+                INSERT INTO idempotency_key (request_key, fingerprint, expires_at)
+                VALUES (?, ?, now() + ? * interval '1 millisecond')
+                ON CONFLICT (request_key) DO NOTHING
+                """;
+
+        if (reservations.incrementAndGet() % PURGE_EVERY_RESERVATIONS == 0) {
+            deleteExpired();
+        } else {
+            jdbcTemplate.update(deleteExpired, key);
+        }
+        if (jdbcTemplate.update(insert, key, fingerprint, inFlightTimeout.toMillis()) == 1) {
+            return Reservation.acquired();
+        }
+
+        StoredRow row = select(key);
+        if (row == null) {
+            return reserve(key, fingerprint);
+        }
+        if (!row.fingerprint().equals(fingerprint)) {
+            return Reservation.mismatch();
+        }
+        return row.response() != null ? Reservation.completed(row.response()) : Reservation.inFlight();
+    }
+
+    @Override
+    public IdempotentResponse awaitCompletion(String key, Duration timeout)
+            throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            StoredRow row = select(key);
+            if (row == null) {
+                return null;
+            }
+            if (row.response() != null) {
+                return row.response();
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+        throw new TimeoutException("idempotency key still in flight: " + key);
+    }
+
+    @Override
+    public void complete(String key, IdempotentResponse response) {
+        var sql = """
+                UPDATE idempotency_key
+                SET status = ?, content_type = ?, body = ?, error = ?, error_message = ?,
+                    expires_at = now() + ? * interval '1 millisecond'
+                WHERE request_key = ?
+                """;
+        jdbcTemplate.update(sql,
+                response.status(),
+                response.contentType(),
+                response.body(),
+                response.error(),
+                response.errorMessage(),
+                ttl.toMillis(),
+                key);
+    }
+
+    @Override
+    public void release(String key) {
+        var sql = """
+                DELETE FROM idempotency_key WHERE request_key = ? AND status IS NULL
+                """;
+        jdbcTemplate.update(sql, key);
+    }
+
+    int deleteExpired() {
+        var sql = """
+                DELETE FROM idempotency_key WHERE expires_at < now()
+                """;
+        return jdbcTemplate.update(sql);
+    }
+
+    private StoredRow select(String key) {
+        var sql = """
+                SELECT fingerprint, status, content_type, body, error, error_message
+                FROM idempotency_key
+                WHERE request_key = ? AND expires_at >= now()
+                """;
+        List<StoredRow> rows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            int status = rs.getInt("status");
+            IdempotentResponse response = rs.wasNull() ? null : new IdempotentResponse(
+                    status,
+                    rs.getString("content_type"),
+                    rs.getBytes("body"),
+                    rs.getBoolean("error"),
+                    rs.getString("error_message"));
+            return new StoredRow(rs.getString("fingerprint"), response);
+        }, key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private record StoredRow(String fingerprint, IdempotentResponse response) {
+    }
+}
@@ -0,0 +1,31 @@
+package ru.zotov.idempotency;
+
+public record Reservation(State state, IdempotentResponse response) {
+
+    public enum State {
+        /** The caller owns the key and must {@code complete} or {@code release} it. */
+        ACQUIRED,
+        /** Another request with the same key is executing. */
+        IN_FLIGHT,
+        /** A stored result is available in {@link #response()}. */
+        COMPLETED,
+        /** The key was already used for a request with a different body. */
+        MISMATCH
+    }
+
+    public static Reservation acquired() {
+        return new Reservation(State.ACQUIRED, null);
+    }
+
+    public static Reservation inFlight() {
+        return new Reservation(State.IN_FLIGHT, null);
+    }
+
+    public static Reservation completed(IdempotentResponse response) {
+        return new Reservation(State.COMPLETED, response);
+    }
+
+    public static Reservation mismatch() {
+        return new Reservation(State.MISMATCH, null);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.zotov.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public enum Endpoint {
+    LIST, MULTI_GET, GET, CHANGES, EVENTS, WRITE, OTHER;
+
+    private static final String CUSTOMERS = "/api/v1/customers";
+
+    public static Endpoint of(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(CUSTOMERS)) {
+            return OTHER;
+        }
+        if (!"GET".equals(request.getMethod())) {
+            return WRITE;
+        }
+
+        String rest = path.substring(CUSTOMERS.length());
+        return switch (rest) {
+            case "", "/" -> request.getParameter("ids") != null ? MULTI_GET : LIST;
+            case "/changes" -> CHANGES;
+            case "/events" -> EVENTS;
+            default -> GET;
+        };
+    }
+
+    double cost(RateLimitProperties.Costs costs) {
+        return switch (this) {
+            case LIST -> costs.list();
+            case MULTI_GET -> costs.multiGet();
+            case GET -> costs.get();
+            case CHANGES -> costs.changes();
+            case EVENTS -> costs.events();
+            case WRITE -> costs.write();
+            case OTHER -> costs.other();
+        };
+    }
+
+    public String tag() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
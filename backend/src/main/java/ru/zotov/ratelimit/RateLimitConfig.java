@@ -0,0 +1,35 @@
+package ru.zotov.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Runs ahead of the other API filters so throttled requests are rejected before
+     * any work is done for them.
+     */
+    static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 100;
+
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties) {
+        return new RateLimiter(properties.capacity(), properties.refillPerSecond(), properties.maxClients(),
+                properties.idleExpiry());
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter,
+                                                                   RateLimitProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter, properties, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(FILTER_ORDER);
+        registration.setEnabled(properties.enabled());
+        return registration;
+    }
+}
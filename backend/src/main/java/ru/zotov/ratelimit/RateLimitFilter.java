@@ -0,0 +1,80 @@
+package ru.zotov.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charges every API request against the caller's token bucket, keyed by API key
+ * when a configured one is sent and by remote address otherwise, so made-up keys
+ * do not get a fresh bucket each. Behind a trusted proxy the remote address is the
+ * forwarded client address ({@code server.forward-headers-strategy}), not the
+ * proxy's. Requests that cannot be paid for get 429 with
+ * {@code Retry-After}. Outcomes are counted per endpoint in
+ * {@code customer.rate-limit.requests}.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final Map<Endpoint, Counter> allowed = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Counter> throttled = new EnumMap<>(Endpoint.class);
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        for (Endpoint endpoint : Endpoint.values()) {
+            allowed.put(endpoint, counter(meterRegistry, endpoint, "allowed"));
+            throttled.put(endpoint, counter(meterRegistry, endpoint, "throttled"));
+        }
+        Gauge.builder("customer.rate-limit.clients", rateLimiter, RateLimiter::clients)
+                .description("Clients with a tracked token bucket")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Endpoint endpoint = Endpoint.of(request);
+        long waitNanos = rateLimiter.tryAcquire(clientKey(request), endpoint.cost(properties.costs()));
+        if (waitNanos == 0) {
+            allowed.get(endpoint).increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        throttled.get(endpoint).increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+                "rate limit exceeded, retry after %d s".formatted(retryAfterSeconds));
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(properties.apiKeyHeader());
+        return apiKey != null && properties.apiKeys().contains(apiKey)
+                ? "key:" + apiKey
+                : "ip:" + request.getRemoteAddr();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, Endpoint endpoint, String outcome) {
+        return Counter.builder("customer.rate-limit.requests")
+                .description("API requests by rate limit outcome")
+                .tag("endpoint", endpoint.tag())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
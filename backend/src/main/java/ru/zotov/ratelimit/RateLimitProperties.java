@@ -0,0 +1,36 @@
+package ru.zotov.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Each client gets a bucket of {@code capacity} tokens refilled at
+ * {@code refill-per-second}; a request spends the cost of its endpoint. Only keys
+ * listed in {@code api-keys} get a bucket of their own, other callers are limited
+ * by address. Buckets unused for {@code idle-expiry} are dropped.
+ */
+@ConfigurationProperties(prefix = "customer.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("200") double capacity,
+        @DefaultValue("100") double refillPerSecond,
+        @DefaultValue("100000") int maxClients,
+        @DefaultValue("X-API-Key") String apiKeyHeader,
+        @DefaultValue Set<String> apiKeys,
+        @DefaultValue("10m") Duration idleExpiry,
+        @DefaultValue Costs costs
+) {
+    public record Costs(
+            @DefaultValue("10") double list,
+            @DefaultValue("2") double multiGet,
+            @DefaultValue("1") double get,
+            @DefaultValue("5") double changes,
+            @DefaultValue("5") double events,
+            @DefaultValue("2") double write,
+            @DefaultValue("1") double other
+    ) {
+    }
+}
@@ -0,0 +1,84 @@
+package ru.zotov.ratelimit;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per client in a bounded map. When the map is full, buckets that
+ * have refilled completely are dropped first (a fresh bucket behaves the same);
+ * if that is not enough, arbitrary buckets are dropped down to 90% of the bound.
+ * Buckets left unused for the idle expiry are swept out once per expiry period.
+ */
+public class RateLimiter {
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final double capacity;
+    private final double refillPerSecond;
+    private final int maxClients;
+    private final long idleExpiryNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong nextSweepAt;
+
+    public RateLimiter(double capacity, double refillPerSecond, int maxClients, Duration idleExpiry) {
+        this(capacity, refillPerSecond, maxClients, idleExpiry, System::nanoTime);
+    }
+
+    RateLimiter(double capacity, double refillPerSecond, int maxClients, Duration idleExpiry,
+                LongSupplier nanoClock) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("rate limit capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.maxClients = maxClients;
+        this.idleExpiryNanos = idleExpiry.toNanos();
+        this.nanoClock = nanoClock;
+        this.nextSweepAt = new AtomicLong(nanoClock.getAsLong() + idleExpiryNanos);
+    }
+
+    /**
+     * Returns 0 if {@code client} may proceed, otherwise the nanoseconds it has to
+     * wait. Costs above the bucket capacity are charged as a full bucket.
+     */
+    public long tryAcquire(String client, double cost) {
+        long now = nanoClock.getAsLong();
+        long sweepAt = nextSweepAt.get();
+        if (now - sweepAt >= 0 && nextSweepAt.compareAndSet(sweepAt, now + idleExpiryNanos)) {
+            sweepIdle(now);
+        }
+        TokenBucket bucket = buckets.get(client);
+        if (bucket == null) {
+            if (buckets.size() >= maxClients) {
+                evict(now);
+            }
+            bucket = buckets.computeIfAbsent(client, c -> new TokenBucket(capacity, refillPerSecond, now));
+        }
+        return bucket.tryAcquire(Math.min(cost, capacity), now);
+    }
+
+    public int clients() {
+        return buckets.size();
+    }
+
+    /**
+     * Drops buckets unused for the idle expiry, keeping any that have not refilled
+     * yet so a short expiry never hands tokens back.
+     */
+    private void sweepIdle(long now) {
+        buckets.values().removeIf(bucket -> bucket.idleNanos(now) >= idleExpiryNanos && bucket.isFull(now));
+    }
+
+    private void evict(long now) {
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+
+        int target = maxClients - Math.max(1, maxClients / 10);
+        Iterator<TokenBucket> iterator = buckets.values().iterator();
+        while (buckets.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
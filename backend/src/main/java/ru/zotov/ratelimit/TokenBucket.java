@@ -0,0 +1,55 @@
+package ru.zotov.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token bucket whose state is swapped with compare-and-set; no locks are taken on
+ * the request path. Tokens are refilled lazily from the elapsed time on each call.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private final AtomicReference<State> state;
+
+    TokenBucket(double capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1e9;
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * Takes {@code cost} tokens if available. Returns 0 on success, otherwise the
+     * nanoseconds until enough tokens will have accumulated.
+     */
+    long tryAcquire(double cost, long nowNanos) {
+        while (true) {
+            State current = state.get();
+            long updatedAt = Math.max(nowNanos, current.updatedAt());
+            double tokens = Math.min(capacity,
+                    current.tokens() + (updatedAt - current.updatedAt()) * refillPerNano);
+            if (tokens < cost) {
+                return (long) Math.ceil((cost - tokens) / refillPerNano);
+            }
+            if (state.compareAndSet(current, new State(tokens - cost, updatedAt))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Whether the bucket has refilled completely by {@code nowNanos}, in which case
+     * dropping it is indistinguishable from keeping it.
+     */
+    boolean isFull(long nowNanos) {
+        State current = state.get();
+        return current.tokens() + (nowNanos - current.updatedAt()) * refillPerNano >= capacity;
+    }
+
+    long idleNanos(long nowNanos) {
+        return nowNanos - state.get().updatedAt();
+    }
+
+    private record State(double tokens, long updatedAt) {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.zotov.sqlstats;
+
+import java.time.Duration;
+
+/**
+ * Database work done on behalf of one request: statements executed (one per round
+ * trip, so a JDBC batch counts once), rows read or written, and time spent waiting
+ * on the database.
+ */
+public record DatabaseUsage(long statements, long rows, long nanos) {
+
+    public static final DatabaseUsage NONE = new DatabaseUsage(0, 0, 0);
+
+    public Duration time() {
+        return Duration.ofNanos(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "%d statements, %d rows, %.3f ms".formatted(statements, rows, nanos / 1_000_000.0);
+    }
+}
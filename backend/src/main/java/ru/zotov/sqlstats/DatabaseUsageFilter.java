@@ -0,0 +1,118 @@
+package ru.zotov.sqlstats;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.zotov.ratelimit.Endpoint;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the {@link DatabaseUsage} of every API request except the event stream and
+ * records it per endpoint in {@code customer.request.db.statements},
+ * {@code customer.request.db.rows} and {@code customer.request.db.time}. With debug
+ * headers on, the usage is also returned in {@code X-DB-Statements},
+ * {@code X-DB-Rows} and {@code X-DB-Time-Ms}; the response is buffered for that so
+ * the headers can follow the body.
+ */
+public class DatabaseUsageFilter extends OncePerRequestFilter {
+
+    static final String STATEMENTS_HEADER = "X-DB-Statements";
+    static final String ROWS_HEADER = "X-DB-Rows";
+    static final String TIME_HEADER = "X-DB-Time-Ms";
+
+    private final boolean debugHeaders;
+    private final Map<Endpoint, DistributionSummary> statements = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, DistributionSummary> rows = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Timer> time = new EnumMap<>(Endpoint.class);
+
+    public DatabaseUsageFilter(boolean debugHeaders, MeterRegistry meterRegistry) {
+        this.debugHeaders = debugHeaders;
+        for (Endpoint endpoint : Endpoint.values()) {
+            statements.put(endpoint, DistributionSummary.builder("customer.request.db.statements")
+                    .description("Database statements executed per API request")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry));
+            rows.put(endpoint, DistributionSummary.builder("customer.request.db.rows")
+                    .description("Database rows read or written per API request")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry));
+            time.put(endpoint, Timer.builder("customer.request.db.time")
+                    .description("Time spent in the database per API request")
+                    .tag("endpoint", endpoint.tag())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Endpoint endpoint = Endpoint.of(request);
+        if (endpoint == Endpoint.EVENTS) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        UsageHeadersResponse buffered = debugHeaders ? new UsageHeadersResponse(response) : null;
+        DatabaseUsage usage;
+        DatabaseUsageTracker.start();
+        try {
+            filterChain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            usage = DatabaseUsageTracker.stop();
+            statements.get(endpoint).record(usage.statements());
+            rows.get(endpoint).record(usage.rows());
+            time.get(endpoint).record(usage.nanos(), TimeUnit.NANOSECONDS);
+        }
+
+        if (buffered != null) {
+            buffered.writeUsage(usage);
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Headers are ignored once an error has been sent, so for error responses they
+     * are written at that point with the usage so far.
+     */
+    private static class UsageHeadersResponse extends ContentCachingResponseWrapper {
+
+        UsageHeadersResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeUsageSoFar();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeUsageSoFar();
+            super.sendError(sc, msg);
+        }
+
+        private void writeUsageSoFar() {
+            DatabaseUsageTracker.Tally tally = DatabaseUsageTracker.current();
+            writeUsage(tally == null ? DatabaseUsage.NONE : tally.usage());
+        }
+
+        void writeUsage(DatabaseUsage usage) {
+            setHeader(STATEMENTS_HEADER, String.valueOf(usage.statements()));
+            setHeader(ROWS_HEADER, String.valueOf(usage.rows()));
+            setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", usage.nanos() / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.zotov.sqlstats;
+
+/**
+ * Accumulates {@link DatabaseUsage} for the work running on the current thread
+ * between {@link #start()} and {@link #stop()}. While tracking is active
+ * {@link ObservedDataSource} observes every statement, regardless of sampling.
+ */
+public final class DatabaseUsageTracker {
+
+    private static final ThreadLocal<Tally> CURRENT = new ThreadLocal<>();
+
+    private DatabaseUsageTracker() {
+    }
+
+    public static void start() {
+        CURRENT.set(new Tally());
+    }
+
+    public static DatabaseUsage stop() {
+        Tally tally = CURRENT.get();
+        CURRENT.remove();
+        return tally == null ? DatabaseUsage.NONE : tally.usage();
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Charges usage measured on another thread to the work tracked on this one.
+     */
+    public static void add(DatabaseUsage usage) {
+        Tally tally = CURRENT.get();
+        if (tally != null) {
+            tally.merge(usage);
+        }
+    }
+
+    static Tally current() {
+        return CURRENT.get();
+    }
+
+    static final class Tally {
+
+        private long statements;
+        private long rows;
+        private long nanos;
+
+        void add(long statementNanos, long statementRows) {
+            statements++;
+            rows += statementRows;
+            nanos += statementNanos;
+        }
+
+        void merge(DatabaseUsage usage) {
+            statements += usage.statements();
+            rows += usage.rows();
+            nanos += usage.nanos();
+        }
+
+        DatabaseUsage usage() {
+            return new DatabaseUsage(statements, rows, nanos);
+        }
+    }
+}
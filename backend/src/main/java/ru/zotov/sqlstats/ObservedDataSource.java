@@ -0,0 +1,235 @@
+package ru.zotov.sqlstats;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times statements executed through the wrapped DataSource and reports them to
+ * {@link SqlStatistics} and to the {@link DatabaseUsageTracker} of the current
+ * thread. The sampling decision is made once per statement when it is created;
+ * statements that are neither sampled nor tracked are returned unwrapped. For
+ * queries the time includes fetching the rows, and the row count is taken when the
+ * result set is closed.
+ */
+public class ObservedDataSource extends DelegatingDataSource {
+
+    private final SqlStatistics statistics;
+
+    public ObservedDataSource(DataSource targetDataSource, SqlStatistics statistics) {
+        super(targetDataSource);
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(ObservedDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = ObservedDataSource.invoke(target, method, args);
+            if (!(result instanceof Statement statement)) {
+                return result;
+            }
+            boolean sampled = statistics.sample();
+            DatabaseUsageTracker.Tally tally = DatabaseUsageTracker.current();
+            if (!sampled && tally == null) {
+                return result;
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            StatementHandler handler = new StatementHandler(statement, sql, sampled, tally);
+            if (statement instanceof CallableStatement) {
+                return proxy(CallableStatement.class, handler);
+            }
+            if (statement instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, handler);
+            }
+            return proxy(Statement.class, handler);
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+        private final Statement target;
+        private final String preparedSql;
+        private final boolean sampled;
+        private final DatabaseUsageTracker.Tally tally;
+        private Class<?>[] parameterTypes = NO_PARAMETERS;
+        private String batchSql;
+        private Execution pending;
+
+        StatementHandler(Statement target, String preparedSql, boolean sampled, DatabaseUsageTracker.Tally tally) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.sampled = sampled;
+            this.tally = tally;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameter(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameterTypes = NO_PARAMETERS;
+            } else if (name.equals("addBatch") && args != null && args.length == 1 && args[0] instanceof String sql) {
+                batchSql = sql;
+            } else if (name.equals("getResultSet") && pending != null) {
+                Object result = ObservedDataSource.invoke(target, method, args);
+                return result instanceof ResultSet resultSet ? observe(resultSet) : result;
+            } else if (name.equals("close")) {
+                flush();
+            }
+            return ObservedDataSource.invoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            flush();
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : preparedSql != null ? preparedSql : batchSql != null ? batchSql : "<unknown>";
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = ObservedDataSource.invoke(target, method, args);
+            } catch (Throwable e) {
+                complete(new Execution(sql, System.nanoTime() - start, parameterTypes.clone()));
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            pending = new Execution(sql, elapsed, parameterTypes.clone());
+            if (result instanceof ResultSet resultSet) {
+                return observe(resultSet);
+            }
+            if (!Boolean.TRUE.equals(result)) {
+                pending.rows = rows(result);
+                flush();
+            }
+            return result;
+        }
+
+        private ResultSet observe(ResultSet resultSet) {
+            Execution execution = pending;
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.equals("next")) {
+                    long start = System.nanoTime();
+                    Object hasNext = ObservedDataSource.invoke(resultSet, method, args);
+                    execution.nanos += System.nanoTime() - start;
+                    if (Boolean.TRUE.equals(hasNext)) {
+                        execution.rows++;
+                    }
+                    return hasNext;
+                }
+                if (name.equals("close")) {
+                    complete(execution);
+                }
+                return ObservedDataSource.invoke(resultSet, method, args);
+            });
+        }
+
+        private long rows(Object result) throws SQLException {
+            if (result instanceof Number count) {
+                return Math.max(0, count.longValue());
+            }
+            if (result instanceof int[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).asLongStream().sum();
+            }
+            if (result instanceof long[] counts) {
+                return Arrays.stream(counts).filter(count -> count > 0).sum();
+            }
+            return Math.max(0, target.getUpdateCount());
+        }
+
+        private void parameter(int index, Object value) {
+            if (index < 1 || index > 1024) {
+                return;
+            }
+            if (index > parameterTypes.length) {
+                parameterTypes = Arrays.copyOf(parameterTypes, index);
+            }
+            parameterTypes[index - 1] = value == null ? null : value.getClass();
+        }
+
+        private void flush() {
+            if (pending != null) {
+                complete(pending);
+            }
+        }
+
+        private void complete(Execution execution) {
+            if (!execution.recorded) {
+                execution.recorded = true;
+                if (sampled) {
+                    statistics.record(execution.sql, execution.nanos, execution.rows, execution.parameterTypes);
+                }
+                if (tally != null) {
+                    tally.add(execution.nanos, execution.rows);
+                }
+            }
+            if (pending == execution) {
+                pending = null;
+            }
+        }
+    }
+
+    private static final class Execution {
+
+        private final String sql;
+        private final Class<?>[] parameterTypes;
+        private long nanos;
+        private long rows;
+        private boolean recorded;
+
+        Execution(String sql, long nanos, Class<?>[] parameterTypes) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+}
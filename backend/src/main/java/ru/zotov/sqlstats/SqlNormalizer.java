@@ -0,0 +1,77 @@
+package ru.zotov.sqlstats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reduces SQL to its shape: whitespace is collapsed and numeric and string literals
+ * become {@code ?}, so statements that differ only in inlined values share one
+ * entry. Results are memoized because the same few strings are seen over and over.
+ */
+final class SqlNormalizer {
+
+    private static final int CACHE_LIMIT = 4096;
+
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    String normalize(String sql) {
+        String normalized = cache.get(sql);
+        if (normalized != null) {
+            return normalized;
+        }
+
+        normalized = doNormalize(sql);
+        if (cache.size() < CACHE_LIMIT) {
+            cache.put(sql, normalized);
+        }
+        return normalized;
+    }
+
+    static String doNormalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (!out.isEmpty() && i < length) {
+                    out.append(' ');
+                }
+            } else if (c == '\'') {
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.isEmpty()) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+}
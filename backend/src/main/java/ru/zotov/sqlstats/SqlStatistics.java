@@ -0,0 +1,106 @@
+package ru.zotov.sqlstats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-statement statistics keyed by normalized SQL, fed by {@link ObservedDataSource}.
+ * Statements slower than the threshold are logged with their bind parameters
+ * reduced to types, so no customer data reaches the log.
+ */
+public class SqlStatistics {
+
+    static final String OVERFLOW_SQL = "<other statements>";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatistics.class);
+
+    public enum Order {
+        TOTAL(Comparator.comparingDouble(StatementSummary::totalMillis)),
+        COUNT(Comparator.comparingLong(StatementSummary::count)),
+        ROWS(Comparator.comparingLong(StatementSummary::rows));
+
+        private final Comparator<StatementSummary> comparator;
+
+        Order(Comparator<StatementSummary> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    private final SqlStatsProperties properties;
+    private final long slowThresholdNanos;
+    private final SqlNormalizer normalizer = new SqlNormalizer();
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    public SqlStatistics(SqlStatsProperties properties) {
+        if (properties.sampleRate() < 0 || properties.sampleRate() > 1) {
+            throw new IllegalArgumentException("customer.sql-stats.sample-rate must be between 0 and 1");
+        }
+        this.properties = properties;
+        this.slowThresholdNanos = properties.slowThreshold().toNanos();
+    }
+
+    boolean sample() {
+        if (!properties.enabled()) {
+            return false;
+        }
+        double rate = properties.sampleRate();
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    void record(String sql, long nanos, long rows, Class<?>[] parameterTypes) {
+        String normalized = normalizer.normalize(sql);
+        statementStats(normalized).record(nanos, rows);
+
+        if (nanos >= slowThresholdNanos) {
+            log.warn("Slow statement: {} ms, {} rows: {} parameters {}",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), rows, normalized, describe(parameterTypes));
+        }
+    }
+
+    public List<StatementSummary> top(Order order, int limit) {
+        return statements.values().stream()
+                .map(StatementStats::summary)
+                .sorted(order.comparator.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public double sampleRate() {
+        return properties.sampleRate();
+    }
+
+    public int trackedStatements() {
+        return statements.size();
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    private static String describe(Class<?>[] parameterTypes) {
+        StringJoiner description = new StringJoiner(", ", "[", "]");
+        for (Class<?> type : parameterTypes) {
+            description.add(type == null ? "NULL" : type.getSimpleName());
+        }
+        return description.toString();
+    }
+
+    private StatementStats statementStats(String sql) {
+        StatementStats stats = statements.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        if (statements.size() >= properties.maxStatements()) {
+            return statements.computeIfAbsent(OVERFLOW_SQL, StatementStats::new);
+        }
+        return statements.computeIfAbsent(sql, StatementStats::new);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.zotov.sqlstats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class SqlStatsConfig {
+
+    /**
+     * Outside the idempotency filter, so the statements it runs are charged to the
+     * request as well.
+     */
+    static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 150;
+
+    @Bean
+    public SqlStatistics sqlStatistics(SqlStatsProperties properties) {
+        return new SqlStatistics(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.sql-stats.enabled", matchIfMissing = true)
+    public SqlStatsEndpoint sqlStatsEndpoint(SqlStatistics sqlStatistics, SqlStatsProperties properties) {
+        return new SqlStatsEndpoint(sqlStatistics, properties.topN());
+    }
+
+    @Bean
+    public static BeanPostProcessor observedDataSourcePostProcessor(ObjectProvider<SqlStatistics> sqlStatistics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof ObservedDataSource)
+                        ? new ObservedDataSource(dataSource, sqlStatistics.getObject())
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<DatabaseUsageFilter> databaseUsageFilter(
+            MeterRegistry meterRegistry,
+            @Value("${customer.db-usage.enabled:true}") boolean enabled,
+            @Value("${customer.db-usage.debug-headers:false}") boolean debugHeaders) {
+        FilterRegistrationBean<DatabaseUsageFilter> registration =
+                new FilterRegistrationBean<>(new DatabaseUsageFilter(debugHeaders, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(FILTER_ORDER);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
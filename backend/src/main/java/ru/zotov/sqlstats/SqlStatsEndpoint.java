@@ -0,0 +1,44 @@
+package ru.zotov.sqlstats;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code GET /actuator/sqlstats?orderBy=total|count|rows&limit=N} lists the top
+ * statements; {@code DELETE /actuator/sqlstats} starts a fresh measurement.
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+
+    private final SqlStatistics statistics;
+    private final int defaultLimit;
+
+    public SqlStatsEndpoint(SqlStatistics statistics, int defaultLimit) {
+        this.statistics = statistics;
+        this.defaultLimit = defaultLimit;
+    }
+
+    @ReadOperation
+    public SqlStatsReport top(@Nullable String orderBy, @Nullable Integer limit) {
+        SqlStatistics.Order order = orderBy == null
+                ? SqlStatistics.Order.TOTAL
+                : SqlStatistics.Order.valueOf(orderBy.toUpperCase(Locale.ROOT));
+        return new SqlStatsReport(
+                statistics.sampleRate(),
+                statistics.trackedStatements(),
+                statistics.top(order, limit == null ? defaultLimit : limit));
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.reset();
+    }
+
+    public record SqlStatsReport(double sampleRate, int trackedStatements, List<StatementSummary> statements) {
+    }
+}
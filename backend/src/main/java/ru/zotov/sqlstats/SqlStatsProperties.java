@@ -0,0 +1,21 @@
+package ru.zotov.sqlstats;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Only a {@code sample-rate} fraction of statements is observed; the rest run on the
+ * unwrapped JDBC objects and cost nothing. Statements beyond {@code max-statements}
+ * distinct shapes are pooled under a single overflow entry.
+ */
+@ConfigurationProperties(prefix = "customer.sql-stats")
+public record SqlStatsProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1.0") double sampleRate,
+        @DefaultValue("200ms") Duration slowThreshold,
+        @DefaultValue("500") int maxStatements,
+        @DefaultValue("20") int topN
+) {
+}
@@ -0,0 +1,99 @@
+package ru.zotov.sqlstats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and a latency histogram for one normalized statement. The histogram is
+ * log-linear over microseconds: four sub-buckets per power of two, so percentiles
+ * are accurate to within 25% at any magnitude while recording stays a single
+ * atomic increment.
+ */
+class StatementStats {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final String sql;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    StatementStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, long rowCount) {
+        count.increment();
+        totalNanos.add(nanos);
+        rows.add(rowCount);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        histogram.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    StatementSummary summary() {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            recorded += counts[i];
+        }
+
+        long total = count.sum();
+        long nanos = totalNanos.sum();
+        return new StatementSummary(
+                sql,
+                total,
+                millis(nanos),
+                total == 0 ? 0 : millis(nanos / total),
+                percentileMillis(counts, recorded, 0.50),
+                percentileMillis(counts, recorded, 0.99),
+                millis(maxNanos.get()),
+                rows.sum());
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the exclusive upper bound, in microseconds, of the values in {@code bucket}
+     */
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << shift;
+    }
+
+    private static double percentileMillis(long[] counts, long recorded, double percentile) {
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * recorded);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i) / 1000.0;
+            }
+        }
+        return upperBoundMicros(counts.length - 1) / 1000.0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
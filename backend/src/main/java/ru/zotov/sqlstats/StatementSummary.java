@@ -0,0 +1,13 @@
+package ru.zotov.sqlstats;
+
+public record StatementSummary(
+        String sql,
+        long count,
+        double totalMillis,
+        double meanMillis,
+        double p50Millis,
+        double p99Millis,
+        double maxMillis,
+        long rows
+) {
+}
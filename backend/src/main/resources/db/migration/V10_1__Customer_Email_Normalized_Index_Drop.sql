@@ -0,0 +1,2 @@
+-- customer_email_covering_idx enforces uniqueness from here on.
+DROP INDEX CONCURRENTLY customer_email_normalized_idx;
@@ -0,0 +1,7 @@
+-- Email existence checks read only the normalized email, so with the columns they
+-- return included in the index they are answered from the index alone, without a
+-- heap visit per probe. It takes over uniqueness from the index it replaces. Built
+-- concurrently like V9_1; an invalid index left by a failed build is dropped first.
+DROP INDEX CONCURRENTLY IF EXISTS customer_email_covering_idx;
+
+CREATE UNIQUE INDEX CONCURRENTLY customer_email_covering_idx ON customer (lower(btrim(email))) INCLUDE (email, id);
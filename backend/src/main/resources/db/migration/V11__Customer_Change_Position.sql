@@ -0,0 +1,41 @@
+-- change_seq is taken when a row is written, so a transaction that commits late can
+-- land behind a cursor that has already moved past it. The writing transaction's id
+-- orders changes so that everything below the oldest running transaction is final.
+-- Rows written before this migration keep id 0 and sort before all later changes.
+ALTER TABLE customer ADD COLUMN change_xid xid8 NOT NULL DEFAULT '0';
+ALTER TABLE customer ALTER COLUMN change_xid SET DEFAULT pg_current_xact_id();
+CREATE INDEX customer_change_position_idx ON customer (change_xid, change_seq);
+
+ALTER TABLE customer_tombstone ADD COLUMN change_xid xid8 NOT NULL DEFAULT '0';
+ALTER TABLE customer_tombstone ALTER COLUMN change_xid SET DEFAULT pg_current_xact_id();
+CREATE INDEX customer_tombstone_change_position_idx ON customer_tombstone (change_xid, change_seq);
+CREATE INDEX customer_tombstone_deleted_at_idx ON customer_tombstone (deleted_at);
+
+CREATE OR REPLACE FUNCTION bump_customer_change_seq() RETURNS trigger AS $$
+BEGIN
+    NEW.change_xid := pg_current_xact_id();
+    NEW.change_seq := nextval('customer_change_seq');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION record_customer_tombstone() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO customer_tombstone (id) VALUES (OLD.id)
+    ON CONFLICT (id) DO UPDATE
+        SET change_xid = pg_current_xact_id(),
+            change_seq = nextval('customer_change_seq'),
+            deleted_at = now();
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+-- the newest position whose tombstones have been purged; tokens before it may
+-- have missed deletes
+CREATE TABLE customer_tombstone_purge(
+    id BOOLEAN PRIMARY KEY DEFAULT true CHECK (id),
+    purged_xid xid8 NOT NULL,
+    purged_seq BIGINT NOT NULL
+);
+
+INSERT INTO customer_tombstone_purge (purged_xid, purged_seq) VALUES ('0', 0);
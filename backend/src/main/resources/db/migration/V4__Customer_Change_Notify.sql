@@ -0,0 +1,15 @@
+CREATE OR REPLACE FUNCTION notify_customer_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('customer_changes', TG_OP || ':' || OLD.id);
+        RETURN OLD;
+    END IF;
+
+    PERFORM pg_notify('customer_changes', TG_OP || ':' || NEW.id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_change_notify
+    AFTER INSERT OR UPDATE OR DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_change();
@@ -0,0 +1,39 @@
+CREATE SEQUENCE customer_change_seq;
+
+ALTER TABLE customer
+    ADD COLUMN change_seq BIGINT NOT NULL DEFAULT nextval('customer_change_seq');
+
+CREATE INDEX customer_change_seq_idx ON customer (change_seq);
+
+CREATE TABLE customer_tombstone(
+    id BIGINT PRIMARY KEY,
+    change_seq BIGINT NOT NULL DEFAULT nextval('customer_change_seq'),
+    deleted_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX customer_tombstone_change_seq_idx ON customer_tombstone (change_seq);
+
+CREATE OR REPLACE FUNCTION bump_customer_change_seq() RETURNS trigger AS $$
+BEGIN
+    NEW.change_seq := nextval('customer_change_seq');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_change_seq_bump
+    BEFORE UPDATE ON customer
+    FOR EACH ROW EXECUTE FUNCTION bump_customer_change_seq();
+
+CREATE OR REPLACE FUNCTION record_customer_tombstone() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO customer_tombstone (id) VALUES (OLD.id)
+    ON CONFLICT (id) DO UPDATE
+        SET change_seq = nextval('customer_change_seq'),
+            deleted_at = now();
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_tombstone_record
+    AFTER DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION record_customer_tombstone();
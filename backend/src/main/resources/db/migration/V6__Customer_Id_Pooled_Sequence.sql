@@ -0,0 +1,4 @@
+-- JPA allocates ids in blocks of 50 (pooled-lo): one nextval per 50 inserts.
+-- Column DEFAULT inserts still take one nextval each and simply skip the rest
+-- of the block, so both paths keep drawing disjoint ids from the same sequence.
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
@@ -0,0 +1,12 @@
+CREATE TABLE idempotency_key(
+    request_key TEXT PRIMARY KEY,
+    fingerprint TEXT NOT NULL,
+    status INT,
+    content_type TEXT,
+    body BYTEA,
+    error BOOLEAN NOT NULL DEFAULT FALSE,
+    error_message TEXT,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX idempotency_key_expires_at_idx ON idempotency_key (expires_at);
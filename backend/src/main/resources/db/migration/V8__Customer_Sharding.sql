@@ -0,0 +1,17 @@
+-- Shard directory for customer.sharding. Only the copies on the primary database
+-- are used; it assigns every bucket (id % 1024) to a shard and indexes emails
+-- across all shards.
+CREATE TABLE customer_shard_bucket(
+    bucket INT PRIMARY KEY,
+    shard INT NOT NULL,
+    state TEXT NOT NULL DEFAULT 'ACTIVE',
+    target_shard INT
+);
+
+CREATE TABLE customer_email_route(
+    email TEXT PRIMARY KEY,
+    customer_id BIGINT NOT NULL UNIQUE
+);
+
+-- Lets a bucket be read in id order when it is moved between shards.
+CREATE INDEX customer_bucket_idx ON customer ((id % 1024), id);
@@ -0,0 +1,7 @@
+-- Lookups probe this index, and it replaces the exact-match unique constraint, so a
+-- lookup and the constraint agree on what counts as the same email. It is built
+-- concurrently, without blocking writes, which Flyway runs outside a transaction;
+-- a build that failed half way leaves an invalid index behind, dropped first.
+DROP INDEX CONCURRENTLY IF EXISTS customer_email_normalized_idx;
+
+CREATE UNIQUE INDEX CONCURRENTLY customer_email_normalized_idx ON customer (lower(btrim(email)));
@@ -0,0 +1,2 @@
+-- customer_email_normalized_idx enforces uniqueness from here on.
+ALTER TABLE customer DROP CONSTRAINT customer_email_key;
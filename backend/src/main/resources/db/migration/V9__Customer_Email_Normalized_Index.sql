@@ -0,0 +1,20 @@
+-- Emails are matched ignoring case and surrounding spaces, so customers whose emails
+-- only differ in those cannot both keep them. Which one keeps it is not for a
+-- migration to decide: list them and fail before any lock is taken.
+DO $$
+DECLARE
+    duplicates bigint;
+BEGIN
+    SELECT count(*) INTO duplicates
+    FROM (SELECT 1 FROM customer GROUP BY lower(btrim(email)) HAVING count(*) > 1) AS taken;
+    IF duplicates > 0 THEN
+        RAISE EXCEPTION '% emails belong to more than one customer when case and surrounding spaces are ignored',
+            duplicates
+            USING HINT = 'SELECT lower(btrim(email)), array_agg(id) FROM customer '
+                || 'GROUP BY 1 HAVING count(*) > 1 lists them; change or merge them and migrate again.';
+    END IF;
+END
+$$;
+
+-- The shard email index keeps normalized emails, so its primary key does the same.
+UPDATE customer_email_route SET email = lower(btrim(email)) WHERE email <> lower(btrim(email));
@@ -13,6 +13,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import ru.zotov.customer.Customer;
 
 import javax.sql.DataSource;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 
@@ -28,7 +29,9 @@ public abstract class AbstractTestContainers {
                         postgreSQLContainer.getJdbcUrl(),
                         postgreSQLContainer.getUsername(),
                         postgreSQLContainer.getPassword()
-                ).load();
+                )
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load();
         flyway.migrate();
     }
 
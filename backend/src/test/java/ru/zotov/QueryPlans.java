@@ -0,0 +1,220 @@
+package ru.zotov;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Captures the statements an operation executes through a DataSource wrapped by
+ * {@link #recording(DataSource)} and replays them under
+ * {@code EXPLAIN (ANALYZE, BUFFERS)} with the same parameters, so tests can assert
+ * on the plans the database actually picks. Inserts are not captured: they scan
+ * nothing. Replays run in a transaction that is rolled back.
+ */
+public final class QueryPlans {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadLocal<List<RecordedStatement>> recorded = new ThreadLocal<>();
+
+    private QueryPlans() {
+    }
+
+    public static DataSource recording(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+            }
+        };
+    }
+
+    public static List<RecordedStatement> record(Runnable action) {
+        List<RecordedStatement> statements = new ArrayList<>();
+        recorded.set(statements);
+        try {
+            action.run();
+        } finally {
+            recorded.remove();
+        }
+        return statements;
+    }
+
+    public static Plan explain(DataSource dataSource, RecordedStatement statement) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement explain = connection.prepareStatement(
+                    "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + statement.sql())) {
+                for (Consumer<PreparedStatement> binding : statement.bindings()) {
+                    binding.accept(explain);
+                }
+                try (ResultSet resultSet = explain.executeQuery()) {
+                    resultSet.next();
+                    return new Plan(statement.sql(), objectMapper.readTree(resultSet.getString(1)).get(0));
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Failed to explain " + statement.sql(), e);
+        }
+    }
+
+    public record RecordedStatement(String sql, List<Consumer<PreparedStatement>> bindings) {
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    /**
+     * A plan executed by {@code EXPLAIN ANALYZE}. Buffer counts are those of the
+     * execution, shared blocks hit and read alike, and leave planning out.
+     */
+    public static final class Plan {
+
+        private final String sql;
+        private final JsonNode explained;
+        private final List<JsonNode> nodes = new ArrayList<>();
+
+        Plan(String sql, JsonNode explained) {
+            this.sql = sql;
+            this.explained = explained;
+            collect(explained.get("Plan"));
+        }
+
+        public String sql() {
+            return sql;
+        }
+
+        /**
+         * @return the type of each node scanning {@code relation}, for example
+         * {@code "Index Only Scan"}
+         */
+        public List<String> scansOf(String relation) {
+            return nodes.stream()
+                    .filter(node -> relation.equals(node.path("Relation Name").asText(null)))
+                    .map(node -> node.get("Node Type").asText())
+                    .filter(type -> type.endsWith("Scan"))
+                    .toList();
+        }
+
+        public List<String> indexesUsed() {
+            return nodes.stream()
+                    .filter(node -> node.has("Index Name"))
+                    .map(node -> node.get("Index Name").asText())
+                    .distinct()
+                    .toList();
+        }
+
+        public long sharedBlocks() {
+            JsonNode root = explained.get("Plan");
+            return root.path("Shared Hit Blocks").asLong() + root.path("Shared Read Blocks").asLong();
+        }
+
+        public long heapFetches() {
+            return nodes.stream().mapToLong(node -> node.path("Heap Fetches").asLong()).sum();
+        }
+
+        @Override
+        public String toString() {
+            return sql + "\n" + explained.toPrettyString();
+        }
+
+        private void collect(JsonNode node) {
+            nodes.add(node);
+            for (JsonNode child : node.path("Plans")) {
+                collect(child);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryPlans.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isInsert(String sql) {
+        return sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("insert");
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryPlans.invoke(target, method, args);
+            if (recorded.get() == null || !(result instanceof Statement)) {
+                return result;
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, new StatementHandler((Statement) result, sql));
+            }
+            return proxy(Statement.class, new StatementHandler((Statement) result, null));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private final List<Consumer<PreparedStatement>> bindings = new ArrayList<>();
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(statement -> {
+                    try {
+                        QueryPlans.invoke(statement, method, args);
+                    } catch (Throwable e) {
+                        throw new IllegalStateException("Failed to bind " + method.getName(), e);
+                    }
+                });
+            } else if (name.equals("clearParameters")) {
+                bindings.clear();
+            } else if (name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+                List<RecordedStatement> statements = recorded.get();
+                if (statements != null && sql != null && !isInsert(sql)) {
+                    statements.add(new RecordedStatement(sql, List.copyOf(bindings)));
+                }
+            }
+            return QueryPlans.invoke(target, method, args);
+        }
+    }
+}
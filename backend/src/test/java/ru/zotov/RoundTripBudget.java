@@ -0,0 +1,70 @@
+package ru.zotov;
+
+import ru.zotov.sqlstats.DatabaseUsage;
+import ru.zotov.sqlstats.DatabaseUsageTracker;
+import ru.zotov.sqlstats.ObservedDataSource;
+import ru.zotov.sqlstats.SqlStatistics;
+import ru.zotov.sqlstats.SqlStatsProperties;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Asserts how many database round trips an operation may take, so chatty and N+1
+ * regressions fail the build. DAO tests run the operation directly on a DataSource
+ * wrapped by {@link #observed(DataSource)}; HTTP tests read the {@code X-DB-*}
+ * headers the application returns with {@code customer.db-usage.debug-headers=true}.
+ */
+public final class RoundTripBudget {
+
+    public static final String STATEMENTS_HEADER = "X-DB-Statements";
+
+    private RoundTripBudget() {
+    }
+
+    public static DataSource observed(DataSource dataSource) {
+        return new ObservedDataSource(dataSource, new SqlStatistics(
+                new SqlStatsProperties(false, 0, Duration.ofSeconds(1), 1, 1)));
+    }
+
+    public static DatabaseUsage measure(Runnable action) {
+        DatabaseUsageTracker.start();
+        try {
+            action.run();
+        } catch (RuntimeException | Error e) {
+            DatabaseUsageTracker.stop();
+            throw e;
+        }
+        return DatabaseUsageTracker.stop();
+    }
+
+    public static <T> T assertAtMostStatements(int maxStatements, Supplier<T> action) {
+        AtomicReference<T> result = new AtomicReference<>();
+        assertWithinBudget(measure(() -> result.set(action.get())), maxStatements);
+        return result.get();
+    }
+
+    public static void assertAtMostStatements(int maxStatements, Runnable action) {
+        assertWithinBudget(measure(action), maxStatements);
+    }
+
+    /**
+     * For {@code WebTestClient}: {@code .expectHeader().value(STATEMENTS_HEADER, atMostStatements(1))}.
+     */
+    public static Consumer<String> atMostStatements(int maxStatements) {
+        return statements -> assertThat(Long.parseLong(statements))
+                .as("database statements")
+                .isLessThanOrEqualTo(maxStatements);
+    }
+
+    private static void assertWithinBudget(DatabaseUsage usage, int maxStatements) {
+        assertThat(usage.statements())
+                .as("database statements (%s)", usage)
+                .isLessThanOrEqualTo(maxStatements);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.zotov.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.QueryTimeoutException;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.exception.ResourceNotFoundException;
+import ru.zotov.exception.ServiceOverloadedException;
+import ru.zotov.sqlstats.DatabaseUsage;
+import ru.zotov.sqlstats.DatabaseUsageTracker;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkOperationAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BulkOperationAspect aspect;
+    private Service underTest;
+
+    @BeforeEach
+    void setUp() {
+        aspect = new BulkOperationAspect(1, 1, Duration.ofSeconds(2), meterRegistry);
+        AspectJProxyFactory factory = new AspectJProxyFactory(new Service());
+        factory.addAspect(aspect);
+        factory.setProxyTargetClass(true);
+        underTest = factory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        aspect.stop();
+        Deadline.clear();
+    }
+
+    @Test
+    void runsOnBulkExecutorAsBulkWorkWithBulkTimeout() {
+        Deadline.start(Duration.ofMillis(100));
+
+        String result = underTest.describe();
+
+        assertThat(result).startsWith("customer-bulk-1 BULK ");
+        assertThat(Long.parseLong(result.substring(result.lastIndexOf(' ') + 1))).isGreaterThan(1000);
+        assertThat(Workload.current()).isEqualTo(Workload.OLTP);
+    }
+
+    @Test
+    void chargesDatabaseUsageToCallingThread() {
+        DatabaseUsageTracker.start();
+
+        underTest.describe();
+
+        assertThat(DatabaseUsageTracker.stop()).isEqualTo(DatabaseUsage.NONE);
+    }
+
+    @Test
+    void rejectsOnceExecutorAndQueueAreFull() throws Exception {
+        new Thread(underTest::block).start();
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        new Thread(underTest::describe).start();
+        while (queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(underTest::describe)
+                .isInstanceOf(ServiceOverloadedException.class)
+                .hasMessage("too many concurrent bulk requests, retry later");
+        assertThat(meterRegistry.get("customer.bulkhead.rejected").counter().count()).isEqualTo(1);
+        assertThat(queued()).isEqualTo(1);
+    }
+
+    @Test
+    void failsWithQueryTimeoutOnceBulkTimeoutPasses() {
+        assertThatThrownBy(underTest::block)
+                .isInstanceOf(QueryTimeoutException.class)
+                .hasMessage("bulk operation timeout of 2000 ms exceeded");
+        assertThat(meterRegistry.get("customer.bulkhead.timed-out").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rethrowsFailureOfOperation() {
+        assertThatThrownBy(underTest::notFound)
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("no such customer");
+    }
+
+    private double queued() {
+        return meterRegistry.get("executor.queued").tag("name", "customer-bulk").gauge().value();
+    }
+
+    class Service {
+
+        @BulkOperation
+        public String describe() {
+            return "%s %s %d".formatted(Thread.currentThread().getName(), Workload.current(),
+                    Deadline.current().remainingMillis());
+        }
+
+        @BulkOperation
+        public void block() {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @BulkOperation
+        public void notFound() {
+            throw new ResourceNotFoundException("no such customer");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.zotov.bulkhead;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkloadRoutingDataSourceTest {
+
+    private final DataSource oltp = mock(DataSource.class);
+    private final DataSource bulk = mock(DataSource.class);
+    private final Connection oltpConnection = mock(Connection.class);
+    private final Connection bulkConnection = mock(Connection.class);
+    private final WorkloadRoutingDataSource underTest = new WorkloadRoutingDataSource(oltp, bulk);
+
+    @Test
+    void routesBulkWorkToBulkPool() throws Exception {
+        when(oltp.getConnection()).thenReturn(oltpConnection);
+        when(bulk.getConnection()).thenReturn(bulkConnection);
+
+        assertThat(underTest.getConnection()).isSameAs(oltpConnection);
+        assertThat(Workload.bulk(this::connection)).isSameAs(bulkConnection);
+        assertThat(underTest.getConnection()).isSameAs(oltpConnection);
+        assertThat(Workload.current()).isEqualTo(Workload.OLTP);
+    }
+
+    @Test
+    void restoresOuterWorkloadAfterNestedBulkWork() {
+        Workload.attach(Workload.BULK);
+        try {
+            Workload.bulk(() -> null);
+
+            assertThat(Workload.current()).isEqualTo(Workload.BULK);
+        } finally {
+            Workload.attach(null);
+        }
+    }
+
+    private Connection connection() {
+        try {
+            return underTest.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.zotov.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.QueryTimeoutException;
+import ru.zotov.exception.ResourceNotFoundException;
+import ru.zotov.exception.ServiceOverloadedException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitAspectTest {
+
+    private final ConcurrencyLimiter readLimiter = new ConcurrencyLimiter(1, 1, 10, Duration.ofMillis(100));
+    private final ConcurrencyLimiter writeLimiter = new ConcurrencyLimiter(1, 1, 10, Duration.ofMillis(100));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Service underTest;
+
+    @BeforeEach
+    void setUp() {
+        AspectJProxyFactory factory = new AspectJProxyFactory(new Service());
+        factory.addAspect(new ConcurrencyLimitAspect(
+                Map.of(Operation.READ, readLimiter, Operation.WRITE, writeLimiter), meterRegistry));
+        factory.setProxyTargetClass(true);
+        underTest = factory.getProxy();
+    }
+
+    @Test
+    void rejectsReadsOverLimitWhileWritesHaveTheirOwn() throws Exception {
+        Thread blocked = new Thread(underTest::blockingRead);
+        blocked.start();
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(underTest::read)
+                .isInstanceOf(ServiceOverloadedException.class)
+                .hasMessage("too many concurrent read requests, retry later");
+        assertThat(underTest.write()).isEqualTo("written");
+        assertThat(meterRegistry.get("customer.concurrency.rejected")
+                .tag("operation", "read").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        blocked.join();
+        assertThat(underTest.read()).isEqualTo("read");
+    }
+
+    @Test
+    void releasesPermitWhenCallFails() {
+        assertThatThrownBy(underTest::notFound).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(underTest::timeout).isInstanceOf(QueryTimeoutException.class);
+
+        assertThat(readLimiter.getInFlight()).isZero();
+        assertThat(underTest.read()).isEqualTo("read");
+    }
+
+    class Service {
+
+        @ConcurrencyLimited(Operation.READ)
+        public String read() {
+            return "read";
+        }
+
+        @ConcurrencyLimited(Operation.READ)
+        public void blockingRead() {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @ConcurrencyLimited(Operation.READ)
+        public void notFound() {
+            throw new ResourceNotFoundException("missing");
+        }
+
+        @ConcurrencyLimited(Operation.READ)
+        public void timeout() {
+            throw new QueryTimeoutException("slow");
+        }
+
+        @ConcurrencyLimited(Operation.WRITE)
+        public String write() {
+            return "written";
+        }
+    }
+}
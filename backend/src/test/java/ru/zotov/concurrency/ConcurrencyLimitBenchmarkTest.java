@@ -0,0 +1,93 @@
+package ru.zotov.concurrency;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Closed-loop overload against a simulated database that serves 8 calls in
+ * parallel well and slows every call down as more pile up beyond that. Compares
+ * goodput and p99 of served calls with and without the adaptive limit. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ConcurrencyLimitBenchmarkTest {
+
+    private static final int CLIENTS = 64;
+    private static final int DATABASE_CAPACITY = 8;
+    private static final long BASE_SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final Duration RUN = Duration.ofSeconds(15);
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    @Test
+    void overload() throws InterruptedException {
+        run("unlimited", null);
+        run("adaptive limit", new ConcurrencyLimiter(20, 2, 200, Duration.ofMillis(100)));
+    }
+
+    private void run(String label, ConcurrencyLimiter limiter) throws InterruptedException {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong rejected = new AtomicLong();
+        long end = System.nanoTime() + RUN.toNanos();
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Thread client = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    ConcurrencyLimiter.Permit permit = limiter == null ? null : limiter.tryAcquire();
+                    if (limiter != null && permit == null) {
+                        rejected.incrementAndGet();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                        continue;
+                    }
+                    query();
+                    if (permit != null) {
+                        permit.onSuccess();
+                    }
+                    latencies.add(System.nanoTime() - start);
+                }
+            });
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.isEmpty() ? 0 : sorted.get((int) (sorted.size() * 0.99));
+        System.out.printf("%-15s goodput %6.0f/s  p50 %5.1f ms  p99 %5.1f ms  rejected %d%s%n",
+                label,
+                sorted.size() / (double) RUN.toSeconds(),
+                sorted.isEmpty() ? 0 : sorted.get(sorted.size() / 2) / 1e6,
+                p99 / 1e6,
+                rejected.get(),
+                limiter == null ? "" : "  final limit " + limiter.getLimit());
+    }
+
+    /**
+     * Service time grows by a quarter of the base time for every call in flight
+     * above the capacity, which models lock and I/O contention.
+     */
+    private void query() {
+        int concurrent = active.incrementAndGet();
+        try {
+            long contention = Math.max(0, concurrent - DATABASE_CAPACITY);
+            LockSupport.parkNanos(BASE_SERVICE_NANOS + contention * BASE_SERVICE_NANOS / 4);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.zotov.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimiterTest {
+
+    private static final long BASELINE_RTT = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final AtomicLong now = new AtomicLong();
+    private final ConcurrencyLimiter underTest =
+            new ConcurrencyLimiter(10, 2, 100, Duration.ofMillis(100), now::get);
+
+    @Test
+    void rejectsOnceLimitIsInFlight() {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            permits.add(underTest.tryAcquire());
+        }
+
+        assertThat(permits).doesNotContainNull();
+        assertThat(underTest.tryAcquire()).isNull();
+
+        permits.get(0).onSuccess();
+        assertThat(underTest.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void releasingTwiceDoesNotFreeExtraCapacity() {
+        ConcurrencyLimiter.Permit permit = underTest.tryAcquire();
+        permit.onSuccess();
+        permit.onSuccess();
+
+        assertThat(underTest.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitGrowsWhileLatencyStaysAtBaseline() {
+        runWindows(50, BASELINE_RTT, false);
+
+        assertThat(underTest.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() {
+        runWindows(50, BASELINE_RTT, false);
+        int grown = underTest.getLimit();
+
+        runWindows(20, BASELINE_RTT * 5, false);
+
+        assertThat(underTest.getLimit()).isLessThan(grown / 2);
+    }
+
+    @Test
+    void droppedCallsBackOff() {
+        runWindows(10, BASELINE_RTT, true);
+
+        assertThat(underTest.getLimit()).isLessThan(10);
+    }
+
+    @Test
+    void rejectsInconsistentLimits() {
+        assertThatThrownBy(() -> new ConcurrencyLimiter(1, 2, 10, Duration.ofMillis(100)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Each window runs the limiter at full utilization: acquire up to the limit,
+     * then complete all calls after {@code rtt}.
+     */
+    private void runWindows(int windows, long rtt, boolean dropped) {
+        for (int w = 0; w < windows; w++) {
+            List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            ConcurrencyLimiter.Permit permit;
+            while ((permit = underTest.tryAcquire()) != null) {
+                permits.add(permit);
+            }
+
+            now.addAndGet(rtt);
+            for (ConcurrencyLimiter.Permit p : permits) {
+                if (dropped) {
+                    p.onDropped();
+                } else {
+                    p.onSuccess();
+                }
+            }
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+}
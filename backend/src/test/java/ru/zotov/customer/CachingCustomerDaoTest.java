@@ -0,0 +1,119 @@
+package ru.zotov.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao underTest;
+    private CustomerCache customerCache;
+    @Mock
+    CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        customerCache = new CustomerCache(100);
+        underTest = new CachingCustomerDao(customerDao, customerCache);
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstLoad() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        assertThat(actual).hasValue(customer);
+        verify(customerDao, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void cachedCustomerCannotBeMutatedByCaller() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        underTest.selectCustomerById(1).orElseThrow().setName("foo");
+
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(
+                c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void changeNotificationEvictsCustomer() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        underTest.selectCustomerById(1);
+        customerCache.onCustomerChange(new CustomerChange(CustomerChange.Type.UPDATE, 1));
+        underTest.selectCustomerById(1);
+
+        verify(customerDao, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void missedChangesFlushCache() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        underTest.selectCustomerById(1);
+        customerCache.onChangesMissed();
+
+        assertThat(customerCache.size()).isZero();
+    }
+
+    @Test
+    void valueLoadedAcrossEvictionIsNotCached() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            customerCache.evict(1);
+            return Optional.of(customer);
+        });
+
+        underTest.selectCustomerById(1);
+
+        assertThat(customerCache.get(1)).isEmpty();
+    }
+
+    @Test
+    void updateCustomerEvictsCustomer() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        underTest.selectCustomerById(1);
+        underTest.updateCustomer(customer);
+
+        assertThat(customerCache.get(1)).isEmpty();
+        verify(customerDao).updateCustomer(customer);
+    }
+
+    @Test
+    void selectCustomersByIdsLoadsOnlyMisses() {
+        Customer cached = new Customer(1, "Alex", "alex@gmail.com", 20);
+        Customer missing = new Customer(2, "Olga", "olga@gmail.com", 22);
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(cached));
+        when(customerDao.selectCustomersByIds(List.of(2))).thenReturn(List.of(missing));
+
+        underTest.selectCustomerById(1);
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1, 2));
+
+        assertThat(actual).containsExactlyInAnyOrder(cached, missing);
+        verify(customerDao).selectCustomersByIds(List.of(2));
+    }
+
+    @Test
+    void parsesChangePayload() {
+        assertThat(CustomerChange.parse("DELETE:42"))
+                .isEqualTo(new CustomerChange(CustomerChange.Type.DELETE, 42));
+    }
+}
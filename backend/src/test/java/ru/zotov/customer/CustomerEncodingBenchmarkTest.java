@@ -0,0 +1,72 @@
+package ru.zotov.customer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Payload size (raw and gzip) and encode/decode time of a customer list in JSON
+ * versus CBOR and Smile. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class CustomerEncodingBenchmarkTest {
+
+    private static final Map<String, ObjectMapper> MAPPERS = Map.of(
+            "json", new JsonMapper(),
+            "cbor", new CBORMapper(),
+            "smile", new SmileMapper());
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<>() {
+    };
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 100_000})
+    void encodeAndDecode(int count) throws IOException {
+        List<Customer> customers = IntStream.range(0, count)
+                .mapToObj(i -> new Customer(i, "Customer Name " + i, "customer" + i + "@gmail.com", 18 + i % 80))
+                .toList();
+        int rounds = Math.max(5, 2_000_000 / Math.max(count, 1_000));
+
+        for (String format : List.of("json", "cbor", "smile")) {
+            ObjectMapper mapper = MAPPERS.get(format);
+            byte[] encoded = mapper.writeValueAsBytes(customers);
+            assertThat(mapper.readValue(encoded, CUSTOMER_LIST)).isEqualTo(customers);
+
+            long bestEncode = Long.MAX_VALUE;
+            long bestDecode = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                mapper.writeValueAsBytes(customers);
+                long encodedAt = System.nanoTime();
+                mapper.readValue(encoded, CUSTOMER_LIST);
+                long decodedAt = System.nanoTime();
+                bestEncode = Math.min(bestEncode, encodedAt - start);
+                bestDecode = Math.min(bestDecode, decodedAt - encodedAt);
+            }
+
+            System.out.printf("%6d customers %-5s %10d bytes %9d gzip  encode %9.1f us  decode %9.1f us%n",
+                    count, format, encoded.length, gzip(encoded).length, bestEncode / 1e3, bestDecode / 1e3);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -2,14 +2,19 @@ package ru.zotov.customer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.zotov.AbstractTestContainers;
+import ru.zotov.RoundTripBudget;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
@@ -20,7 +25,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
     @BeforeEach
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
-                getJdbcTemplate(), customerRowMapper
+                new JdbcTemplate(RoundTripBudget.observed(getJdbcTemplate().getDataSource())), customerRowMapper
         );
     }
 
@@ -37,6 +42,19 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(customers).isNotEmpty();
     }
 
+    @Test
+    void insertCustomerSetsGeneratedId() {
+        Customer customer = new Customer("Alex",
+                UUID.randomUUID() + "@gmail.com",
+                new Random().nextInt(20, 90));
+
+        underTest.insertCustomer(customer);
+
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(customer.getId())).get()
+                .extracting(Customer::getEmail).isEqualTo(customer.getEmail());
+    }
+
     @Test
     void selectCustomerById() {
         String email = UUID.randomUUID() + "@gmail.com";
@@ -73,6 +91,30 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(actual).isEmpty();
     }
 
+    @Test
+    void selectCustomersByIds() {
+        String email = UUID.randomUUID() + "@gmail.com";
+        Customer customer = new Customer("Alex",
+                email, new Random().nextInt(20, 90));
+
+        underTest.insertCustomer(customer);
+
+        int id = underTest.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        List<Customer> actual = RoundTripBudget.assertAtMostStatements(1,
+                () -> underTest.selectCustomersByIds(List.of(id, -1)));
+
+        assertThat(actual).singleElement()
+                .satisfies(c -> {
+                    assertThat(c.getId()).isEqualTo(id);
+                    assertThat(c.getEmail()).isEqualTo(email);
+                });
+    }
+
     @Test
     void insertCustomer() {
         String email = UUID.randomUUID() + "@gmail.com";
@@ -98,6 +140,24 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         });
     }
 
+    @Test
+    void insertCustomers() {
+        List<Customer> customers = IntStream.range(0, 3)
+                .mapToObj(i -> new Customer("Alex" + i, UUID.randomUUID() + "@gmail.com", 20 + i))
+                .toList();
+        List<String> emails = customers.stream().map(Customer::getEmail).toList();
+
+        // one block of ids, one batched INSERT
+        RoundTripBudget.assertAtMostStatements(2, () -> underTest.insertCustomers(customers));
+
+        List<Customer> actual = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> emails.contains(c.getEmail()))
+                .toList();
+        assertThat(actual).extracting(Customer::getName)
+                .containsExactlyInAnyOrder("Alex0", "Alex1", "Alex2");
+    }
+
     @Test
     void existsCustomerWithEmail() {
         String email = UUID.randomUUID() + "@gmail.com";
@@ -109,6 +169,21 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void emailsMatchIgnoringCaseAndSurroundingSpaces() {
+        String email = UUID.randomUUID() + "@gmail.com";
+        Customer customer = new Customer("Alex", email, new Random().nextInt(20, 90));
+        underTest.insertCustomer(customer);
+
+        String variant = "  " + email.toUpperCase() + " ";
+
+        assertThat(underTest.existsCustomerWithEmail(variant)).isTrue();
+        assertThat(underTest.selectCustomerByEmail(variant)).get()
+                .extracting(Customer::getId).isEqualTo(customer.getId());
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", variant, 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
     @Test
     void existsCustomerWithEmailReturnFalse() {
         String email = UUID.randomUUID() + "@gmail.com";
@@ -273,7 +348,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         update.setEmail(newEmail);
         update.setAge(newAge);
 
-        underTest.updateCustomer(update);
+        RoundTripBudget.assertAtMostStatements(1, () -> underTest.updateCustomer(update));
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isPresent().hasValue(update);
     }
@@ -1,11 +1,13 @@
 package ru.zotov.customer;
 
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
 import java.util.Random;
 
 import static org.mockito.Mockito.verify;
@@ -14,12 +16,13 @@ class CustomerJPADataAccessServiceTest {
 
     private CustomerJPADataAccessService underTest;
     @Mock private CustomerRepository customerRepository;
+    @Mock private EntityManagerFactory entityManagerFactory;
     private AutoCloseable autoCloseable;
 
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManagerFactory);
     }
 
     @AfterEach
@@ -34,7 +37,7 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void selectAllCustomers() {
         underTest.selectAllCustomers();
-        verify(customerRepository).findAll();
+        verify(customerRepository).findAllDetached();
     }
 
     @Test
@@ -44,6 +47,13 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomersByIds() {
+        List<Integer> ids = List.of(1, 2, 3);
+        underTest.selectCustomersByIds(ids);
+        verify(customerRepository).findAllById(ids);
+    }
+
     @Test
     void insertCustomer() {
         Customer customer = new Customer(1, "Name", "gmail@gmail.com", 23);
@@ -51,6 +61,15 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomers() {
+        List<Customer> customers = List.of(
+                new Customer("Alex", "alex@gmail.com", 23),
+                new Customer("Jamila", "jamila@gmail.com", 19));
+        underTest.insertCustomers(customers);
+        verify(customerRepository).saveAll(customers);
+    }
+
     @Test
     void existsCustomerWithEmail() {
         String email = "test@gmailcom";
@@ -58,6 +77,13 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).existsCustomerByEmail(email);
     }
 
+    @Test
+    void selectCustomerByEmail() {
+        String email = "test@gmail.com";
+        underTest.selectCustomerByEmail(email);
+        verify(customerRepository).findCustomerByEmail(email);
+    }
+
     @Test
     void existsCustomerWithId() {
         Integer id = new Random().nextInt();
@@ -0,0 +1,76 @@
+package ru.zotov.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.zotov.AbstractTestContainers;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserts/sec through the JPA path: one {@code save} per row versus the batched
+ * {@code saveAll} bulk path. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerJPAInsertBenchmarkTest extends AbstractTestContainers {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 5_000);
+
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private CustomerJPADataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManagerFactory);
+    }
+
+    @Test
+    void rowAtATime() {
+        List<Customer> customers = customers(ROWS);
+
+        long start = System.nanoTime();
+        customers.forEach(underTest::insertCustomer);
+        report("row-at-a-time save", start);
+
+        assertThat(customers).allMatch(customer -> customer.getId() != null);
+    }
+
+    @Test
+    void bulkSaveAll() {
+        List<Customer> customers = customers(ROWS);
+
+        long start = System.nanoTime();
+        underTest.insertCustomers(customers);
+        report("bulk saveAll", start);
+
+        assertThat(customers).allMatch(customer -> customer.getId() != null);
+    }
+
+    private static List<Customer> customers(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Customer("Bench" + i, UUID.randomUUID() + "@gmail.com", 30))
+                .toList();
+    }
+
+    private static void report(String label, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%s: %d rows in %.2f s (%.0f inserts/sec)%n", label, ROWS, seconds, ROWS / seconds);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.zotov.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.zotov.AbstractTestContainers;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time and allocation per row for a full read through each JPA variant, with the
+ * JDBC DAO as reference. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerJPAReadBenchmarkTest extends AbstractTestContainers {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 50_000);
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerJPADataAccessService underTest;
+    private CustomerJDBCDataAccessService jdbcDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManagerFactory);
+        jdbcDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        customerRepository.deleteAllInBatch();
+        jdbcDao.insertCustomers(IntStream.range(0, ROWS)
+                .mapToObj(i -> new Customer("Bench" + i, UUID.randomUUID() + "@gmail.com", 30))
+                .toList());
+    }
+
+    @Test
+    void fullRead() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        measure("jpa findAll (managed)", () -> customerRepository.findAll().size());
+        measure("jpa findAllDetached", () -> underTest.selectAllCustomers().size());
+        measure("jpa streamAllDetached", () -> readOnly.execute(status -> {
+            try (Stream<Customer> customers = customerRepository.streamAllDetached()) {
+                return customers.count();
+            }
+        }));
+        measure("jpa stateless scan", () -> {
+            LongAdder count = new LongAdder();
+            underTest.forEachCustomer(customer -> count.increment());
+            return count.sum();
+        });
+        measure("jdbc selectAllCustomers", () -> jdbcDao.selectAllCustomers().size());
+    }
+
+    private static void measure(String label, LongSupplier read) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long rows = read.getAsLong();
+            long nanos = System.nanoTime() - start;
+            long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+            assertThat(rows).isEqualTo(ROWS);
+            bestNanos = Math.min(bestNanos, nanos);
+            bestBytes = Math.min(bestBytes, bytes);
+        }
+        System.out.printf("%-26s %6d ns/row %6d bytes/row%n",
+                label, bestNanos / ROWS, bestBytes / ROWS);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.zotov.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerListCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", 20);
+    private final Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 30);
+    private CustomerListCache underTest;
+    @Mock
+    CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListCache(customerDao, objectMapper, true, DataSize.ofMegabytes(1), 10);
+    }
+
+    @Test
+    void servesEncodedListUntilInvalidated() throws Exception {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(jamila, alex));
+
+        CustomerListCache.Body first = underTest.get();
+        CustomerListCache.Body actual = underTest.get();
+
+        assertThat(actual).isSameAs(first);
+        assertThat(actual.json()).isEqualTo(objectMapper.writeValueAsBytes(List.of(alex, jamila)));
+        assertThat(actual.etag()).matches("\"[0-9a-f]{32}\"");
+        verify(customerDao, times(1)).selectAllCustomers();
+    }
+
+    @Test
+    void patchesOnlyChangedRows() throws Exception {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(alex, jamila));
+        String etag = underTest.get().etag();
+        Customer renamed = new Customer(1, "Alexander", "alex@gmail.com", 20);
+        when(customerDao.selectCustomersByIds(any())).thenReturn(List.of(renamed));
+
+        underTest.invalidate(1);
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.DELETE, 2));
+        CustomerListCache.Body actual = underTest.get();
+
+        assertThat(actual.json()).isEqualTo(objectMapper.writeValueAsBytes(List.of(renamed)));
+        assertThat(actual.etag()).isNotEqualTo(etag);
+        verify(customerDao, times(1)).selectAllCustomers();
+        verify(customerDao).selectCustomersByIds(argThat(ids -> ids.containsAll(List.of(1, 2))));
+    }
+
+    @Test
+    void reloadsAfterMissedChanges() {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(alex), List.of(alex, jamila));
+        underTest.get();
+
+        underTest.onChangesMissed();
+        CustomerListCache.Body actual = underTest.get();
+
+        assertThat(new String(actual.json())).contains("Jamila");
+        verify(customerDao, times(2)).selectAllCustomers();
+        verify(customerDao, never()).selectCustomersByIds(any());
+    }
+
+    @Test
+    void servesTheLastBodyWhileTheStoreFails() {
+        when(customerDao.selectAllCustomers())
+                .thenReturn(List.of(alex))
+                .thenThrow(new ResourceUnavailableException("customer store is unavailable, retry later"));
+        CustomerListCache.Body first = underTest.get();
+
+        underTest.invalidateAll();
+
+        assertThat(underTest.get()).isSameAs(first);
+    }
+
+    @Test
+    void gzipVariantHasItsOwnEtag() throws Exception {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(alex, jamila));
+
+        CustomerListCache.Body actual = underTest.get();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(actual.gzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(actual.json());
+        }
+        assertThat(actual.gzip()).isSameAs(actual.gzip());
+        assertThat(actual.gzipEtag()).isNotEqualTo(actual.etag()).endsWith("-gzip\"");
+    }
+
+    @Test
+    void listsLargerThanMaxSizeAreNotKept() {
+        underTest = new CustomerListCache(customerDao, objectMapper, true, DataSize.ofBytes(16), 10);
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(alex, jamila));
+
+        CustomerListCache.Body first = underTest.get();
+        CustomerListCache.Body actual = underTest.get();
+
+        assertThat(actual).isNotSameAs(first);
+        assertThat(actual.json()).isEqualTo(first.json());
+        verify(customerDao, times(2)).selectAllCustomers();
+    }
+}
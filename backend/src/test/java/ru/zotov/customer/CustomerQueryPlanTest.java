@@ -0,0 +1,198 @@
+package ru.zotov.customer;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.zotov.AbstractTestContainers;
+import ru.zotov.QueryPlans;
+import ru.zotov.QueryPlans.Plan;
+import ru.zotov.QueryPlans.RecordedStatement;
+import ru.zotov.datagen.CustomerCopyLoader;
+import ru.zotov.datagen.CustomerGenerator;
+import ru.zotov.datagen.DataGenerationProperties;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every statement the customer DAOs issue against a table of
+ * {@code query-plan.rows} customers under {@code EXPLAIN (ANALYZE, BUFFERS)}, and
+ * fails when one stops probing an index or touches more blocks than its budget.
+ * Full listings scan the table by design and are left out.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(CustomerQueryPlanTest.RecordingConfig.class)
+class CustomerQueryPlanTest extends AbstractTestContainers {
+
+    private static final int ROWS = Integer.getInteger("query-plan.rows", 200_000);
+    private static final List<String> INDEX_SCANS = List.of("Index Scan", "Index Only Scan");
+    private static final List<String> INDEX_ONLY_SCANS = List.of("Index Only Scan");
+
+    // a btree descent plus the heap page holding the row
+    private static final long POINT_BLOCKS = 8;
+    private static final int BATCH = 10;
+    private static final int CHANGES = 100;
+
+    private static List<Customer> sample;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private CustomerJDBCDataAccessService jdbcDao;
+    private CustomerJPADataAccessService jpaDao;
+    private CustomerSyncDataAccessService syncDao;
+
+    @BeforeAll
+    static void loadCustomers() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        jdbcTemplate.execute("TRUNCATE customer, customer_tombstone");
+        CustomerGenerator generator = new CustomerGenerator(new DataGenerationProperties(true, ROWS, 42, 0,
+                50_000, 1, 18, 90, DataGenerationProperties.AgeDistribution.UNIFORM, 40, 15, 2000,
+                DataGenerationProperties.NameDistribution.ZIPF, 1.0,
+                List.of("example.com", "example.org", "example.net"), false, false));
+        new CustomerCopyLoader(jdbcTemplate.getDataSource()).load(generator, 0, ROWS, 10_000, 4);
+        jdbcTemplate.execute("VACUUM ANALYZE customer");
+        jdbcTemplate.execute("VACUUM ANALYZE customer_tombstone");
+
+        // spread over the table, and each test probes customers of its own, so the
+        // writes of one leave the pages another probes all-visible
+        sample = jdbcTemplate.query("""
+                SELECT id, name, email, age FROM customer ORDER BY md5(id::text) LIMIT ?
+                """, new CustomerRowMapper(), BATCH);
+    }
+
+    @BeforeEach
+    void setUp() {
+        CustomerRowMapper rowMapper = new CustomerRowMapper();
+        jdbcDao = new CustomerJDBCDataAccessService(jdbcTemplate, rowMapper);
+        jpaDao = new CustomerJPADataAccessService(customerRepository, entityManagerFactory);
+        syncDao = new CustomerSyncDataAccessService(jdbcTemplate, rowMapper);
+    }
+
+    @Test
+    void jdbcReadsProbeAnIndex() {
+        Customer customer = sample.get(0);
+        List<Integer> ids = sample.stream().map(Customer::getId).toList();
+
+        assertPlans(() -> jdbcDao.selectCustomerById(customer.getId()), INDEX_SCANS, POINT_BLOCKS);
+        assertPlans(() -> jdbcDao.selectCustomerByEmail(" " + customer.getEmail().toUpperCase() + " "),
+                INDEX_SCANS, POINT_BLOCKS);
+        assertPlans(() -> jdbcDao.selectCustomersByIds(ids), INDEX_SCANS, POINT_BLOCKS * BATCH);
+    }
+
+    @Test
+    void jpaReadsProbeAnIndex() {
+        Customer customer = sample.get(1);
+        List<Integer> ids = sample.stream().map(Customer::getId).toList();
+
+        assertPlans(() -> jpaDao.selectCustomerById(customer.getId()), INDEX_SCANS, POINT_BLOCKS);
+        assertPlans(() -> jpaDao.selectCustomerByEmail(customer.getEmail()), INDEX_SCANS, POINT_BLOCKS);
+        assertPlans(() -> jpaDao.selectCustomersByIds(ids), INDEX_SCANS, POINT_BLOCKS * BATCH);
+    }
+
+    @Test
+    void existenceChecksAreAnsweredFromAnIndex() {
+        Customer customer = sample.get(2);
+
+        assertIndexOnly(() -> jdbcDao.existsCustomerWithId(customer.getId()));
+        assertIndexOnly(() -> jdbcDao.existsCustomerWithEmail(customer.getEmail()));
+        assertIndexOnly(() -> customerRepository.existsCustomerById(customer.getId()));
+        assertIndexOnly(() -> customerRepository.existsCustomerByEmail(customer.getEmail()));
+        assertIndexOnly(() -> jdbcDao.existsCustomerWithEmail("nobody@example.com"));
+    }
+
+    @Test
+    void writesFindTheirRowByPrimaryKey() {
+        Customer jdbcCustomer = sample.get(3);
+        Customer jpaCustomer = sample.get(4);
+        // updates also maintain the indexes, which the budget has to allow for
+        long writeBlocks = POINT_BLOCKS * 4;
+
+        assertPlans(() -> jdbcDao.updateCustomer(new Customer(jdbcCustomer.getId(), "Plan Test",
+                "jdbc-" + jdbcCustomer.getEmail(), 33)), INDEX_SCANS, writeBlocks);
+        assertPlans(() -> jpaDao.updateCustomer(new Customer(jpaCustomer.getId(), "Plan Test",
+                "jpa-" + jpaCustomer.getEmail(), 33)), INDEX_SCANS, writeBlocks);
+        assertPlans(() -> jdbcDao.deleteCustomerById(sample.get(5).getId()), INDEX_SCANS, writeBlocks);
+        assertPlans(() -> jpaDao.deleteCustomerById(sample.get(6).getId()), INDEX_SCANS, writeBlocks);
+    }
+
+    @Test
+    void changeFeedReadsOnlyTheRequestedPage() {
+        assertPlans(syncDao::selectLatestChangeSeq, INDEX_ONLY_SCANS, POINT_BLOCKS * 2);
+
+        CustomerChangePosition middle = positionAt("ASC", ROWS / 2);
+        CustomerChangePosition last = positionAt("DESC", 0);
+        assertPlans(() -> syncDao.selectChangesAfter(middle, CHANGES), INDEX_SCANS, CHANGES + POINT_BLOCKS * 2);
+        assertPlans(() -> syncDao.selectChangesAfter(last, CHANGES), INDEX_SCANS, POINT_BLOCKS * 2);
+    }
+
+    private CustomerChangePosition positionAt(String direction, int offset) {
+        return jdbcTemplate.queryForObject("""
+                SELECT change_xid::text, change_seq FROM customer
+                ORDER BY change_xid %1$s, change_seq %1$s OFFSET ? LIMIT 1
+                """.formatted(direction), (rs, rowNum) ->
+                new CustomerChangePosition(Long.parseLong(rs.getString(1)), rs.getLong(2)), offset);
+    }
+
+    private void assertIndexOnly(Runnable action) {
+        for (Plan plan : explain(action)) {
+            assertThat(plan.scansOf("customer")).as("scans of customer in %s", plan)
+                    .isNotEmpty()
+                    .allMatch(INDEX_ONLY_SCANS::contains);
+            assertThat(plan.heapFetches()).as("heap fetches in %s", plan).isZero();
+            assertThat(plan.sharedBlocks()).as("blocks in %s", plan).isLessThanOrEqualTo(POINT_BLOCKS);
+        }
+    }
+
+    private void assertPlans(Runnable action, List<String> allowedScans, long maxBlocks) {
+        for (Plan plan : explain(action)) {
+            assertThat(plan.scansOf("customer")).as("scans of customer in %s", plan)
+                    .isNotEmpty()
+                    .allMatch(allowedScans::contains);
+            assertThat(plan.sharedBlocks()).as("blocks in %s", plan).isLessThanOrEqualTo(maxBlocks);
+        }
+    }
+
+    private List<Plan> explain(Runnable action) {
+        List<RecordedStatement> statements = QueryPlans.record(action);
+        assertThat(statements).as("recorded statements").isNotEmpty();
+        return statements.stream()
+                .map(statement -> QueryPlans.explain(dataSource, statement))
+                .toList();
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? QueryPlans.recording(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
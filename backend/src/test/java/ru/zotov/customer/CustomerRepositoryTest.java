@@ -5,9 +5,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.ApplicationContext;
 import ru.zotov.AbstractTestContainers;
 
+import java.util.List;
+import java.util.Optional;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
@@ -20,6 +24,9 @@ class CustomerRepositoryTest extends AbstractTestContainers {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @BeforeEach
     void setUp() {
         underTest.deleteAll();
@@ -37,6 +44,16 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void findCustomerByEmailIgnoresCaseAndSurroundingSpaces() {
+        Customer customer = getCustomer();
+        underTest.save(customer);
+
+        Optional<Customer> actual = underTest.findCustomerByEmail(" " + customer.getEmail().toUpperCase());
+
+        assertThat(actual).get().extracting(Customer::getId).isEqualTo(customer.getId());
+    }
+
     @Test
     void existsCustomerByEmailFailsWhenEmailNotPresent() {
         String email = getCustomer().getEmail();
@@ -70,4 +87,18 @@ class CustomerRepositoryTest extends AbstractTestContainers {
 
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllDetachedReturnsUnmanagedCustomers() {
+        Customer customer = getCustomer();
+        underTest.saveAndFlush(customer);
+        entityManager.clear();
+
+        List<Customer> actual = underTest.findAllDetached();
+
+        assertThat(actual).singleElement().satisfies(c -> {
+            assertThat(c).isEqualTo(customer);
+            assertThat(entityManager.getEntityManager().contains(c)).isFalse();
+        });
+    }
+}
@@ -7,10 +7,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import ru.zotov.customer.search.CustomerSearchIndex;
 import ru.zotov.exception.RequestValidationException;
 import ru.zotov.exception.ResourceAlreadyExistsException;
 import ru.zotov.exception.ResourceNotFoundException;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
@@ -26,10 +30,14 @@ class CustomerServiceTest {
     private CustomerService underTest;
     @Mock
     CustomerDao customerDao;
+    @Mock
+    CustomerListCache customerListCache;
+    @Mock
+    CustomerSearchIndex customerSearchIndex;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, customerListCache, customerSearchIndex);
     }
 
     @Test
@@ -57,11 +65,100 @@ class CustomerServiceTest {
                 .hasMessage("customer with ID: %d not found".formatted(id));
     }
 
+    @Test
+    void canGetCustomerByEmail() {
+        Customer customer = getRandomCustomer();
+        when(customerDao.selectCustomerByEmail(customer.getEmail())).thenReturn(Optional.of(customer));
+
+        Customer actual = underTest.getCustomerByEmail(customer.getEmail());
+        assertThat(actual).isEqualTo(customer);
+    }
+
+    @Test
+    void willThrowWhenGetCustomerByEmailReturnsEmptyOptional() {
+        String email = getRandomEmail();
+        when(customerDao.selectCustomerByEmail(email)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> underTest.getCustomerByEmail(email))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with email: %s not found".formatted(email));
+    }
+
+    @Test
+    void canGetCustomersByIdsInRequestOrder() {
+        Customer first = getRandomCustomer();
+        first.setId(1);
+        Customer second = getRandomCustomer();
+        second.setId(2);
+        int missingId = 3;
+        when(customerDao.selectCustomersByIds(any())).thenReturn(List.of(first, second));
+
+        List<CustomerLookupResult> actual = underTest.getCustomersByIds(List.of(2, missingId, 1));
+
+        assertThat(actual).containsExactly(
+                CustomerLookupResult.found(second),
+                CustomerLookupResult.notFound(missingId),
+                CustomerLookupResult.found(first)
+        );
+    }
+
+    @Test
+    void willThrowWhenGetCustomersByIdsHasNoIds() {
+        assertThatThrownBy(() -> underTest.getCustomersByIds(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at least one customer ID is required");
+
+        verify(customerDao, never()).selectCustomersByIds(any());
+    }
+
+    @Test
+    void willThrowWhenGetCustomersByIdsHasTooManyIds() {
+        List<Integer> ids = Collections.nCopies(CustomerService.MAX_IDS_PER_LOOKUP + 1, 1);
+
+        assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no more than %d customer IDs per request"
+                        .formatted(CustomerService.MAX_IDS_PER_LOOKUP));
+
+        verify(customerDao, never()).selectCustomersByIds(any());
+    }
+
+    @Test
+    void canSearchCustomersInRankOrderSkippingDeletedOnes() {
+        Customer first = getRandomCustomer();
+        first.setId(1);
+        Customer second = getRandomCustomer();
+        second.setId(2);
+        when(customerSearchIndex.search("ale", 3)).thenReturn(List.of(2, 3, 1));
+        when(customerDao.selectCustomersByIds(List.of(2, 3, 1))).thenReturn(List.of(first, second));
+
+        List<Customer> actual = underTest.searchCustomers("ale", 3);
+
+        assertThat(actual).containsExactly(second, first);
+    }
+
+    @Test
+    void willThrowWhenSearchLimitIsOutOfRange() {
+        assertThatThrownBy(() -> underTest.searchCustomers("ale", CustomerService.MAX_SEARCH_RESULTS + 1))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %d".formatted(CustomerService.MAX_SEARCH_RESULTS));
+
+        verifyNoInteractions(customerSearchIndex);
+    }
+
     @Test
     void addCustomer() {
         String email = getRandomEmail();
         when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
 
+        // stores set the id they allocate on the customer passed in
+        doAnswer(invocation -> {
+            Customer inserted = invocation.getArgument(0);
+            assertThat(inserted.getId()).isNull();
+            inserted.setId(42);
+            return null;
+        }).when(customerDao).insertCustomer(any());
+
         CustomerRegistrationRequest customerRegistrationRequest = getCustomerRegistrationRequest(email);
 
         underTest.addCustomer(customerRegistrationRequest);
@@ -69,10 +166,12 @@ class CustomerServiceTest {
         verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
         Customer capturedValue = customerArgumentCaptor.getValue();
 
-        assertThat(capturedValue.getId()).isNull();
         assertThat(capturedValue.getName()).isEqualTo(customerRegistrationRequest.name());
         assertThat(capturedValue.getEmail()).isEqualTo(customerRegistrationRequest.email());
         assertThat(capturedValue.getAge()).isEqualTo(customerRegistrationRequest.age());
+        verify(customerListCache).invalidate(42);
+        verify(customerListCache, never()).invalidateAll();
+        verify(customerSearchIndex).invalidate(42);
     }
 
     @Test
@@ -91,6 +190,21 @@ class CustomerServiceTest {
         verify(customerDao, never()).insertCustomer(any());
     }
 
+    @Test
+    void willThrowWhenInsertHitsDuplicateEmail() {
+        String email = getRandomEmail();
+        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+        doThrow(new DuplicateKeyException("customer_email_unique")).when(customerDao).insertCustomer(any());
+
+        assertThatThrownBy(() -> underTest.addCustomer(getCustomerRegistrationRequest(email)))
+                .isInstanceOf(ResourceAlreadyExistsException.class)
+                .hasMessage("customer with inserted email already exists");
+
+        // no id was set, so the whole list is re-read
+        verify(customerListCache).invalidateAll();
+        verify(customerListCache, never()).invalidate(any());
+    }
+
     @Test
     void deleteCustomerById() {
         int id = new Random().nextInt();
@@ -99,6 +213,8 @@ class CustomerServiceTest {
 
         underTest.deleteCustomerById(id);
         verify(customerDao).deleteCustomerById(id);
+        verify(customerListCache).invalidate(id);
+        verify(customerSearchIndex).invalidate(id);
     }
 
     @Test
@@ -133,6 +249,7 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getAge()).isEqualTo(customerUpdateRequest.age());
         assertThat(capturedCustomer.getEmail()).isEqualTo(customerUpdateRequest.email());
         assertThat(capturedCustomer.getName()).isEqualTo(customerUpdateRequest.name());
+        verify(customerListCache).invalidate(customer.getId());
     }
 
     @Test
@@ -0,0 +1,139 @@
+package ru.zotov.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.zotov.AbstractTestContainers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerSyncDataAccessServiceTest extends AbstractTestContainers {
+
+    private CustomerSyncDataAccessService underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        underTest = new CustomerSyncDataAccessService(getJdbcTemplate(), customerRowMapper);
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), customerRowMapper);
+    }
+
+    @Test
+    void returnsOnlyChangesAfterToken() {
+        CustomerChangePosition since = latestPosition();
+        String email = UUID.randomUUID() + "@gmail.com";
+        customerDao.insertCustomer(new Customer("Alex", email, 20));
+
+        List<CustomerChangeLogEntry> actual = underTest.selectChangesAfter(since, 100);
+
+        assertThat(actual).singleElement()
+                .satisfies(entry -> {
+                    assertThat(entry.deleted()).isFalse();
+                    assertThat(entry.customer().getEmail()).isEqualTo(email);
+                    assertThat(entry.position()).isGreaterThan(since);
+                });
+    }
+
+    @Test
+    void holdsChangesBackUntilEarlierTransactionsCommit() throws Exception {
+        CustomerChangePosition since = latestPosition();
+        String lateEmail = UUID.randomUUID() + "@gmail.com";
+        String earlyEmail = UUID.randomUUID() + "@gmail.com";
+
+        try (Connection connection = getJdbcTemplate().getDataSource().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO customer (name, email, age) VALUES ('Late', ?, 20)")) {
+                insert.setString(1, lateEmail);
+                insert.executeUpdate();
+            }
+            customerDao.insertCustomer(new Customer("Early", earlyEmail, 20));
+
+            assertThat(underTest.selectChangesAfter(since, 100)).isEmpty();
+
+            connection.commit();
+        }
+
+        assertThat(underTest.selectChangesAfter(since, 100))
+                .extracting(entry -> entry.customer().getEmail())
+                .containsExactly(lateEmail, earlyEmail);
+    }
+
+    @Test
+    void updateMovesCustomerPastToken() {
+        String email = UUID.randomUUID() + "@gmail.com";
+        customerDao.insertCustomer(new Customer("Alex", email, 20));
+        int id = customerDao.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+        CustomerChangePosition since = latestPosition();
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setAge(30);
+        customerDao.updateCustomer(update);
+
+        assertThat(underTest.selectChangesAfter(since, 100))
+                .singleElement()
+                .satisfies(entry -> assertThat(entry.customer().getAge()).isEqualTo(30));
+    }
+
+    @Test
+    void deleteLeavesTombstone() {
+        String email = UUID.randomUUID() + "@gmail.com";
+        customerDao.insertCustomer(new Customer("Alex", email, 20));
+        int id = customerDao.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+        CustomerChangePosition since = latestPosition();
+
+        customerDao.deleteCustomerById(id);
+
+        assertThat(underTest.selectChangesAfter(since, 100))
+                .singleElement()
+                .satisfies(entry -> {
+                    assertThat(entry.deleted()).isTrue();
+                    assertThat(entry.customerId()).isEqualTo(id);
+                });
+    }
+
+    @Test
+    void purgesTombstonesPastRetention() {
+        String email = UUID.randomUUID() + "@gmail.com";
+        customerDao.insertCustomer(new Customer("Alex", email, 20));
+        int id = customerDao.selectCustomerByEmail(email).orElseThrow().getId();
+        CustomerChangePosition since = latestPosition();
+        customerDao.deleteCustomerById(id);
+        CustomerChangeLogEntry tombstone = underTest.selectChangesAfter(since, 100).get(0);
+        getJdbcTemplate().update(
+                "UPDATE customer_tombstone SET deleted_at = now() - interval '31 days' WHERE id = ?", id);
+
+        underTest.purgeTombstones(Duration.ofDays(30));
+
+        assertThat(underTest.selectChangesAfter(since, 100)).isEmpty();
+        assertThat(underTest.selectPurgedPosition()).isEqualTo(tombstone.position());
+    }
+
+    private static CustomerChangePosition latestPosition() {
+        var sql = """
+                SELECT change_xid::text, change_seq FROM customer
+                UNION ALL
+                SELECT change_xid::text, change_seq FROM customer_tombstone
+                """;
+        return getJdbcTemplate().query(sql, (rs, rowNum) ->
+                        new CustomerChangePosition(Long.parseLong(rs.getString(1)), rs.getLong(2)))
+                .stream()
+                .max(CustomerChangePosition::compareTo)
+                .orElse(CustomerChangePosition.START);
+    }
+}
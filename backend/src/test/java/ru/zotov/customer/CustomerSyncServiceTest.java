@@ -0,0 +1,113 @@
+package ru.zotov.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.zotov.exception.ChangeTokenExpiredException;
+import ru.zotov.exception.RequestValidationException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSyncServiceTest {
+
+    private CustomerSyncService underTest;
+    @Mock
+    CustomerSyncDataAccessService customerSyncDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerSyncService(customerSyncDao);
+    }
+
+    @Test
+    void startsFromBeginningWithoutToken() {
+        underTest.getChangesSince(null, 10);
+        verify(customerSyncDao).selectChangesAfter(CustomerChangePosition.START, 11);
+        verify(customerSyncDao, never()).selectPurgedPosition();
+    }
+
+    @Test
+    void splitsUpsertsAndTombstonesAndReturnsNextToken() {
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(customerSyncDao.selectPurgedPosition()).thenReturn(CustomerChangePosition.START);
+        when(customerSyncDao.selectChangesAfter(new CustomerChangePosition(700, 5), 11)).thenReturn(List.of(
+                new CustomerChangeLogEntry(701, 9, 1, customer),
+                new CustomerChangeLogEntry(702, 6, 2, null)
+        ));
+
+        CustomerChangesPage actual = underTest.getChangesSince("700.5", 10);
+
+        assertThat(actual.upserted()).containsExactly(customer);
+        assertThat(actual.deleted()).containsExactly(2);
+        assertThat(actual.nextToken()).isEqualTo("702.6");
+        assertThat(actual.hasMore()).isFalse();
+    }
+
+    @Test
+    void reportsMoreChangesBeyondLimit() {
+        when(customerSyncDao.selectChangesAfter(CustomerChangePosition.START, 2)).thenReturn(List.of(
+                new CustomerChangeLogEntry(700, 1, 1, new Customer(1, "Alex", "alex@gmail.com", 20)),
+                new CustomerChangeLogEntry(700, 2, 2, new Customer(2, "Olga", "olga@gmail.com", 22))
+        ));
+
+        CustomerChangesPage actual = underTest.getChangesSince(null, 1);
+
+        assertThat(actual.upserted()).hasSize(1);
+        assertThat(actual.nextToken()).isEqualTo("700.1");
+        assertThat(actual.hasMore()).isTrue();
+    }
+
+    @Test
+    void keepsTokenWhenNothingChanged() {
+        when(customerSyncDao.selectPurgedPosition()).thenReturn(CustomerChangePosition.START);
+
+        CustomerChangesPage actual = underTest.getChangesSince("700.42", 10);
+
+        assertThat(actual.nextToken()).isEqualTo("700.42");
+        assertThat(actual.hasMore()).isFalse();
+    }
+
+    @Test
+    void resumesBareSequenceTokensBeforeEveryPosition() {
+        when(customerSyncDao.selectPurgedPosition()).thenReturn(CustomerChangePosition.START);
+
+        underTest.getChangesSince("42", 10);
+
+        verify(customerSyncDao).selectChangesAfter(new CustomerChangePosition(0, 42), 11);
+    }
+
+    @Test
+    void willThrowWhenTombstonesAfterTheTokenWerePurged() {
+        when(customerSyncDao.selectPurgedPosition()).thenReturn(new CustomerChangePosition(700, 3));
+
+        assertThatThrownBy(() -> underTest.getChangesSince("700.2", 10))
+                .isInstanceOf(ChangeTokenExpiredException.class);
+
+        verify(customerSyncDao, never()).selectChangesAfter(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenTokenIsInvalid() {
+        assertThatThrownBy(() -> underTest.getChangesSince("abc", 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid change token: abc");
+
+        verify(customerSyncDao, never()).selectChangesAfter(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenLimitIsOutOfRange() {
+        assertThatThrownBy(() -> underTest.getChangesSince(null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %d".formatted(CustomerSyncService.MAX_PAGE_SIZE));
+    }
+}
@@ -0,0 +1,165 @@
+package ru.zotov.customer.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.zotov.customer.CustomerChange;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerEventStreamTest {
+
+    private static final int BUFFER_SIZE = 16;
+    private static final int MAX_LAG = 4;
+
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final CustomerEventStream underTest =
+            new CustomerEventStream(BUFFER_SIZE, MAX_LAG, Duration.ofMinutes(1), 2) {
+                @Override
+                SseEmitter newEmitter(Duration timeout) {
+                    RecordingEmitter emitter = new RecordingEmitter(timeout);
+                    emitters.add(emitter);
+                    return emitter;
+                }
+            };
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void resumesAfterTheLastEventId() {
+        RecordingEmitter first = subscribe(null);
+        change(1);
+        change(2);
+        change(3);
+        await(() -> first.events.size() == 3);
+
+        RecordingEmitter resumed = subscribe(first.events.get(0).id());
+
+        await(() -> resumed.events.size() == 2);
+        assertThat(resumed.events).extracting(Event::name).containsExactly("INSERT", "INSERT");
+        assertThat(resumed.events).extracting(Event::id)
+                .containsExactly(first.events.get(1).id(), first.events.get(2).id());
+    }
+
+    @Test
+    void sendsResetForAnIdFromAnotherEpoch() {
+        change(1);
+
+        RecordingEmitter resumed = subscribe("otherepoch-1");
+        change(2);
+
+        await(() -> resumed.events.size() == 2);
+        assertThat(resumed.events).extracting(Event::name).containsExactly("RESET", "INSERT");
+    }
+
+    @Test
+    void sendsResetForAnIdTooFarBehind() {
+        RecordingEmitter first = subscribe(null);
+        change(1);
+        await(() -> first.events.size() == 1);
+        String oldest = first.events.get(0).id();
+        for (int i = 2; i <= MAX_LAG + 2; i++) {
+            change(i);
+        }
+
+        RecordingEmitter resumed = subscribe(oldest);
+
+        await(() -> resumed.events.size() == 1);
+        assertThat(resumed.events).extracting(Event::name).containsExactly("RESET");
+    }
+
+    @Test
+    void disconnectsASubscriberLaggingMoreThanMaxLagBehind() {
+        RecordingEmitter slow = subscribe(null);
+        slow.blockSends();
+        change(1);
+        await(() -> slow.sendsStarted.getCount() == 0);
+        for (int i = 2; i <= MAX_LAG + 3; i++) {
+            change(i);
+        }
+
+        slow.unblockSends();
+
+        await(() -> slow.completed);
+        assertThat(slow.events).hasSize(1);
+        assertThat(underTest.subscriberCount()).isZero();
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        underTest.subscribe(lastEventId);
+        return emitters.get(emitters.size() - 1);
+    }
+
+    private void change(int customerId) {
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.INSERT, customerId));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(condition.getAsBoolean()).as("condition met within 5s").isTrue();
+    }
+
+    private record Event(String id, String name) {
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Event> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sendsStarted = new CountDownLatch(1);
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private volatile boolean completed;
+
+        private RecordingEmitter(Duration timeout) {
+            super(timeout.toMillis());
+        }
+
+        void blockSends() {
+            blocked = new CountDownLatch(1);
+        }
+
+        void unblockSends() {
+            blocked.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sendsStarted.countDown();
+            try {
+                blocked.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            String text = builder.build().stream()
+                    .filter(part -> part.getData() instanceof String)
+                    .map(part -> (String) part.getData())
+                    .collect(Collectors.joining());
+            events.add(new Event(field(text, "id:"), field(text, "event:")));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        private static String field(String text, String prefix) {
+            int start = text.indexOf(prefix) + prefix.length();
+            return text.substring(start, text.indexOf('\n', start));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.zotov.customer.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferTest {
+
+    @Test
+    void publishedValuesAreReadableBySequence() {
+        RingBuffer<String> underTest = new RingBuffer<>(4);
+
+        long first = underTest.publish("a");
+        long second = underTest.publish("b");
+
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(2);
+        assertThat(underTest.get(first)).isEqualTo("a");
+        assertThat(underTest.get(second)).isEqualTo("b");
+        assertThat(underTest.get(3)).isNull();
+    }
+
+    @Test
+    void overwrittenValuesAreNoLongerReadable() {
+        RingBuffer<Integer> underTest = new RingBuffer<>(4);
+
+        for (int i = 1; i <= 6; i++) {
+            underTest.publish(i);
+        }
+
+        assertThat(underTest.oldestAvailable()).isEqualTo(3);
+        assertThat(underTest.get(2)).isNull();
+        assertThat(underTest.get(3)).isEqualTo(3);
+        assertThat(underTest.get(6)).isEqualTo(6);
+    }
+
+    @Test
+    void willThrowWhenCapacityIsNotPowerOfTwo() {
+        assertThatThrownBy(() -> new RingBuffer<>(3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentProducersPublishEverySequenceExactlyOnce() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 1_000;
+        RingBuffer<Long> underTest = new RingBuffer<>(8192);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    underTest.publish((long) i);
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        List<Long> values = new ArrayList<>();
+        for (long sequence = 1; sequence <= underTest.lastPublished(); sequence++) {
+            values.add(underTest.get(sequence));
+        }
+        assertThat(underTest.lastPublished()).isEqualTo((long) producers * perProducer);
+        assertThat(values).doesNotContainNull();
+    }
+}
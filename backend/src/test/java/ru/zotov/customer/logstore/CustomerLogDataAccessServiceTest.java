@@ -0,0 +1,218 @@
+package ru.zotov.customer.logstore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.dao.DuplicateKeyException;
+import ru.zotov.customer.Customer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerLogDataAccessServiceTest {
+
+    private static final int LOG_FILE_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+    private CustomerLogDataAccessService underTest;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.close();
+    }
+
+    @Test
+    void changesSurviveReopening() throws IOException {
+        underTest = open(FsyncPolicy.GROUP_COMMIT, Long.MAX_VALUE);
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        Customer olga = new Customer("Olga", "olga@gmail.com", 22);
+        underTest.insertCustomers(List.of(alex, olga));
+        underTest.insertCustomer(new Customer("Ivan", "ivan@gmail.com", 30));
+        underTest.updateCustomer(new Customer(alex.getId(), "Alexander", "alexander@gmail.com", 21));
+        underTest.deleteCustomerById(olga.getId());
+        List<Customer> before = underTest.selectAllCustomers();
+
+        List<Customer> actual = reopen().selectAllCustomers();
+
+        assertThat(actual).isEqualTo(before);
+        assertThat(actual).extracting(Customer::getName).containsExactly("Alexander", "Ivan");
+        assertThat(underTest.existsCustomerWithEmail("alexander@gmail.com")).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void duplicateEmailsAreRejectedAndNothingIsWritten() throws IOException {
+        underTest = open(FsyncPolicy.GROUP_COMMIT, Long.MAX_VALUE);
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        assertThatThrownBy(() -> underTest.insertCustomers(List.of(
+                new Customer("Olga", "olga@gmail.com", 22),
+                new Customer("Alex", "alex@gmail.com", 20))))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessage("customer with email alex@gmail.com already exists");
+
+        assertThat(reopen().selectAllCustomers()).extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void emailsMatchIgnoringCaseAndSurroundingSpaces() throws IOException {
+        underTest = open(FsyncPolicy.GROUP_COMMIT, Long.MAX_VALUE);
+        Customer alex = new Customer("Alex", "Alex@Gmail.com", 20);
+        underTest.insertCustomer(alex);
+
+        assertThat(underTest.selectCustomerByEmail(" alex@gmail.com")).get()
+                .extracting(Customer::getId).isEqualTo(alex.getId());
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "ALEX@gmail.com ", 20)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(reopen().existsCustomerWithEmail("alex@GMAIL.com")).isTrue();
+    }
+
+    @Test
+    void recoveryDropsATornRecordAndKeepsAppending() throws IOException {
+        underTest = open(FsyncPolicy.EVERY_WRITE, Long.MAX_VALUE);
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+        underTest.insertCustomer(new Customer("Olga", "olga@gmail.com", 22));
+        underTest.close();
+        Path logFile = files(".log").get(0);
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+            long end = lastNonZeroByte(file);
+            file.seek(end);
+            int last = file.read();
+            file.seek(end);
+            file.write(last ^ 0xff);
+        }
+
+        underTest = open(FsyncPolicy.EVERY_WRITE, Long.MAX_VALUE);
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getName).containsExactly("Alex");
+        underTest.insertCustomer(new Customer("Ivan", "ivan@gmail.com", 30));
+
+        assertThat(reopen().selectAllCustomers()).extracting(Customer::getName).containsExactly("Alex", "Ivan");
+    }
+
+    @Test
+    void recoveryFailsOnACorruptRecordInAnEarlierLog() throws IOException {
+        underTest = open(FsyncPolicy.EVERY_WRITE, Long.MAX_VALUE);
+        insert(2_000);
+        underTest.close();
+        List<Path> logFiles = files(".log");
+        assertThat(logFiles).hasSizeGreaterThan(1);
+        try (RandomAccessFile file = new RandomAccessFile(logFiles.get(0).toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int middle = file.read();
+            file.seek(file.length() / 2);
+            file.write(middle ^ 0xff);
+        }
+
+        assertThatThrownBy(() -> open(FsyncPolicy.EVERY_WRITE, Long.MAX_VALUE))
+                .isInstanceOf(UncheckedIOException.class)
+                .cause()
+                .hasMessageStartingWith(logFiles.get(0) + " is corrupt after offset");
+    }
+
+    @Test
+    void compactionReplacesLogsWithASnapshot() throws IOException {
+        underTest = open(FsyncPolicy.GROUP_COMMIT, Long.MAX_VALUE);
+        insert(2_000);
+        underTest.deleteCustomerById(2_000);
+        List<Customer> before = underTest.selectAllCustomers();
+        assertThat(files(".log")).hasSizeGreaterThan(1);
+
+        underTest.compact();
+
+        assertThat(files(".snapshot")).hasSize(1);
+        assertThat(files(".log")).hasSize(1);
+        assertThat(reopen().selectAllCustomers()).isEqualTo(before);
+        Customer next = new Customer("Next", "next@gmail.com", 40);
+        underTest.insertCustomer(next);
+        assertThat(next.getId()).isEqualTo(2_001);
+    }
+
+    @Test
+    void compactionRunsInTheBackgroundOnceLogsOutgrowTheLimit() throws Exception {
+        underTest = open(FsyncPolicy.GROUP_COMMIT, 2 * LOG_FILE_SIZE);
+
+        insert(5_000);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (files(".snapshot").isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(files(".snapshot")).isNotEmpty();
+        assertThat(reopen().selectAllCustomers()).hasSize(5_000);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void concurrentWritersAllPersist(FsyncPolicy fsyncPolicy) throws Exception {
+        underTest = open(fsyncPolicy, Long.MAX_VALUE);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int writer = 0; writer < 8; writer++) {
+                int w = writer;
+                done.add(writers.submit(() -> IntStream.range(0, 200).forEach(i -> underTest.insertCustomer(
+                        new Customer("Writer " + w, "w" + w + "-" + i + "@gmail.com", 30)))));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+
+        assertThat(reopen().selectAllCustomers()).hasSize(1_600)
+                .extracting(Customer::getId).doesNotHaveDuplicates();
+    }
+
+    private void insert(int count) {
+        for (int i = 0; i < count; i += 100) {
+            underTest.insertCustomers(IntStream.range(i, Math.min(count, i + 100))
+                    .mapToObj(n -> new Customer("Customer " + n, "customer" + n + "@gmail.com", 18 + n % 80))
+                    .toList());
+        }
+    }
+
+    private CustomerLogDataAccessService reopen() throws IOException {
+        underTest.close();
+        underTest = open(FsyncPolicy.GROUP_COMMIT, Long.MAX_VALUE);
+        return underTest;
+    }
+
+    private CustomerLogDataAccessService open(FsyncPolicy fsyncPolicy, long compactAfter) {
+        return new CustomerLogDataAccessService(directory, fsyncPolicy, Duration.ofMillis(10), LOG_FILE_SIZE, compactAfter);
+    }
+
+    private List<Path> files(String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(extension)).sorted().toList();
+        }
+    }
+
+    private static long lastNonZeroByte(RandomAccessFile file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        file.readFully(content);
+        int last = content.length - 1;
+        while (content[last] == 0) {
+            last--;
+        }
+        return last;
+    }
+}
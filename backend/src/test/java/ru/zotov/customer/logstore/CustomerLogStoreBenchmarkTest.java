@@ -0,0 +1,106 @@
+package ru.zotov.customer.logstore;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.zotov.customer.Customer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Write throughput per fsync policy and recovery time per million customers, from
+ * logs alone and from a snapshot plus a log tail. Run with {@code mvn test -Pbenchmark};
+ * the numbers depend heavily on the file system behind {@code java.io.tmpdir}.
+ */
+@Tag("benchmark")
+class CustomerLogStoreBenchmarkTest {
+
+    private static final int LOG_FILE_SIZE = 256 << 20;
+    private static final int WRITERS = 8;
+
+    @TempDir
+    Path directory;
+    private long lastOpen;
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void writeThroughput(FsyncPolicy fsyncPolicy) throws Exception {
+        int perWriter = fsyncPolicy == FsyncPolicy.EVERY_WRITE ? 2_000 : 20_000;
+        try (CustomerLogDataAccessService store = open(fsyncPolicy)) {
+            ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+            long start = System.nanoTime();
+            try {
+                List<Future<?>> done = new ArrayList<>();
+                for (int writer = 0; writer < WRITERS; writer++) {
+                    int w = writer;
+                    done.add(writers.submit(() -> IntStream.range(0, perWriter).forEach(i ->
+                            store.insertCustomer(customer(w * perWriter + i)))));
+                }
+                for (Future<?> future : done) {
+                    future.get();
+                }
+            } finally {
+                writers.shutdown();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%-12s %d writers  %8d inserts  %10.0f inserts/s%n",
+                    fsyncPolicy, WRITERS, WRITERS * perWriter, WRITERS * perWriter * 1e9 / elapsed);
+            assertThat(store.selectAllCustomers()).hasSize(WRITERS * perWriter);
+        }
+    }
+
+    @Test
+    void recoveryTimePerMillion() throws Exception {
+        int count = 1_000_000;
+        try (CustomerLogDataAccessService store = open(FsyncPolicy.PERIODIC)) {
+            for (int i = 0; i < count; i += 1_000) {
+                store.insertCustomers(IntStream.range(i, i + 1_000)
+                        .mapToObj(CustomerLogStoreBenchmarkTest::customer)
+                        .toList());
+            }
+        }
+
+        long fromLogs;
+        try (CustomerLogDataAccessService store = timedOpen()) {
+            fromLogs = lastOpen;
+            assertThat(store.selectAllCustomers()).hasSize(count);
+            store.compact();
+            for (int i = 0; i < 100_000; i++) {
+                store.updateCustomer(new Customer(i + 1, "Renamed " + i, "customer" + i + "@gmail.com", 30));
+            }
+        }
+
+        try (CustomerLogDataAccessService store = timedOpen()) {
+            assertThat(store.selectCustomerById(1)).get().extracting(Customer::getName).isEqualTo("Renamed 0");
+        }
+        System.out.printf("recovery of %d customers: %d ms from logs, %d ms from a snapshot plus 100000 logged updates%n",
+                count, fromLogs, lastOpen);
+    }
+
+    private CustomerLogDataAccessService timedOpen() {
+        long start = System.nanoTime();
+        CustomerLogDataAccessService store = open(FsyncPolicy.PERIODIC);
+        lastOpen = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        return store;
+    }
+
+    private CustomerLogDataAccessService open(FsyncPolicy fsyncPolicy) {
+        return new CustomerLogDataAccessService(directory, fsyncPolicy, Duration.ofSeconds(1), LOG_FILE_SIZE, Long.MAX_VALUE);
+    }
+
+    private static Customer customer(int n) {
+        return new Customer("Customer Name " + n, "customer" + n + "@gmail.com", 18 + n % 80);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.zotov.customer.replica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.AbstractTestContainers;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerJDBCDataAccessService;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.customer.CustomerSyncDataAccessService;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerReplicaTest extends AbstractTestContainers {
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private final CustomerJDBCDataAccessService otherNode =
+            new CustomerJDBCDataAccessService(jdbcTemplate, customerRowMapper);
+    private CustomerReplica replica;
+    private ReplicaCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        otherNode.insertCustomer(getCustomer());
+        replica = new CustomerReplica(
+                new ReplicaDataAccessService(jdbcTemplate, customerRowMapper, 100),
+                new CustomerSyncDataAccessService(jdbcTemplate, customerRowMapper),
+                new ReplicaProperties(true, Duration.ofMillis(20), Duration.ofMillis(200), 100, 50),
+                new SimpleMeterRegistry());
+        underTest = new ReplicaCustomerDao(otherNode, replica);
+        replica.start();
+        awaitUntil(() -> replica.snapshot() != null);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        replica.stop();
+    }
+
+    @Test
+    void loadsEveryCustomer() {
+        assertThat(underTest.selectAllCustomers()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(otherNode.selectAllCustomers());
+    }
+
+    @Test
+    void tailsChangesMadeElsewhere() {
+        Customer inserted = getCustomer();
+        otherNode.insertCustomer(inserted);
+        Integer id = idOf(inserted.getEmail());
+        awaitUntil(() -> underTest.existsCustomerWithId(id));
+
+        otherNode.updateCustomer(new Customer(id, "Renamed", inserted.getEmail(), 33));
+        awaitUntil(() -> underTest.selectCustomerById(id).map(Customer::getName).orElse("").equals("Renamed"));
+
+        otherNode.deleteCustomerById(id);
+        awaitUntil(() -> !underTest.existsCustomerWithId(id));
+        assertThat(underTest.existsCustomerWithEmail(inserted.getEmail())).isFalse();
+    }
+
+    @Test
+    void picksUpWritesThatCommitLongAfterLaterOnes() throws Exception {
+        Customer slow = getCustomer();
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> slowWrite = CompletableFuture.runAsync(() ->
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "INSERT INTO customer (name, email, age) VALUES (?, ?, ?)")) {
+                        statement.setString(1, slow.getName());
+                        statement.setString(2, slow.getEmail());
+                        statement.setInt(3, slow.getAge());
+                        statement.executeUpdate();
+                        inserted.countDown();
+                        commit.await();
+                        connection.commit();
+                    } catch (InterruptedException e) {
+                        connection.rollback();
+                        throw new IllegalStateException(e);
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                    return null;
+                }));
+        inserted.await();
+        Customer fast = getCustomer();
+        otherNode.insertCustomer(fast);
+
+        // well past the 200 ms overlap
+        Thread.sleep(600);
+        commit.countDown();
+        slowWrite.get();
+
+        awaitUntil(() -> underTest.existsCustomerWithEmail(slow.getEmail()));
+        assertThat(underTest.existsCustomerWithEmail(fast.getEmail())).isTrue();
+    }
+
+    @Test
+    void localWritesAreVisibleWithoutWaitingForAPoll() {
+        Customer inserted = getCustomer();
+
+        underTest.insertCustomer(inserted);
+
+        assertThat(underTest.existsCustomerWithEmail(inserted.getEmail())).isTrue();
+        Integer id = idOf(inserted.getEmail());
+        underTest.deleteCustomerById(id);
+        assertThat(underTest.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void readsHandOutCopies() {
+        Customer customer = underTest.selectAllCustomers().get(0);
+        customer.setName("Changed by a caller");
+
+        assertThat(underTest.selectCustomerById(customer.getId())).get()
+                .extracting(Customer::getName).isNotEqualTo("Changed by a caller");
+    }
+
+    private Integer idOf(String email) {
+        return jdbcTemplate.queryForObject("SELECT id FROM customer WHERE email = ?", Integer.class, email);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.zotov.customer.replica;
+
+import org.junit.jupiter.api.Test;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChangeLogEntry;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaSnapshotTest {
+
+    private static final long RETENTION = 1_000;
+
+    private final ReplicaSnapshot underTest = ReplicaSnapshot.of(
+            List.of(customer(1, "one"), customer(3, "three"), customer(5, "five")),
+            new long[]{10, 30, 50});
+
+    @Test
+    void getAllMergesChangesInIdOrder() {
+        ReplicaSnapshot actual = underTest.apply(List.of(
+                upsert(60, customer(4, "four")),
+                upsert(61, customer(3, "three-changed")),
+                delete(62, 1),
+                upsert(63, customer(7, "seven"))), 0, RETENTION);
+
+        assertThat(actual.getAll()).extracting(Customer::getName)
+                .containsExactly("three-changed", "four", "five", "seven");
+        assertThat(actual.size()).isEqualTo(4);
+        assertThat(actual.changeSeq()).isEqualTo(63);
+        assertThat(underTest.getAll()).extracting(Customer::getName).containsExactly("one", "three", "five");
+    }
+
+    @Test
+    void olderEntriesThanTheRowHeldAreIgnored() {
+        ReplicaSnapshot changed = underTest.apply(List.of(upsert(70, customer(3, "newer"))), 0, RETENTION);
+
+        ReplicaSnapshot actual = changed.apply(List.of(
+                upsert(40, customer(3, "older")),
+                upsert(30, customer(3, "three"))), 0, RETENTION);
+
+        assertThat(actual).isSameAs(changed);
+        assertThat(actual.get(3).getName()).isEqualTo("newer");
+    }
+
+    @Test
+    void emailIndexFollowsChangedAndDeletedRows() {
+        Customer renamed = new Customer(3, "three", "renamed@gmail.com", 30);
+
+        ReplicaSnapshot actual = underTest.apply(List.of(upsert(60, renamed), delete(61, 5)), 0, RETENTION);
+
+        assertThat(actual.existsWithEmail("renamed@gmail.com")).isTrue();
+        assertThat(actual.existsWithEmail("three@gmail.com")).isFalse();
+        assertThat(actual.existsWithEmail("five@gmail.com")).isFalse();
+        assertThat(actual.existsWithEmail("one@gmail.com")).isTrue();
+        assertThat(actual.getByEmail(" Renamed@Gmail.com ")).isSameAs(renamed);
+        assertThat(actual.getByEmail("ONE@gmail.com").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void compactionKeepsRecentDeletionsSoStaleRowsStayDeleted() {
+        ReplicaSnapshot deleted = underTest.apply(List.of(delete(60, 3), delete(61, 5)), 100, RETENTION)
+                .compact(100 + RETENTION - 1, RETENTION);
+
+        ReplicaSnapshot actual = deleted.apply(List.of(upsert(30, customer(3, "three"))), 200, RETENTION);
+
+        assertThat(actual.get(3)).isNull();
+        assertThat(actual.getAll()).extracting(Customer::getId).containsExactly(1);
+    }
+
+    @Test
+    void deletingAnUnknownRowChangesNothing() {
+        ReplicaSnapshot actual = underTest.apply(List.of(delete(80, 42)), 0, RETENTION);
+
+        assertThat(actual).isSameAs(underTest);
+    }
+
+    private static Customer customer(int id, String name) {
+        return new Customer(id, name, name + "@gmail.com", 20 + id);
+    }
+
+    private static CustomerChangeLogEntry upsert(long changeSeq, Customer customer) {
+        return new CustomerChangeLogEntry(0, changeSeq, customer.getId(), customer);
+    }
+
+    private static CustomerChangeLogEntry delete(long changeSeq, int customerId) {
+        return new CustomerChangeLogEntry(0, changeSeq, customerId, null);
+    }
+}
@@ -0,0 +1,98 @@
+package ru.zotov.customer.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker underTest = new CircuitBreaker(new ResilienceProperties.Breaker(
+            10, 4, 50, Duration.ofMillis(100), 80, Duration.ofSeconds(5), 2), now::get);
+
+    @Test
+    void staysClosedUntilEnoughCallsFailed() {
+        call(FAST, true);
+        call(FAST, true);
+        call(FAST, true);
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        call(FAST, false);
+
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(underTest.tryAcquire()).isFalse();
+        assertThat(underTest.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void opensWhenMostCallsAreSlow() {
+        for (int i = 0; i < 10; i++) {
+            call(i < 2 ? FAST : SLOW, false);
+        }
+
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void onlyTheLastWindowOfCallsCounts() {
+        for (int i = 0; i < 10; i++) {
+            call(FAST, i == 0);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(FAST, true);
+        }
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        call(FAST, true);
+
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void closesAfterTrialCallsSucceed() {
+        tripOpen();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        assertThat(underTest.tryAcquire()).isTrue();
+        assertThat(underTest.tryAcquire()).isTrue();
+        assertThat(underTest.tryAcquire()).isFalse();
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        underTest.onResult(FAST, false);
+        underTest.onResult(FAST, false);
+
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void reopensWhenATrialCallIsSlow() {
+        tripOpen();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        call(SLOW, false);
+
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertThat(underTest.tryAcquire()).isFalse();
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            call(FAST, true);
+        }
+        assertThat(underTest.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(long elapsedNanos, boolean failed) {
+        assertThat(underTest.tryAcquire()).isTrue();
+        now.addAndGet(elapsedNanos);
+        underTest.onResult(elapsedNanos, failed);
+    }
+}
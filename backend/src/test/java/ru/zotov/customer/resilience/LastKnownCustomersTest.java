@@ -0,0 +1,91 @@
+package ru.zotov.customer.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerDao;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LastKnownCustomersTest {
+
+    private LastKnownCustomers underTest;
+    @Mock
+    CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new LastKnownCustomers(customerDao,
+                new ResilienceProperties.Stale(Duration.ofMillis(300), 3, Duration.ofSeconds(1), 10),
+                new SimpleMeterRegistry());
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 20), 0);
+        underTest.put(new Customer(2, "Olga", "olga@gmail.com", 22), 0);
+    }
+
+    @Test
+    void changedCustomersAreKeptButRevalidatedOnceRequested() {
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.UPDATE, 1));
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.DELETE, 2));
+        underTest.revalidate();
+        verifyNoInteractions(customerDao);
+
+        assertThat(underTest.get(1).getName()).isEqualTo("Alex");
+        assertThat(underTest.get(2)).isNotNull();
+        when(customerDao.selectCustomersByIds(any()))
+                .thenReturn(List.of(new Customer(1, "Alexander", "alexander@gmail.com", 21)));
+        underTest.revalidate();
+
+        assertThat(underTest.get(1).getName()).isEqualTo("Alexander");
+        assertThat(underTest.getByEmail("alexander@gmail.com")).isNotNull();
+        assertThat(underTest.getByEmail("alex@gmail.com")).isNull();
+        assertThat(underTest.get(2)).isNull();
+        assertThat(underTest.isOutdated(1)).isFalse();
+    }
+
+    @Test
+    void failedRevalidationIsRetried() {
+        underTest.get(1);
+        underTest.onChangesMissed();
+        when(customerDao.selectCustomersByIds(List.of(1)))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+
+        underTest.revalidate();
+
+        assertThat(underTest.isOutdated(1)).isTrue();
+        assertThat(underTest.isOutdated(2)).isTrue();
+        assertThat(underTest.get(1)).isNotNull();
+    }
+
+    @Test
+    void valuesReadAcrossAChangeStayOutdated() {
+        long generation = underTest.generation();
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.UPDATE, 1));
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 20), generation);
+
+        assertThat(underTest.isOutdated(1)).isTrue();
+
+        underTest.put(new Customer(1, "Alexander", "alex@gmail.com", 20), underTest.generation());
+
+        assertThat(underTest.isOutdated(1)).isFalse();
+    }
+
+    @Test
+    void holdsNoMoreThanTheMaxSize() {
+        underTest.put(new Customer(3, "Ivan", "ivan@gmail.com", 30), 0);
+        underTest.put(new Customer(4, "Anna", "anna@gmail.com", 25), 0);
+
+        assertThat(underTest.size()).isEqualTo(3);
+        assertThat(underTest.get(4)).isNotNull();
+    }
+}
@@ -0,0 +1,109 @@
+package ru.zotov.customer.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.deadline.Deadline;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaleFallbackCustomerDaoTest {
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", 20);
+    private final Customer olga = new Customer(2, "Olga", "olga@gmail.com", 22);
+    private StaleFallbackCustomerDao underTest;
+    private LastKnownCustomers lastKnownCustomers;
+    @Mock
+    CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        lastKnownCustomers = new LastKnownCustomers(customerDao,
+                new ResilienceProperties.Stale(Duration.ofMillis(300), 100, Duration.ofSeconds(1), 10),
+                new SimpleMeterRegistry());
+        underTest = new StaleFallbackCustomerDao(customerDao, lastKnownCustomers, Duration.ofMillis(300));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void servesTheLastKnownCustomerWhileTheStoreFails() {
+        when(customerDao.selectCustomerById(1))
+                .thenReturn(Optional.of(alex))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+        underTest.selectCustomerById(1);
+        assertThat(StaleResponses.isMarked()).isFalse();
+
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        assertThat(actual).hasValue(alex);
+        assertThat(StaleResponses.isMarked()).isTrue();
+    }
+
+    @Test
+    void fallsBackByEmailAndForLookupsOfKnownCustomersOnly() {
+        when(customerDao.selectCustomersByIds(List.of(1, 2))).thenReturn(List.of(alex, olga));
+        underTest.selectCustomersByIds(List.of(1, 2));
+        when(customerDao.selectCustomersByIds(any()))
+                .thenThrow(new ResourceUnavailableException("customer store is unavailable, retry later"));
+        when(customerDao.selectCustomerByEmail(any()))
+                .thenThrow(new ResourceUnavailableException("customer store is unavailable, retry later"));
+
+        assertThat(underTest.selectCustomersByIds(List.of(2, 1))).containsExactly(olga, alex);
+        assertThat(underTest.selectCustomerByEmail(" OLGA@gmail.com")).hasValue(olga);
+        assertThatThrownBy(() -> underTest.selectCustomersByIds(List.of(1, 3)))
+                .isInstanceOf(ResourceUnavailableException.class);
+        assertThatThrownBy(() -> underTest.selectCustomerByEmail("ivan@gmail.com"))
+                .isInstanceOf(ResourceUnavailableException.class);
+    }
+
+    @Test
+    void unknownCustomersAreReadWithTheFullDeadline() {
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            assertThat(Deadline.current()).isNull();
+            return Optional.of(alex);
+        });
+        underTest.selectCustomerById(1);
+
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> {
+            assertThat(Deadline.current().remainingMillis()).isLessThanOrEqualTo(300);
+            throw new QueryTimeoutException("canceling statement due to statement timeout");
+        });
+
+        assertThat(underTest.selectCustomerById(1)).hasValue(alex);
+        assertThat(Deadline.current()).isNull();
+    }
+
+    @Test
+    void forgetsDeletedCustomers() {
+        when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        underTest.deleteCustomerById(1);
+
+        assertThat(lastKnownCustomers.get(1)).isNull();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.zotov.customer.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.zotov.customer.Customer;
+import ru.zotov.datagen.CustomerGenerator;
+import ru.zotov.datagen.DataGenerationProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Memory footprint and query latency of the search index over generated customers,
+ * ten million by default ({@code -Dsearch.benchmark.customers} to change). Run with
+ * {@code mvn test -Pbenchmark -DargLine=-Xmx3500m}; building needs about twice the
+ * memory the finished index holds.
+ */
+@Tag("benchmark")
+class CustomerSearchBenchmarkTest {
+
+    private static final int CUSTOMERS = Integer.getInteger("search.benchmark.customers", 10_000_000);
+    private static final int ROUNDS = 200;
+    private static final int MAX_CANDIDATES = Integer.getInteger("search.benchmark.max-candidates", 5_000);
+
+    @Test
+    void footprintAndLatency() {
+        CustomerGenerator generator = new CustomerGenerator(new DataGenerationProperties(true, CUSTOMERS, 42, 0,
+                50_000, 1, 18, 90, DataGenerationProperties.AgeDistribution.UNIFORM, 40, 15, 2000,
+                DataGenerationProperties.NameDistribution.ZIPF, 1.0,
+                List.of("example.com", "example.org", "example.net"), false, false));
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = generator.customerAt(i);
+            builder.add(i + 1, customer.getName(), customer.getEmail());
+        }
+        SearchIndex index = builder.build();
+        long buildMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        long heapAfter = usedHeap();
+
+        System.out.printf("%d customers: built in %d ms, %d MB of arrays, %d MB of heap%n",
+                index.size(), buildMillis, index.sizeInBytes() >> 20, (heapAfter - heapBefore) >> 20);
+        assertThat(index.size()).isEqualTo(CUSTOMERS);
+
+        Customer sample = generator.customerAt(CUSTOMERS / 2);
+        String firstName = sample.getName().split(" ")[0];
+        String lastName = sample.getName().split(" ")[1];
+        String id36 = Long.toString(CUSTOMERS / 2, 36);
+        List<String> queries = List.of(
+                firstName.substring(0, 1),
+                firstName.substring(0, Math.min(3, firstName.length())),
+                firstName,
+                firstName + " " + lastName.substring(0, Math.min(2, lastName.length())),
+                id36,
+                lastName + " example.org",
+                "zzzz");
+        for (String query : queries) {
+            double[] millis = latencies(index, query);
+            System.out.printf("%-30s p50 %6.3f ms  p99 %6.3f ms  max %6.3f ms%n",
+                    "\"" + query + "\"", percentile(millis, 0.5), percentile(millis, 0.99), millis[millis.length - 1]);
+        }
+
+        TopHits hits = new TopHits(10);
+        index.search(Query.parse(id36), MAX_CANDIDATES, id -> false, hits);
+        assertThat(hits.hits()).extracting(TopHits.Hit::customerId).first().isEqualTo(CUSTOMERS / 2 + 1);
+    }
+
+    private static double[] latencies(SearchIndex index, String query) {
+        double[] millis = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            TopHits hits = new TopHits(20);
+            index.search(Query.parse(query), MAX_CANDIDATES, id -> false, hits);
+            hits.hits();
+            millis[round] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * sorted.length))];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
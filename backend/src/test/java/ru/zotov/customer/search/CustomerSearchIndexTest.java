@@ -0,0 +1,111 @@
+package ru.zotov.customer.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerChange;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSearchIndexTest {
+
+    private CustomerSearchIndex underTest;
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerSearchIndex(customerDao, new SearchProperties(true, 1000, 2), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void servesSearchesOnceBuilt() throws InterruptedException {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(
+                new Customer(2, "Olga Ivanova", "olga@gmail.com", 22),
+                new Customer(1, "Alex Ivanov", "alex@gmail.com", 20)));
+        assertThatThrownBy(() -> underTest.search("ivan", 10))
+                .isInstanceOf(ResourceUnavailableException.class);
+
+        start();
+
+        assertThat(underTest.search("ivan", 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    void reReadsChangedCustomersOnTheNextSearch() throws InterruptedException {
+        underTest.stop();
+        // room for the whole overlay, so no rebuild reads the table again meanwhile
+        underTest = new CustomerSearchIndex(customerDao, new SearchProperties(true, 1000, 10), meterRegistry);
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(
+                new Customer(1, "Alex Ivanov", "alex@gmail.com", 20),
+                new Customer(2, "Olga Ivanova", "olga@gmail.com", 22)));
+        start();
+        when(customerDao.selectCustomersByIds(any())).thenReturn(List.of(
+                new Customer(1, "Alexander Petrov", "alex@gmail.com", 21),
+                new Customer(3, "Ivan Sidorov", "ivan@gmail.com", 30)));
+
+        underTest.invalidate(1);
+        underTest.invalidate(2);
+        underTest.onCustomerChange(new CustomerChange(CustomerChange.Type.INSERT, 3));
+
+        assertThat(underTest.search("ivan", 10)).containsExactly(3);
+        assertThat(underTest.search("petrov", 10)).containsExactly(1);
+        assertThat(underTest.search("olga", 10)).isEmpty();
+        verify(customerDao, times(1)).selectCustomersByIds(any());
+        verify(customerDao, times(1)).selectAllCustomers();
+    }
+
+    @Test
+    void rebuildsOnceTheOverlayOutgrowsTheLimit() throws InterruptedException {
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(
+                new Customer(1, "Alex Ivanov", "alex@gmail.com", 20)));
+        start();
+        List<Customer> changed = List.of(
+                new Customer(1, "Alex Ivanov", "alex@gmail.com", 20),
+                new Customer(2, "Olga Ivanova", "olga@gmail.com", 22),
+                new Customer(3, "Ivan Sidorov", "ivan@gmail.com", 30));
+        when(customerDao.selectCustomersByIds(any())).thenReturn(changed);
+        when(customerDao.selectAllCustomers()).thenReturn(changed);
+
+        changed.forEach(customer -> underTest.invalidate(customer.getId()));
+        underTest.search("ivan", 10);
+
+        awaitCondition(() -> meterRegistry.get("customer.search.customers").gauge().value() == 3);
+        assertThat(underTest.search("ivan", 10)).containsExactly(3, 1, 2);
+        verify(customerDao, times(2)).selectAllCustomers();
+    }
+
+    private void start() throws InterruptedException {
+        underTest.start();
+        awaitCondition(underTest::isBuilt);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.zotov.customer.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchIndexTest {
+
+    private final SearchIndex underTest = new SearchIndex.Builder()
+            .add(1, "Alex Smith", "alex.smith@gmail.com")
+            .add(2, "Alexandra Jones", "sasha@yandex.ru")
+            .add(3, "Olga Alexeeva", "olga@alexeev.org")
+            .add(4, "Ivan Petrov", "ivan.petrov@gmail.com")
+            .add(7, "Émile Zola", "emile.zola@gmail.com")
+            .build();
+
+    @Test
+    void matchesPrefixesOfNameAndEmailTerms() {
+        assertThat(search("ale", 10)).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(search("gmail", 10)).containsExactlyInAnyOrder(1, 4, 7);
+        assertThat(search("yandex.ru", 10)).containsExactly(2);
+        assertThat(search("ÉMI", 10)).containsExactly(7);
+        assertThat(search("x", 10)).isEmpty();
+    }
+
+    @Test
+    void ranksExactAndNameMatchesFirst() {
+        // exact in the name and the email, then a name and a domain, then a longer name alone
+        assertThat(search("alex", 10)).containsExactly(1, 3, 2);
+    }
+
+    @Test
+    void everyTokenMustMatch() {
+        assertThat(search("alex gmail", 10)).containsExactly(1);
+        assertThat(search("iv pet", 10)).containsExactly(4);
+        assertThat(search("alex yandex", 10)).containsExactly(2);
+        assertThat(search("olga gmail", 10)).isEmpty();
+    }
+
+    @Test
+    void skipsShadowedCustomersAndKeepsTheLimit() {
+        TopHits hits = new TopHits(1);
+        underTest.search(Query.parse("alex"), 100, id -> id == 1, hits);
+
+        assertThat(hits.hits()).extracting(TopHits.Hit::customerId).containsExactly(3);
+    }
+
+    @Test
+    void commonPrefixesOnlyExpandTheBestTerms() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        IntStream.rangeClosed(1, 1_000).forEach(id -> builder.add(id, "Anna" + id, "a" + id + "@example.com"));
+        builder.add(1_001, "Ann", "ann@example.com");
+        SearchIndex index = builder.build();
+
+        TopHits hits = new TopHits(5);
+        index.search(Query.parse("ann"), 10, id -> false, hits);
+
+        assertThat(hits.hits()).extracting(TopHits.Hit::customerId).first().isEqualTo(1_001);
+        assertThat(hits.hits()).hasSize(5);
+    }
+
+    @Test
+    void customersMustBeAddedInIdOrder() {
+        SearchIndex.Builder builder = new SearchIndex.Builder().add(2, "Alex", "alex@gmail.com");
+
+        assertThatThrownBy(() -> builder.add(1, "Olga", "olga@gmail.com"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Integer> search(String query, int limit) {
+        TopHits hits = new TopHits(limit);
+        underTest.search(Query.parse(query), 100, id -> false, hits);
+        return hits.hits().stream().map(TopHits.Hit::customerId).toList();
+    }
+}
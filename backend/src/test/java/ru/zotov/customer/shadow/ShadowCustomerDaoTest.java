@@ -0,0 +1,179 @@
+package ru.zotov.customer.shadow;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerDao;
+import ru.zotov.exception.RequestValidationException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShadowCustomerDaoTest {
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", 20);
+    private final Customer olga = new Customer(2, "Olga", "olga@gmail.com", 22);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ShadowTraffic shadowTraffic;
+    private ShadowCustomerDao underTest;
+    @Mock
+    CustomerDao primary;
+    @Mock
+    CustomerDao secondary;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("jpa_repository", secondary);
+        shadowTraffic = new ShadowTraffic(beanFactory,
+                new ShadowProperties(true, "jpa_repository", 100, 1, 10, Duration.ofSeconds(1)), meterRegistry);
+        shadowTraffic.afterSingletonsInstantiated();
+        underTest = new ShadowCustomerDao(primary, shadowTraffic);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shadowTraffic.stop();
+    }
+
+    @Test
+    void countsMatchingReadsAndRecordsLatencyOfBothSides() {
+        when(primary.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(secondary.selectCustomerById(1)).thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 20)));
+        when(primary.selectCustomersByIds(List.of(1, 2))).thenReturn(List.of(alex, olga));
+        when(secondary.selectCustomersByIds(List.of(1, 2))).thenReturn(List.of(olga, alex));
+
+        assertThat(underTest.selectCustomerById(1)).hasValue(alex);
+        assertThat(underTest.selectCustomersByIds(List.of(1, 2))).containsExactly(alex, olga);
+
+        awaitOutcome("by-id", "match", 1);
+        awaitOutcome("by-ids", "match", 1);
+        assertThat(meterRegistry.get("customer.shadow.latency").tag("operation", "by-id").timers())
+                .extracting(timer -> timer.getId().getTag("side"))
+                .containsExactlyInAnyOrder("primary", "secondary");
+    }
+
+    @Test
+    void comparesWithWhatThePrimaryReturnedBeforeTheCallerChangedIt() {
+        when(primary.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(secondary.selectCustomerById(1)).thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 20)));
+
+        underTest.selectCustomerById(1).orElseThrow().setName("Changed");
+
+        awaitOutcome("by-id", "match", 1);
+    }
+
+    @Test
+    void tellsMismatchesApartFromCustomersChangedInBetween() {
+        Customer renamed = new Customer(1, "Alexey", "alex@gmail.com", 20);
+        when(primary.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(renamed));
+        when(secondary.selectCustomerById(1)).thenReturn(Optional.of(renamed));
+        when(primary.existsCustomerWithEmail("olga@gmail.com")).thenReturn(true);
+        when(secondary.existsCustomerWithEmail("olga@gmail.com")).thenReturn(false);
+
+        underTest.selectCustomerById(1);
+        underTest.existsCustomerWithEmail("olga@gmail.com");
+
+        awaitOutcome("by-id", "changed", 1);
+        awaitOutcome("exists-by-email", "mismatch", 1);
+    }
+
+    @Test
+    void servesThePrimaryResultWhenTheSecondaryFails() {
+        when(primary.selectCustomerByEmail("alex@gmail.com")).thenReturn(Optional.of(alex));
+        when(secondary.selectCustomerByEmail("alex@gmail.com"))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+
+        assertThat(underTest.selectCustomerByEmail("alex@gmail.com")).hasValue(alex);
+
+        awaitOutcome("by-email", "error", 1);
+    }
+
+    @Test
+    void neverShadowsWritesOrFullListings() {
+        underTest.selectAllCustomers();
+        underTest.insertCustomer(alex);
+        underTest.updateCustomer(alex);
+        underTest.deleteCustomerById(1);
+
+        verify(primary).selectAllCustomers();
+        verify(primary).insertCustomer(alex);
+        verify(primary).updateCustomer(alex);
+        verify(primary).deleteCustomerById(1);
+        verifyNoInteractions(secondary);
+    }
+
+    @Test
+    void switchesTheSecondaryAtRuntime() {
+        when(primary.existsCustomerWithId(1)).thenReturn(true);
+        shadowTraffic.off();
+
+        underTest.existsCustomerWithId(1);
+
+        verifyNoInteractions(secondary);
+        assertThatThrownBy(() -> shadowTraffic.shadowTo("customer_dao", 10))
+                .isInstanceOf(RequestValidationException.class);
+        assertThatThrownBy(() -> shadowTraffic.shadowTo("jpa_repository", 150))
+                .isInstanceOf(RequestValidationException.class);
+        assertThat(shadowTraffic.target().secondary()).isEmpty();
+    }
+
+    @Test
+    void listsLazyCandidatesWithoutCreatingThem() {
+        AtomicInteger created = new AtomicInteger();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition lazyDao = new RootBeanDefinition(CustomerDao.class, () -> {
+            created.incrementAndGet();
+            return secondary;
+        });
+        lazyDao.setLazyInit(true);
+        beanFactory.registerBeanDefinition("jpa_repository", lazyDao);
+        beanFactory.registerSingleton("customer_store", primary);
+        ShadowTraffic traffic = new ShadowTraffic(beanFactory,
+                new ShadowProperties(true, "", 0, 1, 10, Duration.ofSeconds(1)), meterRegistry);
+        try {
+            assertThat(traffic.candidates()).containsExactly("jpa_repository");
+            assertThat(created).hasValue(0);
+
+            traffic.shadowTo("jpa_repository", 5);
+
+            assertThat(created).hasValue(1);
+        } finally {
+            traffic.stop();
+        }
+    }
+
+    private void awaitOutcome(String operation, String outcome, double expected) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (count(operation, outcome) < expected && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(count(operation, outcome)).as("%s %s", operation, outcome).isEqualTo(expected);
+    }
+
+    private double count(String operation, String outcome) {
+        Counter counter = meterRegistry.find("customer.shadow.reads")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,139 @@
+package ru.zotov.customer.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.AbstractTestContainers;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerIdAllocator;
+import ru.zotov.customer.CustomerRowMapper;
+import ru.zotov.sqlstats.SqlStatistics;
+import ru.zotov.sqlstats.SqlStatsProperties;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs three shards as three databases of the test container; pointing the shard
+ * urls at separate Postgres servers works the same way.
+ */
+class ShardRebalancerTest extends AbstractTestContainers {
+
+    private static final List<String> EXTRA_SHARDS = List.of("customer_shard_1", "customer_shard_2");
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private ShardSet shardSet;
+    private ShardDirectory directory;
+    private ShardedCustomerDao shardedDao;
+    private ShardRebalancer underTest;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate primary = getJdbcTemplate();
+        for (String shard : EXTRA_SHARDS) {
+            primary.execute("DROP DATABASE IF EXISTS " + shard);
+            primary.execute("CREATE DATABASE " + shard);
+        }
+        primary.execute("TRUNCATE customer_shard_bucket, customer_email_route");
+
+        List<ShardingProperties.Shard> shards = EXTRA_SHARDS.stream()
+                .map(name -> new ShardingProperties.Shard(
+                        postgreSQLContainer.getJdbcUrl().replace(postgreSQLContainer.getDatabaseName(), name),
+                        postgreSQLContainer.getUsername(),
+                        postgreSQLContainer.getPassword(),
+                        2))
+                .toList();
+        shardSet = new ShardSet(primaryDataSource(), shards, customerRowMapper, new SqlStatistics(
+                new SqlStatsProperties(false, 0, Duration.ofSeconds(1), 1, 1)));
+        directory = new ShardDirectory(shardSet.jdbcTemplate(0), shardSet.size(), Duration.ofMillis(100));
+        directory.start();
+        shardedDao = new ShardedCustomerDao(shardSet, directory,
+                new EmailRouteIndex(shardSet.jdbcTemplate(0)), new CustomerIdAllocator(shardSet.jdbcTemplate(0)), 2);
+        underTest = new ShardRebalancer(shardSet, directory, customerRowMapper, Duration.ofMillis(200), 50, 256);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedDao.shutdown();
+        directory.stop();
+        shardSet.close();
+    }
+
+    @Test
+    void rebalanceSpreadsBucketsAndRowsOverAllShards() {
+        List<Customer> customers = IntStream.range(0, 300).mapToObj(i -> getCustomer()).toList();
+        shardedDao.insertCustomers(customers);
+        List<Customer> before = shardedDao.selectAllCustomers();
+
+        List<ShardRebalancer.Move> actual = underTest.rebalance();
+
+        assertThat(actual).allMatch(move -> move.fromShard() == 0);
+        assertThat(IntStream.range(0, shardSet.size()).map(this::bucketsOwnedBy))
+                .containsExactly(342, 341, 341);
+        assertThat(shardedDao.selectAllCustomers()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(before);
+        for (int shard = 0; shard < shardSet.size(); shard++) {
+            assertThat(rowsOn(shard)).as("rows on shard %d", shard).isPositive();
+        }
+        assertThat(IntStream.range(0, shardSet.size()).map(this::rowsOn).sum())
+                .isEqualTo(before.size());
+    }
+
+    @Test
+    void movedCustomersKeepTheirIdAndEmail() {
+        Customer customer = getCustomer();
+        shardedDao.insertCustomer(customer);
+        Customer stored = shardedDao.selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(customer.getEmail()))
+                .findFirst()
+                .orElseThrow();
+
+        ShardRebalancer.Move actual = underTest.moveBucket(ShardDirectory.bucketOf(stored.getId()), 2);
+
+        assertThat(actual.rows()).isPositive();
+        assertThat(directory.assignment().shardOf(stored.getId())).isEqualTo(2);
+        assertThat(shardedDao.selectCustomerById(stored.getId())).get()
+                .usingRecursiveComparison().isEqualTo(stored);
+        assertThat(shardedDao.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        assertThat(shardSet.customerDao(0).existsCustomerWithId(stored.getId())).isFalse();
+    }
+
+    @Test
+    void movingCustomersOffThePrimaryLeavesNoTombstones() {
+        Customer customer = getCustomer();
+        shardedDao.insertCustomer(customer);
+
+        underTest.moveBucket(ShardDirectory.bucketOf(customer.getId()), 1);
+
+        assertThat(shardSet.customerDao(0).existsCustomerWithId(customer.getId())).isFalse();
+        Integer tombstones = shardSet.jdbcTemplate(0).queryForObject(
+                "SELECT count(*) FROM customer_tombstone WHERE id = ?", Integer.class, customer.getId());
+        assertThat(tombstones).isZero();
+    }
+
+    private int bucketsOwnedBy(int shard) {
+        ShardDirectory.Assignment assignment = directory.assignment();
+        return (int) IntStream.range(0, ShardDirectory.BUCKETS)
+                .filter(bucket -> assignment.shardOfBucket(bucket) == shard)
+                .count();
+    }
+
+    private int rowsOn(int shard) {
+        List<Integer> ids = shardedDao.selectAllCustomers().stream().map(Customer::getId).toList();
+        return (int) shardSet.customerDao(shard).selectCustomersByIds(ids).stream().count();
+    }
+
+    private static DataSource primaryDataSource() {
+        return DataSourceBuilder.create()
+                .url(postgreSQLContainer.getJdbcUrl())
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package ru.zotov.customer.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.zotov.customer.Customer;
+import ru.zotov.customer.CustomerIdAllocator;
+import ru.zotov.customer.CustomerJDBCDataAccessService;
+import ru.zotov.exception.ResourceUnavailableException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedCustomerDaoTest {
+
+    private ShardedCustomerDao underTest;
+    @Mock
+    ShardSet shardSet;
+    @Mock
+    ShardDirectory directory;
+    @Mock
+    EmailRouteIndex emailRoutes;
+    @Mock
+    CustomerIdAllocator idAllocator;
+    @Mock
+    CustomerJDBCDataAccessService shard0;
+    @Mock
+    CustomerJDBCDataAccessService shard1;
+
+    @BeforeEach
+    void setUp() {
+        when(shardSet.size()).thenReturn(2);
+        lenient().when(shardSet.customerDao(0)).thenReturn(shard0);
+        lenient().when(shardSet.customerDao(1)).thenReturn(shard1);
+        underTest = new ShardedCustomerDao(shardSet, directory, emailRoutes, idAllocator, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void selectCustomerByIdGoesToOwningShard() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.ACTIVE);
+        Customer customer = new Customer(3, "Alex", "alex@gmail.com", 20);
+        when(shard1.selectCustomerById(3)).thenReturn(Optional.of(customer));
+
+        Optional<Customer> actual = underTest.selectCustomerById(3);
+
+        assertThat(actual).hasValue(customer);
+        verifyNoInteractions(shard0);
+    }
+
+    @Test
+    void selectAllCustomersMergesShardsByIdAndSkipsRowsNotOwned() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.ACTIVE);
+        Customer two = new Customer(2, "Two", "two@gmail.com", 20);
+        Customer three = new Customer(3, "Three", "three@gmail.com", 30);
+        Customer four = new Customer(4, "Four", "four@gmail.com", 40);
+        Customer leftBehind = new Customer(6, "Six", "six@gmail.com", 60);
+        when(shard0.selectAllCustomers()).thenReturn(List.of(four, two));
+        when(shard1.selectAllCustomers()).thenReturn(List.of(three, leftBehind));
+
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        assertThat(actual).containsExactly(two, three, four);
+    }
+
+    @Test
+    void insertCustomerIndexesEmailAndSkipsIdsOfFrozenBuckets() {
+        int[] shards = evenBucketsOnShard0();
+        ShardDirectory.State[] states = states(ShardDirectory.State.ACTIVE);
+        states[ShardDirectory.bucketOf(100)] = ShardDirectory.State.FROZEN;
+        when(directory.assignment()).thenReturn(assignment(shards, states));
+        when(idAllocator.nextId()).thenReturn(100, 101);
+
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        ArgumentCaptor<List<Customer>> inserted = ArgumentCaptor.captor();
+        verify(shard1).insertCustomers(inserted.capture());
+        assertThat(inserted.getValue()).extracting(Customer::getId).containsExactly(101);
+        verify(emailRoutes).add(inserted.getValue());
+        verifyNoInteractions(shard0);
+    }
+
+    @Test
+    void insertCustomersSetsTheAllocatedIdOnTheCallersCustomers() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.ACTIVE);
+        when(idAllocator.nextId()).thenReturn(4, 5);
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 19);
+
+        underTest.insertCustomers(List.of(alex, jamila));
+
+        assertThat(alex.getId()).isEqualTo(4);
+        assertThat(jamila.getId()).isEqualTo(5);
+        verify(shard0).insertCustomers(List.of(alex));
+        verify(shard1).insertCustomers(List.of(jamila));
+    }
+
+    @Test
+    void insertCustomerRemovesEmailRouteWhenShardInsertFails() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.ACTIVE);
+        when(idAllocator.nextId()).thenReturn(8);
+        doThrow(new IllegalStateException("shard down")).when(shard0).insertCustomers(any());
+
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20)))
+                .hasMessage("shard down");
+
+        verify(emailRoutes).remove(List.of(8));
+    }
+
+    @Test
+    void writesToFrozenBucketAreRefused() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.FROZEN);
+
+        assertThatThrownBy(() -> underTest.deleteCustomerById(4))
+                .isInstanceOf(ResourceUnavailableException.class)
+                .hasMessage("customer with ID: 4 is being moved to another shard, retry shortly");
+
+        verifyNoInteractions(shard0, emailRoutes);
+    }
+
+    @Test
+    void insertsAreRefusedWhileEveryBucketIsFrozen() {
+        givenAssignment(evenBucketsOnShard0(), ShardDirectory.State.FROZEN);
+        when(idAllocator.nextId()).thenReturn(7);
+
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20)))
+                .isInstanceOf(ResourceUnavailableException.class)
+                .hasMessage("customer with ID: 7 is being moved to another shard, retry shortly");
+
+        verifyNoInteractions(shard0, shard1, emailRoutes);
+    }
+
+    @Test
+    void existsCustomerWithEmailIsOneIndexLookup() {
+        when(emailRoutes.exists("alex@gmail.com")).thenReturn(true);
+
+        boolean actual = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        assertThat(actual).isTrue();
+        verifyNoInteractions(shard0, shard1);
+    }
+
+    private void givenAssignment(int[] shards, ShardDirectory.State state) {
+        when(directory.assignment()).thenReturn(assignment(shards, states(state)));
+    }
+
+    private static ShardDirectory.Assignment assignment(int[] shards, ShardDirectory.State[] states) {
+        int[] targets = new int[ShardDirectory.BUCKETS];
+        Arrays.fill(targets, -1);
+        return new ShardDirectory.Assignment(shards, states, targets);
+    }
+
+    private static int[] evenBucketsOnShard0() {
+        int[] shards = new int[ShardDirectory.BUCKETS];
+        for (int bucket = 0; bucket < shards.length; bucket++) {
+            shards[bucket] = bucket % 2;
+        }
+        return shards;
+    }
+
+    private static ShardDirectory.State[] states(ShardDirectory.State state) {
+        ShardDirectory.State[] states = new ShardDirectory.State[ShardDirectory.BUCKETS];
+        Arrays.fill(states, state);
+        return states;
+    }
+}
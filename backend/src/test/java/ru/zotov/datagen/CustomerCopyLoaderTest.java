@@ -0,0 +1,38 @@
+package ru.zotov.datagen;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.zotov.AbstractTestContainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerCopyLoaderTest extends AbstractTestContainers {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private final CustomerCopyLoader underTest = new CustomerCopyLoader(jdbcTemplate.getDataSource());
+
+    @Test
+    void copiesGeneratedCustomersInParallelChunks() {
+        DataGenerationProperties properties = CustomerGeneratorTest.properties(
+                System.nanoTime(),
+                DataGenerationProperties.AgeDistribution.NORMAL,
+                DataGenerationProperties.NameDistribution.ZIPF);
+        CustomerGenerator generator = new CustomerGenerator(properties);
+        String expectedEmail = generator.customerAt(4_321).getEmail();
+        Integer before = jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Integer.class);
+        Integer maxIdBefore = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM customer", Integer.class);
+
+        long loaded = underTest.load(generator, 0, 10_000, 1_000, 4);
+
+        assertThat(loaded).isEqualTo(10_000);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer", Integer.class))
+                .isEqualTo(before + 10_000);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Integer.class, expectedEmail))
+                .isEqualTo(1);
+        // whole blocks of ids per chunk, none left unused
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT max(id) - min(id) + 1 FROM customer WHERE id > ?", Integer.class, maxIdBefore))
+                .isEqualTo(10_000);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.zotov.datagen;
+
+import org.junit.jupiter.api.Test;
+import ru.zotov.customer.Customer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerGeneratorTest {
+
+    static DataGenerationProperties properties(long seed,
+                                               DataGenerationProperties.AgeDistribution ageDistribution,
+                                               DataGenerationProperties.NameDistribution nameDistribution) {
+        return new DataGenerationProperties(true, 1000, seed, 0, 100, 2,
+                18, 90, ageDistribution, 40, 15, 200, nameDistribution, 1.0,
+                List.of("example.com", "example.org"), true, false);
+    }
+
+    @Test
+    void sameSeedAndIndexProduceSameCustomer() {
+        DataGenerationProperties properties = properties(7,
+                DataGenerationProperties.AgeDistribution.UNIFORM,
+                DataGenerationProperties.NameDistribution.UNIFORM);
+        CustomerGenerator first = new CustomerGenerator(properties);
+        CustomerGenerator second = new CustomerGenerator(properties);
+
+        for (long index : new long[]{0, 1, 999, 123_456_789}) {
+            Customer expected = first.customerAt(index);
+            Customer actual = second.customerAt(index);
+            assertThat(actual.getName()).isEqualTo(expected.getName());
+            assertThat(actual.getEmail()).isEqualTo(expected.getEmail());
+            assertThat(actual.getAge()).isEqualTo(expected.getAge());
+        }
+    }
+
+    @Test
+    void emailsAreUniqueAcrossRange() {
+        CustomerGenerator underTest = new CustomerGenerator(properties(7,
+                DataGenerationProperties.AgeDistribution.UNIFORM,
+                DataGenerationProperties.NameDistribution.ZIPF));
+
+        Set<String> emails = new HashSet<>();
+        LongStream.range(0, 200_000).forEach(index -> emails.add(underTest.customerAt(index).getEmail()));
+
+        assertThat(emails).hasSize(200_000);
+    }
+
+    @Test
+    void agesStayWithinConfiguredBounds() {
+        CustomerGenerator underTest = new CustomerGenerator(properties(7,
+                DataGenerationProperties.AgeDistribution.NORMAL,
+                DataGenerationProperties.NameDistribution.UNIFORM));
+
+        assertThat(LongStream.range(0, 10_000).mapToInt(index -> underTest.customerAt(index).getAge()))
+                .allMatch(age -> age >= 18 && age <= 90);
+    }
+
+    @Test
+    void copyRowHasThreeTabSeparatedColumns() {
+        CustomerGenerator underTest = new CustomerGenerator(properties(7,
+                DataGenerationProperties.AgeDistribution.UNIFORM,
+                DataGenerationProperties.NameDistribution.UNIFORM));
+        Customer customer = underTest.customerAt(5);
+
+        StringBuilder row = new StringBuilder();
+        underTest.appendCopyRow(5, row);
+
+        assertThat(row.toString())
+                .isEqualTo(customer.getName() + "\t" + customer.getEmail() + "\t" + customer.getAge() + "\n");
+    }
+
+    @Test
+    void rejectsInvertedAgeRange() {
+        DataGenerationProperties properties = new DataGenerationProperties(true, 1, 1, 0, 1, 1,
+                50, 20, DataGenerationProperties.AgeDistribution.UNIFORM, 40, 15, 10,
+                DataGenerationProperties.NameDistribution.UNIFORM, 1.0, List.of("example.com"), true, false);
+
+        assertThatThrownBy(() -> new CustomerGenerator(properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("min-age must not exceed max-age");
+    }
+}
@@ -0,0 +1,76 @@
+package ru.zotov.deadline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DeadlineDataSourceTest {
+
+    private final DataSource target = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final DeadlineDataSource underTest = new DeadlineDataSource(target);
+
+    @AfterEach
+    void tearDown() {
+        Deadline.clear();
+    }
+
+    @Test
+    void passesConnectionThroughWithoutDeadline() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+
+        assertThat(underTest.getConnection()).isSameAs(connection);
+    }
+
+    @Test
+    void appliesRemainingTimeToStatements() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        Deadline.start(Duration.ofMillis(2500));
+
+        PreparedStatement actual = underTest.getConnection().prepareStatement("SELECT 1");
+
+        assertThat(actual).isSameAs(statement);
+        verify(statement).setQueryTimeout(3);
+    }
+
+    @Test
+    void failsFastOnceDeadlineHasPassed() throws Exception {
+        Deadline.start(Duration.ofNanos(1));
+        Thread.sleep(1);
+
+        assertThatThrownBy(underTest::getConnection).isInstanceOf(SQLTimeoutException.class);
+        verifyNoInteractions(target);
+    }
+
+    @Test
+    void closesStatementCreatedAfterDeadline() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(30);
+            return statement;
+        });
+        Deadline.start(Duration.ofMillis(20));
+        Connection actual = underTest.getConnection();
+
+        assertThatThrownBy(() -> actual.prepareStatement("SELECT 1")).isInstanceOf(SQLTimeoutException.class);
+        verify(statement).close();
+        verify(statement, never()).setQueryTimeout(anyInt());
+    }
+}
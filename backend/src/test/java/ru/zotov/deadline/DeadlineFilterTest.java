@@ -0,0 +1,113 @@
+package ru.zotov.deadline;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineFilterTest {
+
+    private final DeadlineProperties properties = new DeadlineProperties(true, "Request-Timeout",
+            Duration.ofSeconds(30), new DeadlineProperties.Timeouts(
+            Duration.ofSeconds(10), Duration.ofSeconds(3), Duration.ofSeconds(2),
+            Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5)));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadlineFilter underTest = new DeadlineFilter(properties, meterRegistry);
+    private final List<Deadline> seen = new ArrayList<>();
+    private final FilterChain recordingChain = (request, response) -> seen.add(Deadline.current());
+
+    @Test
+    void usesEndpointDefaultWithoutHeader() throws Exception {
+        perform(get("/api/v1/customers/7"), recordingChain);
+        perform(get("/api/v1/customers"), recordingChain);
+
+        assertThat(seen).extracting(Deadline::timeout)
+                .containsExactly(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        assertThat(Deadline.current()).isNull();
+    }
+
+    @Test
+    void headerOverridesDefaultUpToMaxTimeout() throws Exception {
+        perform(get("/api/v1/customers/7", "250"), recordingChain);
+        perform(get("/api/v1/customers/7", "1500ms"), recordingChain);
+        perform(get("/api/v1/customers/7", "5m"), recordingChain);
+
+        assertThat(seen).extracting(Deadline::timeout)
+                .containsExactly(Duration.ofMillis(250), Duration.ofMillis(1500), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void rejectsInvalidHeader() throws Exception {
+        MockHttpServletResponse actual = perform(get("/api/v1/customers/7", "soon"), recordingChain);
+
+        assertThat(actual.getStatus()).isEqualTo(400);
+        assertThat(seen).isEmpty();
+    }
+
+    @Test
+    void eventStreamRunsWithoutDeadline() throws Exception {
+        perform(get("/api/v1/customers/events"), recordingChain);
+
+        assertThat(seen).containsExactly((Deadline) null);
+    }
+
+    @Test
+    void databaseFailureAfterDeadlineIsGatewayTimeout() throws Exception {
+        FilterChain slowQuery = (request, response) -> {
+            sleepPastDeadline();
+            throw new ServletException(new QueryTimeoutException("canceling statement due to user request"));
+        };
+
+        MockHttpServletResponse actual = perform(get("/api/v1/customers/7", "20"), slowQuery);
+
+        assertThat(actual.getStatus()).isEqualTo(504);
+        assertThat(meterRegistry.get("customer.deadline.exceeded")
+                .tags("endpoint", "get").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failuresBeforeDeadlineArePropagated() {
+        FilterChain failing = (request, response) -> {
+            throw new QueryTimeoutException("lock timeout");
+        };
+
+        assertThatThrownBy(() -> perform(get("/api/v1/customers/7"), failing))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(meterRegistry.get("customer.deadline.exceeded")
+                .tags("endpoint", "get").counter().count()).isZero();
+    }
+
+    private static void sleepPastDeadline() {
+        try {
+            Thread.sleep(Deadline.current().remainingMillis() + 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private static MockHttpServletRequest get(String uri, String timeout) {
+        MockHttpServletRequest request = get(uri);
+        request.addHeader("Request-Timeout", timeout);
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.zotov.idempotency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyFilterTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final IdempotencyFilter underTest = new IdempotencyFilter(
+            new InMemoryIdempotencyStore(Duration.ofMinutes(1), 100), Duration.ofSeconds(1), 64);
+
+    @Test
+    void retryIsAnsweredFromStoreWithoutExecuting() throws Exception {
+        MockHttpServletResponse first = perform("POST", "key", "{\"name\":\"Alex\"}", created());
+        MockHttpServletResponse retry = perform("POST", "key", "{\"name\":\"Alex\"}", created());
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(retry.getContentType()).isEqualTo("application/json");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    void reusingKeyWithDifferentBodyIsRejected() throws Exception {
+        perform("POST", "key", "{\"name\":\"Alex\"}", created());
+        MockHttpServletResponse actual = perform("POST", "key", "{\"name\":\"Jamila\"}", created());
+
+        assertThat(executions).hasValue(1);
+        assertThat(actual.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    void sameKeyOnDifferentPathExecutesIndependently() throws Exception {
+        perform("POST", "key", "{}", created());
+        MockHttpServletResponse actual = perform("PUT", "key", "{}", created());
+
+        assertThat(executions).hasValue(2);
+        assertThat(actual.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    void serverErrorsAreNotStored() throws Exception {
+        perform("POST", "key", "{}", (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(503);
+        });
+        perform("POST", "key", "{}", created());
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void clientErrorsAreReplayedAsErrors() throws Exception {
+        FilterChain conflict = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).sendError(409, "email already taken");
+        };
+        perform("POST", "key", "{}", conflict);
+        MockHttpServletResponse retry = perform("POST", "key", "{}", conflict);
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatus()).isEqualTo(409);
+        assertThat(retry.getErrorMessage()).isEqualTo("email already taken");
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotIntercepted() throws Exception {
+        perform("POST", null, "{}", created());
+        perform("POST", null, "{}", created());
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void blankKeyIsRejected() throws Exception {
+        MockHttpServletResponse actual = perform("POST", " ", "{}", created());
+
+        assertThat(executions).hasValue(0);
+        assertThat(actual.getStatus()).isEqualTo(400);
+    }
+
+    @Test
+    void bodyOverTheLimitIsRejectedWithoutReadingIt() throws Exception {
+        MockHttpServletResponse actual = perform("POST", "key", "x".repeat(65), created());
+
+        assertThat(executions).hasValue(0);
+        assertThat(actual.getStatus()).isEqualTo(413);
+    }
+
+    @Test
+    void chunkedBodyOverTheLimitIsRejected() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/customers") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.addHeader(IdempotencyFilter.HEADER, "key");
+        request.setContent("x".repeat(1000).getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse actual = new MockHttpServletResponse();
+
+        underTest.doFilter(request, actual, created());
+
+        assertThat(executions).hasValue(0);
+        assertThat(actual.getStatus()).isEqualTo(413);
+        assertThat(request.getInputStream().readAllBytes()).hasSize(1000 - 65);
+    }
+
+    private FilterChain created() {
+        return (request, response) -> {
+            executions.incrementAndGet();
+            request.getInputStream().readAllBytes();
+            HttpServletResponse http = (HttpServletResponse) response;
+            http.setStatus(201);
+            http.setContentType("application/json");
+            http.getOutputStream().write("{\"id\":%d}".formatted(executions.get()).getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private MockHttpServletResponse perform(String method, String key, String body, FilterChain chain)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/v1/customers");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.zotov.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryIdempotencyStoreTest {
+
+    private static final IdempotentResponse RESPONSE =
+            new IdempotentResponse(200, "application/json", new byte[]{1, 2}, false, null);
+
+    private final AtomicLong now = new AtomicLong();
+    private final InMemoryIdempotencyStore underTest =
+            new InMemoryIdempotencyStore(Duration.ofMinutes(1), 10, now::get);
+
+    @Test
+    void firstReservationAcquiresAndDuplicateIsInFlight() {
+        assertThat(underTest.reserve("key", "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+        assertThat(underTest.reserve("key", "fp").state()).isEqualTo(Reservation.State.IN_FLIGHT);
+    }
+
+    @Test
+    void completedResponseIsReturnedToRetries() {
+        underTest.reserve("key", "fp");
+        underTest.complete("key", RESPONSE);
+
+        Reservation actual = underTest.reserve("key", "fp");
+
+        assertThat(actual.state()).isEqualTo(Reservation.State.COMPLETED);
+        assertThat(actual.response()).isSameAs(RESPONSE);
+    }
+
+    @Test
+    void differentFingerprintIsMismatch() {
+        underTest.reserve("key", "fp");
+
+        assertThat(underTest.reserve("key", "other").state()).isEqualTo(Reservation.State.MISMATCH);
+    }
+
+    @Test
+    void releasedKeyCanBeAcquiredAgain() {
+        underTest.reserve("key", "fp");
+        underTest.release("key");
+
+        assertThat(underTest.reserve("key", "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+    }
+
+    @Test
+    void completedKeyExpiresAfterTtl() {
+        underTest.reserve("key", "fp");
+        underTest.complete("key", RESPONSE);
+
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+
+        assertThat(underTest.reserve("key", "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+    }
+
+    @Test
+    void evictsOldestCompletedKeysWhenFull() {
+        for (int i = 0; i < 10; i++) {
+            underTest.reserve("key" + i, "fp");
+            underTest.complete("key" + i, RESPONSE);
+            now.incrementAndGet();
+        }
+
+        underTest.reserve("key10", "fp");
+
+        assertThat(underTest.size()).isEqualTo(10);
+        assertThat(underTest.reserve("key0", "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+        assertThat(underTest.reserve("key9", "fp").state()).isEqualTo(Reservation.State.COMPLETED);
+    }
+
+    @Test
+    void waiterReceivesResponseOfInFlightExecution() throws Exception {
+        underTest.reserve("key", "fp");
+
+        CompletableFuture<IdempotentResponse> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return underTest.awaitCompletion("key", Duration.ofSeconds(5));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        underTest.complete("key", RESPONSE);
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isSameAs(RESPONSE);
+    }
+
+    @Test
+    void waiterTimesOutWhileStillInFlight() {
+        underTest.reserve("key", "fp");
+
+        assertThatThrownBy(() -> underTest.awaitCompletion("key", Duration.ofMillis(10)))
+                .isInstanceOf(TimeoutException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.zotov.idempotency;
+
+import org.junit.jupiter.api.Test;
+import ru.zotov.AbstractTestContainers;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcIdempotencyStoreTest extends AbstractTestContainers {
+
+    private final JdbcIdempotencyStore underTest =
+            new JdbcIdempotencyStore(getJdbcTemplate(), Duration.ofMinutes(1), Duration.ofSeconds(30));
+
+    @Test
+    void storesAndReplaysCompletedResponse() {
+        String key = UUID.randomUUID().toString();
+        IdempotentResponse response =
+                new IdempotentResponse(201, "application/json", "{\"id\":1}".getBytes(), false, null);
+
+        assertThat(underTest.reserve(key, "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+        assertThat(underTest.reserve(key, "fp").state()).isEqualTo(Reservation.State.IN_FLIGHT);
+        underTest.complete(key, response);
+
+        Reservation actual = underTest.reserve(key, "fp");
+        assertThat(actual.state()).isEqualTo(Reservation.State.COMPLETED);
+        assertThat(actual.response().status()).isEqualTo(201);
+        assertThat(actual.response().body()).isEqualTo(response.body());
+        assertThat(underTest.reserve(key, "other").state()).isEqualTo(Reservation.State.MISMATCH);
+    }
+
+    @Test
+    void releasedKeyCanBeAcquiredAgain() throws Exception {
+        String key = UUID.randomUUID().toString();
+        underTest.reserve(key, "fp");
+        underTest.release(key);
+
+        assertThat(underTest.awaitCompletion(key, Duration.ofSeconds(1))).isNull();
+        assertThat(underTest.reserve(key, "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+    }
+
+    @Test
+    void expiredReservationCanBeTakenOver() {
+        JdbcIdempotencyStore shortLived =
+                new JdbcIdempotencyStore(getJdbcTemplate(), Duration.ofMinutes(1), Duration.ZERO);
+        String key = UUID.randomUUID().toString();
+        shortLived.reserve(key, "fp");
+
+        assertThat(shortLived.reserve(key, "fp").state()).isEqualTo(Reservation.State.ACQUIRED);
+    }
+
+    @Test
+    void waiterTimesOutWhileStillInFlight() {
+        String key = UUID.randomUUID().toString();
+        underTest.reserve(key, "fp");
+
+        assertThatThrownBy(() -> underTest.awaitCompletion(key, Duration.ofMillis(100)))
+                .isInstanceOf(TimeoutException.class);
+    }
+}
@@ -1,5 +1,7 @@
 package ru.zotov.journey;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import net.datafaker.Faker;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,14 +14,17 @@ import ru.zotov.customer.Customer;
 import ru.zotov.customer.CustomerRegistrationRequest;
 import ru.zotov.customer.CustomerUpdateRequest;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static ru.zotov.RoundTripBudget.STATEMENTS_HEADER;
+import static ru.zotov.RoundTripBudget.atMostStatements;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "customer.db-usage.debug-headers=true")
 public class CustomerIntegrationTest {
 
     @Autowired
@@ -45,7 +50,9 @@ public class CustomerIntegrationTest {
                 .body(Mono.just(customerRegistrationRequest), CustomerRegistrationRequest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectHeader()
+                .value(STATEMENTS_HEADER, atMostStatements(3)); // email check + INSERT, nextval once per block of ids
         //endregion
 
         //region Getting all Customers from db
@@ -55,6 +62,8 @@ public class CustomerIntegrationTest {
                 .exchange()
                 .expectStatus()
                 .isOk()
+                .expectHeader()
+                .value(STATEMENTS_HEADER, atMostStatements(1))
                 .expectBodyList(new ParameterizedTypeReference<Customer>() {
                 })
                 .returnResult()
@@ -83,6 +92,8 @@ public class CustomerIntegrationTest {
                 .exchange()
                 .expectStatus()
                 .isOk()
+                .expectHeader()
+                .value(STATEMENTS_HEADER, atMostStatements(1))
                 .expectBody(new ParameterizedTypeReference<Customer>() {
                 })
                 .isEqualTo(expectedCustomer);
@@ -138,7 +149,9 @@ public class CustomerIntegrationTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectHeader()
+                .value(STATEMENTS_HEADER, atMostStatements(2));
         //endregion
 
         webTestClient.get()
@@ -204,7 +217,9 @@ public class CustomerIntegrationTest {
                 .body(Mono.just(customerUpdateRequest), CustomerIntegrationTest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectHeader()
+                .value(STATEMENTS_HEADER, atMostStatements(2)); // lookup + UPDATE
         //endregion
 
         Customer updatedCustomer = webTestClient.get()
@@ -223,4 +238,36 @@ public class CustomerIntegrationTest {
         assert updatedCustomer != null;
         assertThat(updatedCustomer).isEqualTo(expectedCustomer);
     }
+
+    @Test
+    void canRegisterAndGetCustomerAsCbor() throws IOException {
+        CBORMapper cborMapper = new CBORMapper();
+        String email = UUID.randomUUID() + "@gmail.com";
+        CustomerRegistrationRequest customerRegistrationRequest =
+                new CustomerRegistrationRequest("Cbor", email, 30);
+
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(cborMapper.writeValueAsBytes(customerRegistrationRequest))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        byte[] body = webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        List<Customer> allCustomers = cborMapper.readValue(body, new TypeReference<>() {
+        });
+        assertThat(allCustomers).extracting(Customer::getEmail).contains(email);
+    }
 }
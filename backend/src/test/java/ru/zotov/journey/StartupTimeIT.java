@@ -0,0 +1,103 @@
+package ru.zotov.journey;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.zotov.AbstractTestContainers;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the time from launching the packaged application with the
+ * {@code fast-startup} profile in a fresh JVM until the first
+ * {@code GET /api/v1/customers/{id}} succeeds. Runs with failsafe after
+ * {@code package}; {@code -Pfast-startup} also starts it with the AOT-processed
+ * context.
+ */
+class StartupTimeIT extends AbstractTestContainers {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeIT.class);
+
+    private static final Duration BUDGET = Duration.ofMillis(Long.getLong("startup.budget.millis", 30_000));
+
+    @Test
+    void firstCustomerLookupWithinBudget() throws Exception {
+        Path jar = Path.of(System.getProperty("startup.jar"));
+        assertThat(jar).as("packaged application").isRegularFile();
+        int customerId = insertCustomer();
+        boolean aot = Boolean.getBoolean("startup.aot");
+        int port = freePort();
+        Path output = Files.createTempFile("startup-it", ".log");
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:%d/api/v1/customers/%d".formatted(port, customerId))).build();
+
+        long start = System.nanoTime();
+        Process application = new ProcessBuilder(command(jar, aot, port))
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile())
+                .start();
+        try {
+            int status = 0;
+            while (status != 200 && application.isAlive() && System.nanoTime() - start < BUDGET.toNanos()) {
+                try {
+                    status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (ConnectException e) {
+                    Thread.sleep(10);
+                }
+            }
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            log.info("Startup (aot={}): first successful GET after {} ms", aot, elapsed.toMillis());
+
+            assertThat(status).as("status of the first lookup, application output in %s", output).isEqualTo(200);
+            assertThat(elapsed).isLessThan(BUDGET);
+        } finally {
+            application.destroy();
+            application.waitFor();
+        }
+    }
+
+    private static List<String> command(Path jar, boolean aot, int port) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (aot) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--spring.profiles.active=fast-startup");
+        command.add("--server.port=" + port);
+        command.add("--management.server.port=0");
+        command.add("--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl());
+        command.add("--spring.datasource.username=" + postgreSQLContainer.getUsername());
+        command.add("--spring.datasource.password=" + postgreSQLContainer.getPassword());
+        return command;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int insertCustomer() {
+        return getJdbcTemplate().queryForObject(
+                "INSERT INTO customer (name, email, age) VALUES (?, ?, ?) RETURNING id",
+                Integer.class, "Startup", UUID.randomUUID() + "@gmail.com", 30);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.zotov.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Requests reach the app through a load balancer on a private address, like the
+ * test client on loopback here, so clients are told apart by X-Forwarded-For.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.rate-limit.capacity=2",
+        "customer.rate-limit.refill-per-second=0.001"
+})
+class ForwardedClientRateLimitTest {
+
+    private static final String CUSTOMER_URI = "api/v1/customers/{id}";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void clientsBehindTheProxyGetTheirOwnBucket() {
+        get("203.0.113.1").expectStatus().isNotFound();
+        get("203.0.113.1").expectStatus().isNotFound();
+        get("203.0.113.1").expectStatus().isEqualTo(429);
+
+        get("203.0.113.2").expectStatus().isNotFound();
+    }
+
+    private WebTestClient.ResponseSpec get(String clientAddress) {
+        return webTestClient.get()
+                .uri(CUSTOMER_URI, Integer.MAX_VALUE)
+                .header("X-Forwarded-For", clientAddress)
+                .exchange();
+    }
+}
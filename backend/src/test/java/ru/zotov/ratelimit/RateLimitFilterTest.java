@@ -0,0 +1,101 @@
+package ru.zotov.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final RateLimitProperties properties = new RateLimitProperties(true, 20, 1, 100, "X-API-Key",
+            Set.of("service-a"), Duration.ofMinutes(10), new RateLimitProperties.Costs(10, 2, 1, 5, 5, 2, 1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitFilter underTest = new RateLimitFilter(
+            new RateLimiter(properties.capacity(), properties.refillPerSecond(), properties.maxClients(),
+                    properties.idleExpiry()),
+            properties, meterRegistry);
+    private final AtomicInteger executions = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> executions.incrementAndGet();
+
+    @Test
+    void throttlesWithRetryAfterOnceBucketIsEmpty() throws Exception {
+        assertThat(perform(get("/api/v1/customers")).getStatus()).isEqualTo(200);
+        assertThat(perform(get("/api/v1/customers")).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse actual = perform(get("/api/v1/customers"));
+
+        assertThat(executions).hasValue(2);
+        assertThat(actual.getStatus()).isEqualTo(429);
+        assertThat(actual.getHeader("Retry-After")).isEqualTo("10");
+        assertThat(meterRegistry.get("customer.rate-limit.requests")
+                .tags("endpoint", "list", "outcome", "throttled").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void listCostsMoreThanGetById() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            perform(get("/api/v1/customers/" + i));
+        }
+
+        assertThat(executions).hasValue(20);
+        assertThat(meterRegistry.get("customer.rate-limit.requests")
+                .tags("endpoint", "get", "outcome", "allowed").counter().count()).isEqualTo(20);
+    }
+
+    @Test
+    void apiKeyAndAddressAreLimitedSeparately() throws Exception {
+        perform(get("/api/v1/customers"));
+        perform(get("/api/v1/customers"));
+
+        MockHttpServletRequest withKey = get("/api/v1/customers");
+        withKey.addHeader("X-API-Key", "service-a");
+        MockHttpServletRequest otherAddress = get("/api/v1/customers");
+        otherAddress.setRemoteAddr("10.0.0.2");
+
+        assertThat(perform(withKey).getStatus()).isEqualTo(200);
+        assertThat(perform(otherAddress).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void unknownApiKeyIsLimitedByAddress() throws Exception {
+        perform(get("/api/v1/customers"));
+        perform(get("/api/v1/customers"));
+
+        MockHttpServletRequest withUnknownKey = get("/api/v1/customers");
+        withUnknownKey.addHeader("X-API-Key", "made-up");
+
+        assertThat(perform(withUnknownKey).getStatus()).isEqualTo(429);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void resolvesEndpointFromMethodPathAndParameters() {
+        MockHttpServletRequest multiGet = get("/api/v1/customers");
+        multiGet.addParameter("ids", "1,2");
+
+        assertThat(Endpoint.of(get("/api/v1/customers"))).isEqualTo(Endpoint.LIST);
+        assertThat(Endpoint.of(multiGet)).isEqualTo(Endpoint.MULTI_GET);
+        assertThat(Endpoint.of(get("/api/v1/customers/7"))).isEqualTo(Endpoint.GET);
+        assertThat(Endpoint.of(get("/api/v1/customers/changes"))).isEqualTo(Endpoint.CHANGES);
+        assertThat(Endpoint.of(get("/api/v1/customers/events"))).isEqualTo(Endpoint.EVENTS);
+        assertThat(Endpoint.of(new MockHttpServletRequest("DELETE", "/api/v1/customers/7"))).isEqualTo(Endpoint.WRITE);
+        assertThat(Endpoint.of(get("/api/v2/other"))).isEqualTo(Endpoint.OTHER);
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.zotov.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final RateLimiter underTest = new RateLimiter(10, 5, 3, Duration.ofSeconds(10), now::get);
+
+    @Test
+    void admitsBurstUpToCapacity() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(underTest.tryAcquire("a", 1)).isZero();
+        }
+
+        assertThat(underTest.tryAcquire("a", 1)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void refillsOverTime() {
+        assertThat(underTest.tryAcquire("a", 10)).isZero();
+        assertThat(underTest.tryAcquire("a", 5)).isPositive();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(underTest.tryAcquire("a", 5)).isZero();
+        assertThat(underTest.tryAcquire("a", 1)).isPositive();
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() {
+        assertThat(underTest.tryAcquire("a", 10)).isZero();
+
+        assertThat(underTest.tryAcquire("b", 10)).isZero();
+    }
+
+    @Test
+    void costAboveCapacityIsChargedAsFullBucket() {
+        assertThat(underTest.tryAcquire("a", 50)).isZero();
+        assertThat(underTest.tryAcquire("a", 1)).isPositive();
+    }
+
+    @Test
+    void boundedNumberOfClientsPrefersDroppingRefilledBuckets() {
+        underTest.tryAcquire("a", 10);
+        underTest.tryAcquire("b", 1);
+        underTest.tryAcquire("c", 1);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+
+        underTest.tryAcquire("d", 1);
+
+        assertThat(underTest.clients()).isLessThanOrEqualTo(3);
+        assertThat(underTest.tryAcquire("a", 9)).isPositive();
+    }
+
+    @Test
+    void dropsBucketsIdleForTheExpiry() {
+        underTest.tryAcquire("a", 1);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        underTest.tryAcquire("b", 1);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        underTest.tryAcquire("b", 1);
+
+        assertThat(underTest.clients()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCallersNeverOverdrawBucket() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1_000, 1e-9, 10, Duration.ofMinutes(10));
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire("shared", 1) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+        assertThat(admitted).hasValue(1_000);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.zotov.sqlstats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseUsageFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FilterChain twoStatements = (request, response) -> {
+        DatabaseUsageTracker.current().add(TimeUnit.MILLISECONDS.toNanos(2), 1);
+        DatabaseUsageTracker.current().add(TimeUnit.MILLISECONDS.toNanos(1), 3);
+        response.getWriter().write("{}");
+    };
+
+    @Test
+    void recordsUsagePerEndpoint() throws Exception {
+        DatabaseUsageFilter underTest = new DatabaseUsageFilter(false, meterRegistry);
+
+        MockHttpServletResponse actual = perform(underTest, twoStatements);
+
+        assertThat(actual.getHeader(DatabaseUsageFilter.STATEMENTS_HEADER)).isNull();
+        assertThat(meterRegistry.get("customer.request.db.statements")
+                .tags("endpoint", "get").summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.request.db.rows")
+                .tags("endpoint", "get").summary().totalAmount()).isEqualTo(4);
+        assertThat(meterRegistry.get("customer.request.db.time")
+                .tags("endpoint", "get").timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(3);
+        assertThat(DatabaseUsageTracker.current()).isNull();
+    }
+
+    @Test
+    void returnsUsageHeadersInDebugMode() throws Exception {
+        DatabaseUsageFilter underTest = new DatabaseUsageFilter(true, meterRegistry);
+
+        MockHttpServletResponse actual = perform(underTest, twoStatements);
+
+        assertThat(actual.getHeader(DatabaseUsageFilter.STATEMENTS_HEADER)).isEqualTo("2");
+        assertThat(actual.getHeader(DatabaseUsageFilter.ROWS_HEADER)).isEqualTo("4");
+        assertThat(actual.getHeader(DatabaseUsageFilter.TIME_HEADER)).isEqualTo("3.000");
+        assertThat(actual.getContentAsString()).isEqualTo("{}");
+    }
+
+    @Test
+    void returnsUsageHeadersOnErrors() throws Exception {
+        DatabaseUsageFilter underTest = new DatabaseUsageFilter(true, meterRegistry);
+        FilterChain notFound = (request, response) -> {
+            DatabaseUsageTracker.current().add(TimeUnit.MILLISECONDS.toNanos(1), 0);
+            ((HttpServletResponse) response).sendError(404);
+        };
+
+        MockHttpServletResponse actual = perform(underTest, notFound);
+
+        assertThat(actual.getStatus()).isEqualTo(404);
+        assertThat(actual.getHeader(DatabaseUsageFilter.STATEMENTS_HEADER)).isEqualTo("1");
+    }
+
+    private static MockHttpServletResponse perform(DatabaseUsageFilter filter, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/customers/7"), response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,105 @@
+package ru.zotov.sqlstats;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ObservedDataSourceTest {
+
+    private final DataSource target = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet resultSet = mock(ResultSet.class);
+
+    @Test
+    void recordsQueryWithRowsReadFromResultSet() throws Exception {
+        SqlStatistics statistics = statistics(1.0);
+        ObservedDataSource underTest = new ObservedDataSource(target, statistics);
+        givenStatement();
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+
+        try (Connection actual = underTest.getConnection();
+             PreparedStatement prepared = actual.prepareStatement("SELECT id FROM customer WHERE id = ANY(?)")) {
+            prepared.setInt(1, 7);
+            try (ResultSet rows = prepared.executeQuery()) {
+                while (rows.next()) {
+                    rows.getInt(1);
+                }
+            }
+        }
+
+        StatementSummary summary = statistics.top(SqlStatistics.Order.TOTAL, 10).get(0);
+        assertThat(summary.sql()).isEqualTo("SELECT id FROM customer WHERE id = ANY(?)");
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.rows()).isEqualTo(2);
+        verify(statement).setInt(1, 7);
+        verify(resultSet).close();
+    }
+
+    @Test
+    void recordsUpdateCount() throws Exception {
+        SqlStatistics statistics = statistics(1.0);
+        ObservedDataSource underTest = new ObservedDataSource(target, statistics);
+        givenStatement();
+        when(statement.executeUpdate()).thenReturn(3);
+
+        try (Connection actual = underTest.getConnection()) {
+            actual.prepareStatement("UPDATE customer SET age = ? WHERE id = ?").executeUpdate();
+        }
+
+        assertThat(statistics.top(SqlStatistics.Order.ROWS, 10))
+                .extracting(StatementSummary::rows)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void unsampledStatementsAreNotWrapped() throws Exception {
+        SqlStatistics statistics = statistics(0.0);
+        ObservedDataSource underTest = new ObservedDataSource(target, statistics);
+        givenStatement();
+
+        try (Connection actual = underTest.getConnection()) {
+            assertThat(actual.prepareStatement("SELECT 1")).isSameAs(statement);
+        }
+        assertThat(statistics.trackedStatements()).isZero();
+    }
+
+    @Test
+    void tracksUnsampledStatementsForCurrentThread() throws Exception {
+        SqlStatistics statistics = statistics(0.0);
+        ObservedDataSource underTest = new ObservedDataSource(target, statistics);
+        givenStatement();
+        when(statement.executeUpdate()).thenReturn(1);
+
+        DatabaseUsageTracker.start();
+        try (Connection actual = underTest.getConnection()) {
+            actual.prepareStatement("DELETE FROM customer WHERE id = ?").executeUpdate();
+            actual.prepareStatement("DELETE FROM customer WHERE id = ?").executeUpdate();
+        }
+        DatabaseUsage usage = DatabaseUsageTracker.stop();
+
+        assertThat(usage.statements()).isEqualTo(2);
+        assertThat(usage.rows()).isEqualTo(2);
+        assertThat(statistics.trackedStatements()).isZero();
+    }
+
+    private void givenStatement() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+    }
+
+    private static SqlStatistics statistics(double sampleRate) {
+        return new SqlStatistics(new SqlStatsProperties(true, sampleRate, Duration.ofMillis(200), 500, 20));
+    }
+}
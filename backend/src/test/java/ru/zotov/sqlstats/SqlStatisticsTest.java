@@ -0,0 +1,93 @@
+package ru.zotov.sqlstats;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatisticsTest {
+
+    private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+    private final SqlStatistics underTest = new SqlStatistics(
+            new SqlStatsProperties(true, 1.0, Duration.ofMillis(200), 3, 20));
+
+    @Test
+    void normalizesWhitespaceAndLiterals() {
+        assertThat(SqlNormalizer.doNormalize("""
+                SELECT count(id)
+                FROM customer
+                WHERE email = 'a''b@x.com' AND age > 18 AND id = ANY(?)
+                """))
+                .isEqualTo("SELECT count(id) FROM customer WHERE email = ? AND age > ? AND id = ANY(?)");
+        assertThat(SqlNormalizer.doNormalize("select c1_0.id from customer c1_0 where c1_0.id=$1"))
+                .isEqualTo("select c1_0.id from customer c1_0 where c1_0.id=$1");
+    }
+
+    @Test
+    void aggregatesByNormalizedSql() {
+        underTest.record("SELECT * FROM customer WHERE id = 1", millis(2), 1, NO_PARAMETERS);
+        underTest.record("SELECT *\n  FROM customer WHERE id = 2", millis(4), 1, NO_PARAMETERS);
+        underTest.record("UPDATE customer SET age = ? WHERE id = ?", millis(1), 1, NO_PARAMETERS);
+
+        StatementSummary actual = underTest.top(SqlStatistics.Order.TOTAL, 1).get(0);
+
+        assertThat(actual.sql()).isEqualTo("SELECT * FROM customer WHERE id = ?");
+        assertThat(actual.count()).isEqualTo(2);
+        assertThat(actual.totalMillis()).isEqualTo(6.0);
+        assertThat(actual.maxMillis()).isEqualTo(4.0);
+        assertThat(actual.rows()).isEqualTo(2);
+    }
+
+    @Test
+    void ordersByCountAndRows() {
+        underTest.record("SELECT id FROM customer", millis(50), 1000, NO_PARAMETERS);
+        for (int i = 0; i < 3; i++) {
+            underTest.record("SELECT count(id) FROM customer WHERE email = ?", millis(1), 1, NO_PARAMETERS);
+        }
+
+        assertThat(underTest.top(SqlStatistics.Order.COUNT, 1).get(0).sql()).contains("count(id)");
+        assertThat(underTest.top(SqlStatistics.Order.ROWS, 1).get(0).sql()).isEqualTo("SELECT id FROM customer");
+    }
+
+    @Test
+    void poolsStatementsBeyondLimitIntoOverflowEntry() {
+        for (int i = 0; i < 5; i++) {
+            underTest.record("SELECT col" + i + " FROM customer", millis(1), 0, NO_PARAMETERS);
+        }
+
+        assertThat(underTest.trackedStatements()).isEqualTo(4);
+        assertThat(underTest.top(SqlStatistics.Order.COUNT, 1).get(0).sql()).isEqualTo(SqlStatistics.OVERFLOW_SQL);
+    }
+
+    @Test
+    void percentilesComeFromLogLinearBuckets() {
+        for (int i = 0; i < 99; i++) {
+            underTest.record("SELECT 1", TimeUnit.MICROSECONDS.toNanos(300), 1, NO_PARAMETERS);
+        }
+        underTest.record("SELECT 1", millis(40), 1, NO_PARAMETERS);
+
+        StatementSummary actual = underTest.top(SqlStatistics.Order.TOTAL, 1).get(0);
+
+        assertThat(actual.p50Millis()).isBetween(0.3, 0.375);
+        assertThat(actual.p99Millis()).isBetween(0.3, 0.375);
+        assertThat(actual.maxMillis()).isEqualTo(40.0);
+    }
+
+    @Test
+    void bucketsCoverTheirValues() {
+        for (long micros : new long[]{0, 1, 3, 4, 7, 8, 9, 300, 1_000_000, Long.MAX_VALUE / 2}) {
+            int bucket = StatementStats.bucket(micros);
+            assertThat(StatementStats.upperBoundMicros(bucket)).isGreaterThan(micros);
+            if (bucket > 0) {
+                assertThat(StatementStats.upperBoundMicros(bucket - 1)).isLessThanOrEqualTo(micros);
+            }
+        }
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}